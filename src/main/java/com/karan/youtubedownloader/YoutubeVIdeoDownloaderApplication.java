@@ -3,9 +3,11 @@ package com.karan.youtubedownloader;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @Slf4j
 @SpringBootApplication
+@EnableScheduling
 public class YoutubeVIdeoDownloaderApplication {
 
     public static void main(String[] args) {
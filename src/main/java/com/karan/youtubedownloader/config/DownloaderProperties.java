@@ -0,0 +1,237 @@
+package com.karan.youtubedownloader.config;
+
+import com.karan.youtubedownloader.model.JobPriority;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "downloader")
+public class DownloaderProperties {
+
+    private Jobs jobs = new Jobs();
+    private Process process = new Process();
+    private MetadataCache metadataCache = new MetadataCache();
+    private Playlist playlist = new Playlist();
+    private History history = new History();
+    private Dedupe dedupe = new Dedupe();
+    private Stream stream = new Stream();
+    private Governor governor = new Governor();
+    private Transfer transfer = new Transfer();
+    private Scheduling scheduling = new Scheduling();
+    private WorkerPool workerPool = new WorkerPool();
+    private PostProcessing postProcessing = new PostProcessing();
+    private Cluster cluster = new Cluster();
+    private TranscriptIndex transcriptIndex = new TranscriptIndex();
+
+    @Data
+    public static class Jobs {
+        // Max yt-dlp processes running at once, per job type
+        private int videoConcurrency = 2;
+        private int audioConcurrency = 3;
+        private int subtitleConcurrency = 4;
+
+        // Jobs waiting per type before new submissions are rejected
+        private int queueCapacity = 200;
+
+        // How long finished jobs stay queryable through /jobs/{id}
+        private Duration retention = Duration.ofHours(1);
+    }
+
+    @Data
+    public static class Process {
+        // yt-dlp binary, either on PATH or an absolute path
+        private String executable = "yt-dlp";
+
+        // Wall-clock limits after which the process tree is killed
+        private Duration metadataTimeout = Duration.ofSeconds(60);
+        private Duration downloadTimeout = Duration.ofHours(6);
+
+        // Last lines of stdout/stderr kept per process for error messages
+        private int outputBufferLines = 200;
+        private int maxBufferedLineLength = 4096;
+    }
+
+    @Data
+    public static class MetadataCache {
+        private Duration ttl = Duration.ofMinutes(10);
+
+        // Total weight across entries; a video weighs one plus its formats, subtitles and thumbnails
+        private long maxWeight = 20_000;
+    }
+
+    @Data
+    public static class Playlist {
+        // Entries of one playlist downloading at the same time
+        private int parallelism = 3;
+
+        // Playlists being expanded at once, and how many more may wait
+        private int maxActive = 4;
+        private int queueCapacity = 20;
+
+        // A flat enumeration of a huge channel can take minutes
+        private Duration enumerationTimeout = Duration.ofMinutes(10);
+    }
+
+    @Data
+    public static class History {
+        // Rows written per JDBC batch, and the longest a change waits before it is flushed
+        private int batchSize = 50;
+        private Duration flushInterval = Duration.ofSeconds(2);
+
+        // Distinct jobs with unflushed changes before writers are pushed back
+        private int capacity = 1000;
+        private Duration offerTimeout = Duration.ofSeconds(5);
+    }
+
+    @Data
+    public static class Dedupe {
+        // Serve repeat requests from files earlier jobs already downloaded
+        private boolean enabled = true;
+
+        // How an existing file is placed into a different download folder
+        private LinkMode linkMode = LinkMode.HARDLINK;
+    }
+
+    @Data
+    public static class Stream {
+        // yt-dlp processes piping straight to clients at once
+        private int maxConcurrent = 4;
+
+        // Bytes held between yt-dlp's stdout and the client; the only copy buffer in the pipe
+        private int bufferSize = 64 * 1024;
+
+        // Formats known to be larger than this are not offered for pipe-through
+        private DataSize maxFileSize = DataSize.ofMegabytes(500);
+    }
+
+    @Data
+    public static class Governor {
+        // yt-dlp downloads running at once across all job types, and per site
+        private int maxConcurrent = 6;
+        private int perHostMaxConcurrent = 4;
+
+        // Aggregate bandwidth, split into per-download --limit-rate values; 0 means unlimited
+        private DataSize maxBandwidth = DataSize.ofBytes(0);
+        private DataSize perHostBandwidth = DataSize.ofBytes(0);
+
+        // No download is started with a smaller --limit-rate than this
+        private DataSize minRate = DataSize.ofKilobytes(256);
+
+        // Wait before new downloads from a site that answered 429, doubling up to the max
+        private Duration backoffInitial = Duration.ofSeconds(30);
+        private Duration backoffMax = Duration.ofMinutes(10);
+    }
+
+    @Data
+    public static class Transfer {
+        // Parallel fragments for DASH/HLS formats when the request does not say, and the most a request may ask for
+        private int defaultConcurrentFragments = 4;
+        private int maxConcurrentFragments = 16;
+
+        // aria2c binary; "auto" uses it only when it is installed
+        private String aria2cExecutable = "aria2c";
+
+        // Connections per file when aria2c fetches a single large file
+        private int defaultConnections = 4;
+        private int maxConnections = 16;
+
+        // Smaller single-file formats are not worth aria2c's startup cost
+        private DataSize aria2cMinFileSize = DataSize.ofMegabytes(50);
+    }
+
+    @Data
+    public static class Scheduling {
+        // Share of a pool's workers each class gets while several are waiting
+        private Map<JobPriority, Integer> classWeights = new EnumMap<>(Map.of(
+                JobPriority.FAST, 8,
+                JobPriority.AUDIO, 4,
+                JobPriority.VIDEO, 2,
+                JobPriority.BULK, 1));
+
+        // Header naming the client; requests without it are told apart by remote address
+        private String clientHeader = "X-Api-Key";
+
+        // Relative share per client id within a class; unlisted clients weigh 1
+        private Map<String, Integer> clientWeights = new HashMap<>();
+    }
+
+    @Data
+    public static class WorkerPool {
+        // Long-lived yt-dlp processes for metadata probes; off means every probe forks yt-dlp
+        private boolean enabled = false;
+        private int size = 2;
+
+        // Interpreter that can "import yt_dlp"; the bridge script ships in the jar
+        private String pythonExecutable = "python3";
+
+        // Workers are replaced after this many requests, or once their resident memory passes the limit
+        private int maxRequestsPerWorker = 200;
+        private DataSize maxMemory = DataSize.ofMegabytes(512);
+
+        // A probe falls back to a one-shot yt-dlp when no worker is free within this time
+        private Duration borrowTimeout = Duration.ofMillis(500);
+
+        // Idle workers are pinged this often; dead ones are replaced
+        private Duration healthCheckInterval = Duration.ofSeconds(30);
+        private Duration startupTimeout = Duration.ofSeconds(30);
+    }
+
+    @Data
+    public static class PostProcessing {
+        // ffmpeg merges and audio conversions running at once; 0 means one per CPU core
+        private int concurrency = 0;
+
+        private String ffmpegExecutable = "ffmpeg";
+        private Duration timeout = Duration.ofHours(2);
+    }
+
+    @Data
+    public static class Cluster {
+        // Share the job queue with every instance on the same database; off keeps each job on the node that took it
+        private boolean enabled = false;
+
+        // Unique per instance; blank means the host name plus a random suffix
+        private String nodeId = "";
+
+        // How often a node looks for jobs to claim, and renews the leases on the jobs it holds
+        private Duration pollInterval = Duration.ofSeconds(2);
+        private Duration heartbeatInterval = Duration.ofSeconds(10);
+
+        // A job whose lease is not renewed for this long is handed to another node
+        private Duration leaseDuration = Duration.ofSeconds(60);
+    }
+
+    @Data
+    public static class TranscriptIndex {
+        // Index subtitles as downloadOnlySubtitles writes them, for /transcripts/search
+        private boolean enabled = true;
+
+        // Blank means ~/.youtube-downloader/transcript-index
+        private String directory = "";
+
+        // Segments merged into one at a time; more segments means cheaper writes but slower searches
+        private int mergeFactor = 8;
+
+        // Snippets returned per video; the count of matching cues covers all of them
+        private int maxHitsPerVideo = 5;
+
+        // Cues kept per transcript while it waits to be written; later ones are left out of the index
+        private int maxCuesPerTranscript = 20_000;
+
+        // Segments are only merged while the result stays under this; a merge holds all of it in memory
+        private DataSize maxMergedSegmentSize = DataSize.ofMegabytes(64);
+    }
+
+    public enum LinkMode {
+        HARDLINK,
+        COPY
+    }
+}
@@ -0,0 +1,76 @@
+package com.karan.youtubedownloader.config;
+
+import com.karan.youtubedownloader.model.DownloadHistory;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.persistence.EntityManagerFactory;
+
+/**
+ * Schema pieces for download_history that Hibernate's ddl-auto cannot express.
+ */
+@Slf4j
+@Component
+public class HistorySchemaInitializer {
+
+    public static final String TITLE_FULLTEXT_INDEX = "ft_history_title";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    // Taking the EntityManagerFactory makes this run after Hibernate's schema update
+    public HistorySchemaInitializer(JdbcTemplate jdbcTemplate, EntityManagerFactory entityManagerFactory) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @PostConstruct
+    public void initialize() {
+        alignIdSequence();
+        createTitleFullTextIndex();
+    }
+
+    /**
+     * download_history ids used to come from AUTO_INCREMENT. Hibernate creates the
+     * table backing the new id sequence empty or starting at 1, so move it past the
+     * ids that already exist before anything is inserted.
+     */
+    private void alignIdSequence() {
+        try {
+            Long maxId = jdbcTemplate.queryForObject("SELECT COALESCE(MAX(id), 0) FROM download_history", Long.class);
+            // The pooled optimizer may hand out ids up to one allocation below the stored value
+            long floor = (maxId == null ? 0 : maxId) + DownloadHistory.ID_ALLOCATION_SIZE + 1;
+
+            Integer rows = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM download_history_seq", Integer.class);
+            if (rows == null || rows == 0) {
+                jdbcTemplate.update("INSERT INTO download_history_seq (next_val) VALUES (?)", floor);
+            } else {
+                jdbcTemplate.update("UPDATE download_history_seq SET next_val = ? WHERE next_val < ?", floor, floor);
+            }
+            log.debug("download_history id sequence starts at or above {}", floor);
+        } catch (Exception e) {
+            log.warn("⚠️ Could not align download_history id sequence: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Title search uses MATCH ... AGAINST on an ngram full-text index, which finds
+     * substrings (including CJK titles) without the full scan of LIKE '%term%'.
+     */
+    private void createTitleFullTextIndex() {
+        try {
+            Integer existing = jdbcTemplate.queryForObject(
+                    "SELECT COUNT(*) FROM information_schema.statistics "
+                            + "WHERE table_schema = DATABASE() AND table_name = 'download_history' AND index_name = ?",
+                    Integer.class, TITLE_FULLTEXT_INDEX);
+            if (existing != null && existing > 0) {
+                return;
+            }
+            log.info("🔎 Building full-text index on download_history.video_title");
+            jdbcTemplate.execute("ALTER TABLE download_history ADD FULLTEXT INDEX " + TITLE_FULLTEXT_INDEX
+                    + " (video_title) WITH PARSER ngram");
+        } catch (Exception e) {
+            log.warn("⚠️ Could not create title full-text index: {}", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package com.karan.youtubedownloader.config;
+
+import org.hibernate.boot.MetadataBuilder;
+import org.hibernate.boot.spi.MetadataBuilderContributor;
+import org.hibernate.dialect.function.SQLFunctionTemplate;
+import org.hibernate.type.StandardBasicTypes;
+
+/**
+ * Registers MySQL's full-text MATCH ... AGAINST so it can be used from criteria
+ * queries as {@code function("match_against", Double.class, column, terms)}.
+ * Wired through spring.jpa.properties.hibernate.metadata_builder_contributor.
+ */
+public class HistorySqlFunctions implements MetadataBuilderContributor {
+
+    public static final String MATCH_AGAINST = "match_against";
+
+    @Override
+    public void contribute(MetadataBuilder metadataBuilder) {
+        metadataBuilder.applySqlFunction(MATCH_AGAINST,
+                new SQLFunctionTemplate(StandardBasicTypes.DOUBLE, "match(?1) against (?2 in boolean mode)"));
+    }
+}
@@ -1,16 +1,55 @@
 package com.karan.youtubedownloader.controller;
 
+import com.karan.youtubedownloader.config.DownloaderProperties;
+import com.karan.youtubedownloader.model.DownloadJob;
 import com.karan.youtubedownloader.model.DownloadRequest;
+import com.karan.youtubedownloader.model.HistoryPage;
+import com.karan.youtubedownloader.model.HistoryQuery;
+import com.karan.youtubedownloader.model.JobStatus;
+import com.karan.youtubedownloader.model.PlaylistJob;
+import com.karan.youtubedownloader.model.StreamingDownload;
 import com.karan.youtubedownloader.model.SubtitleDownloadRequest;
+import com.karan.youtubedownloader.model.SubtitleFormat;
 import com.karan.youtubedownloader.model.SubtitleInfo;
+import com.karan.youtubedownloader.model.TranscriptSearchResult;
 import com.karan.youtubedownloader.model.VideoInfo;
+import com.karan.youtubedownloader.model.VideoMetadata;
+import com.karan.youtubedownloader.service.DownloadGovernor;
+import com.karan.youtubedownloader.service.DownloadHistoryService;
+import com.karan.youtubedownloader.service.DownloadJobService;
+import com.karan.youtubedownloader.service.MediaFileService;
+import com.karan.youtubedownloader.service.MetadataCache;
+import com.karan.youtubedownloader.service.PlaylistService;
+import com.karan.youtubedownloader.service.StreamingDownloadService;
+import com.karan.youtubedownloader.service.TranscriptIndex;
 import com.karan.youtubedownloader.service.YouTubeService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.async.CallableProcessingInterceptor;
+import org.springframework.web.context.request.async.WebAsyncUtils;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.function.Function;
 
 @Slf4j
 @RestController
@@ -19,6 +58,15 @@ import java.util.List;
 public class YouTubeController {
 
     private final YouTubeService youTubeService;
+    private final DownloadJobService downloadJobService;
+    private final PlaylistService playlistService;
+    private final DownloadHistoryService downloadHistoryService;
+    private final MediaFileService mediaFileService;
+    private final StreamingDownloadService streamingDownloadService;
+    private final MetadataCache metadataCache;
+    private final DownloadGovernor downloadGovernor;
+    private final TranscriptIndex transcriptIndex;
+    private final DownloaderProperties properties;
 
     @PostMapping("/check-quality")
     public ResponseEntity<List<VideoInfo>> checkAvailableQualities(@RequestBody String url) {
@@ -33,42 +81,255 @@ public class YouTubeController {
         }
     }
 
+    @PostMapping("/metadata")
+    public ResponseEntity<VideoMetadata> getVideoMetadata(@RequestBody String url) {
+        try {
+            log.info("🔍 Getting video metadata for URL: {}", url);
+            List<VideoMetadata> metadata = youTubeService.getVideoMetadata(url);
+            if (metadata.isEmpty()) {
+                return ResponseEntity.notFound().build();
+            }
+            return ResponseEntity.ok(metadata.get(0));
+        } catch (Exception e) {
+            log.error("❌ Error getting video metadata: {}", e.getMessage());
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
     @PostMapping("/download")
-    public ResponseEntity<String> downloadVideo(@RequestBody DownloadRequest request) {
+    public ResponseEntity<?> downloadVideo(@RequestBody DownloadRequest request, HttpServletRequest httpRequest) {
+        if (request.getDownloadType() == null) {
+            request.setDownloadType("video");
+        }
+        if ("playlist-all".equalsIgnoreCase(request.getQuality())) {
+            return downloadPlaylist(request, httpRequest);
+        }
+        return enqueue(request, httpRequest);
+    }
+
+    @PostMapping("/playlist")
+    public ResponseEntity<?> downloadPlaylist(@RequestBody DownloadRequest request, HttpServletRequest httpRequest) {
+        identifyClient(request, httpRequest);
+        try {
+            log.info("📃 Queueing playlist download for URL: {}", request.getUrl());
+            PlaylistJob playlist = playlistService.submit(request);
+            return ResponseEntity.accepted().body(playlist);
+        } catch (IllegalStateException e) {
+            log.warn("⚠️ Playlist rejected: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(e.getMessage());
+        } catch (Exception e) {
+            log.error("❌ Playlist download failed: {}", e.getMessage());
+            return ResponseEntity.badRequest().body("Playlist download failed: " + e.getMessage());
+        }
+    }
+
+    @GetMapping("/playlists/{playlistId}")
+    public ResponseEntity<PlaylistJob> getPlaylist(@PathVariable String playlistId) {
+        return playlistService.getPlaylist(playlistId)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    @GetMapping(value = "/playlists/{playlistId}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> streamPlaylistEvents(@PathVariable String playlistId) {
+        return playlistService.getPlaylist(playlistId)
+                .map(playlist -> ResponseEntity.ok(playlistService.subscribe(playlist)))
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    @GetMapping("/jobs/{jobId}")
+    public ResponseEntity<DownloadJob> getJob(@PathVariable String jobId) {
+        return downloadJobService.getJob(jobId)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    @GetMapping(value = "/jobs/{jobId}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> streamJobEvents(@PathVariable String jobId) {
+        return downloadJobService.getJob(jobId)
+                .map(job -> ResponseEntity.ok(downloadJobService.subscribe(job)))
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    @PostMapping("/jobs/{jobId}/cancel")
+    public ResponseEntity<?> cancelJob(@PathVariable String jobId) {
+        return changeJob(jobId, downloadJobService::cancel);
+    }
+
+    @PostMapping("/jobs/{jobId}/pause")
+    public ResponseEntity<?> pauseJob(@PathVariable String jobId) {
+        return changeJob(jobId, downloadJobService::pause);
+    }
+
+    @PostMapping("/jobs/{jobId}/resume")
+    public ResponseEntity<?> resumeJob(@PathVariable String jobId) {
+        return changeJob(jobId, downloadJobService::resume);
+    }
+
+    @GetMapping("/jobs/{jobId}/file")
+    public void downloadJobFile(@PathVariable String jobId, HttpServletRequest request,
+                                HttpServletResponse response) throws IOException {
+        Optional<Path> file = mediaFileService.findOutputFile(jobId);
+        if (file.isEmpty()) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND, "No finished file for job " + jobId);
+            return;
+        }
+        mediaFileService.serve(file.get(), request, response);
+    }
+
+    /**
+     * Pipes yt-dlp's output straight into the response, for audio and small
+     * single-file videos; nothing is written to the server's disk.
+     */
+    @GetMapping("/stream")
+    public ResponseEntity<?> streamDownload(@RequestParam String url,
+                                            @RequestParam(defaultValue = "audio") String downloadType,
+                                            @RequestParam(required = false) String quality,
+                                            @RequestParam(required = false) String formatId,
+                                            HttpServletRequest httpRequest) {
         try {
-            String downloadType = request.getDownloadType() != null ? request.getDownloadType() : "video";
-
-            switch (downloadType.toLowerCase()) {
-                case "video+subtitles":
-                    return downloadVideoWithSubtitles(request);
-                case "audio+subtitles":
-                    return downloadAudioWithSubtitles(request);
-                case "subtitles":
-                    return downloadOnlySubtitles(request);
-                case "audio":
-                    return downloadOnlyAudio(request);
-                case "video":
-                default:
-                    String result = youTubeService.downloadVideo(request.getUrl(), request.getQuality(), request.getDownloadPath());
-                    return ResponseEntity.ok(result);
+            log.info("🚰 Streaming {} download for URL: {}", downloadType, url);
+            DownloadRequest request = DownloadRequest.builder()
+                    .url(url)
+                    .downloadType(downloadType)
+                    .quality(quality)
+                    .formatId(formatId)
+                    .build();
+            StreamingDownload download = streamingDownloadService.prepare(request);
+            // Taken before the 200 goes out, so a full server can still say so
+            StreamingDownloadService.Reservation reservation = streamingDownloadService.reserve(download.getUrl());
+            boolean handedOver = false;
+            try {
+                StreamingResponseBody body = out -> {
+                    try {
+                        streamingDownloadService.pipe(download, reservation, Channels.newChannel(out));
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new IOException("Streaming interrupted", e);
+                    }
+                };
+                ResponseEntity<StreamingResponseBody> response = ResponseEntity.ok()
+                        .contentType(MediaType.parseMediaType(download.getContentType()))
+                        .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                                .filename(download.getFileName(), StandardCharsets.UTF_8).build().toString())
+                        .body(body);
+                // The body may never run (client gone, async timeout), so the end of the request releases it too
+                WebAsyncUtils.getAsyncManager(httpRequest).registerCallableInterceptor(reservation, releasing(reservation));
+                handedOver = true;
+                return response;
+            } finally {
+                if (!handedOver) {
+                    reservation.close();
+                }
             }
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, "30")
+                    .body(e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body("Streaming download interrupted");
         } catch (Exception e) {
-            log.error("❌ Download failed: {}", e.getMessage());
-            return ResponseEntity.badRequest().body("Download failed: " + e.getMessage());
+            log.error("❌ Streaming download failed: {}", e.getMessage());
+            return ResponseEntity.badRequest().body("Streaming download failed: " + e.getMessage());
         }
     }
 
+    private static CallableProcessingInterceptor releasing(StreamingDownloadService.Reservation reservation) {
+        return new CallableProcessingInterceptor() {
+            @Override
+            public <T> Object handleTimeout(NativeWebRequest request, Callable<T> task) {
+                reservation.close();
+                return RESULT_NONE;
+            }
+
+            @Override
+            public <T> Object handleError(NativeWebRequest request, Callable<T> task, Throwable t) {
+                reservation.close();
+                return RESULT_NONE;
+            }
+
+            @Override
+            public <T> void afterCompletion(NativeWebRequest request, Callable<T> task) {
+                reservation.close();
+            }
+        };
+    }
+
+    @GetMapping("/cache/stats")
+    public ResponseEntity<Map<String, Object>> getCacheStats() {
+        return ResponseEntity.ok(metadataCache.stats());
+    }
+
+    @GetMapping("/governor/stats")
+    public ResponseEntity<Map<String, Object>> getGovernorStats() {
+        return ResponseEntity.ok(downloadGovernor.stats());
+    }
+
+    @GetMapping("/scheduler/stats")
+    public ResponseEntity<Map<String, Object>> getSchedulerStats() {
+        return ResponseEntity.ok(downloadJobService.schedulerStats());
+    }
+
     @GetMapping("/download-history")
-    public ResponseEntity<List<?>> getDownloadHistory() {
+    public ResponseEntity<HistoryPage> getDownloadHistory(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(required = false) String quality,
+            @RequestParam(required = false) JobStatus status,
+            @RequestParam(required = false) String url,
+            @RequestParam(required = false) String q,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "50") int limit) {
         try {
-            // TODO: Implement download history retrieval
-            return ResponseEntity.ok(List.of());
+            HistoryQuery query = HistoryQuery.builder()
+                    .from(from)
+                    .to(to)
+                    .quality(quality)
+                    .status(status)
+                    .url(url)
+                    .search(q)
+                    .cursor(cursor)
+                    .limit(limit)
+                    .build();
+            return ResponseEntity.ok(downloadHistoryService.search(query));
         } catch (Exception e) {
             log.error("❌ Error fetching download history: {}", e.getMessage());
             return ResponseEntity.badRequest().build();
         }
     }
 
+    @GetMapping("/transcripts/search")
+    public ResponseEntity<?> searchTranscripts(@RequestParam String q, @RequestParam(defaultValue = "20") int limit) {
+        try {
+            List<TranscriptSearchResult> results = transcriptIndex.search(q, limit);
+            return ResponseEntity.ok(results);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
+    // Adds subtitle files already on disk, e.g. downloaded before the index existed; path is relative to the downloads folder
+    @PostMapping("/transcripts/index")
+    public ResponseEntity<?> indexTranscripts(@RequestParam String path) {
+        try {
+            int indexed = transcriptIndex.indexFolder(Path.of(youTubeService.resolveDownloadsPath(null)), path);
+            return ResponseEntity.ok(Map.of("indexed", indexed));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(e.getMessage());
+        } catch (IOException e) {
+            log.error("❌ Error indexing transcripts in {}: {}", path, e.getMessage());
+            return ResponseEntity.internalServerError().body("Indexing failed: " + e.getMessage());
+        }
+    }
+
+    @GetMapping("/transcripts/stats")
+    public ResponseEntity<Map<String, Object>> getTranscriptIndexStats() {
+        return ResponseEntity.ok(transcriptIndex.stats());
+    }
+
     @PostMapping("/get-subtitles")
     public ResponseEntity<List<SubtitleInfo>> getAvailableSubtitles(@RequestBody String url) {
         try {
@@ -82,90 +343,53 @@ public class YouTubeController {
     }
 
 
+    // Subtitles in the one format the request names, srt when it names none, as a queued job like the other downloads
     @PostMapping("/download-subtitles")
-    public ResponseEntity<String> downloadSubtitles(@RequestBody SubtitleDownloadRequest request) {
+    public ResponseEntity<?> downloadSubtitles(@RequestBody SubtitleDownloadRequest request, HttpServletRequest httpRequest) {
+        log.info("⬇️ Queueing subtitle download for URL: {}", request.getUrl());
+        String format = request.getFormat() == null || request.getFormat().isBlank()
+                ? SubtitleFormat.SRT.getExtension() : request.getFormat();
         try {
-            String result = youTubeService.downloadSubtitles(request);
-            return ResponseEntity.ok(result);
-        } catch (Exception e) {
+            SubtitleFormat.of(format);
+        } catch (IllegalArgumentException e) {
             return ResponseEntity.badRequest().body("Subtitle download failed: " + e.getMessage());
         }
+        return enqueue(DownloadRequest.builder()
+                .url(request.getUrl())
+                .downloadType("subtitles")
+                .subtitleLanguages(request.getLanguages())
+                .subtitleFormats(List.of(format))
+                .downloadPath(request.getDownloadPath())
+                .build(), httpRequest);
     }
     // Add these new methods to your YouTubeController.java
 
     @PostMapping("/download-video-with-subtitles")
-    public ResponseEntity<String> downloadVideoWithSubtitles(@RequestBody DownloadRequest request) {
-        try {
-            log.info("⬇️ Starting video + subtitles download for URL: {}", request.getUrl());
-
-            String result = youTubeService.downloadVideoWithSubtitles(
-                    request.getUrl(),
-                    request.getQuality(),
-                    request.getSubtitleLanguages(),
-                    request.getDownloadPath()
-            );
-
-            return ResponseEntity.ok(result);
-        } catch (Exception e) {
-            log.error("❌ Video + subtitles download failed: {}", e.getMessage());
-            return ResponseEntity.badRequest().body("Download failed: " + e.getMessage());
-        }
+    public ResponseEntity<?> downloadVideoWithSubtitles(@RequestBody DownloadRequest request, HttpServletRequest httpRequest) {
+        log.info("⬇️ Queueing video + subtitles download for URL: {}", request.getUrl());
+        request.setDownloadType("video+subtitles");
+        return enqueue(request, httpRequest);
     }
 
     @PostMapping("/download-audio-with-subtitles")
-    public ResponseEntity<String> downloadAudioWithSubtitles(@RequestBody DownloadRequest request) {
-        try {
-            log.info("⬇️ Starting audio + subtitles download for URL: {}", request.getUrl());
-
-            String result = youTubeService.downloadAudioWithSubtitles(
-                    request.getUrl(),
-                    request.getAudioFormat(),
-                    request.getSubtitleLanguages(),
-                    request.getDownloadPath()
-            );
-
-            return ResponseEntity.ok(result);
-        } catch (Exception e) {
-            log.error("❌ Audio + subtitles download failed: {}", e.getMessage());
-            return ResponseEntity.badRequest().body("Download failed: " + e.getMessage());
-        }
+    public ResponseEntity<?> downloadAudioWithSubtitles(@RequestBody DownloadRequest request, HttpServletRequest httpRequest) {
+        log.info("⬇️ Queueing audio + subtitles download for URL: {}", request.getUrl());
+        request.setDownloadType("audio+subtitles");
+        return enqueue(request, httpRequest);
     }
 
     @PostMapping("/download-only-subtitles")
-    public ResponseEntity<String> downloadOnlySubtitles(@RequestBody DownloadRequest request) {
-        try {
-            log.info("⬇️ Starting subtitles-only download for URL: {}", request.getUrl());
-
-            String result = youTubeService.downloadOnlySubtitles(
-                    request.getUrl(),
-                    request.getSubtitleLanguages(),
-                    request.getSubtitleFormats(),
-                    request.getDownloadPath()
-            );
-
-            return ResponseEntity.ok(result);
-        } catch (Exception e) {
-            log.error("❌ Subtitles download failed: {}", e.getMessage());
-            return ResponseEntity.badRequest().body("Download failed: " + e.getMessage());
-        }
+    public ResponseEntity<?> downloadOnlySubtitles(@RequestBody DownloadRequest request, HttpServletRequest httpRequest) {
+        log.info("⬇️ Queueing subtitles-only download for URL: {}", request.getUrl());
+        request.setDownloadType("subtitles");
+        return enqueue(request, httpRequest);
     }
 
     @PostMapping("/download-only-audio")
-    public ResponseEntity<String> downloadOnlyAudio(@RequestBody DownloadRequest request) {
-        try {
-            log.info("⬇️ Starting audio-only download for URL: {}", request.getUrl());
-
-            String result = youTubeService.downloadOnlyAudio(
-                    request.getUrl(),
-                    request.getAudioFormat(),
-                    request.getDownloadPath()
-            );
-
-            return ResponseEntity.ok(result);
-        } catch (Exception e) {
-            log.error("❌ Audio download failed: {}", e.getMessage());
-            return ResponseEntity.badRequest().body("Download failed: " + e.getMessage());
-        }
+    public ResponseEntity<?> downloadOnlyAudio(@RequestBody DownloadRequest request, HttpServletRequest httpRequest) {
+        log.info("⬇️ Queueing audio-only download for URL: {}", request.getUrl());
+        request.setDownloadType("audio");
+        return enqueue(request, httpRequest);
     }
 
 
@@ -176,4 +400,34 @@ public class YouTubeController {
         return ResponseEntity.ok("chrome"); // Default to chrome
     }
 
-}
\ No newline at end of file
+    private ResponseEntity<?> enqueue(DownloadRequest request, HttpServletRequest httpRequest) {
+        identifyClient(request, httpRequest);
+        try {
+            DownloadJob job = downloadJobService.submit(request);
+            return ResponseEntity.accepted().body(job);
+        } catch (IllegalStateException e) {
+            log.warn("⚠️ Download rejected: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(e.getMessage());
+        } catch (Exception e) {
+            log.error("❌ Download failed: {}", e.getMessage());
+            return ResponseEntity.badRequest().body("Download failed: " + e.getMessage());
+        }
+    }
+
+    private ResponseEntity<?> changeJob(String jobId, Function<String, Optional<DownloadJob>> change) {
+        try {
+            return change.apply(jobId)
+                    .<ResponseEntity<?>>map(job -> ResponseEntity.accepted().body(job))
+                    .orElse(ResponseEntity.notFound().build());
+        } catch (IllegalStateException e) {
+            log.warn("⚠️ Job {} not changed: {}", jobId, e.getMessage());
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(e.getMessage());
+        }
+    }
+
+    // Fair queuing shares workers per API key, or per remote address for callers without one
+    private void identifyClient(DownloadRequest request, HttpServletRequest httpRequest) {
+        String apiKey = httpRequest.getHeader(properties.getScheduling().getClientHeader());
+        request.setClientId(apiKey != null && !apiKey.isBlank() ? apiKey.trim() : httpRequest.getRemoteAddr());
+    }
+}
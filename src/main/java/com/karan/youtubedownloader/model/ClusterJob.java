@@ -0,0 +1,90 @@
+package com.karan.youtubedownloader.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * A job in the queue shared by all instances on the same database. A row lives
+ * from submission until the job finishes; while a node runs the job it holds a
+ * lease on the row and keeps extending it, so the rows of a node that died
+ * become claimable again once their lease runs out.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity
+@Table(name = "cluster_job", indexes = {
+        // Claims walk the queued and expired rows of one pool in priority order
+        @Index(name = "idx_cluster_claim", columnList = "job_type, state, priority_rank, created_at"),
+        @Index(name = "idx_cluster_owner", columnList = "lease_owner, state"),
+        @Index(name = "idx_cluster_dedupe", columnList = "dedupe_key, state")
+})
+public class ClusterJob {
+
+    public enum State {
+        QUEUED,  // waiting for any node to claim it
+        LEASED,  // queued or running on lease_owner
+        PAUSED   // stopped on request, waiting for a resume on any node
+    }
+
+    @Id
+    @Column(name = "job_id", length = 36)
+    private String jobId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "job_type", length = 16, nullable = false)
+    private JobType jobType;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "priority", length = 16)
+    private JobPriority priority;
+
+    // JobPriority ordinal, so claims can ORDER BY it
+    @Column(name = "priority_rank", nullable = false)
+    private int priorityRank;
+
+    @Column(name = "client_id")
+    private String clientId;
+
+    @Column(name = "dedupe_key", length = 64)
+    private String dedupeKey;
+
+    @Column(name = "video_url", nullable = false)
+    private String videoUrl;
+
+    @Column(name = "download_type", length = 32)
+    private String downloadType;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "state", length = 16, nullable = false)
+    private State state;
+
+    @Column(name = "lease_owner", length = 128)
+    private String leaseOwner;
+
+    @Column(name = "lease_expires_at")
+    private LocalDateTime leaseExpiresAt;
+
+    // Times the job was claimed; more than one means it was reassigned from another node
+    @Column(name = "attempts", nullable = false)
+    private int attempts;
+
+    // PAUSED or CANCELLED, asked for on a node other than the lease owner
+    @Enumerated(EnumType.STRING)
+    @Column(name = "stop_requested", length = 16)
+    private JobStatus stopRequested;
+
+    // The original DownloadRequest as JSON
+    @Lob
+    @Column(name = "request_payload")
+    private String requestPayload;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+}
@@ -13,35 +13,84 @@ import java.time.LocalDateTime;
 @NoArgsConstructor
 @AllArgsConstructor
 @Entity
-@Table(name = "download_history")
+@Table(name = "download_history", indexes = {
+        // Keyset pagination walks (download_date, id) newest first; the filters reuse it as a suffix
+        @Index(name = "idx_history_date", columnList = "download_date, id"),
+        @Index(name = "idx_history_url", columnList = "video_url"),
+        @Index(name = "idx_history_status_date", columnList = "status, download_date"),
+        @Index(name = "idx_history_quality_date", columnList = "quality, download_date"),
+        @Index(name = "idx_history_dedupe", columnList = "dedupe_key, status")
+})
 public class DownloadHistory {
 
+    public static final int ID_ALLOCATION_SIZE = 50;
+
+    // IDENTITY ids force Hibernate to insert rows one at a time; a pooled sequence lets
+    // inserts go out in JDBC batches. MySQL has no sequences, so this is backed by a table.
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "download_history_seq")
+    @SequenceGenerator(name = "download_history_seq", sequenceName = "download_history_seq",
+            allocationSize = DownloadHistory.ID_ALLOCATION_SIZE)
     private Long id;
 
+    @Column(name = "job_id", unique = true, length = 36)
+    private String jobId;
+
     @Column(name = "video_url", nullable = false)
     private String videoUrl;
 
     @Column(name = "video_title")
     private String videoTitle;
 
+    @Column(name = "download_type", length = 32)
+    private String downloadType;
+
+    // DownloadKey of the request: same video, type and format means the same output
+    @Column(name = "dedupe_key", length = 64)
+    private String dedupeKey;
+
     @Column(name = "quality", nullable = false)
     private String quality;
 
-    @Column(name = "file_path")
+    @Enumerated(EnumType.STRING)
+    @Column(name = "status", length = 16)
+    private JobStatus status;
+
+    @Column(name = "message", length = 1024)
+    private String message;
+
+    @Column(name = "file_path", length = 1024)
     private String filePath;
 
+    // Every file the job produced, one path per line, file_path last; dedupe places exactly these elsewhere
+    @Lob
+    @Column(name = "output_files")
+    private String outputFiles;
+
     @Column(name = "download_date", nullable = false)
     private LocalDateTime downloadDate;
 
+    @Column(name = "started_at")
+    private LocalDateTime startedAt;
+
+    @Column(name = "finished_at")
+    private LocalDateTime finishedAt;
+
+    @Column(name = "duration_millis")
+    private Long durationMillis;
+
     @Column(name = "file_size")
     private Long fileSize;
 
+    // The original DownloadRequest as JSON, so unfinished jobs can be re-queued after a restart
+    @Lob
+    @Column(name = "request_payload")
+    private String requestPayload;
+
     @PrePersist
     public void prePersist() {
         if (downloadDate == null) {
             downloadDate = LocalDateTime.now();
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,55 @@
+package com.karan.youtubedownloader.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.function.Consumer;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class DownloadJob {
+    private String id;
+    private JobType type;
+    private String url;
+    private String downloadType;
+    private JobPriority priority;
+    private volatile JobStatus status;
+    private volatile String message;
+    private volatile DownloadProgress progress;
+    private LocalDateTime createdAt;
+    private volatile LocalDateTime startedAt;
+    private volatile LocalDateTime finishedAt;
+    private volatile String filePath;
+    @JsonIgnore
+    private volatile List<String> outputFiles; // filePath last, after the subtitles and other files that came with it
+    private volatile Long fileSize;
+    private boolean resumed; // re-queued from history after a restart
+    private String sourceJobId; // job whose download this one reused or waited for
+
+    @JsonIgnore
+    private String clientId;
+
+    @JsonIgnore
+    private String dedupeKey;
+
+    @JsonIgnore
+    private DownloadRequest request;
+
+    // Called once the job reaches COMPLETED or FAILED
+    @JsonIgnore
+    private Consumer<DownloadJob> onFinished;
+
+    // Called when the job gets paused, and before it is queued again on resume; the latter may refuse with an IllegalStateException
+    @JsonIgnore
+    private Consumer<DownloadJob> onPaused;
+
+    @JsonIgnore
+    private Consumer<DownloadJob> onResuming;
+}
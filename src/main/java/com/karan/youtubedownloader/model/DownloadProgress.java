@@ -0,0 +1,21 @@
+package com.karan.youtubedownloader.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class DownloadProgress {
+    private double percent;
+    private Long downloadedBytes;
+    private Long totalBytes;
+    private boolean totalEstimated; // yt-dlp prints "~" when the size is a guess (fragmented formats)
+    private Long speedBytesPerSecond;
+    private Long etaSeconds;
+    private Integer fragmentIndex;
+    private Integer fragmentCount;
+}
@@ -8,16 +8,21 @@ import lombok.NoArgsConstructor;
 import java.util.List;
 
 @Data
-@Builder
+@Builder(toBuilder = true)
 @NoArgsConstructor
 @AllArgsConstructor
 public class DownloadRequest {
     private String url;
     private String quality;
+    private String formatId; // exact yt-dlp format id from VideoInfo.formats, overrides quality
     private String downloadPath;
     private String browserType;
     private String downloadType; // "video", "audio", "subtitles", "video+subtitles", "audio+subtitles"
     private String audioFormat; // "mp3", "m4a", "wav"
     private List<String> subtitleLanguages; // ["en", "es", "fr"]
     private List<String> subtitleFormats; // ["srt", "vtt", "ass"]
+    private Integer concurrentFragments; // parallel DASH/HLS fragments, capped server-side
+    private String externalDownloader; // "auto" (default), "native" or "aria2c"
+    private Integer connections; // aria2c connections per file, capped server-side
+    private String clientId; // set server-side from the API key or remote address, used for fair queuing
 }
\ No newline at end of file
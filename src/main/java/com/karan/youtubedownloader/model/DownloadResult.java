@@ -0,0 +1,19 @@
+package com.karan.youtubedownloader.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class DownloadResult {
+    private String message;
+    private List<String> outputFiles; // final paths reported by yt-dlp after merging/moving
+    private Long totalBytes;
+    private PostProcessingStep postProcessing; // ffmpeg work still to do, null when the files above are final
+}
@@ -0,0 +1,37 @@
+package com.karan.youtubedownloader.model;
+
+import lombok.Value;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+
+/**
+ * Position of the last row of a history page. Pages are ordered by
+ * (download_date, id) descending, so the next page starts strictly below it.
+ */
+@Value
+public class HistoryCursor {
+    LocalDateTime downloadDate;
+    long id;
+
+    public static HistoryCursor of(DownloadHistory history) {
+        return new HistoryCursor(history.getDownloadDate(), history.getId());
+    }
+
+    public String encode() {
+        String raw = downloadDate + "|" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static HistoryCursor decode(String cursor) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = raw.lastIndexOf('|');
+            return new HistoryCursor(LocalDateTime.parse(raw.substring(0, separator)),
+                    Long.parseLong(raw.substring(separator + 1)));
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Invalid history cursor: " + cursor);
+        }
+    }
+}
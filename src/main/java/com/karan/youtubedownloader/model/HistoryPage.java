@@ -0,0 +1,17 @@
+package com.karan.youtubedownloader.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class HistoryPage {
+    private List<DownloadHistory> items;
+    private String nextCursor; // null on the last page
+}
@@ -0,0 +1,23 @@
+package com.karan.youtubedownloader.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class HistoryQuery {
+    private LocalDateTime from; // inclusive
+    private LocalDateTime to; // exclusive
+    private String quality;
+    private JobStatus status;
+    private String url;
+    private String search; // words from the title, matched through the full-text index
+    private String cursor; // nextCursor of the previous page
+    private int limit;
+}
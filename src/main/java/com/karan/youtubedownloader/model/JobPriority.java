@@ -0,0 +1,25 @@
+package com.karan.youtubedownloader.model;
+
+/**
+ * Scheduling class of a queued job. Classes share the workers of a pool in
+ * proportion to their weight, so bulk work still advances but never blocks
+ * a quick interactive request behind it.
+ */
+public enum JobPriority {
+    FAST,   // subtitle-only jobs, done in seconds
+    AUDIO,
+    VIDEO,
+    BULK;   // entries of a playlist download
+
+    public static JobPriority of(JobType type) {
+        switch (type) {
+            case SUBTITLES:
+                return FAST;
+            case AUDIO:
+                return AUDIO;
+            case VIDEO:
+            default:
+                return VIDEO;
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package com.karan.youtubedownloader.model;
+
+public enum JobStatus {
+    QUEUED,
+    RUNNING,
+    PAUSED,    // stopped on request; its .part files are kept for resume
+    COMPLETED,
+    FAILED,
+    CANCELLED;
+
+    public boolean isFinished() {
+        return this == COMPLETED || this == FAILED || this == CANCELLED;
+    }
+}
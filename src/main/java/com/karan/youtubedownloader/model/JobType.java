@@ -0,0 +1,25 @@
+package com.karan.youtubedownloader.model;
+
+public enum JobType {
+    VIDEO,
+    AUDIO,
+    SUBTITLES;
+
+    // Maps the DownloadRequest.downloadType strings onto the worker pool that runs them
+    public static JobType fromDownloadType(String downloadType) {
+        if (downloadType == null) {
+            return VIDEO;
+        }
+        switch (downloadType.toLowerCase()) {
+            case "audio":
+            case "audio+subtitles":
+                return AUDIO;
+            case "subtitles":
+                return SUBTITLES;
+            case "video":
+            case "video+subtitles":
+            default:
+                return VIDEO;
+        }
+    }
+}
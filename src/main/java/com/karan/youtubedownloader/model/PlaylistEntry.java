@@ -0,0 +1,21 @@
+package com.karan.youtubedownloader.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * One entry from a flat (--flat-playlist) enumeration; no formats are resolved yet.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class PlaylistEntry {
+    private int index;
+    private String videoId;
+    private String title;
+    private String url;
+    private Integer durationSeconds;
+}
@@ -0,0 +1,22 @@
+package com.karan.youtubedownloader.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class PlaylistEntryResult {
+    private PlaylistEntry entry;
+    private String jobId;
+    private JobStatus status;
+    private String message;
+
+    // Playlist counters right after this entry finished, so clients can draw progress from entry events alone
+    private int discovered;
+    private int completed;
+    private int failed;
+}
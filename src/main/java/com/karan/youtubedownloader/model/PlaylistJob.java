@@ -0,0 +1,41 @@
+package com.karan.youtubedownloader.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class PlaylistJob {
+    private String id;
+    private String url;
+    private String downloadType;
+    private volatile JobStatus status;
+    private volatile String message;
+    private volatile boolean enumerationComplete;
+    private LocalDateTime createdAt;
+    private volatile LocalDateTime finishedAt;
+
+    @Builder.Default
+    private AtomicInteger discovered = new AtomicInteger();
+    @Builder.Default
+    private AtomicInteger completed = new AtomicInteger();
+    @Builder.Default
+    private AtomicInteger failed = new AtomicInteger();
+
+    // Results in completion order, not playlist order
+    @Builder.Default
+    private List<PlaylistEntryResult> results = new CopyOnWriteArrayList<>();
+
+    @JsonIgnore
+    private DownloadRequest request;
+}
@@ -0,0 +1,29 @@
+package com.karan.youtubedownloader.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * ffmpeg work left over from a download. It runs on the post-processing
+ * stage after the download worker has moved on to the next job.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class PostProcessingStep {
+
+    public enum Kind {
+        MERGE,         // separate video and audio streams into one mp4
+        EXTRACT_AUDIO  // convert a downloaded audio stream to the requested format
+    }
+
+    private Kind kind;
+    private List<String> inputs; // raw files from yt-dlp, removed once the output is written
+    private String output;
+    private List<String> codecArgs; // ffmpeg output options
+}
@@ -0,0 +1,21 @@
+package com.karan.youtubedownloader.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * What a pipe-through download will run and how the response should describe it.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class StreamingDownload {
+    private String url;
+    private String formatSelector;
+    private String fileName;
+    private String contentType;
+    private Long expectedBytes; // exact size from the format table, when yt-dlp knows it
+}
@@ -0,0 +1,18 @@
+package com.karan.youtubedownloader.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * One timed caption, with its text as plain lines: markup and entities are
+ * resolved when the cue is read, and each writer applies its own.
+ */
+@Data
+@AllArgsConstructor
+public class SubtitleCue {
+    private long startMillis;
+    private long endMillis;
+    private List<String> lines;
+}
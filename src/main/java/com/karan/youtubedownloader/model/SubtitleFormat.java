@@ -0,0 +1,62 @@
+package com.karan.youtubedownloader.model;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+
+public enum SubtitleFormat {
+    VTT("vtt"),
+    SRT("srt"),
+    ASS("ass"),
+    TXT("txt"); // plain transcript, written but never read
+
+    private final String extension;
+
+    SubtitleFormat(String extension) {
+        this.extension = extension;
+    }
+
+    public String getExtension() {
+        return extension;
+    }
+
+    public boolean isReadable() {
+        return this != TXT;
+    }
+
+    /**
+     * @throws IllegalArgumentException for a format the converter cannot write
+     */
+    public static SubtitleFormat of(String name) {
+        return fromExtension(name)
+                .orElseThrow(() -> new IllegalArgumentException("Unsupported subtitle format: " + name));
+    }
+
+    // Requested formats in order, without repeats; SRT when none were given
+    public static List<SubtitleFormat> listOf(List<String> names) {
+        List<SubtitleFormat> formats = new ArrayList<>();
+        if (names != null) {
+            for (String name : names) {
+                SubtitleFormat format = of(name);
+                if (!formats.contains(format)) {
+                    formats.add(format);
+                }
+            }
+        }
+        return formats.isEmpty() ? List.of(SRT) : formats;
+    }
+
+    public static Optional<SubtitleFormat> fromExtension(String extension) {
+        if (extension == null) {
+            return Optional.empty();
+        }
+        String normalized = extension.trim().toLowerCase(Locale.ROOT);
+        for (SubtitleFormat format : values()) {
+            if (format.extension.equals(normalized)) {
+                return Optional.of(format);
+            }
+        }
+        return Optional.empty();
+    }
+}
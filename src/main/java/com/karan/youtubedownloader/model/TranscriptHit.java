@@ -0,0 +1,17 @@
+package com.karan.youtubedownloader.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class TranscriptHit {
+    private long startMillis;
+    private String timestamp; // "1:02:03"
+    private String snippet; // the matching cue with the cues around it
+    private String link; // the video URL at this moment, when the URL is known
+}
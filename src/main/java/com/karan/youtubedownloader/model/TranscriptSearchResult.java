@@ -0,0 +1,21 @@
+package com.karan.youtubedownloader.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class TranscriptSearchResult {
+    private String title;
+    private String url; // null for transcripts indexed from a folder
+    private String language;
+    private String transcriptPath; // the subtitle files without their extension
+    private int matchingCues;
+    private List<TranscriptHit> hits; // the first few matching cues, in time order
+}
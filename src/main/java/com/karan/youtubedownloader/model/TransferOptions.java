@@ -0,0 +1,28 @@
+package com.karan.youtubedownloader.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * How a client would like the bytes fetched. Every value is optional and is
+ * clamped to the server-side maxima before it reaches yt-dlp.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class TransferOptions {
+    private Integer concurrentFragments; // DASH/HLS fragments fetched in parallel
+    private String externalDownloader; // "auto", "native" or "aria2c"
+    private Integer connections; // aria2c connections per file
+
+    public static TransferOptions from(DownloadRequest request) {
+        return TransferOptions.builder()
+                .concurrentFragments(request.getConcurrentFragments())
+                .externalDownloader(request.getExternalDownloader())
+                .connections(request.getConnections())
+                .build();
+    }
+}
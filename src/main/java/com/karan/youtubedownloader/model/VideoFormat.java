@@ -0,0 +1,37 @@
+package com.karan.youtubedownloader.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * One entry of yt-dlp's "formats" array.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class VideoFormat {
+    private String formatId;
+    private String ext;
+    private String resolution;
+    private Integer width;
+    private Integer height;
+    private Double fps;
+    private String vcodec;
+    private String acodec;
+    private Double bitrateKbps;
+    private Long filesize;
+    private boolean filesizeApproximate;
+    private String protocol;
+    private String note;
+
+    public boolean isHasVideo() {
+        return vcodec != null && !"none".equals(vcodec);
+    }
+
+    public boolean isHasAudio() {
+        return acodec != null && !"none".equals(acodec);
+    }
+}
@@ -16,5 +16,6 @@ public class VideoInfo {
     private String url;
     private String duration;
     private List<String> availableQualities;
+    private List<VideoFormat> formats;
     private String thumbnail;
 }
\ No newline at end of file
@@ -0,0 +1,62 @@
+package com.karan.youtubedownloader.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Everything the UI needs about one video, parsed from a single yt-dlp --dump-json probe.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class VideoMetadata {
+    private String videoId;
+    private String title;
+    private String url;
+    private String language;
+    private int durationSeconds;
+    private String duration;
+    private String thumbnail;
+    private List<String> thumbnails;
+    private List<String> availableQualities;
+    private List<VideoFormat> formats;
+    private List<SubtitleInfo> subtitles;
+    private List<SubtitleInfo> automaticCaptions;
+    @JsonIgnore
+    private boolean placeholder; // stands in for a probe that failed, e.g. on an age-restricted video
+
+    public VideoInfo toVideoInfo() {
+        return VideoInfo.builder()
+                .title(title)
+                .url(url)
+                .duration(duration)
+                .thumbnail(thumbnail)
+                .availableQualities(availableQualities)
+                .formats(formats)
+                .build();
+    }
+
+    public Optional<VideoFormat> findFormat(String formatId) {
+        if (formats == null || formatId == null) {
+            return Optional.empty();
+        }
+        return formats.stream().filter(format -> formatId.equals(format.getFormatId())).findFirst();
+    }
+
+    // Rough size used by the metadata cache to bound memory
+    @JsonIgnore
+    public int getWeight() {
+        return 1 + size(thumbnails) + size(availableQualities) + size(formats) + size(subtitles) + size(automaticCaptions);
+    }
+
+    private static int size(List<?> list) {
+        return list == null ? 0 : list.size();
+    }
+}
@@ -0,0 +1,45 @@
+package com.karan.youtubedownloader.process;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Keeps the last N lines of a process stream. Lines longer than the limit are
+ * truncated so a single --dump-json line cannot pin megabytes per process.
+ */
+public class LineRingBuffer {
+
+    private final String[] lines;
+    private final int maxLineLength;
+    private int next;
+    private int size;
+
+    public LineRingBuffer(int capacity, int maxLineLength) {
+        this.lines = new String[Math.max(1, capacity)];
+        this.maxLineLength = maxLineLength;
+    }
+
+    public synchronized void add(String line) {
+        if (line.length() > maxLineLength) {
+            line = line.substring(0, maxLineLength) + "…";
+        }
+        lines[next] = line;
+        next = (next + 1) % lines.length;
+        if (size < lines.length) {
+            size++;
+        }
+    }
+
+    public synchronized List<String> lines() {
+        List<String> result = new ArrayList<>(size);
+        int start = (next - size + lines.length) % lines.length;
+        for (int i = 0; i < size; i++) {
+            result.add(lines[(start + i) % lines.length]);
+        }
+        return result;
+    }
+
+    public String joined() {
+        return String.join("\n", lines());
+    }
+}
@@ -0,0 +1,133 @@
+package com.karan.youtubedownloader.process;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * A started subprocess whose stdout and stderr are being drained concurrently.
+ */
+@Slf4j
+public class ManagedProcess {
+
+    // Grace period for drainers to hit EOF once the process has exited
+    private static final long DRAIN_JOIN_MILLIS = 5_000;
+
+    private final Process process;
+    private final Future<?> stdoutDrainer;
+    private final Future<?> stderrDrainer;
+    private final LineRingBuffer stdoutTail;
+    private final LineRingBuffer stderrTail;
+
+    ManagedProcess(Process process, Future<?> stdoutDrainer, Future<?> stderrDrainer,
+                   LineRingBuffer stdoutTail, LineRingBuffer stderrTail) {
+        this.process = process;
+        this.stdoutDrainer = stdoutDrainer;
+        this.stderrDrainer = stderrDrainer;
+        this.stdoutTail = stdoutTail;
+        this.stderrTail = stderrTail;
+    }
+
+    public long pid() {
+        return process.pid();
+    }
+
+    public boolean isAlive() {
+        return process.isAlive();
+    }
+
+    /**
+     * Waits for the process to exit, killing the whole process tree if it
+     * outlives the timeout. Interrupting the waiting thread also kills it.
+     */
+    public ProcessResult await(Duration timeout) throws InterruptedException {
+        return await(timeout, false);
+    }
+
+    /**
+     * Like {@link #await}, for a stdout handler that forwards the output to a
+     * consumer with a pace of its own, such as an HTTP client. Once the process
+     * exits, the handler gets the rest of the timeout to finish instead of a
+     * short grace period, so the tail of the output is not cut off; running
+     * out of time counts as a timeout.
+     */
+    public ProcessResult awaitOutput(Duration timeout) throws InterruptedException {
+        return await(timeout, true);
+    }
+
+    private ProcessResult await(Duration timeout, boolean wholeOutput) throws InterruptedException {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        boolean exited;
+        try {
+            exited = process.waitFor(timeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            destroyTree();
+            throw e;
+        }
+
+        if (!exited) {
+            log.warn("⏱️ Process {} exceeded {}s, killing it", process.pid(), timeout.toSeconds());
+            destroyTree();
+            process.waitFor(DRAIN_JOIN_MILLIS, TimeUnit.MILLISECONDS);
+        }
+
+        boolean handled = true;
+        if (wholeOutput && exited) {
+            handled = joinOutput(deadline);
+        } else {
+            joinDrainer(stdoutDrainer);
+        }
+        joinDrainer(stderrDrainer);
+
+        return ProcessResult.builder()
+                .exitCode(exited ? process.exitValue() : -1)
+                .timedOut(!exited || !handled)
+                .stdoutTail(stdoutTail.lines())
+                .stderrTail(stderrTail.lines())
+                .build();
+    }
+
+    /**
+     * Kills yt-dlp together with any ffmpeg/aria2c children it spawned.
+     */
+    public void destroyTree() {
+        process.descendants().forEach(ProcessHandle::destroyForcibly);
+        process.destroyForcibly();
+    }
+
+    private boolean joinOutput(long deadline) throws InterruptedException {
+        try {
+            stdoutDrainer.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+            return true;
+        } catch (TimeoutException e) {
+            log.warn("⏱️ Output of process {} was not consumed in time, giving up on it", process.pid());
+            destroyTree();
+            stdoutDrainer.cancel(true);
+            return false;
+        } catch (InterruptedException e) {
+            destroyTree();
+            stdoutDrainer.cancel(true);
+            throw e;
+        } catch (ExecutionException e) {
+            log.warn("⚠️ Stream drainer failed: {}", e.getCause().getMessage());
+            return true;
+        }
+    }
+
+    private void joinDrainer(Future<?> drainer) {
+        try {
+            drainer.get(DRAIN_JOIN_MILLIS, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            // A grandchild may still hold the pipe open; stop reading it
+            drainer.cancel(true);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            log.warn("⚠️ Stream drainer failed: {}", e.getCause().getMessage());
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package com.karan.youtubedownloader.process;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProcessResult {
+    private int exitCode;
+    private boolean timedOut;
+    private List<String> stdoutTail;
+    private List<String> stderrTail;
+
+    public boolean isSuccess() {
+        return !timedOut && exitCode == 0;
+    }
+
+    public String stderrText() {
+        return stderrTail == null ? "" : String.join("\n", stderrTail).trim();
+    }
+}
@@ -0,0 +1,139 @@
+package com.karan.youtubedownloader.process;
+
+import com.karan.youtubedownloader.config.DownloaderProperties;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Starts subprocesses and drains stdout and stderr at the same time, so a
+ * chatty stream can never fill its pipe buffer and block the child.
+ */
+@Slf4j
+@Component
+public class ProcessRunner {
+
+    private final DownloaderProperties properties;
+    private final ExecutorService drainers;
+    private final Timer spawnTimer;
+    private final AtomicInteger activeProcesses = new AtomicInteger();
+
+    public ProcessRunner(DownloaderProperties properties, MeterRegistry meterRegistry) {
+        this.properties = properties;
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("process-drain-");
+        threadFactory.setDaemon(true);
+        this.drainers = Executors.newCachedThreadPool(threadFactory);
+
+        this.spawnTimer = Timer.builder("downloader.process.spawn")
+                .description("Time to fork and exec a subprocess")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        meterRegistry.gauge("downloader.process.active", activeProcesses);
+    }
+
+    /**
+     * Consumes stdout as raw bytes, for callers that parse or forward it without splitting into lines.
+     */
+    @FunctionalInterface
+    public interface StreamHandler {
+        void handle(InputStream stream) throws IOException;
+    }
+
+    public ManagedProcess start(List<String> command, Consumer<String> stdoutListener,
+                                Consumer<String> stderrListener) throws IOException {
+        LineRingBuffer stdoutTail = newTail();
+        return start(command, stdoutTail, stream -> drainLines(stream, stdoutTail, stdoutListener), stderrListener);
+    }
+
+    public ManagedProcess startStreaming(List<String> command, StreamHandler stdoutHandler,
+                                         Consumer<String> stderrListener) throws IOException {
+        return start(command, newTail(), stdoutHandler, stderrListener);
+    }
+
+    public ProcessResult run(List<String> command, Duration timeout, Consumer<String> stdoutListener,
+                             Consumer<String> stderrListener) throws IOException, InterruptedException {
+        return start(command, stdoutListener, stderrListener).await(timeout);
+    }
+
+    public ProcessResult runStreaming(List<String> command, Duration timeout, StreamHandler stdoutHandler,
+                                      Consumer<String> stderrListener) throws IOException, InterruptedException {
+        return startStreaming(command, stdoutHandler, stderrListener).await(timeout);
+    }
+
+    private ManagedProcess start(List<String> command, LineRingBuffer stdoutTail, StreamHandler stdoutHandler,
+                                 Consumer<String> stderrListener) throws IOException {
+        long spawnStart = System.nanoTime();
+        Process process = new ProcessBuilder(command).start();
+        spawnTimer.record(System.nanoTime() - spawnStart, TimeUnit.NANOSECONDS);
+        activeProcesses.incrementAndGet();
+        process.onExit().thenRun(activeProcesses::decrementAndGet);
+        process.getOutputStream().close();
+
+        LineRingBuffer stderrTail = newTail();
+
+        Future<?> stdoutDrainer = drainers.submit(() -> drainStream(process.getInputStream(), stdoutHandler));
+        Future<?> stderrDrainer = drainers.submit(() -> drainLines(process.getErrorStream(), stderrTail, stderrListener));
+
+        return new ManagedProcess(process, stdoutDrainer, stderrDrainer, stdoutTail, stderrTail);
+    }
+
+    private LineRingBuffer newTail() {
+        DownloaderProperties.Process config = properties.getProcess();
+        return new LineRingBuffer(config.getOutputBufferLines(), config.getMaxBufferedLineLength());
+    }
+
+    private void drainStream(InputStream stream, StreamHandler handler) {
+        try (stream) {
+            try {
+                handler.handle(stream);
+            } catch (IOException e) {
+                log.warn("⚠️ Output handler failed: {}", e.getMessage());
+            }
+            // Whatever the handler left unread must still be consumed or the child blocks
+            stream.transferTo(OutputStream.nullOutputStream());
+        } catch (IOException e) {
+            // Stream closed because the process was killed
+            log.debug("Process stream closed: {}", e.getMessage());
+        }
+    }
+
+    private void drainLines(InputStream stream, LineRingBuffer tail, Consumer<String> listener) {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(stream, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                tail.add(line);
+                try {
+                    listener.accept(line);
+                } catch (RuntimeException e) {
+                    log.warn("⚠️ Output listener failed: {}", e.getMessage());
+                }
+            }
+        } catch (IOException e) {
+            // Stream closed because the process was killed
+            log.debug("Process stream closed: {}", e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        drainers.shutdownNow();
+    }
+}
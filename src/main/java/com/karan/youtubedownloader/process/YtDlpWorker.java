@@ -0,0 +1,164 @@
+package com.karan.youtubedownloader.process;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One yt-dlp-bridge.py process with yt-dlp already imported, serving one
+ * request at a time over its stdin and stdout. Not thread-safe: the pool
+ * hands a worker to a single caller at a time.
+ */
+class YtDlpWorker {
+
+    private final Process process;
+    private final OutputStream requests;
+    private final InputStream responses;
+    private final ObjectMapper objectMapper;
+    private final ScheduledExecutorService watchdog;
+    private final String version;
+    private int served;
+    private long residentBytes;
+    private volatile boolean timedOut;
+
+    private YtDlpWorker(Process process, ObjectMapper objectMapper, ScheduledExecutorService watchdog,
+                        Duration startupTimeout) throws IOException {
+        this.process = process;
+        this.requests = process.getOutputStream();
+        this.responses = new BufferedInputStream(process.getInputStream());
+        this.objectMapper = objectMapper;
+        this.watchdog = watchdog;
+        // The bridge announces itself once the yt-dlp import is done
+        this.version = new String(await("ready", startupTimeout).stderr, StandardCharsets.UTF_8).trim();
+    }
+
+    static YtDlpWorker start(List<String> command, ObjectMapper objectMapper, ScheduledExecutorService watchdog,
+                             Duration startupTimeout) throws IOException {
+        Process process = new ProcessBuilder(command)
+                .redirectError(ProcessBuilder.Redirect.INHERIT)
+                .start();
+        try {
+            return new YtDlpWorker(process, objectMapper, watchdog, startupTimeout);
+        } catch (IOException e) {
+            process.destroyForcibly();
+            throw e;
+        }
+    }
+
+    /**
+     * Runs yt-dlp with the given arguments inside the worker.
+     *
+     * @throws IOException when the worker died or timed out; it is unusable afterwards
+     */
+    Response call(String id, List<String> args, Duration timeout) throws IOException {
+        ObjectNode request = objectMapper.createObjectNode().put("id", id);
+        args.forEach(request.putArray("args")::add);
+        return send(request, timeout);
+    }
+
+    Response ping(String id, Duration timeout) throws IOException {
+        return send(objectMapper.createObjectNode().put("id", id).put("ping", true), timeout);
+    }
+
+    private Response send(ObjectNode request, Duration timeout) throws IOException {
+        requests.write(objectMapper.writeValueAsBytes(request));
+        requests.write('\n');
+        requests.flush();
+        Response response = await(request.get("id").asText(), timeout);
+        served++;
+        return response;
+    }
+
+    private Response await(String id, Duration timeout) throws IOException {
+        ScheduledFuture<?> kill = watchdog.schedule(() -> {
+            timedOut = true;
+            destroy();
+        }, timeout.toMillis(), TimeUnit.MILLISECONDS);
+        try {
+            String headerLine = readLine();
+            if (headerLine == null) {
+                throw new IOException("yt-dlp worker " + pid() + " exited");
+            }
+            JsonNode header = objectMapper.readTree(headerLine);
+            if (!id.equals(header.path("id").asText())) {
+                throw new IOException("yt-dlp worker " + pid() + " answered " + header.path("id").asText() + " instead of " + id);
+            }
+            Response response = new Response(header.path("exit").asInt(1),
+                    readExactly(header.path("stdout").asInt()), readExactly(header.path("stderr").asInt()));
+            residentBytes = header.path("rss_kb").asLong() * 1024;
+            return response;
+        } finally {
+            kill.cancel(false);
+        }
+    }
+
+    private String readLine() throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream(256);
+        int b;
+        while ((b = responses.read()) != -1 && b != '\n') {
+            line.write(b);
+        }
+        return b == -1 && line.size() == 0 ? null : line.toString(StandardCharsets.UTF_8);
+    }
+
+    private byte[] readExactly(int length) throws IOException {
+        byte[] bytes = responses.readNBytes(length);
+        if (bytes.length < length) {
+            throw new IOException("yt-dlp worker " + pid() + " exited mid-response");
+        }
+        return bytes;
+    }
+
+    long pid() {
+        return process.pid();
+    }
+
+    String version() {
+        return version;
+    }
+
+    int served() {
+        return served;
+    }
+
+    long residentBytes() {
+        return residentBytes;
+    }
+
+    boolean isTimedOut() {
+        return timedOut;
+    }
+
+    boolean isAlive() {
+        return process.isAlive();
+    }
+
+    void destroy() {
+        process.descendants().forEach(ProcessHandle::destroyForcibly);
+        process.destroyForcibly();
+    }
+
+    static class Response {
+        final int exitCode;
+        final byte[] stdout;
+        final byte[] stderr;
+
+        Response(int exitCode, byte[] stdout, byte[] stderr) {
+            this.exitCode = exitCode;
+            this.stdout = stdout;
+            this.stderr = stderr;
+        }
+    }
+}
@@ -0,0 +1,253 @@
+package com.karan.youtubedownloader.process;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.karan.youtubedownloader.config.DownloaderProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Keeps a few yt-dlp processes warm so a metadata probe does not pay for a
+ * Python start and the extractor imports every time. Each worker runs the
+ * yt-dlp-bridge.py script shipped in the jar and takes one request at a time.
+ *
+ * Workers are pinged while idle and replaced when they die, have served
+ * max-requests-per-worker requests, or have grown past max-memory. Whenever no
+ * worker is available, runStreaming returns empty and the caller forks a
+ * one-shot yt-dlp as before, so a missing Python or yt_dlp module only costs
+ * the warm start.
+ */
+@Slf4j
+@Component
+public class YtDlpWorkerPool {
+
+    private static final String BRIDGE_SCRIPT = "yt-dlp-bridge.py";
+    private static final Duration PING_TIMEOUT = Duration.ofSeconds(5);
+
+    private final DownloaderProperties properties;
+    private final DownloaderProperties.WorkerPool config;
+    private final ObjectMapper objectMapper;
+    private final BlockingQueue<YtDlpWorker> idle = new LinkedBlockingQueue<>();
+    private final Set<YtDlpWorker> workers = ConcurrentHashMap.newKeySet();
+    // Workers running or being started; kept at the configured size
+    private final AtomicInteger live = new AtomicInteger();
+    private final AtomicLong requestIds = new AtomicLong();
+    private final ScheduledExecutorService scheduler;
+    // Kills workers that overrun a request; never blocks, unlike the health checks on the scheduler
+    private final ScheduledExecutorService watchdog;
+    private final ExecutorService starter;
+    private final Counter servedByWorker;
+    private final Counter servedByFallback;
+    private volatile Path bridgeScript;
+    private volatile boolean running;
+
+    public YtDlpWorkerPool(DownloaderProperties properties, ObjectMapper objectMapper, MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.config = properties.getWorkerPool();
+        this.objectMapper = objectMapper;
+
+        CustomizableThreadFactory schedulerThreads = new CustomizableThreadFactory("yt-dlp-pool-");
+        schedulerThreads.setDaemon(true);
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(schedulerThreads);
+        CustomizableThreadFactory watchdogThreads = new CustomizableThreadFactory("yt-dlp-pool-watchdog-");
+        watchdogThreads.setDaemon(true);
+        this.watchdog = Executors.newSingleThreadScheduledExecutor(watchdogThreads);
+        CustomizableThreadFactory starterThreads = new CustomizableThreadFactory("yt-dlp-pool-start-");
+        starterThreads.setDaemon(true);
+        this.starter = Executors.newSingleThreadExecutor(starterThreads);
+
+        this.servedByWorker = Counter.builder("downloader.worker.requests").tag("path", "worker").register(meterRegistry);
+        this.servedByFallback = Counter.builder("downloader.worker.requests").tag("path", "fallback").register(meterRegistry);
+        meterRegistry.gauge("downloader.worker.idle", idle, BlockingQueue::size);
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!config.isEnabled()) {
+            return;
+        }
+        try {
+            bridgeScript = extractBridgeScript();
+        } catch (IOException e) {
+            log.warn("⚠️ Could not extract {}, yt-dlp worker pool disabled: {}", BRIDGE_SCRIPT, e.getMessage());
+            return;
+        }
+        running = true;
+        topUp();
+        long interval = config.getHealthCheckInterval().toMillis();
+        scheduler.scheduleWithFixedDelay(this::checkHealth, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Runs yt-dlp with {@code args} (no executable) in a warm worker. Output is
+     * handed over once the request has finished, in the same shape as
+     * ProcessRunner.runStreaming.
+     *
+     * @return empty when no worker could take the request; the caller should run yt-dlp itself
+     */
+    public Optional<ProcessResult> runStreaming(List<String> args, Duration timeout,
+                                                ProcessRunner.StreamHandler stdoutHandler,
+                                                Consumer<String> stderrListener) throws IOException, InterruptedException {
+        if (!running) {
+            return Optional.empty();
+        }
+        YtDlpWorker worker = idle.poll(config.getBorrowTimeout().toMillis(), TimeUnit.MILLISECONDS);
+        if (worker == null) {
+            servedByFallback.increment();
+            log.debug("No idle yt-dlp worker, forking a one-shot process");
+            return Optional.empty();
+        }
+
+        YtDlpWorker.Response response;
+        try {
+            response = worker.call("req-" + requestIds.incrementAndGet(), args, timeout);
+        } catch (IOException e) {
+            retire(worker);
+            if (worker.isTimedOut()) {
+                log.warn("⏱️ yt-dlp worker {} exceeded {}s, replaced it", worker.pid(), timeout.toSeconds());
+                return Optional.of(ProcessResult.builder().exitCode(-1).timedOut(true)
+                        .stdoutTail(List.of()).stderrTail(List.of()).build());
+            }
+            servedByFallback.increment();
+            log.warn("⚠️ yt-dlp worker {} failed: {}, forking a one-shot process", worker.pid(), e.getMessage());
+            return Optional.empty();
+        }
+        release(worker);
+        servedByWorker.increment();
+
+        DownloaderProperties.Process processConfig = properties.getProcess();
+        LineRingBuffer stderrTail = new LineRingBuffer(processConfig.getOutputBufferLines(), processConfig.getMaxBufferedLineLength());
+        String stderr = new String(response.stderr, StandardCharsets.UTF_8);
+        if (!stderr.isEmpty()) {
+            for (String line : stderr.split("\\R")) {
+                stderrTail.add(line);
+                stderrListener.accept(line);
+            }
+        }
+        try (InputStream stdout = new ByteArrayInputStream(response.stdout)) {
+            stdoutHandler.handle(stdout);
+        }
+        return Optional.of(ProcessResult.builder()
+                .exitCode(response.exitCode)
+                .timedOut(false)
+                .stdoutTail(List.of())
+                .stderrTail(stderrTail.lines())
+                .build());
+    }
+
+    private void release(YtDlpWorker worker) {
+        if (!running || !worker.isAlive()) {
+            retire(worker);
+        } else if (worker.served() >= config.getMaxRequestsPerWorker()) {
+            log.info("♻️ Recycling yt-dlp worker {} after {} requests", worker.pid(), worker.served());
+            retire(worker);
+        } else if (worker.residentBytes() > config.getMaxMemory().toBytes()) {
+            log.info("♻️ Recycling yt-dlp worker {} at {} MB resident", worker.pid(), worker.residentBytes() / (1024 * 1024));
+            retire(worker);
+        } else {
+            idle.offer(worker);
+        }
+    }
+
+    private void retire(YtDlpWorker worker) {
+        worker.destroy();
+        if (workers.remove(worker)) {
+            live.decrementAndGet();
+        }
+        topUp();
+    }
+
+    // Starts workers in the background until the pool is back at its configured size
+    private void topUp() {
+        while (running) {
+            int current = live.get();
+            if (current >= config.getSize()) {
+                return;
+            }
+            if (live.compareAndSet(current, current + 1)) {
+                starter.execute(this::startWorker);
+            }
+        }
+    }
+
+    private void startWorker() {
+        try {
+            YtDlpWorker worker = YtDlpWorker.start(List.of(config.getPythonExecutable(), bridgeScript.toString()),
+                    objectMapper, watchdog, config.getStartupTimeout());
+            workers.add(worker);
+            if (running) {
+                idle.offer(worker);
+                log.info("🔥 yt-dlp worker {} ready (yt-dlp {})", worker.pid(), worker.version());
+            } else {
+                retire(worker);
+            }
+        } catch (Exception e) {
+            // Retried on the next health check
+            live.decrementAndGet();
+            log.warn("⚠️ Could not start yt-dlp worker: {}", e.getMessage());
+        }
+    }
+
+    private void checkHealth() {
+        int toCheck = idle.size();
+        for (int i = 0; i < toCheck; i++) {
+            YtDlpWorker worker = idle.poll();
+            if (worker == null) {
+                break;
+            }
+            try {
+                worker.ping("ping-" + requestIds.incrementAndGet(), PING_TIMEOUT);
+                release(worker);
+            } catch (IOException e) {
+                log.warn("⚠️ yt-dlp worker {} failed its health check: {}", worker.pid(), e.getMessage());
+                retire(worker);
+            }
+        }
+        topUp();
+    }
+
+    private Path extractBridgeScript() throws IOException {
+        Path script = Files.createTempFile("yt-dlp-bridge-", ".py");
+        script.toFile().deleteOnExit();
+        try (InputStream source = new ClassPathResource(BRIDGE_SCRIPT).getInputStream()) {
+            Files.copy(source, script, StandardCopyOption.REPLACE_EXISTING);
+        }
+        return script;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        scheduler.shutdownNow();
+        watchdog.shutdownNow();
+        starter.shutdownNow();
+        workers.forEach(YtDlpWorker::destroy);
+    }
+}
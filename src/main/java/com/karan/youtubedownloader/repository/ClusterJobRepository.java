@@ -0,0 +1,43 @@
+package com.karan.youtubedownloader.repository;
+
+import com.karan.youtubedownloader.model.ClusterJob;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import javax.persistence.LockModeType;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface ClusterJobRepository extends JpaRepository<ClusterJob, String>, ClusterJobRepositoryCustom {
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT j FROM ClusterJob j WHERE j.jobId = :jobId")
+    Optional<ClusterJob> lockById(@Param("jobId") String jobId);
+
+    Optional<ClusterJob> findFirstByDedupeKeyAndStateIn(String dedupeKey, Collection<ClusterJob.State> states);
+
+    List<ClusterJob> findByLeaseOwnerAndStopRequestedIsNotNull(String leaseOwner);
+
+    @Modifying
+    @Query("UPDATE ClusterJob j SET j.leaseExpiresAt = :until "
+            + "WHERE j.leaseOwner = :owner AND j.state = :state AND j.jobId IN :jobIds")
+    int extendLeases(@Param("owner") String owner, @Param("jobIds") Collection<String> jobIds,
+                     @Param("state") ClusterJob.State state, @Param("until") LocalDateTime until);
+
+    @Modifying
+    @Query("UPDATE ClusterJob j SET j.state = :queued, j.leaseOwner = NULL, j.leaseExpiresAt = NULL "
+            + "WHERE j.leaseOwner = :owner AND j.state = :leased")
+    int requeueOwnedBy(@Param("owner") String owner, @Param("leased") ClusterJob.State leased,
+                       @Param("queued") ClusterJob.State queued);
+
+    @Modifying
+    @Query("DELETE FROM ClusterJob j WHERE j.jobId = :jobId")
+    int deleteByJobId(@Param("jobId") String jobId);
+}
@@ -0,0 +1,19 @@
+package com.karan.youtubedownloader.repository;
+
+import com.karan.youtubedownloader.model.ClusterJob;
+import com.karan.youtubedownloader.model.JobType;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public interface ClusterJobRepositoryCustom {
+
+    /**
+     * Locks up to {@code limit} claimable rows of one pool, most urgent first:
+     * queued rows, and leased rows whose lease ran out before {@code now}.
+     * Rows another node has locked are skipped rather than waited for, so nodes
+     * polling at the same time split the queue between them. Must run inside a
+     * transaction; the locks are held until it ends.
+     */
+    List<ClusterJob> lockClaimable(JobType type, LocalDateTime now, int limit);
+}
@@ -0,0 +1,32 @@
+package com.karan.youtubedownloader.repository;
+
+import com.karan.youtubedownloader.model.ClusterJob;
+import com.karan.youtubedownloader.model.JobType;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.time.LocalDateTime;
+import java.util.List;
+
+public class ClusterJobRepositoryImpl implements ClusterJobRepositoryCustom {
+
+    // JPQL has no SKIP LOCKED; MySQL 8 understands it natively, H2 from 2.2.220 on
+    private static final String CLAIMABLE = "SELECT * FROM cluster_job "
+            + "WHERE job_type = ?1 AND (state = 'QUEUED' OR (state = 'LEASED' AND lease_expires_at < ?2)) "
+            + "ORDER BY priority_rank, created_at "
+            + "LIMIT ?3 "
+            + "FOR UPDATE SKIP LOCKED";
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public List<ClusterJob> lockClaimable(JobType type, LocalDateTime now, int limit) {
+        return entityManager.createNativeQuery(CLAIMABLE, ClusterJob.class)
+                .setParameter(1, type.name())
+                .setParameter(2, now)
+                .setParameter(3, limit)
+                .getResultList();
+    }
+}
@@ -1,18 +1,22 @@
 package com.karan.youtubedownloader.repository;
 
 import com.karan.youtubedownloader.model.DownloadHistory;
+import com.karan.youtubedownloader.model.JobStatus;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
 
-import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 @Repository
-public interface DownloadHistoryRepository extends JpaRepository<DownloadHistory, Long> {
+public interface DownloadHistoryRepository extends JpaRepository<DownloadHistory, Long>, DownloadHistoryRepositoryCustom {
 
-    List<DownloadHistory> findByVideoTitleContainingIgnoreCase(String title);
+    Optional<DownloadHistory> findByJobId(String jobId);
 
-    List<DownloadHistory> findByDownloadDateBetween(LocalDateTime startDate, LocalDateTime endDate);
+    List<DownloadHistory> findByJobIdIn(Collection<String> jobIds);
 
-    List<DownloadHistory> findTop10ByOrderByDownloadDateDesc();
-}
\ No newline at end of file
+    Optional<DownloadHistory> findFirstByDedupeKeyAndStatusOrderByDownloadDateDesc(String dedupeKey, JobStatus status);
+
+    List<DownloadHistory> findByStatusInOrderByDownloadDateAsc(Collection<JobStatus> statuses);
+}
@@ -0,0 +1,16 @@
+package com.karan.youtubedownloader.repository;
+
+import com.karan.youtubedownloader.model.DownloadHistory;
+import com.karan.youtubedownloader.model.HistoryCursor;
+import com.karan.youtubedownloader.model.HistoryQuery;
+
+import java.util.List;
+
+public interface DownloadHistoryRepositoryCustom {
+
+    /**
+     * Keyset page: at most {@code limit} rows matching the filters, newest first,
+     * starting after {@code after} (or from the top when it is null). No count query.
+     */
+    List<DownloadHistory> findPage(HistoryQuery query, HistoryCursor after, int limit);
+}
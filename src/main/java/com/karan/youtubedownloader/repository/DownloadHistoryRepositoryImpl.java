@@ -0,0 +1,68 @@
+package com.karan.youtubedownloader.repository;
+
+import com.karan.youtubedownloader.config.HistorySqlFunctions;
+import com.karan.youtubedownloader.model.DownloadHistory;
+import com.karan.youtubedownloader.model.HistoryCursor;
+import com.karan.youtubedownloader.model.HistoryQuery;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Path;
+import javax.persistence.criteria.Predicate;
+import javax.persistence.criteria.Root;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+public class DownloadHistoryRepositoryImpl implements DownloadHistoryRepositoryCustom {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public List<DownloadHistory> findPage(HistoryQuery query, HistoryCursor after, int limit) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<DownloadHistory> criteria = cb.createQuery(DownloadHistory.class);
+        Root<DownloadHistory> history = criteria.from(DownloadHistory.class);
+        Path<LocalDateTime> downloadDate = history.get("downloadDate");
+        Path<Long> id = history.get("id");
+
+        List<Predicate> predicates = new ArrayList<>();
+        if (query.getFrom() != null) {
+            predicates.add(cb.greaterThanOrEqualTo(downloadDate, query.getFrom()));
+        }
+        if (query.getTo() != null) {
+            predicates.add(cb.lessThan(downloadDate, query.getTo()));
+        }
+        if (query.getQuality() != null) {
+            predicates.add(cb.equal(history.get("quality"), query.getQuality()));
+        }
+        if (query.getStatus() != null) {
+            predicates.add(cb.equal(history.get("status"), query.getStatus()));
+        }
+        if (query.getUrl() != null) {
+            predicates.add(cb.equal(history.get("videoUrl"), query.getUrl()));
+        }
+        if (query.getSearch() != null) {
+            predicates.add(cb.greaterThan(
+                    cb.function(HistorySqlFunctions.MATCH_AGAINST, Double.class, history.get("videoTitle"), cb.literal(query.getSearch())),
+                    0.0));
+        }
+        if (after != null) {
+            // (download_date, id) < (cursor date, cursor id), written out so MySQL can use the index range
+            predicates.add(cb.or(
+                    cb.lessThan(downloadDate, after.getDownloadDate()),
+                    cb.and(cb.equal(downloadDate, after.getDownloadDate()), cb.lessThan(id, after.getId()))));
+        }
+
+        criteria.select(history)
+                .where(predicates.toArray(new Predicate[0]))
+                .orderBy(cb.desc(downloadDate), cb.desc(id));
+
+        return entityManager.createQuery(criteria)
+                .setMaxResults(limit)
+                .getResultList();
+    }
+}
@@ -0,0 +1,386 @@
+package com.karan.youtubedownloader.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.karan.youtubedownloader.config.DownloaderProperties;
+import com.karan.youtubedownloader.model.ClusterJob;
+import com.karan.youtubedownloader.model.DownloadJob;
+import com.karan.youtubedownloader.model.DownloadRequest;
+import com.karan.youtubedownloader.model.JobStatus;
+import com.karan.youtubedownloader.model.JobType;
+import com.karan.youtubedownloader.repository.ClusterJobRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PreDestroy;
+import java.net.InetAddress;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+/**
+ * Lets several instances behind a load balancer share one job queue through
+ * the cluster_job table. Any node may accept a job; whichever node has a free
+ * worker first claims it with SELECT ... FOR UPDATE SKIP LOCKED, so nodes
+ * polling at the same time never take the same row or wait on each other.
+ *
+ * A claim is a lease: the node renews it on every heartbeat while it holds the
+ * job, and deletes the row when the job finishes. If a node dies its leases run
+ * out, and the next poll anywhere picks those jobs up again; yt-dlp's --continue
+ * resumes from whatever .part files a shared download folder still has.
+ *
+ * Pause and cancel for a job leased to another node are left on the row and
+ * carried out by the owner on its next poll.
+ */
+@Slf4j
+@Service
+public class ClusterCoordinator {
+
+    private final ClusterJobRepository repository;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate transactionTemplate;
+    private final DownloaderProperties.Cluster config;
+    private final String nodeId;
+    private final ScheduledExecutorService scheduler;
+    private final AtomicBoolean wakeUpPending = new AtomicBoolean();
+    private volatile Runnable poll;
+    private volatile boolean closed;
+
+    public ClusterCoordinator(ClusterJobRepository repository, ObjectMapper objectMapper,
+                              PlatformTransactionManager transactionManager, DownloaderProperties properties) {
+        this.repository = repository;
+        this.objectMapper = objectMapper;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.config = properties.getCluster();
+        this.nodeId = config.getNodeId() != null && !config.getNodeId().isBlank() ? config.getNodeId() : defaultNodeId();
+
+        CustomizableThreadFactory threads = new CustomizableThreadFactory("cluster-");
+        threads.setDaemon(true);
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(threads);
+    }
+
+    public boolean isEnabled() {
+        return config.isEnabled();
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    /**
+     * Starts polling the shared queue: {@code poll} runs every poll-interval and
+     * after {@link #wakeUp()}, and the leases on {@code heldJobs} are renewed
+     * every heartbeat-interval. Both run on one thread, never concurrently.
+     */
+    public void start(Runnable poll, Supplier<Collection<String>> heldJobs) {
+        if (!config.isEnabled()) {
+            return;
+        }
+        this.poll = poll;
+        scheduler.scheduleWithFixedDelay(this::runPoll, 0, config.getPollInterval().toMillis(), TimeUnit.MILLISECONDS);
+        long heartbeat = config.getHeartbeatInterval().toMillis();
+        scheduler.scheduleWithFixedDelay(() -> heartbeat(heldJobs.get()), heartbeat, heartbeat, TimeUnit.MILLISECONDS);
+        log.info("🌐 Node {} joined the download cluster", nodeId);
+    }
+
+    /**
+     * Polls again soon instead of at the next interval; a burst of calls runs one poll.
+     */
+    public void wakeUp() {
+        if (poll != null && !closed && wakeUpPending.compareAndSet(false, true)) {
+            scheduler.execute(() -> {
+                wakeUpPending.set(false);
+                runPoll();
+            });
+        }
+    }
+
+    private void runPoll() {
+        if (closed) {
+            return;
+        }
+        try {
+            poll.run();
+        } catch (Exception e) {
+            log.warn("⚠️ Cluster poll failed: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Adds a job to the shared queue, either for any node to claim or already
+     * leased to this one.
+     *
+     * @throws IllegalStateException when the database cannot take it
+     */
+    public void publish(DownloadJob job, boolean leaseHere) {
+        LocalDateTime now = LocalDateTime.now();
+        ClusterJob row = ClusterJob.builder()
+                .jobId(job.getId())
+                .jobType(job.getType())
+                .priority(job.getPriority())
+                .priorityRank(job.getPriority().ordinal())
+                .clientId(job.getClientId())
+                .dedupeKey(job.getDedupeKey())
+                .videoUrl(job.getUrl())
+                .downloadType(job.getDownloadType())
+                .state(leaseHere ? ClusterJob.State.LEASED : ClusterJob.State.QUEUED)
+                .leaseOwner(leaseHere ? nodeId : null)
+                .leaseExpiresAt(leaseHere ? now.plus(config.getLeaseDuration()) : null)
+                .attempts(leaseHere ? 1 : 0)
+                .requestPayload(writeRequest(job.getRequest()))
+                .createdAt(job.getCreatedAt() != null ? job.getCreatedAt() : now)
+                .build();
+        try {
+            repository.save(row);
+        } catch (Exception e) {
+            throw new IllegalStateException("Could not queue job in the cluster: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Leases up to {@code limit} jobs of one pool to this node: queued ones, and
+     * ones whose previous owner stopped renewing its lease.
+     */
+    public List<ClusterJob> claim(JobType type, int limit) {
+        LocalDateTime now = LocalDateTime.now();
+        List<ClusterJob> claimed = transactionTemplate.execute(status -> {
+            List<ClusterJob> rows = repository.lockClaimable(type, now, limit);
+            for (ClusterJob row : rows) {
+                if (row.getState() == ClusterJob.State.LEASED) {
+                    log.warn("♻️ Reclaiming job {} from node {}, its lease ran out", row.getJobId(), row.getLeaseOwner());
+                }
+                row.setState(ClusterJob.State.LEASED);
+                row.setLeaseOwner(nodeId);
+                row.setLeaseExpiresAt(now.plus(config.getLeaseDuration()));
+                row.setAttempts(row.getAttempts() + 1);
+            }
+            return rows;
+        });
+        return claimed != null ? claimed : List.of();
+    }
+
+    /**
+     * Renews this node's leases on the given jobs. Rows this node leased but no
+     * longer holds are left to expire and be claimed again.
+     */
+    public void heartbeat(Collection<String> heldJobIds) {
+        if (heldJobIds.isEmpty() || closed) {
+            return;
+        }
+        try {
+            LocalDateTime until = LocalDateTime.now().plus(config.getLeaseDuration());
+            transactionTemplate.executeWithoutResult(status ->
+                    repository.extendLeases(nodeId, List.copyOf(heldJobIds), ClusterJob.State.LEASED, until));
+        } catch (Exception e) {
+            log.warn("⚠️ Could not renew cluster leases: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Removes a finished job from the shared queue.
+     */
+    public void release(String jobId) {
+        update("release", jobId, () -> repository.deleteByJobId(jobId));
+    }
+
+    /**
+     * Marks a job paused here as resumable by any node.
+     */
+    public void park(String jobId) {
+        update("park", jobId, () -> repository.lockById(jobId).ifPresent(row -> {
+            row.setState(ClusterJob.State.PAUSED);
+            row.setLeaseOwner(null);
+            row.setLeaseExpiresAt(null);
+            row.setStopRequested(null);
+        }));
+    }
+
+    /**
+     * Leases a job paused here to this node again, so it resumes where its partial files are.
+     *
+     * @return false when another node resumed it in the meantime
+     */
+    public boolean hold(String jobId) {
+        if (closed) {
+            return true;
+        }
+        try {
+            Boolean held = transactionTemplate.execute(status -> repository.lockById(jobId)
+                    .map(row -> {
+                        if (row.getState() != ClusterJob.State.PAUSED) {
+                            return false;
+                        }
+                        row.setState(ClusterJob.State.LEASED);
+                        row.setLeaseOwner(nodeId);
+                        row.setLeaseExpiresAt(LocalDateTime.now().plus(config.getLeaseDuration()));
+                        return true;
+                    })
+                    .orElse(true));
+            return !Boolean.FALSE.equals(held);
+        } catch (Exception e) {
+            // Runs here anyway; the row only matters to the other nodes
+            log.warn("⚠️ Could not hold cluster job {}: {}", jobId, e.getMessage());
+            return true;
+        }
+    }
+
+    /**
+     * Hands a claimed job back to the queue, e.g. when this node's queue turned out to be full.
+     */
+    public void giveBack(String jobId) {
+        update("give back", jobId, () -> repository.lockById(jobId).ifPresent(row -> {
+            row.setState(ClusterJob.State.QUEUED);
+            row.setLeaseOwner(null);
+            row.setLeaseExpiresAt(null);
+        }));
+    }
+
+    private void update(String action, String jobId, Runnable change) {
+        if (closed) {
+            return;
+        }
+        try {
+            transactionTemplate.executeWithoutResult(status -> change.run());
+        } catch (Exception e) {
+            // The lease runs out on its own if the row is left behind
+            log.warn("⚠️ Could not {} cluster job {}: {}", action, jobId, e.getMessage());
+        }
+    }
+
+    /**
+     * Pauses or cancels a job this node does not hold. A job waiting in the
+     * queue is settled straight away: cancelling deletes its row, pausing parks
+     * it. A job leased to a node gets the request written on its row for the
+     * owner to carry out.
+     *
+     * @return the row as it now stands, empty when there is none; a cancelled
+     *         queued row has been deleted and comes back without an owner and
+     *         with stopRequested CANCELLED
+     */
+    public Optional<ClusterJob> requestStop(String jobId, JobStatus reason) {
+        return transactionTemplate.execute(status -> {
+            Optional<ClusterJob> locked = repository.lockById(jobId);
+            locked.ifPresent(row -> {
+                if (row.getState() == ClusterJob.State.LEASED) {
+                    if (row.getStopRequested() == null) {
+                        row.setStopRequested(reason);
+                    }
+                } else if (reason == JobStatus.CANCELLED) {
+                    repository.delete(row);
+                    row.setLeaseOwner(null);
+                    row.setStopRequested(JobStatus.CANCELLED);
+                } else {
+                    row.setState(ClusterJob.State.PAUSED);
+                }
+            });
+            return locked;
+        });
+    }
+
+    /**
+     * Puts a paused job back in the shared queue for any node to claim.
+     *
+     * @throws IllegalStateException when the job is not paused
+     */
+    public Optional<ClusterJob> requeue(String jobId) {
+        Optional<ClusterJob> requeued = transactionTemplate.execute(status -> {
+            Optional<ClusterJob> locked = repository.lockById(jobId);
+            locked.ifPresent(row -> {
+                if (row.getState() != ClusterJob.State.PAUSED) {
+                    throw new IllegalStateException("Job " + jobId + " is not paused");
+                }
+                row.setState(ClusterJob.State.QUEUED);
+            });
+            return locked;
+        });
+        wakeUp();
+        return requeued;
+    }
+
+    public Optional<ClusterJob> find(String jobId) {
+        return repository.findById(jobId);
+    }
+
+    /**
+     * @return a job for the same download that is queued or running on any node
+     */
+    public Optional<ClusterJob> findActive(String dedupeKey) {
+        if (dedupeKey == null) {
+            return Optional.empty();
+        }
+        return repository.findFirstByDedupeKeyAndStateIn(dedupeKey, List.of(ClusterJob.State.QUEUED, ClusterJob.State.LEASED));
+    }
+
+    /**
+     * @return jobs leased to this node that another node asked to pause or cancel
+     */
+    public List<ClusterJob> stopRequests() {
+        return repository.findByLeaseOwnerAndStopRequestedIsNotNull(nodeId);
+    }
+
+    public Optional<DownloadRequest> readRequest(ClusterJob row) {
+        if (row.getRequestPayload() == null) {
+            return Optional.empty();
+        }
+        try {
+            return Optional.of(objectMapper.readValue(row.getRequestPayload(), DownloadRequest.class));
+        } catch (JsonProcessingException e) {
+            log.warn("⚠️ Unreadable request payload for cluster job {}: {}", row.getJobId(), e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    private String writeRequest(DownloadRequest request) {
+        try {
+            return request == null ? null : objectMapper.writeValueAsString(request);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not serialize download request: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Leaves the cluster: polling stops and the jobs this node holds go back to
+     * the queue right away instead of waiting for their leases to run out.
+     * Releases and parks after this point are ignored, so jobs interrupted by
+     * the shutdown stay queued for the other nodes.
+     */
+    @PreDestroy
+    public void leave() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        scheduler.shutdownNow();
+        if (!config.isEnabled()) {
+            return;
+        }
+        try {
+            Integer requeued = transactionTemplate.execute(status ->
+                    repository.requeueOwnedBy(nodeId, ClusterJob.State.LEASED, ClusterJob.State.QUEUED));
+            log.info("🌐 Node {} left the cluster, {} jobs returned to the queue", nodeId, requeued);
+        } catch (Exception e) {
+            log.warn("⚠️ Could not return jobs to the cluster queue, they are reclaimed once their leases run out: {}", e.getMessage());
+        }
+    }
+
+    private static String defaultNodeId() {
+        String host;
+        try {
+            host = InetAddress.getLocalHost().getHostName();
+        } catch (Exception e) {
+            host = "node";
+        }
+        // A restarted instance gets a new id, so it never mistakes its predecessor's leases for its own
+        return host + "-" + UUID.randomUUID().toString().substring(0, 8);
+    }
+}
@@ -0,0 +1,78 @@
+package com.karan.youtubedownloader.service;
+
+import com.karan.youtubedownloader.model.JobStatus;
+import com.karan.youtubedownloader.process.ManagedProcess;
+
+/**
+ * Lets another thread stop one job's download. Stopping kills the yt-dlp
+ * process tree, ffmpeg and aria2c children included, and interrupts the
+ * worker so it also gives up a wait for a governor slot or a metadata probe.
+ * Nothing on disk is touched: the .part files stay for yt-dlp's --continue.
+ */
+public class DownloadControl {
+
+    private Thread worker;
+    private ManagedProcess process;
+    private JobStatus stopRequested;
+
+    /**
+     * Binds the control to the calling worker thread.
+     *
+     * @return false when a stop was requested before the job got to run
+     */
+    public synchronized boolean bind() {
+        if (stopRequested != null) {
+            return false;
+        }
+        worker = Thread.currentThread();
+        return true;
+    }
+
+    public synchronized void unbind() {
+        worker = null;
+        process = null;
+        // A stop that raced with the end of the job must not interrupt the worker's next job
+        Thread.interrupted();
+    }
+
+    /**
+     * Registers the process doing the work; it is killed straight away if a stop is already pending.
+     */
+    public synchronized void attach(ManagedProcess process) {
+        this.process = process;
+        if (stopRequested != null) {
+            process.destroyTree();
+        }
+    }
+
+    public synchronized void detach(ManagedProcess process) {
+        if (this.process == process) {
+            this.process = null;
+        }
+    }
+
+    /**
+     * @param reason PAUSED or CANCELLED; the first request wins
+     */
+    public synchronized void requestStop(JobStatus reason) {
+        if (stopRequested == null) {
+            stopRequested = reason;
+        }
+        if (process != null) {
+            process.destroyTree();
+        }
+        if (worker != null) {
+            worker.interrupt();
+        }
+    }
+
+    public synchronized JobStatus stopRequested() {
+        return stopRequested;
+    }
+
+    public void throwIfStopped() throws InterruptedException {
+        if (stopRequested() != null) {
+            throw new InterruptedException("Download " + stopRequested().name().toLowerCase());
+        }
+    }
+}
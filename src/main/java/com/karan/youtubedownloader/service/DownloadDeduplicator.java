@@ -0,0 +1,152 @@
+package com.karan.youtubedownloader.service;
+
+import com.karan.youtubedownloader.config.DownloaderProperties;
+import com.karan.youtubedownloader.model.DownloadHistory;
+import com.karan.youtubedownloader.model.JobStatus;
+import com.karan.youtubedownloader.repository.DownloadHistoryRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Finds files earlier jobs already downloaded and makes them appear in another
+ * download folder, as hard links where the file system allows it. Only the
+ * files recorded for the download are placed, never other videos whose title
+ * happens to start the same way.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class DownloadDeduplicator {
+
+    // ".<language>.<format>" after the title, as yt-dlp names the subtitles it writes
+    private static final String SUBTITLE_SUFFIX = "\\.[A-Za-z]{2,3}(?:[-_][A-Za-z0-9]+)*\\.(?:vtt|srt|ass|txt|lrc|ttml|json3|srv[123])";
+
+    private final DownloadHistoryRepository historyRepository;
+    private final DownloaderProperties properties;
+
+    public boolean isEnabled() {
+        return properties.getDedupe().isEnabled();
+    }
+
+    /**
+     * @return the files of the newest completed download for the key, main file
+     *         last, when that file is still on disk
+     */
+    public Optional<List<Path>> findCompletedFiles(String dedupeKey) {
+        try {
+            return historyRepository.findFirstByDedupeKeyAndStatusOrderByDownloadDateDesc(dedupeKey, JobStatus.COMPLETED)
+                    .filter(history -> history.getFilePath() != null)
+                    .map(history -> outputFiles(history.getFilePath(),
+                            history.getOutputFiles() != null ? history.getOutputFiles().lines().collect(Collectors.toList()) : null))
+                    .filter(files -> isPresent(files.get(files.size() - 1)));
+        } catch (Exception e) {
+            log.warn("⚠️ Could not look up earlier downloads: {}", e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    public static boolean isPresent(Path path) {
+        try {
+            return Files.isRegularFile(path) && Files.size(path) > 0;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Everything a download left behind: the files yt-dlp reported, plus the
+     * subtitles it wrote next to the main file as "title.en.vtt" and so on,
+     * which it does not report.
+     *
+     * @param recorded the files reported for the download, or null for rows recorded before they were kept
+     * @return the files, {@code mainFile} last
+     */
+    public static List<Path> outputFiles(String mainFile, List<String> recorded) {
+        Path main = Path.of(mainFile);
+        Set<Path> files = new LinkedHashSet<>();
+        if (recorded != null) {
+            recorded.stream().filter(file -> !file.isBlank()).map(Path::of).forEach(files::add);
+        }
+        files.addAll(subtitleSidecars(main));
+        files.remove(main);
+        files.add(main);
+        return List.copyOf(files);
+    }
+
+    /**
+     * Makes the files of a finished download available in {@code targetDir}.
+     *
+     * @param files as returned by {@link #outputFiles}, main file last
+     * @return the files in the target directory, main file last
+     */
+    public List<Path> materialize(List<Path> files, String targetDir) throws IOException {
+        Path main = files.get(files.size() - 1);
+        Path target = Path.of(targetDir).toAbsolutePath().normalize();
+        if (target.equals(main.toAbsolutePath().normalize().getParent())) {
+            return files;
+        }
+
+        Files.createDirectories(target);
+        List<Path> placed = new ArrayList<>(files.size());
+        for (Path file : files) {
+            // A subtitle deleted since is no reason to download the video again
+            if (file.equals(main) || Files.isRegularFile(file)) {
+                Path destination = target.resolve(file.getFileName());
+                place(file, destination);
+                placed.add(destination);
+            }
+        }
+        return placed;
+    }
+
+    private static List<Path> subtitleSidecars(Path main) {
+        Path dir = main.toAbsolutePath().normalize().getParent();
+        if (dir == null || !Files.isDirectory(dir)) {
+            return List.of();
+        }
+        String fileName = main.getFileName().toString();
+        int dot = fileName.lastIndexOf('.');
+        Pattern sidecar = Pattern.compile(Pattern.quote(dot > 0 ? fileName.substring(0, dot) : fileName) + SUBTITLE_SUFFIX);
+
+        List<Path> sidecars = new ArrayList<>();
+        try (DirectoryStream<Path> siblings = Files.newDirectoryStream(dir,
+                sibling -> sidecar.matcher(sibling.getFileName().toString()).matches() && Files.isRegularFile(sibling))) {
+            siblings.forEach(sidecars::add);
+        } catch (IOException e) {
+            log.debug("Could not list {}: {}", dir, e.getMessage());
+        }
+        sidecars.sort(null);
+        return sidecars;
+    }
+
+    private void place(Path source, Path destination) throws IOException {
+        if (Files.exists(destination)) {
+            return;
+        }
+        if (properties.getDedupe().getLinkMode() == DownloaderProperties.LinkMode.HARDLINK) {
+            try {
+                Files.createLink(destination, source);
+                log.info("🔗 Linked {} -> {}", destination, source);
+                return;
+            } catch (IOException | UnsupportedOperationException e) {
+                // Different file system or volume; fall through to a copy
+                log.debug("Hard link {} failed ({}), copying instead", destination, e.getMessage());
+            }
+        }
+        Files.copy(source, destination);
+        log.info("📄 Copied {} -> {}", source, destination);
+    }
+}
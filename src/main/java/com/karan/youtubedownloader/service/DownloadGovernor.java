@@ -0,0 +1,246 @@
+package com.karan.youtubedownloader.service;
+
+import com.karan.youtubedownloader.config.DownloaderProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.regex.Pattern;
+
+/**
+ * Caps how many yt-dlp downloads run at once, globally and per site, and how
+ * much bandwidth they may use together.
+ *
+ * yt-dlp's --limit-rate is fixed for the life of a process, so every download
+ * reserves a share of the budget when it starts: the unreserved budget split
+ * evenly over the slots still free. Shares freed by finished downloads go to
+ * the next ones to start, and apart from the min-rate floor the reservations
+ * never add up to more than the configured budget.
+ *
+ * When yt-dlp reports HTTP 429 or throttling for a site, new downloads from it
+ * wait out an exponential backoff and start with fewer slots and less bandwidth;
+ * successful downloads gradually restore both.
+ */
+@Slf4j
+@Component
+public class DownloadGovernor {
+
+    private static final Pattern THROTTLE_SIGNAL = Pattern.compile(
+            "HTTP Error 429|Too Many Requests|rate[- ]?limit", Pattern.CASE_INSENSITIVE);
+    private static final double MIN_PENALTY_FACTOR = 0.25;
+    private static final double RECOVERY_STEP = 1.25;
+
+    private final DownloaderProperties.Governor config;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition changed = lock.newCondition();
+    private final Map<String, HostState> hosts = new LinkedHashMap<>();
+    private int active;
+    private long reservedBytesPerSecond;
+
+    public DownloadGovernor(DownloaderProperties properties) {
+        this.config = properties.getGovernor();
+    }
+
+    public Lease acquire(String url) throws InterruptedException {
+        return acquire(url, null);
+    }
+
+    /**
+     * Blocks until the global and per-site limits allow another download.
+     *
+     * @param maxWait how long to wait for a slot, or null to wait as long as it takes
+     * @throws IllegalStateException when no slot frees up within {@code maxWait}
+     */
+    public Lease acquire(String url, Duration maxWait) throws InterruptedException {
+        String host = hostOf(url);
+        long deadline = maxWait != null ? System.nanoTime() + maxWait.toNanos() : Long.MAX_VALUE;
+        boolean announced = false;
+
+        lock.lockInterruptibly();
+        try {
+            HostState state = hosts.computeIfAbsent(host, key -> new HostState());
+            while (true) {
+                long now = System.nanoTime();
+                long waitNanos;
+                if (state.backoffUntil > now) {
+                    waitNanos = state.backoffUntil - now;
+                } else if (active >= config.getMaxConcurrent() || state.active >= state.maxConcurrent(config)) {
+                    waitNanos = TimeUnit.SECONDS.toNanos(1);
+                } else {
+                    break;
+                }
+
+                long remaining = deadline - now;
+                if (remaining <= 0) {
+                    throw new IllegalStateException("No download slot for " + host + " became free in time");
+                }
+                if (!announced) {
+                    log.info("🚦 Waiting for a download slot for {} ({} running, {} on this site)", host, active, state.active);
+                    announced = true;
+                }
+                changed.awaitNanos(Math.min(waitNanos, remaining));
+            }
+
+            long rate = shareOf(state);
+            active++;
+            state.active++;
+            reservedBytesPerSecond += rate;
+            state.reservedBytesPerSecond += rate;
+            log.debug("Download slot for {} granted, limit {} B/s", host, rate);
+            return new Lease(host, state, rate);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public boolean isThrottleSignal(String line) {
+        return THROTTLE_SIGNAL.matcher(line).find();
+    }
+
+    public Map<String, Object> stats() {
+        lock.lock();
+        try {
+            Map<String, Object> perHost = new LinkedHashMap<>();
+            hosts.forEach((host, state) -> perHost.put(host, Map.of(
+                    "active", state.active,
+                    "maxConcurrent", state.maxConcurrent(config),
+                    "reservedBytesPerSecond", state.reservedBytesPerSecond,
+                    "penaltyFactor", state.penaltyFactor,
+                    "backoffRemainingMillis", Math.max(0, TimeUnit.NANOSECONDS.toMillis(state.backoffUntil - System.nanoTime())))));
+            return Map.of(
+                    "active", active,
+                    "maxConcurrent", config.getMaxConcurrent(),
+                    "reservedBytesPerSecond", reservedBytesPerSecond,
+                    "hosts", perHost);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Caller holds the lock. 0 means no limit.
+    private long shareOf(HostState state) {
+        long global = share(config.getMaxBandwidth().toBytes(), reservedBytesPerSecond, config.getMaxConcurrent() - active);
+        // Split over the configured slots, not the penalised ones, so a penalty always means a smaller share
+        long perHost = share(config.getPerHostBandwidth().toBytes(), state.reservedBytesPerSecond,
+                config.getPerHostMaxConcurrent() - state.active);
+        long rate = global == 0 ? perHost : perHost == 0 ? global : Math.min(global, perHost);
+        if (rate > 0 && state.penaltyFactor < 1.0) {
+            rate = (long) (rate * state.penaltyFactor);
+        }
+        return rate > 0 ? Math.max(rate, config.getMinRate().toBytes()) : 0;
+    }
+
+    private static long share(long budget, long reserved, int freeSlots) {
+        if (budget <= 0) {
+            return 0;
+        }
+        return Math.max(0, budget - reserved) / Math.max(1, freeSlots);
+    }
+
+    private void release(Lease lease) {
+        lock.lock();
+        try {
+            HostState state = lease.state;
+            active--;
+            state.active--;
+            reservedBytesPerSecond -= lease.bytesPerSecond;
+            state.reservedBytesPerSecond -= lease.bytesPerSecond;
+
+            long now = System.nanoTime();
+            if (lease.throttled) {
+                long backoff = Math.min(config.getBackoffMax().toNanos(),
+                        config.getBackoffInitial().toNanos() << Math.min(state.backoffLevel, 20));
+                state.backoffLevel++;
+                state.backoffUntil = Math.max(state.backoffUntil, now + backoff);
+                state.penaltyFactor = Math.max(MIN_PENALTY_FACTOR, state.penaltyFactor / 2);
+                log.warn("🐢 {} is throttling us, backing off {}s with {}% of the normal share",
+                        lease.host, TimeUnit.NANOSECONDS.toSeconds(backoff), Math.round(state.penaltyFactor * 100));
+            } else if (lease.succeeded) {
+                state.backoffLevel = 0;
+                state.penaltyFactor = Math.min(1.0, state.penaltyFactor * RECOVERY_STEP);
+            }
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Reduces the many hostnames of one site to a single key (www., m., music.,
+     * the youtu.be short domain).
+     */
+    static String hostOf(String url) {
+        try {
+            String host = URI.create(VideoIdExtractor.clean(url)).getHost();
+            if (host == null) {
+                return "unknown";
+            }
+            host = host.toLowerCase(Locale.ROOT).replaceFirst("^(www|m|music)\\.", "");
+            return "youtu.be".equals(host) ? "youtube.com" : host;
+        } catch (IllegalArgumentException e) {
+            return "unknown";
+        }
+    }
+
+    private static class HostState {
+        int active;
+        long reservedBytesPerSecond;
+        double penaltyFactor = 1.0;
+        int backoffLevel;
+        long backoffUntil = Long.MIN_VALUE;
+
+        int maxConcurrent(DownloaderProperties.Governor config) {
+            return Math.max(1, (int) Math.floor(config.getPerHostMaxConcurrent() * penaltyFactor));
+        }
+    }
+
+    /**
+     * One running download's slot and bandwidth reservation. Closing it gives both back.
+     */
+    public class Lease implements AutoCloseable {
+        private final String host;
+        private final HostState state;
+        private final long bytesPerSecond;
+        private volatile boolean throttled;
+        private volatile boolean succeeded;
+        private boolean closed;
+
+        private Lease(String host, HostState state, long bytesPerSecond) {
+            this.host = host;
+            this.state = state;
+            this.bytesPerSecond = bytesPerSecond;
+        }
+
+        public String getHost() {
+            return host;
+        }
+
+        // Bytes per second for --limit-rate, 0 when unlimited
+        public long getBytesPerSecond() {
+            return bytesPerSecond;
+        }
+
+        public void markThrottled() {
+            throttled = true;
+        }
+
+        public void markSucceeded() {
+            succeeded = true;
+        }
+
+        @Override
+        public synchronized void close() {
+            if (!closed) {
+                closed = true;
+                release(this);
+            }
+        }
+    }
+}
@@ -0,0 +1,220 @@
+package com.karan.youtubedownloader.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.karan.youtubedownloader.config.DownloaderProperties;
+import com.karan.youtubedownloader.model.DownloadHistory;
+import com.karan.youtubedownloader.model.DownloadJob;
+import com.karan.youtubedownloader.model.DownloadRequest;
+import com.karan.youtubedownloader.model.HistoryCursor;
+import com.karan.youtubedownloader.model.HistoryPage;
+import com.karan.youtubedownloader.model.HistoryQuery;
+import com.karan.youtubedownloader.model.JobStatus;
+import com.karan.youtubedownloader.repository.DownloadHistoryRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Mirrors every download job into the download_history table. The rows double as
+ * the durable queue: anything still QUEUED or RUNNING at startup is re-queued,
+ * and PAUSED jobs are restored as paused.
+ *
+ * Writes go through a write-behind buffer: state changes are coalesced per job
+ * and written in JDBC batches, off the download threads.
+ */
+@Slf4j
+@Service
+@DependsOn("historySchemaInitializer")
+public class DownloadHistoryService {
+
+    private static final int MAX_MESSAGE_LENGTH = 1024;
+    private static final int MAX_PAGE_SIZE = 200;
+    // Characters with a meaning in MySQL's boolean full-text syntax
+    private static final Pattern FULLTEXT_OPERATORS = Pattern.compile("[+\\-<>()~*\"@]");
+
+    private final DownloadHistoryRepository historyRepository;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate transactionTemplate;
+    private final WriteBehindBuffer<String, DownloadJob> writeBuffer;
+
+    public DownloadHistoryService(DownloadHistoryRepository historyRepository, ObjectMapper objectMapper,
+                                  PlatformTransactionManager transactionManager, DownloaderProperties properties) {
+        this.historyRepository = historyRepository;
+        this.objectMapper = objectMapper;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+
+        DownloaderProperties.History config = properties.getHistory();
+        this.writeBuffer = new WriteBehindBuffer<>("history", config.getCapacity(), config.getBatchSize(),
+                config.getFlushInterval(), config.getOfferTimeout(), this::writeBatch);
+    }
+
+    /**
+     * Queues the job's current state for the next batch. Jobs are buffered by
+     * reference, so the row is written with whatever state the job has by then.
+     */
+    public void record(DownloadJob job) {
+        try {
+            writeBuffer.put(job.getId(), job);
+        } catch (Exception e) {
+            // History is bookkeeping; a full or closed buffer must not fail the download itself
+            log.warn("⚠️ Could not record history for job {}: {}", job.getId(), e.getMessage());
+        }
+    }
+
+    public void flush() {
+        writeBuffer.flush();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        log.info("💾 Flushing {} pending history updates", writeBuffer.size());
+        writeBuffer.close();
+    }
+
+    private void writeBatch(List<DownloadJob> jobs) {
+        transactionTemplate.executeWithoutResult(status -> {
+            List<String> jobIds = jobs.stream().map(DownloadJob::getId).collect(Collectors.toList());
+            Map<String, DownloadHistory> existing = historyRepository.findByJobIdIn(jobIds).stream()
+                    .collect(Collectors.toMap(DownloadHistory::getJobId, Function.identity()));
+
+            List<DownloadHistory> rows = new ArrayList<>(jobs.size());
+            for (DownloadJob job : jobs) {
+                DownloadHistory history = existing.computeIfAbsent(job.getId(), id -> newHistory(job));
+                apply(job, history);
+                rows.add(history);
+            }
+            historyRepository.saveAll(rows);
+        });
+        log.debug("Wrote {} history rows", jobs.size());
+    }
+
+    public HistoryPage search(HistoryQuery query) {
+        int limit = Math.min(Math.max(query.getLimit(), 1), MAX_PAGE_SIZE);
+        HistoryCursor after = query.getCursor() != null ? HistoryCursor.decode(query.getCursor()) : null;
+        query.setSearch(toBooleanModePhrase(query.getSearch()));
+
+        // One extra row tells us whether there is a next page without a COUNT(*)
+        List<DownloadHistory> rows = historyRepository.findPage(query, after, limit + 1);
+        boolean hasMore = rows.size() > limit;
+        List<DownloadHistory> items = hasMore ? rows.subList(0, limit) : rows;
+
+        return HistoryPage.builder()
+                .items(items)
+                .nextCursor(hasMore ? HistoryCursor.of(items.get(items.size() - 1)).encode() : null)
+                .build();
+    }
+
+    public Optional<DownloadHistory> findByJobId(String jobId) {
+        return historyRepository.findByJobId(jobId);
+    }
+
+    public List<DownloadHistory> findUnfinished() {
+        return historyRepository.findByStatusInOrderByDownloadDateAsc(List.of(JobStatus.QUEUED, JobStatus.RUNNING, JobStatus.PAUSED));
+    }
+
+    public Optional<DownloadRequest> readRequest(DownloadHistory history) {
+        if (history.getRequestPayload() == null) {
+            return Optional.empty();
+        }
+        try {
+            return Optional.of(objectMapper.readValue(history.getRequestPayload(), DownloadRequest.class));
+        } catch (JsonProcessingException e) {
+            log.warn("⚠️ Unreadable request payload for job {}: {}", history.getJobId(), e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    public void markAbandoned(DownloadHistory history, String reason) {
+        history.setStatus(JobStatus.FAILED);
+        history.setMessage(truncate(reason));
+        historyRepository.save(history);
+    }
+
+    private DownloadHistory newHistory(DownloadJob job) {
+        DownloadRequest request = job.getRequest();
+        return DownloadHistory.builder()
+                .jobId(job.getId())
+                .videoUrl(job.getUrl())
+                .downloadType(job.getDownloadType())
+                .dedupeKey(job.getDedupeKey())
+                .quality(qualityLabel(request))
+                .downloadDate(job.getCreatedAt())
+                .requestPayload(writeRequest(request))
+                .build();
+    }
+
+    private void apply(DownloadJob job, DownloadHistory history) {
+        history.setStatus(job.getStatus());
+        history.setMessage(truncate(job.getMessage()));
+        history.setStartedAt(job.getStartedAt());
+        history.setFinishedAt(job.getFinishedAt());
+        if (job.getStartedAt() != null && job.getFinishedAt() != null) {
+            history.setDurationMillis(Duration.between(job.getStartedAt(), job.getFinishedAt()).toMillis());
+        }
+        if (job.getFilePath() != null) {
+            history.setFilePath(job.getFilePath());
+            history.setVideoTitle(titleFromPath(job.getFilePath()));
+        }
+        if (job.getOutputFiles() != null) {
+            history.setOutputFiles(String.join("\n", job.getOutputFiles()));
+        }
+        if (job.getFileSize() != null) {
+            history.setFileSize(job.getFileSize());
+        }
+    }
+
+    private String writeRequest(DownloadRequest request) {
+        try {
+            return request == null ? null : objectMapper.writeValueAsString(request);
+        } catch (JsonProcessingException e) {
+            log.warn("⚠️ Could not serialize download request: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    private static String qualityLabel(DownloadRequest request) {
+        if (request == null) {
+            return "unknown";
+        }
+        if (request.getFormatId() != null && !request.getFormatId().isBlank()) {
+            return request.getFormatId();
+        }
+        if (request.getDownloadType() != null && request.getDownloadType().startsWith("audio")) {
+            return request.getAudioFormat() != null ? request.getAudioFormat() : "audio";
+        }
+        return request.getQuality() != null ? request.getQuality() : "default";
+    }
+
+    // Output paths come from the "%(title)s.%(ext)s" template, so the file name is the title
+    private static String titleFromPath(String path) {
+        String name = path.substring(Math.max(path.lastIndexOf('/'), path.lastIndexOf('\\')) + 1);
+        int dot = name.lastIndexOf('.');
+        return dot > 0 ? name.substring(0, dot) : name;
+    }
+
+    // Searched as one quoted phrase, which the ngram parser matches as a substring of the title
+    static String toBooleanModePhrase(String search) {
+        if (search == null) {
+            return null;
+        }
+        String cleaned = FULLTEXT_OPERATORS.matcher(search).replaceAll(" ").trim().replaceAll("\\s+", " ");
+        return cleaned.isEmpty() ? null : "\"" + cleaned + "\"";
+    }
+
+    private static String truncate(String message) {
+        return message != null && message.length() > MAX_MESSAGE_LENGTH ? message.substring(0, MAX_MESSAGE_LENGTH) : message;
+    }
+}
@@ -0,0 +1,952 @@
+package com.karan.youtubedownloader.service;
+
+import com.karan.youtubedownloader.config.DownloaderProperties;
+import com.karan.youtubedownloader.model.ClusterJob;
+import com.karan.youtubedownloader.model.DownloadHistory;
+import com.karan.youtubedownloader.model.DownloadJob;
+import com.karan.youtubedownloader.model.DownloadProgress;
+import com.karan.youtubedownloader.model.DownloadRequest;
+import com.karan.youtubedownloader.model.DownloadResult;
+import com.karan.youtubedownloader.model.JobPriority;
+import com.karan.youtubedownloader.model.JobStatus;
+import com.karan.youtubedownloader.model.JobType;
+import com.karan.youtubedownloader.model.TransferOptions;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+/**
+ * Runs downloads off the request thread. Each job type gets its own bounded
+ * pool so a burst of long video downloads cannot starve subtitle or audio jobs,
+ * and within a pool waiting jobs are taken by priority class and client in
+ * weighted fair order (see {@link FairJobQueue}) rather than first come, first served.
+ * Requests for something already downloaded, or already downloading, are
+ * served from that download instead of running yt-dlp again. A job whose
+ * files still need ffmpeg leaves its worker once the download is done and
+ * finishes on the {@link PostProcessingService} stage.
+ *
+ * With the cluster enabled, jobs go into the queue shared by all instances
+ * (see {@link ClusterCoordinator}) and this node claims them from there
+ * whenever a pool has idle workers. Jobs with a completion callback, i.e.
+ * playlist entries, stay on the node that holds their playlist.
+ */
+@Slf4j
+@Service
+public class DownloadJobService {
+
+    private final YouTubeService youTubeService;
+    private final JobEventBroadcaster eventBroadcaster;
+    private final DownloadHistoryService historyService;
+    private final DownloadDeduplicator deduplicator;
+    private final DownloaderProperties properties;
+    private final DownloadMetrics metrics;
+    private final PostProcessingService postProcessing;
+    private final ClusterCoordinator cluster;
+    private final Map<String, DownloadJob> jobs = new ConcurrentHashMap<>();
+    // Queued or running job per DownloadKey, and the jobs waiting on each of them; guarded by dedupeLock
+    private final Map<String, DownloadJob> activeByKey = new HashMap<>();
+    private final Map<String, List<DownloadJob>> followers = new HashMap<>();
+    private final Object dedupeLock = new Object();
+    private final Map<JobType, ThreadPoolExecutor> executors = new EnumMap<>(JobType.class);
+    private final Map<JobType, FairJobQueue> queues = new EnumMap<>(JobType.class);
+    // One per queued or running job; lets pause and cancel reach the worker and its yt-dlp process
+    private final Map<String, DownloadControl> controls = new ConcurrentHashMap<>();
+    // Serializes pause, resume and cancel so two requests cannot move the same job at once
+    private final Object stateLock = new Object();
+    // Set before the workers are interrupted, so the jobs they drop are resumed rather than failed
+    private volatile boolean shuttingDown;
+
+    public DownloadJobService(YouTubeService youTubeService, JobEventBroadcaster eventBroadcaster,
+                              DownloadHistoryService historyService, DownloadDeduplicator deduplicator,
+                              DownloaderProperties properties, DownloadMetrics metrics,
+                              PostProcessingService postProcessing, ClusterCoordinator cluster) {
+        this.youTubeService = youTubeService;
+        this.eventBroadcaster = eventBroadcaster;
+        this.historyService = historyService;
+        this.deduplicator = deduplicator;
+        this.properties = properties;
+        this.metrics = metrics;
+        this.postProcessing = postProcessing;
+        this.cluster = cluster;
+
+        DownloaderProperties.Jobs config = properties.getJobs();
+        executors.put(JobType.VIDEO, createExecutor("video-download-", config.getVideoConcurrency()));
+        executors.put(JobType.AUDIO, createExecutor("audio-download-", config.getAudioConcurrency()));
+        executors.put(JobType.SUBTITLES, createExecutor("subtitle-download-", config.getSubtitleConcurrency()));
+        for (JobType type : JobType.values()) {
+            queues.put(type, new FairJobQueue(config.getQueueCapacity(), properties.getScheduling()));
+            metrics.monitorQueue(type, queues.get(type));
+        }
+    }
+
+    public DownloadJob submit(DownloadRequest request) {
+        return submit(request, null);
+    }
+
+    public DownloadJob submit(DownloadRequest request, Consumer<DownloadJob> onFinished) {
+        return submit(request, null, onFinished);
+    }
+
+    /**
+     * @param priority scheduling class, or null to derive it from the download type
+     */
+    public DownloadJob submit(DownloadRequest request, JobPriority priority, Consumer<DownloadJob> onFinished) {
+        return submit(request, priority, onFinished, null, null);
+    }
+
+    /**
+     * @param onPaused   called once the job is paused
+     * @param onResuming called before a paused job goes back in the queue; an IllegalStateException keeps it paused
+     */
+    public DownloadJob submit(DownloadRequest request, JobPriority priority, Consumer<DownloadJob> onFinished,
+                              Consumer<DownloadJob> onPaused, Consumer<DownloadJob> onResuming) {
+        String downloadType = request.getDownloadType() != null ? request.getDownloadType() : "video";
+        JobType type = JobType.fromDownloadType(downloadType);
+
+        DownloadJob job = DownloadJob.builder()
+                .id(UUID.randomUUID().toString())
+                .type(type)
+                .url(request.getUrl())
+                .downloadType(downloadType)
+                .priority(priority != null ? priority : JobPriority.of(type))
+                .clientId(request.getClientId())
+                .status(JobStatus.QUEUED)
+                .message("Waiting for a free " + type.name().toLowerCase() + " worker")
+                .createdAt(LocalDateTime.now())
+                .request(request)
+                .onFinished(onFinished)
+                .onPaused(onPaused)
+                .onResuming(onResuming)
+                .dedupeKey(DownloadKey.of(request))
+                .build();
+
+        if (cluster.isEnabled() && onFinished == null) {
+            return distribute(job);
+        }
+
+        if (deduplicator.isEnabled()) {
+            DownloadJob duplicate = deduplicate(job);
+            if (duplicate != null) {
+                return duplicate;
+            }
+        }
+
+        try {
+            enqueue(job);
+        } catch (IllegalStateException e) {
+            job.setStatus(JobStatus.FAILED);
+            job.setMessage(e.getMessage());
+            releaseFollowers(job);
+            throw e;
+        }
+        historyService.record(job);
+        if (cluster.isEnabled()) {
+            try {
+                cluster.publish(job, true);
+            } catch (IllegalStateException e) {
+                // Still runs here; other nodes just cannot see it
+                log.warn("⚠️ Job {} is not visible to the cluster: {}", job.getId(), e.getMessage());
+            }
+        }
+        log.info("📋 Queued {} job {} for URL: {}", downloadType, job.getId(), job.getUrl());
+        return job;
+    }
+
+    /**
+     * Puts the job in the cluster's shared queue for whichever node has a free
+     * worker first, this one included. A download for the same key that is
+     * queued or running anywhere is handed back instead, as long as it writes
+     * to the same folder.
+     */
+    private DownloadJob distribute(DownloadJob job) {
+        if (deduplicator.isEnabled()) {
+            String targetDir = youTubeService.resolveDownloadsPath(job.getRequest().getDownloadPath());
+            Optional<DownloadJob> running = cluster.findActive(job.getDedupeKey())
+                    .map(this::clusterView)
+                    .filter(leader -> leader.getRequest() != null
+                            && targetDir.equals(youTubeService.resolveDownloadsPath(leader.getRequest().getDownloadPath())));
+            if (running.isPresent()) {
+                log.info("🤝 Identical request for {} joined cluster job {}", job.getUrl(), running.get().getId());
+                return running.get();
+            }
+        }
+
+        cluster.publish(job, false);
+        cluster.wakeUp();
+        log.info("📋 Queued {} job {} in the cluster for URL: {}", job.getDownloadType(), job.getId(), job.getUrl());
+        return job;
+    }
+
+    /**
+     * Claims jobs from the cluster queue for every pool with idle workers, and
+     * carries out pause and cancel requests other nodes left for jobs held here.
+     */
+    private void pollCluster() {
+        for (JobType type : JobType.values()) {
+            ThreadPoolExecutor executor = executors.get(type);
+            int idle = executor.getMaximumPoolSize() - executor.getActiveCount() - queues.get(type).size();
+            if (idle > 0) {
+                cluster.claim(type, idle).forEach(this::adopt);
+            }
+        }
+
+        for (ClusterJob row : cluster.stopRequests()) {
+            DownloadControl control = controls.get(row.getJobId());
+            if (!jobs.containsKey(row.getJobId()) || (control != null && control.stopRequested() != null)) {
+                continue;
+            }
+            try {
+                stop(row.getJobId(), row.getStopRequested());
+            } catch (IllegalStateException e) {
+                log.debug("Stop request for job {} came too late: {}", row.getJobId(), e.getMessage());
+            }
+        }
+    }
+
+    // Runs a job claimed from the cluster queue on this node
+    private void adopt(ClusterJob row) {
+        Optional<DownloadRequest> request = cluster.readRequest(row);
+        if (request.isEmpty()) {
+            log.warn("⚠️ Dropping cluster job {}: original request was not recorded", row.getJobId());
+            cluster.release(row.getJobId());
+            return;
+        }
+        DownloadJob job = DownloadJob.builder()
+                .id(row.getJobId())
+                .type(row.getJobType())
+                .url(row.getVideoUrl())
+                .downloadType(row.getDownloadType())
+                .priority(row.getPriority())
+                .clientId(row.getClientId())
+                .status(JobStatus.QUEUED)
+                .message("Waiting for a free " + row.getJobType().name().toLowerCase() + " worker")
+                .createdAt(row.getCreatedAt())
+                .request(request.get())
+                .resumed(row.getAttempts() > 1)
+                .dedupeKey(row.getDedupeKey())
+                .build();
+
+        // Asked to stop while no node held it, e.g. between its owner dying and this claim
+        if (row.getStopRequested() == JobStatus.CANCELLED) {
+            jobs.put(job.getId(), job);
+            job.setMessage("🚫 Cancelled");
+            job.setStatus(JobStatus.CANCELLED);
+            finish(job);
+            return;
+        }
+        if (row.getStopRequested() == JobStatus.PAUSED) {
+            cluster.park(job.getId());
+            return;
+        }
+
+        if (deduplicator.isEnabled() && job.getDedupeKey() != null) {
+            Optional<List<Path>> existing = findCompletedFiles(job.getDedupeKey());
+            if (existing.isPresent()) {
+                try {
+                    String targetDir = youTubeService.resolveDownloadsPath(job.getRequest().getDownloadPath());
+                    completeFromExisting(job, deduplicator.materialize(existing.get(), targetDir), null);
+                    jobs.put(job.getId(), job);
+                    finish(job);
+                    log.info("♻️ Cluster job {} reused {} instead of downloading again", job.getId(), job.getFilePath());
+                    return;
+                } catch (IOException e) {
+                    log.warn("⚠️ Could not reuse {}: {}, downloading again", existing.get(), e.getMessage());
+                }
+            }
+            synchronized (dedupeLock) {
+                activeByKey.putIfAbsent(job.getDedupeKey(), job);
+            }
+        }
+
+        try {
+            enqueue(job);
+        } catch (IllegalStateException e) {
+            synchronized (dedupeLock) {
+                activeByKey.remove(job.getDedupeKey(), job);
+            }
+            cluster.giveBack(job.getId());
+            return;
+        }
+        historyService.record(job);
+        log.info("🌐 Claimed {} job {} from the cluster{}", job.getDownloadType(), job.getId(),
+                row.getAttempts() > 1 ? " (attempt " + row.getAttempts() + ")" : "");
+    }
+
+    // What this node can tell about a job held by another node or waiting in the cluster queue
+    private DownloadJob clusterView(ClusterJob row) {
+        JobStatus status;
+        String message;
+        if (row.getState() == ClusterJob.State.PAUSED) {
+            status = JobStatus.PAUSED;
+            message = "⏸️ Paused, resume to continue where it stopped";
+        } else if (row.getStopRequested() == JobStatus.CANCELLED && row.getLeaseOwner() == null) {
+            status = JobStatus.CANCELLED;
+            message = "🚫 Cancelled";
+        } else if (row.getLeaseOwner() != null) {
+            status = JobStatus.RUNNING;
+            message = row.getStopRequested() != null
+                    ? (row.getStopRequested() == JobStatus.PAUSED ? "Pausing..." : "Cancelling...")
+                    : "Running on node " + row.getLeaseOwner();
+        } else {
+            status = JobStatus.QUEUED;
+            message = "Waiting for a free worker in the cluster";
+        }
+        return DownloadJob.builder()
+                .id(row.getJobId())
+                .type(row.getJobType())
+                .url(row.getVideoUrl())
+                .downloadType(row.getDownloadType())
+                .priority(row.getPriority())
+                .clientId(row.getClientId())
+                .status(status)
+                .message(message)
+                .createdAt(row.getCreatedAt())
+                .request(cluster.readRequest(row).orElse(null))
+                .dedupeKey(row.getDedupeKey())
+                .build();
+    }
+
+    /**
+     * Serves a request from an identical download when there is one: a finished
+     * file still on disk is reused straight away, and a download already queued
+     * or running is joined instead of starting a second yt-dlp.
+     *
+     * @return the job to hand back, or null when {@code job} should download for real
+     */
+    private DownloadJob deduplicate(DownloadJob job) {
+        String key = job.getDedupeKey();
+        String targetDir = youTubeService.resolveDownloadsPath(job.getRequest().getDownloadPath());
+
+        synchronized (dedupeLock) {
+            DownloadJob leader = activeByKey.get(key);
+            if (leader != null) {
+                return follow(leader, job, targetDir);
+            }
+        }
+
+        Optional<List<Path>> existing = findCompletedFiles(key);
+        if (existing.isPresent()) {
+            try {
+                completeFromExisting(job, deduplicator.materialize(existing.get(), targetDir), null);
+                jobs.put(job.getId(), job);
+                finish(job);
+                log.info("♻️ Job {} reused {} instead of downloading again", job.getId(), job.getFilePath());
+                return job;
+            } catch (IOException e) {
+                log.warn("⚠️ Could not reuse {}: {}, downloading again", existing.get(), e.getMessage());
+            }
+        }
+
+        synchronized (dedupeLock) {
+            DownloadJob leader = activeByKey.putIfAbsent(key, job);
+            return leader != null ? follow(leader, job, targetDir) : null;
+        }
+    }
+
+    // Caller holds dedupeLock
+    private DownloadJob follow(DownloadJob leader, DownloadJob job, String targetDir) {
+        String leaderDir = youTubeService.resolveDownloadsPath(leader.getRequest().getDownloadPath());
+        if (leaderDir.equals(targetDir) && job.getOnFinished() == null) {
+            log.info("🤝 Identical request for {} joined running job {}", job.getUrl(), leader.getId());
+            return leader;
+        }
+
+        waitFor(leader, job);
+        jobs.put(job.getId(), job);
+        historyService.record(job);
+        log.info("🤝 Job {} waits for identical job {}", job.getId(), leader.getId());
+        return job;
+    }
+
+    private Optional<List<Path>> findCompletedFiles(String key) {
+        // Jobs finished in the last few seconds may not have reached the history table yet
+        for (DownloadJob recent : jobs.values()) {
+            if (key.equals(recent.getDedupeKey()) && recent.getStatus() == JobStatus.COMPLETED && recent.getFilePath() != null
+                    && DownloadDeduplicator.isPresent(Path.of(recent.getFilePath()))) {
+                return Optional.of(DownloadDeduplicator.outputFiles(recent.getFilePath(), recent.getOutputFiles()));
+            }
+        }
+        return deduplicator.findCompletedFiles(key);
+    }
+
+    // Main file last, as DownloadDeduplicator.materialize returns them
+    private void completeFromExisting(DownloadJob job, List<Path> files, DownloadJob source) {
+        LocalDateTime now = LocalDateTime.now();
+        Path file = files.get(files.size() - 1);
+        job.setStartedAt(now);
+        job.setFilePath(file.toString());
+        job.setOutputFiles(files.stream().map(Path::toString).collect(Collectors.toList()));
+        job.setFileSize(file.toFile().length());
+        job.setStatus(JobStatus.COMPLETED);
+        job.setMessage("♻️ Already downloaded: " + file);
+        if (source != null) {
+            job.setSourceJobId(source.getId());
+        }
+    }
+
+    /**
+     * Settles the jobs that waited on {@code leader}: they get its file, placed in
+     * their own download folder, or its failure.
+     */
+    private void releaseFollowers(DownloadJob leader) {
+        List<DownloadJob> waiting;
+        synchronized (dedupeLock) {
+            if (leader.getDedupeKey() != null) {
+                activeByKey.remove(leader.getDedupeKey(), leader);
+            }
+            waiting = followers.remove(leader.getId());
+        }
+        if (waiting == null) {
+            return;
+        }
+
+        for (DownloadJob follower : waiting) {
+            try {
+                if (leader.getStatus() == JobStatus.CANCELLED) {
+                    follower.setStatus(JobStatus.FAILED);
+                    follower.setMessage("Identical download " + leader.getId() + " was cancelled");
+                } else if (leader.getStatus() != JobStatus.COMPLETED || leader.getFilePath() == null) {
+                    follower.setStatus(JobStatus.FAILED);
+                    follower.setMessage(leader.getMessage());
+                } else {
+                    String targetDir = youTubeService.resolveDownloadsPath(follower.getRequest().getDownloadPath());
+                    completeFromExisting(follower, deduplicator.materialize(
+                            DownloadDeduplicator.outputFiles(leader.getFilePath(), leader.getOutputFiles()), targetDir), leader);
+                }
+            } catch (Exception e) {
+                follower.setStatus(JobStatus.FAILED);
+                follower.setMessage("Could not place shared download: " + e.getMessage());
+            }
+            finish(follower);
+        }
+    }
+
+    /**
+     * Re-queues jobs that were still queued or running when the previous instance
+     * stopped. They keep their job id, and yt-dlp's --continue picks up the .part
+     * files they left behind instead of starting over. Paused jobs come back
+     * paused, waiting for a resume.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void resumeUnfinishedJobs() {
+        if (cluster.isEnabled()) {
+            // The cluster queue is the durable queue; a dead instance's jobs come back once their leases run out
+            cluster.start(this::pollCluster, () -> List.copyOf(controls.keySet()));
+            return;
+        }
+
+        List<DownloadHistory> unfinished;
+        try {
+            unfinished = historyService.findUnfinished();
+        } catch (Exception e) {
+            log.warn("⚠️ Could not load unfinished jobs: {}", e.getMessage());
+            return;
+        }
+
+        for (DownloadHistory history : unfinished) {
+            Optional<DownloadRequest> request = historyService.readRequest(history);
+            if (request.isEmpty()) {
+                historyService.markAbandoned(history, "Could not resume: original request was not recorded");
+                continue;
+            }
+
+            String downloadType = history.getDownloadType() != null ? history.getDownloadType() : "video";
+            JobType type = JobType.fromDownloadType(downloadType);
+            DownloadJob job = DownloadJob.builder()
+                    .id(history.getJobId())
+                    .type(type)
+                    .url(history.getVideoUrl())
+                    .downloadType(downloadType)
+                    .priority(JobPriority.of(type))
+                    .clientId(request.get().getClientId())
+                    .status(JobStatus.QUEUED)
+                    .message(history.getStatus() == JobStatus.PAUSED ? history.getMessage() : "Resuming after restart")
+                    .createdAt(history.getDownloadDate())
+                    .request(request.get())
+                    .resumed(true)
+                    .dedupeKey(history.getDedupeKey())
+                    .build();
+
+            try {
+                if (job.getDedupeKey() != null) {
+                    synchronized (dedupeLock) {
+                        activeByKey.putIfAbsent(job.getDedupeKey(), job);
+                    }
+                }
+                if (history.getStatus() == JobStatus.PAUSED) {
+                    job.setStatus(JobStatus.PAUSED);
+                    jobs.put(job.getId(), job);
+                    log.info("⏸️ Restored paused {} job {} for URL: {}", downloadType, job.getId(), job.getUrl());
+                    continue;
+                }
+                enqueue(job);
+                log.info("🔁 Resumed {} job {} for URL: {}", downloadType, job.getId(), job.getUrl());
+            } catch (IllegalStateException e) {
+                historyService.markAbandoned(history, "Could not resume: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Puts the job into its pool's fair queue and hands the pool one turn to run
+     * whichever job is due when a worker frees up, which need not be this one.
+     */
+    private void enqueue(DownloadJob job) {
+        FairJobQueue queue = queues.get(job.getType());
+        jobs.put(job.getId(), job);
+        controls.put(job.getId(), new DownloadControl());
+        if (!queue.offer(job)) {
+            jobs.remove(job.getId());
+            controls.remove(job.getId());
+            throw new IllegalStateException("Too many " + job.getType().name().toLowerCase() + " downloads queued, try again later");
+        }
+        try {
+            executors.get(job.getType()).execute(() -> runNext(queue));
+        } catch (RejectedExecutionException e) {
+            // Only after shutdown; the job stays queued in history and is resumed on the next start
+            log.warn("⚠️ Workers are shutting down, job {} stays queued", job.getId());
+        }
+    }
+
+    private void runNext(FairJobQueue queue) {
+        DownloadJob job = queue.poll();
+        if (job != null) {
+            run(job);
+        }
+    }
+
+    public Optional<DownloadJob> getJob(String jobId) {
+        DownloadJob job = jobs.get(jobId);
+        if (job == null && cluster.isEnabled()) {
+            return cluster.find(jobId).map(this::clusterView);
+        }
+        return Optional.ofNullable(job);
+    }
+
+    public SseEmitter subscribe(DownloadJob job) {
+        return eventBroadcaster.subscribe(job);
+    }
+
+    public Optional<DownloadJob> cancel(String jobId) {
+        return stop(jobId, JobStatus.CANCELLED);
+    }
+
+    public Optional<DownloadJob> pause(String jobId) {
+        return stop(jobId, JobStatus.PAUSED);
+    }
+
+    /**
+     * Pauses or cancels a job. A queued job leaves the queue straight away. A
+     * running one has its process tree killed and settles as soon as its worker
+     * notices, which frees the worker for the next job. Partial files stay on
+     * disk either way.
+     *
+     * @throws IllegalStateException when the job has finished, or on pausing a job that waits for an identical one
+     */
+    private Optional<DownloadJob> stop(String jobId, JobStatus target) {
+        DownloadJob job = jobs.get(jobId);
+        if (job == null) {
+            return cluster.isEnabled() ? stopInCluster(jobId, target) : Optional.empty();
+        }
+
+        synchronized (stateLock) {
+            if (job.getStatus().isFinished()) {
+                throw new IllegalStateException("Job " + jobId + " is already " + job.getStatus().name().toLowerCase());
+            }
+            if (job.getStatus() == JobStatus.PAUSED) {
+                if (target == JobStatus.CANCELLED) {
+                    settleStopped(job, target);
+                }
+                return Optional.of(job);
+            }
+            if (stopFollower(job, target) || queues.get(job.getType()).remove(job)) {
+                settleStopped(job, target);
+                return Optional.of(job);
+            }
+
+            DownloadControl control = controls.get(jobId);
+            if (control != null) {
+                control.requestStop(target);
+                job.setMessage(target == JobStatus.PAUSED ? "Pausing..." : "Cancelling...");
+                eventBroadcaster.publishStatus(job);
+                log.info("🛑 Stopping job {} ({})", jobId, target.name().toLowerCase());
+            }
+            return Optional.of(job);
+        }
+    }
+
+    // The job is queued in the cluster or held by another node, which picks the request up on its next poll
+    private Optional<DownloadJob> stopInCluster(String jobId, JobStatus target) {
+        Optional<DownloadJob> view = cluster.requestStop(jobId, target).map(this::clusterView);
+        // No node ever ran it, so nobody else records how it ended
+        view.filter(job -> job.getStatus() == JobStatus.CANCELLED).ifPresent(job -> {
+            job.setFinishedAt(LocalDateTime.now());
+            historyService.record(job);
+            log.info("🚫 Job {} cancelled in the cluster queue", jobId);
+        });
+        return view;
+    }
+
+    // A job waiting for an identical download has no process of its own; it just stops waiting
+    private boolean stopFollower(DownloadJob job, JobStatus target) {
+        if (job.getSourceJobId() == null) {
+            return false;
+        }
+        synchronized (dedupeLock) {
+            List<DownloadJob> waiting = followers.get(job.getSourceJobId());
+            if (waiting == null || !waiting.contains(job)) {
+                return false;
+            }
+            if (target == JobStatus.PAUSED) {
+                throw new IllegalStateException("Job " + job.getId() + " waits for identical job "
+                        + job.getSourceJobId() + ", pause that one instead");
+            }
+            return waiting.remove(job);
+        }
+    }
+
+    /**
+     * Puts a paused job back in the queue; yt-dlp's --continue picks up its .part files.
+     *
+     * @throws IllegalStateException when the job is not paused or the queue is full
+     */
+    public Optional<DownloadJob> resume(String jobId) {
+        DownloadJob job = jobs.get(jobId);
+        if (job == null) {
+            // Paused on another node or before a restart; any node may pick it up again
+            return cluster.isEnabled() ? cluster.requeue(jobId).map(this::clusterView) : Optional.empty();
+        }
+
+        synchronized (stateLock) {
+            if (job.getStatus() != JobStatus.PAUSED) {
+                throw new IllegalStateException("Job " + jobId + " is not paused");
+            }
+            if (cluster.isEnabled() && !cluster.hold(jobId)) {
+                jobs.remove(jobId);
+                throw new IllegalStateException("Job " + jobId + " was already resumed on another node");
+            }
+            try {
+                if (job.getOnResuming() != null) {
+                    job.getOnResuming().accept(job);
+                }
+            } catch (IllegalStateException e) {
+                keepPaused(job, e);
+                throw e;
+            }
+            job.setStatus(JobStatus.QUEUED);
+            job.setResumed(true);
+            job.setMessage("Waiting for a free " + job.getType().name().toLowerCase() + " worker");
+            DownloadJob leader = null;
+            try {
+                leader = retakeDedupeSlot(job);
+                if (leader == null) {
+                    enqueue(job);
+                }
+            } catch (IllegalStateException e) {
+                synchronized (dedupeLock) {
+                    activeByKey.remove(job.getDedupeKey(), job);
+                }
+                keepPaused(job, e);
+                if (job.getOnPaused() != null) {
+                    job.getOnPaused().accept(job);
+                }
+                throw e;
+            }
+            historyService.record(job);
+            eventBroadcaster.publishStatus(job);
+            log.info("⏯️ Resumed job {}{}", jobId, leader != null ? ", it waits for identical job " + leader.getId() : "");
+            return Optional.of(job);
+        }
+    }
+
+    // Caller holds stateLock
+    private void keepPaused(DownloadJob job, IllegalStateException e) {
+        jobs.put(job.getId(), job);
+        job.setStatus(JobStatus.PAUSED);
+        job.setMessage("⏸️ Paused: " + e.getMessage());
+        if (cluster.isEnabled()) {
+            cluster.park(job.getId());
+        }
+    }
+
+    /**
+     * Makes a resumed job the running download for its key again, unless an
+     * identical request took over while it was paused; then it waits for that one.
+     *
+     * @return the job it now waits for, or null when it should download itself
+     */
+    private DownloadJob retakeDedupeSlot(DownloadJob job) {
+        if (!deduplicator.isEnabled() || job.getDedupeKey() == null) {
+            return null;
+        }
+        synchronized (dedupeLock) {
+            DownloadJob leader = activeByKey.putIfAbsent(job.getDedupeKey(), job);
+            if (leader != null) {
+                waitFor(leader, job);
+            }
+            return leader;
+        }
+    }
+
+    // Caller holds dedupeLock
+    private void waitFor(DownloadJob leader, DownloadJob job) {
+        job.setSourceJobId(leader.getId());
+        job.setMessage("Waiting for identical download " + leader.getId());
+        followers.computeIfAbsent(leader.getId(), id -> new ArrayList<>()).add(job);
+    }
+
+    /**
+     * Lets the jobs that waited on a paused one go on without it: the first
+     * downloads for real, the others wait for that one instead.
+     */
+    private void handOver(DownloadJob paused) {
+        List<DownloadJob> waiting;
+        synchronized (dedupeLock) {
+            if (paused.getDedupeKey() != null) {
+                activeByKey.remove(paused.getDedupeKey(), paused);
+            }
+            waiting = followers.remove(paused.getId());
+        }
+        if (waiting == null) {
+            return;
+        }
+
+        for (DownloadJob follower : waiting) {
+            DownloadJob leader;
+            synchronized (dedupeLock) {
+                leader = activeByKey.putIfAbsent(follower.getDedupeKey(), follower);
+                if (leader != null) {
+                    waitFor(leader, follower);
+                }
+            }
+            if (leader == null) {
+                follower.setSourceJobId(null);
+                follower.setMessage("Waiting for a free " + follower.getType().name().toLowerCase() + " worker");
+                try {
+                    enqueue(follower);
+                } catch (IllegalStateException e) {
+                    jobs.put(follower.getId(), follower);
+                    follower.setStatus(JobStatus.FAILED);
+                    follower.setMessage(e.getMessage());
+                    finish(follower);
+                    releaseFollowers(follower);
+                    continue;
+                }
+            }
+            historyService.record(follower);
+            eventBroadcaster.publishStatus(follower);
+            log.info("🤝 Job {} no longer waits for paused job {}", follower.getId(), paused.getId());
+        }
+    }
+
+    /**
+     * Final bookkeeping for a paused or cancelled job. A paused job gives up its
+     * place as the running download for its key, since nobody knows when it
+     * resumes; the jobs that waited for it go on without it.
+     */
+    private void settleStopped(DownloadJob job, JobStatus reason) {
+        synchronized (stateLock) {
+            controls.remove(job.getId());
+            job.setStatus(reason);
+            if (reason == JobStatus.PAUSED) {
+                job.setMessage("⏸️ Paused, resume to continue where it stopped");
+                historyService.record(job);
+                eventBroadcaster.publishStatus(job);
+                if (cluster.isEnabled()) {
+                    cluster.park(job.getId());
+                }
+                handOver(job);
+                if (job.getOnPaused() != null) {
+                    job.getOnPaused().accept(job);
+                }
+                log.info("⏸️ Job {} paused", job.getId());
+                return;
+            }
+        }
+        job.setMessage("🚫 Cancelled");
+        finish(job);
+        releaseFollowers(job);
+        log.info("🚫 Job {} cancelled", job.getId());
+    }
+
+    public Map<String, Object> schedulerStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        queues.forEach((type, queue) -> {
+            ThreadPoolExecutor executor = executors.get(type);
+            Map<String, Object> pool = new LinkedHashMap<>(queue.stats());
+            pool.put("running", executor.getActiveCount());
+            pool.put("workers", executor.getMaximumPoolSize());
+            stats.put(type.name().toLowerCase(), pool);
+        });
+        return stats;
+    }
+
+    private void run(DownloadJob job) {
+        DownloadControl control = controls.computeIfAbsent(job.getId(), id -> new DownloadControl());
+        if (!control.bind()) {
+            // Paused or cancelled between leaving the queue and reaching this worker
+            settleStopped(job, control.stopRequested());
+            return;
+        }
+
+        job.setStatus(JobStatus.RUNNING);
+        job.setStartedAt(LocalDateTime.now());
+        job.setMessage(job.isResumed() ? "Resuming download..." : "Downloading...");
+        historyService.record(job);
+        eventBroadcaster.publishStatus(job);
+        log.info("▶️ Starting job {} ({})", job.getId(), job.getDownloadType());
+
+        DownloadResult result = null;
+        Exception error = null;
+        try {
+            result = execute(job, control);
+        } catch (Exception e) {
+            error = e;
+        } finally {
+            control.unbind();
+        }
+
+        if (result != null && result.getPostProcessing() != null) {
+            // This worker moves on to the next download while ffmpeg runs on the post-processing stage
+            job.setMessage("⚙️ Post-processing...");
+            eventBroadcaster.publishStatus(job);
+            postProcessing.submit(result, control, (processed, failure) -> complete(job, control, processed, failure));
+            return;
+        }
+        complete(job, control, result, error);
+    }
+
+    private void complete(DownloadJob job, DownloadControl control, DownloadResult result, Exception error) {
+        if (error != null && control.stopRequested() == null && (shuttingDown || postProcessing.isShuttingDown())) {
+            // History still says running, so the next start resumes it from its .part files
+            controls.remove(job.getId());
+            log.info("⏹️ Job {} interrupted by shutdown, it resumes on the next start", job.getId());
+            return;
+        }
+
+        JobStatus stopped = null;
+        if (error == null) {
+            if (result.getOutputFiles() != null && !result.getOutputFiles().isEmpty()) {
+                job.setFilePath(result.getOutputFiles().get(result.getOutputFiles().size() - 1));
+                job.setOutputFiles(DownloadDeduplicator.outputFiles(job.getFilePath(), result.getOutputFiles()).stream()
+                        .map(Path::toString)
+                        .collect(Collectors.toList()));
+            }
+            job.setFileSize(result.getTotalBytes());
+            job.setMessage(result.getMessage());
+            job.setStatus(JobStatus.COMPLETED);
+            log.info("✅ Job {} completed", job.getId());
+        } else {
+            stopped = control.stopRequested();
+            if (stopped == null) {
+                job.setMessage(error.getMessage());
+                job.setStatus(JobStatus.FAILED);
+                metrics.recordFailure(job.getType(), FailureCause.classify(error.getMessage()));
+                log.error("❌ Job {} failed: {}", job.getId(), error.getMessage());
+            }
+        }
+
+        metrics.recordDownload(job.getType(), stopped != null ? stopped : job.getStatus(),
+                Duration.between(job.getStartedAt(), LocalDateTime.now()), job.getFileSize());
+        if (stopped != null) {
+            settleStopped(job, stopped);
+        } else {
+            controls.remove(job.getId());
+            finish(job);
+            releaseFollowers(job);
+        }
+    }
+
+    private void finish(DownloadJob job) {
+        job.setFinishedAt(LocalDateTime.now());
+        historyService.record(job);
+        eventBroadcaster.publishStatus(job);
+        if (cluster.isEnabled()) {
+            cluster.release(job.getId());
+        }
+        if (job.getOnFinished() != null) {
+            job.getOnFinished().accept(job);
+        }
+    }
+
+    private DownloadResult execute(DownloadJob job, DownloadControl control) throws Exception {
+        DownloadRequest request = job.getRequest();
+        Consumer<DownloadProgress> progressListener = progress -> {
+            job.setProgress(progress);
+            eventBroadcaster.publishProgress(job);
+        };
+
+        TransferOptions transferOptions = TransferOptions.from(request);
+
+        switch (job.getDownloadType().toLowerCase()) {
+            case "video+subtitles":
+                return youTubeService.downloadVideoWithSubtitles(request.getUrl(), request.getQuality(), request.getFormatId(),
+                        request.getSubtitleLanguages(), request.getDownloadPath(), transferOptions, progressListener, control);
+            case "audio+subtitles":
+                return youTubeService.downloadAudioWithSubtitles(request.getUrl(), request.getAudioFormat(), request.getFormatId(),
+                        request.getSubtitleLanguages(), request.getDownloadPath(), transferOptions, progressListener, control);
+            case "subtitles":
+                return youTubeService.downloadOnlySubtitles(request.getUrl(), request.getSubtitleLanguages(),
+                        request.getSubtitleFormats(), request.getDownloadPath(), progressListener, control);
+            case "audio":
+                return youTubeService.downloadOnlyAudio(request.getUrl(), request.getAudioFormat(),
+                        request.getFormatId(), request.getDownloadPath(), transferOptions, progressListener, control);
+            case "video":
+            default:
+                return youTubeService.downloadVideo(request.getUrl(), request.getQuality(),
+                        request.getFormatId(), request.getDownloadPath(), transferOptions, progressListener, control);
+        }
+    }
+
+    @Scheduled(fixedDelay = 60_000)
+    public void evictFinishedJobs() {
+        LocalDateTime cutoff = LocalDateTime.now().minus(properties.getJobs().getRetention());
+        jobs.values().removeIf(job -> job.getStatus().isFinished()
+                && job.getFinishedAt() != null
+                && job.getFinishedAt().isBefore(cutoff));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        log.info("🛑 Shutting down download workers");
+        shuttingDown = true;
+        // Hand held jobs to the other nodes before the interrupted workers report them as failed
+        cluster.leave();
+        executors.values().forEach(ThreadPoolExecutor::shutdownNow);
+    }
+
+    // Unbounded: it only holds one turn per job in the FairJobQueue, which enforces the capacity
+    private static ThreadPoolExecutor createExecutor(String threadPrefix, int concurrency) {
+        return new ThreadPoolExecutor(
+                concurrency,
+                concurrency,
+                0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(),
+                new CustomizableThreadFactory(threadPrefix));
+    }
+}
@@ -0,0 +1,66 @@
+package com.karan.youtubedownloader.service;
+
+import com.karan.youtubedownloader.model.DownloadRequest;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Locale;
+import java.util.stream.Collectors;
+
+/**
+ * Identifies what a request would produce: the same video, download type and
+ * format always yield the same key, whatever shape the URL came in.
+ */
+public final class DownloadKey {
+
+    private DownloadKey() {
+    }
+
+    /**
+     * @return SHA-256 hex of "videoId|downloadType|format", short enough to index
+     */
+    public static String of(DownloadRequest request) {
+        String downloadType = request.getDownloadType() != null ? request.getDownloadType().toLowerCase(Locale.ROOT) : "video";
+        String raw = VideoIdExtractor.canonicalKey(request.getUrl()) + "|" + downloadType + "|" + format(request, downloadType);
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(raw.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    // Everything that changes the files written: the stream picked and, per type, what it is converted to
+    private static String format(DownloadRequest request, String downloadType) {
+        String subtitles = downloadType.contains("subtitles") ? "|" + normalize(request.getSubtitleLanguages()) : "";
+        String formatId = request.getFormatId() != null && !request.getFormatId().isBlank() ? "id=" + request.getFormatId() : null;
+        switch (downloadType) {
+            case "audio":
+            case "audio+subtitles":
+                String audioFormat = request.getAudioFormat() != null ? request.getAudioFormat().toLowerCase(Locale.ROOT) : "";
+                return (formatId != null ? formatId + "|" : "") + "audio=" + audioFormat + subtitles;
+            case "subtitles":
+                return "subs=" + normalize(request.getSubtitleFormats()) + subtitles;
+            default:
+                if (formatId != null) {
+                    return formatId + subtitles;
+                }
+                String quality = request.getQuality() != null ? request.getQuality().toLowerCase(Locale.ROOT) : "720p";
+                return "quality=" + ("playlist-all".equals(quality) ? "best" : quality) + subtitles;
+        }
+    }
+
+    private static String normalize(List<String> values) {
+        if (values == null) {
+            return "";
+        }
+        return values.stream()
+                .map(value -> value.trim().toLowerCase(Locale.ROOT))
+                .sorted()
+                .distinct()
+                .collect(Collectors.joining(","));
+    }
+}
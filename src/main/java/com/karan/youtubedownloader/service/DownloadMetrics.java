@@ -0,0 +1,122 @@
+package com.karan.youtubedownloader.service;
+
+import com.karan.youtubedownloader.model.JobPriority;
+import com.karan.youtubedownloader.model.JobStatus;
+import com.karan.youtubedownloader.model.JobType;
+import com.karan.youtubedownloader.model.PostProcessingStep;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.BaseUnits;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Micrometer meters for the download pipeline, scraped from /actuator/prometheus.
+ * Subprocess spawn latency and the number of live processes are recorded by
+ * ProcessRunner itself.
+ */
+@Component
+public class DownloadMetrics {
+
+    private final MeterRegistry registry;
+
+    public DownloadMetrics(MeterRegistry registry, MetadataCache metadataCache) {
+        this.registry = registry;
+
+        FunctionCounter.builder("downloader.metadata.cache.lookups", metadataCache, MetadataCache::hitCount)
+                .tag("result", "hit")
+                .register(registry);
+        FunctionCounter.builder("downloader.metadata.cache.lookups", metadataCache, MetadataCache::coalescedCount)
+                .tag("result", "coalesced")
+                .register(registry);
+        FunctionCounter.builder("downloader.metadata.cache.lookups", metadataCache, MetadataCache::missCount)
+                .tag("result", "miss")
+                .register(registry);
+        Gauge.builder("downloader.metadata.cache.hit.ratio", metadataCache, MetadataCache::hitRatio)
+                .register(registry);
+        Gauge.builder("downloader.metadata.cache.entries", metadataCache, MetadataCache::size)
+                .register(registry);
+    }
+
+    public void recordMetadataProbe(long nanos, boolean success) {
+        Timer.builder("downloader.metadata.probe")
+                .description("yt-dlp --dump-json probes, cache misses only")
+                .tag("outcome", success ? "success" : "failure")
+                .publishPercentileHistogram()
+                .register(registry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Records a job that left its worker: how long it ran, and for completed
+     * jobs how many bytes it produced and at what average rate.
+     */
+    public void recordDownload(JobType type, JobStatus outcome, Duration duration, Long bytes) {
+        String typeTag = type.name().toLowerCase();
+        Timer.builder("downloader.download.duration")
+                .tag("type", typeTag)
+                .tag("outcome", outcome.name().toLowerCase())
+                .publishPercentileHistogram()
+                .register(registry)
+                .record(duration);
+
+        if (outcome != JobStatus.COMPLETED || bytes == null || bytes <= 0) {
+            return;
+        }
+        Counter.builder("downloader.download.bytes")
+                .baseUnit(BaseUnits.BYTES)
+                .tag("type", typeTag)
+                .register(registry)
+                .increment(bytes);
+        double seconds = duration.toNanos() / 1e9;
+        if (seconds > 0) {
+            DistributionSummary.builder("downloader.download.throughput")
+                    .description("Average bytes per second of a completed download")
+                    .baseUnit("bytes.per.second")
+                    .tag("type", typeTag)
+                    .register(registry)
+                    .record(bytes / seconds);
+        }
+    }
+
+    public void recordFailure(JobType type, FailureCause cause) {
+        Counter.builder("downloader.download.failures")
+                .tag("type", type.name().toLowerCase())
+                .tag("cause", cause.tag())
+                .register(registry)
+                .increment();
+    }
+
+    public void recordPostProcessing(PostProcessingStep.Kind kind, long nanos, boolean success) {
+        Timer.builder("downloader.postprocess.duration")
+                .description("ffmpeg merges and audio conversions after the download worker was freed")
+                .tag("kind", kind.name().toLowerCase())
+                .tag("outcome", success ? "success" : "failure")
+                .publishPercentileHistogram()
+                .register(registry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void monitorPostProcessing(ThreadPoolExecutor executor) {
+        Gauge.builder("downloader.postprocess.queued", executor, e -> e.getQueue().size())
+                .register(registry);
+        Gauge.builder("downloader.postprocess.active", executor, ThreadPoolExecutor::getActiveCount)
+                .register(registry);
+    }
+
+    public void monitorQueue(JobType type, FairJobQueue queue) {
+        for (JobPriority priority : JobPriority.values()) {
+            Gauge.builder("downloader.queue.depth", queue, q -> q.size(priority))
+                    .tag("type", type.name().toLowerCase())
+                    .tag("priority", priority.name().toLowerCase())
+                    .register(registry);
+        }
+    }
+}
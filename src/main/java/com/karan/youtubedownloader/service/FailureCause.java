@@ -0,0 +1,40 @@
+package com.karan.youtubedownloader.service;
+
+import java.util.regex.Pattern;
+
+/**
+ * Coarse reason a download failed, read from the error text yt-dlp left in the
+ * job message. Used to tag the failure metric, so the patterns only need to
+ * tell the common cases apart, not explain them.
+ */
+public enum FailureCause {
+    TIMEOUT("^Download timed out"),
+    AGE_RESTRICTED("age-restricted|confirm your age|inappropriate for some users"),
+    RATE_LIMITED("HTTP Error 429|Too Many Requests|rate[- ]?limit"),
+    UNAVAILABLE("Video unavailable|Private video|has been removed|not available in your country"),
+    FFMPEG_MERGE("ffmpeg|ffprobe|Postprocessing|Conversion failed|merging formats"),
+    NETWORK("Unable to download|timed out|Connection (reset|refused)|Network is unreachable"
+            + "|name resolution|getaddrinfo|HTTP Error 5\\d\\d|IncompleteRead|SSL"),
+    OTHER(null);
+
+    private final Pattern pattern;
+
+    FailureCause(String regex) {
+        this.pattern = regex == null ? null : Pattern.compile(regex, Pattern.CASE_INSENSITIVE);
+    }
+
+    public static FailureCause classify(String message) {
+        if (message != null) {
+            for (FailureCause cause : values()) {
+                if (cause.pattern != null && cause.pattern.matcher(message).find()) {
+                    return cause;
+                }
+            }
+        }
+        return OTHER;
+    }
+
+    public String tag() {
+        return name().toLowerCase();
+    }
+}
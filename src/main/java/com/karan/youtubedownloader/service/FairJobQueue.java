@@ -0,0 +1,228 @@
+package com.karan.youtubedownloader.service;
+
+import com.karan.youtubedownloader.config.DownloaderProperties;
+import com.karan.youtubedownloader.model.DownloadJob;
+import com.karan.youtubedownloader.model.JobPriority;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Queue of one worker pool's waiting jobs that hands them out by weighted fair
+ * queuing instead of arrival order: first across priority classes, then across
+ * the clients within the chosen class.
+ *
+ * Both levels use stride scheduling. Every class and client carries a virtual
+ * pass that advances by 1/weight each time it is served, and the waiting one
+ * with the lowest pass goes next. A class or client that was idle rejoins at
+ * the current virtual time, so it cannot save up turns while it had nothing
+ * queued. A 500-entry playlist therefore only delays a subtitle job by the
+ * share its weight allows, and one client cannot crowd out another.
+ */
+public class FairJobQueue {
+
+    private static final int WAIT_SAMPLES = 256;
+    private static final String ANONYMOUS = "anonymous";
+
+    private final int capacity;
+    private final Map<JobPriority, Integer> classWeights;
+    private final Map<String, Integer> clientWeights;
+    private final Map<JobPriority, ClassLane> lanes = new EnumMap<>(JobPriority.class);
+    private double virtualTime;
+    private int size;
+
+    public FairJobQueue(int capacity, DownloaderProperties.Scheduling config) {
+        this.capacity = Math.max(1, capacity);
+        this.classWeights = config.getClassWeights();
+        this.clientWeights = config.getClientWeights();
+        for (JobPriority priority : JobPriority.values()) {
+            lanes.put(priority, new ClassLane());
+        }
+    }
+
+    /**
+     * @return false when the queue is full
+     */
+    public synchronized boolean offer(DownloadJob job) {
+        if (size >= capacity) {
+            return false;
+        }
+        ClassLane lane = lanes.get(priorityOf(job));
+        if (lane.size == 0) {
+            lane.pass = Math.max(lane.pass, virtualTime);
+        }
+        String clientId = clientOf(job);
+        ClientLane client = lane.clients.get(clientId);
+        if (client == null) {
+            client = new ClientLane(lane.virtualTime);
+            lane.clients.put(clientId, client);
+        }
+        client.jobs.add(new Waiting(job, System.nanoTime()));
+        lane.size++;
+        size++;
+        return true;
+    }
+
+    /**
+     * Takes the job that is due next, or returns null when nothing is waiting.
+     */
+    public synchronized DownloadJob poll() {
+        JobPriority priority = null;
+        ClassLane lane = null;
+        for (Map.Entry<JobPriority, ClassLane> candidate : lanes.entrySet()) {
+            ClassLane next = candidate.getValue();
+            // Ties go to the earlier, more urgent class
+            if (next.size > 0 && (lane == null || next.pass < lane.pass)) {
+                priority = candidate.getKey();
+                lane = next;
+            }
+        }
+        if (lane == null) {
+            return null;
+        }
+        virtualTime = lane.pass;
+        lane.pass += 1.0 / weight(classWeights.get(priority));
+
+        String clientId = null;
+        ClientLane client = null;
+        for (Map.Entry<String, ClientLane> candidate : lane.clients.entrySet()) {
+            if (client == null || candidate.getValue().pass < client.pass) {
+                clientId = candidate.getKey();
+                client = candidate.getValue();
+            }
+        }
+        lane.virtualTime = client.pass;
+        client.pass += 1.0 / weight(clientWeights.get(clientId));
+
+        Waiting waiting = client.jobs.poll();
+        if (client.jobs.isEmpty()) {
+            lane.clients.remove(clientId);
+        }
+        lane.size--;
+        size--;
+        lane.recordWait(System.nanoTime() - waiting.enqueuedAt);
+        return waiting.job;
+    }
+
+    /**
+     * Takes a job out of the queue before its turn.
+     *
+     * @return false when the job is not waiting here, e.g. because a worker already took it
+     */
+    public synchronized boolean remove(DownloadJob job) {
+        ClassLane lane = lanes.get(priorityOf(job));
+        String clientId = clientOf(job);
+        ClientLane client = lane.clients.get(clientId);
+        if (client == null || !client.jobs.removeIf(waiting -> waiting.job == job)) {
+            return false;
+        }
+        if (client.jobs.isEmpty()) {
+            lane.clients.remove(clientId);
+        }
+        lane.size--;
+        size--;
+        return true;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    public synchronized int size(JobPriority priority) {
+        return lanes.get(priority).size;
+    }
+
+    /**
+     * Queue depth and wait times per priority class. Wait percentiles cover the
+     * last few hundred jobs that left the queue; the oldest wait is for the job
+     * still queued longest.
+     */
+    public synchronized Map<String, Object> stats() {
+        long now = System.nanoTime();
+        Map<String, Object> perClass = new LinkedHashMap<>();
+        lanes.forEach((priority, lane) -> {
+            long oldest = 0;
+            for (ClientLane client : lane.clients.values()) {
+                Waiting head = client.jobs.peek();
+                if (head != null) {
+                    oldest = Math.max(oldest, now - head.enqueuedAt);
+                }
+            }
+            Map<String, Object> stats = new LinkedHashMap<>();
+            stats.put("weight", weight(classWeights.get(priority)));
+            stats.put("queued", lane.size);
+            stats.put("clients", lane.clients.size());
+            stats.put("dequeued", lane.dequeued);
+            stats.put("oldestWaitMillis", TimeUnit.NANOSECONDS.toMillis(oldest));
+            stats.put("p50WaitMillis", lane.waitPercentileMillis(0.50));
+            stats.put("p95WaitMillis", lane.waitPercentileMillis(0.95));
+            stats.put("maxWaitMillis", lane.waitPercentileMillis(1.0));
+            perClass.put(priority.name().toLowerCase(), stats);
+        });
+        return Map.of(
+                "queued", size,
+                "capacity", capacity,
+                "classes", perClass);
+    }
+
+    private static JobPriority priorityOf(DownloadJob job) {
+        return job.getPriority() != null ? job.getPriority() : JobPriority.of(job.getType());
+    }
+
+    private static String clientOf(DownloadJob job) {
+        return job.getClientId() != null ? job.getClientId() : ANONYMOUS;
+    }
+
+    private static int weight(Integer configured) {
+        return configured != null && configured > 0 ? configured : 1;
+    }
+
+    private static class ClassLane {
+        // Insertion order keeps ties between clients first come, first served
+        final Map<String, ClientLane> clients = new LinkedHashMap<>();
+        final long[] recentWaits = new long[WAIT_SAMPLES];
+        double pass;
+        double virtualTime;
+        int size;
+        long dequeued;
+
+        void recordWait(long nanos) {
+            recentWaits[(int) (dequeued % WAIT_SAMPLES)] = nanos;
+            dequeued++;
+        }
+
+        long waitPercentileMillis(double percentile) {
+            int samples = (int) Math.min(dequeued, WAIT_SAMPLES);
+            if (samples == 0) {
+                return 0;
+            }
+            long[] sorted = Arrays.copyOf(recentWaits, samples);
+            Arrays.sort(sorted);
+            int index = (int) Math.ceil(percentile * samples) - 1;
+            return TimeUnit.NANOSECONDS.toMillis(sorted[Math.max(0, index)]);
+        }
+    }
+
+    private static class ClientLane {
+        final ArrayDeque<Waiting> jobs = new ArrayDeque<>();
+        double pass;
+
+        ClientLane(double pass) {
+            this.pass = pass;
+        }
+    }
+
+    private static class Waiting {
+        final DownloadJob job;
+        final long enqueuedAt;
+
+        Waiting(DownloadJob job, long enqueuedAt) {
+            this.job = job;
+            this.enqueuedAt = enqueuedAt;
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package com.karan.youtubedownloader.service;
+
+import com.karan.youtubedownloader.model.DownloadJob;
+import com.karan.youtubedownloader.model.PlaylistEntryResult;
+import com.karan.youtubedownloader.model.PlaylistJob;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Pushes job and playlist events to clients subscribed over Server-Sent Events.
+ */
+@Slf4j
+@Component
+public class JobEventBroadcaster {
+
+    // yt-dlp prints several progress lines a second; clients only need a few
+    private static final long PROGRESS_INTERVAL_MILLIS = 500;
+
+    private final Map<String, List<SseEmitter>> subscribers = new ConcurrentHashMap<>();
+    private final Map<String, Long> lastProgressSent = new ConcurrentHashMap<>();
+
+    public SseEmitter subscribe(DownloadJob job) {
+        SseEmitter emitter = register(job.getId(), job.getStatus().isFinished());
+
+        // Replay the current state so late subscribers don't wait for the next change
+        send(emitter, "status", job);
+        if (job.getProgress() != null) {
+            send(emitter, "progress", job.getProgress());
+        }
+        if (job.getStatus().isFinished()) {
+            emitter.complete();
+        }
+        return emitter;
+    }
+
+    public SseEmitter subscribe(PlaylistJob playlist) {
+        SseEmitter emitter = register(playlist.getId(), playlist.getStatus().isFinished());
+
+        send(emitter, "status", playlist);
+        for (PlaylistEntryResult result : playlist.getResults()) {
+            send(emitter, "entry", result);
+        }
+        if (playlist.getStatus().isFinished()) {
+            emitter.complete();
+        }
+        return emitter;
+    }
+
+    public void publishProgress(DownloadJob job) {
+        List<SseEmitter> emitters = subscribers.get(job.getId());
+        if (emitters == null || emitters.isEmpty() || job.getProgress() == null) {
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+        Long last = lastProgressSent.get(job.getId());
+        if (last != null && now - last < PROGRESS_INTERVAL_MILLIS && job.getProgress().getPercent() < 100) {
+            return;
+        }
+        lastProgressSent.put(job.getId(), now);
+
+        emitters.forEach(emitter -> send(emitter, "progress", job.getProgress()));
+    }
+
+    public void publishStatus(DownloadJob job) {
+        publishStatus(job.getId(), job, job.getStatus().isFinished());
+    }
+
+    public void publishStatus(PlaylistJob playlist) {
+        publishStatus(playlist.getId(), playlist, playlist.getStatus().isFinished());
+    }
+
+    public void publishEntry(PlaylistJob playlist, PlaylistEntryResult result) {
+        List<SseEmitter> emitters = subscribers.get(playlist.getId());
+        if (emitters != null) {
+            emitters.forEach(emitter -> send(emitter, "entry", result));
+        }
+    }
+
+    // A finished topic gets no more events, so its emitter only replays the final state and is never listed
+    private SseEmitter register(String topic, boolean finished) {
+        SseEmitter emitter = new SseEmitter(0L);
+        if (finished) {
+            return emitter;
+        }
+        subscribers.compute(topic, (id, emitters) -> {
+            List<SseEmitter> list = emitters != null ? emitters : new CopyOnWriteArrayList<>();
+            list.add(emitter);
+            return list;
+        });
+
+        emitter.onCompletion(() -> unregister(topic, emitter));
+        emitter.onTimeout(() -> unregister(topic, emitter));
+        emitter.onError(e -> unregister(topic, emitter));
+        return emitter;
+    }
+
+    // The topic goes with its last subscriber
+    private void unregister(String topic, SseEmitter emitter) {
+        subscribers.computeIfPresent(topic, (id, emitters) -> {
+            emitters.remove(emitter);
+            return emitters.isEmpty() ? null : emitters;
+        });
+    }
+
+    private void publishStatus(String topic, Object snapshot, boolean finished) {
+        List<SseEmitter> emitters = finished ? subscribers.remove(topic) : subscribers.get(topic);
+        if (finished) {
+            lastProgressSent.remove(topic);
+        }
+        if (emitters == null) {
+            return;
+        }
+
+        emitters.forEach(emitter -> {
+            send(emitter, "status", snapshot);
+            if (finished) {
+                emitter.complete();
+            }
+        });
+    }
+
+    private void send(SseEmitter emitter, String eventName, Object data) {
+        try {
+            emitter.send(SseEmitter.event().name(eventName).data(data));
+        } catch (IOException | IllegalStateException e) {
+            // Client went away; the emitter callbacks drop it from the list
+            log.debug("Dropping SSE subscriber: {}", e.getMessage());
+            emitter.completeWithError(e);
+        }
+    }
+}
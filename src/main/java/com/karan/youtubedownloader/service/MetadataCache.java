@@ -0,0 +1,141 @@
+package com.karan.youtubedownloader.service;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.karan.youtubedownloader.config.DownloaderProperties;
+import com.karan.youtubedownloader.model.VideoMetadata;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Caches parsed yt-dlp metadata probes per video id. Concurrent lookups for the
+ * same video share one in-flight probe instead of each forking yt-dlp.
+ */
+@Slf4j
+@Component
+public class MetadataCache {
+
+    @FunctionalInterface
+    public interface Loader {
+        List<VideoMetadata> load() throws Exception;
+    }
+
+    private final AsyncCache<String, List<VideoMetadata>> cache;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+
+    public MetadataCache(DownloaderProperties properties) {
+        DownloaderProperties.MetadataCache config = properties.getMetadataCache();
+        this.cache = Caffeine.newBuilder()
+                .expireAfterWrite(config.getTtl())
+                .maximumWeight(config.getMaxWeight())
+                .weigher((String key, List<VideoMetadata> value) ->
+                        1 + value.stream().mapToInt(VideoMetadata::getWeight).sum())
+                .buildAsync();
+    }
+
+    public List<VideoMetadata> get(String url, Loader loader) throws Exception {
+        String key = VideoIdExtractor.canonicalKey(url);
+
+        CompletableFuture<List<VideoMetadata>> pending = new CompletableFuture<>();
+        CompletableFuture<List<VideoMetadata>> existing = cache.asMap().putIfAbsent(key, pending);
+
+        if (existing != null) {
+            if (existing.isDone()) {
+                hits.increment();
+            } else {
+                coalesced.increment();
+                log.debug("Joining in-flight metadata probe for {}", key);
+            }
+            return await(existing);
+        }
+
+        misses.increment();
+        try {
+            List<VideoMetadata> value = loader.load();
+            if (!isCacheable(value)) {
+                // Callers already waiting still get it; the next lookup probes again
+                cache.asMap().remove(key, pending);
+            }
+            pending.complete(value);
+            return value;
+        } catch (Throwable e) {
+            // Failed futures are dropped by the cache, so the next call retries
+            pending.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    /**
+     * @return the cached probe for the URL, or null when it is not cached or still loading
+     */
+    public List<VideoMetadata> getIfPresent(String url) {
+        CompletableFuture<List<VideoMetadata>> cached = cache.getIfPresent(VideoIdExtractor.canonicalKey(url));
+        if (cached == null || !cached.isDone() || cached.isCompletedExceptionally()) {
+            return null;
+        }
+        return cached.join();
+    }
+
+    public void invalidate(String url) {
+        cache.synchronous().invalidate(VideoIdExtractor.canonicalKey(url));
+    }
+
+    public Map<String, Object> stats() {
+        return Map.of(
+                "entries", size(),
+                "hits", hits.sum(),
+                "misses", misses.sum(),
+                "coalesced", coalesced.sum(),
+                "hitRatio", hitRatio());
+    }
+
+    public long size() {
+        return cache.synchronous().estimatedSize();
+    }
+
+    public long hitCount() {
+        return hits.sum();
+    }
+
+    public long missCount() {
+        return misses.sum();
+    }
+
+    public long coalescedCount() {
+        return coalesced.sum();
+    }
+
+    // Lookups that did not fork yt-dlp themselves, joined in-flight probes included
+    public double hitRatio() {
+        long served = hits.sum() + coalesced.sum();
+        long lookups = served + misses.sum();
+        return lookups == 0 ? 0.0 : (double) served / lookups;
+    }
+
+    // An empty result or a placeholder means the probe failed, maybe only for now
+    private static boolean isCacheable(List<VideoMetadata> value) {
+        return value != null && !value.isEmpty() && value.stream().noneMatch(VideoMetadata::isPlaceholder);
+    }
+
+    private static List<VideoMetadata> await(CompletableFuture<List<VideoMetadata>> future) throws Exception {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof Exception) {
+                throw (Exception) e.getCause();
+            }
+            if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw e;
+        }
+    }
+}
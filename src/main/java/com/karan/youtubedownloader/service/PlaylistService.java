@@ -0,0 +1,274 @@
+package com.karan.youtubedownloader.service;
+
+import com.karan.youtubedownloader.config.DownloaderProperties;
+import com.karan.youtubedownloader.model.DownloadJob;
+import com.karan.youtubedownloader.model.DownloadRequest;
+import com.karan.youtubedownloader.model.JobPriority;
+import com.karan.youtubedownloader.model.JobStatus;
+import com.karan.youtubedownloader.model.PlaylistEntry;
+import com.karan.youtubedownloader.model.PlaylistEntryResult;
+import com.karan.youtubedownloader.model.PlaylistJob;
+import com.karan.youtubedownloader.process.ManagedProcess;
+import com.karan.youtubedownloader.process.ProcessResult;
+import com.karan.youtubedownloader.process.ProcessRunner;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Phaser;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Expands playlists and channels with a cheap flat enumeration, then downloads
+ * the entries as individual jobs, a bounded number at a time. Entries start
+ * downloading while the enumeration is still running.
+ */
+@Slf4j
+@Service
+public class PlaylistService {
+
+    // Marks the end of the enumeration in the entry queue
+    private static final PlaylistEntry END_OF_ENTRIES = new PlaylistEntry();
+
+    private final ProcessRunner processRunner;
+    private final VideoMetadataParser metadataParser;
+    private final DownloadJobService downloadJobService;
+    private final JobEventBroadcaster eventBroadcaster;
+    private final DownloaderProperties properties;
+    private final Map<String, PlaylistJob> playlists = new ConcurrentHashMap<>();
+    private final ThreadPoolExecutor coordinators;
+
+    public PlaylistService(ProcessRunner processRunner, VideoMetadataParser metadataParser,
+                           DownloadJobService downloadJobService, JobEventBroadcaster eventBroadcaster,
+                           DownloaderProperties properties) {
+        this.processRunner = processRunner;
+        this.metadataParser = metadataParser;
+        this.downloadJobService = downloadJobService;
+        this.eventBroadcaster = eventBroadcaster;
+        this.properties = properties;
+
+        DownloaderProperties.Playlist config = properties.getPlaylist();
+        this.coordinators = new ThreadPoolExecutor(
+                config.getMaxActive(),
+                config.getMaxActive(),
+                0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(config.getQueueCapacity()),
+                new CustomizableThreadFactory("playlist-"));
+    }
+
+    public PlaylistJob submit(DownloadRequest request) {
+        String downloadType = request.getDownloadType() != null ? request.getDownloadType() : "video";
+
+        PlaylistJob playlist = PlaylistJob.builder()
+                .id(UUID.randomUUID().toString())
+                .url(VideoIdExtractor.clean(request.getUrl()))
+                .downloadType(downloadType)
+                .status(JobStatus.QUEUED)
+                .message("Waiting to enumerate playlist")
+                .createdAt(LocalDateTime.now())
+                .request(request)
+                .build();
+
+        playlists.put(playlist.getId(), playlist);
+        try {
+            coordinators.execute(() -> run(playlist));
+        } catch (RejectedExecutionException e) {
+            playlists.remove(playlist.getId());
+            throw new IllegalStateException("Too many playlists queued, try again later");
+        }
+
+        log.info("📋 Queued playlist {} for URL: {}", playlist.getId(), playlist.getUrl());
+        return playlist;
+    }
+
+    public Optional<PlaylistJob> getPlaylist(String playlistId) {
+        return Optional.ofNullable(playlists.get(playlistId));
+    }
+
+    public SseEmitter subscribe(PlaylistJob playlist) {
+        return eventBroadcaster.subscribe(playlist);
+    }
+
+    private void run(PlaylistJob playlist) {
+        playlist.setStatus(JobStatus.RUNNING);
+        playlist.setMessage("Enumerating playlist...");
+        eventBroadcaster.publishStatus(playlist);
+
+        int parallelism = Math.max(1, properties.getPlaylist().getParallelism());
+        // Paused entries give their slot to the next entry, but the playlist still waits for them to finish
+        Semaphore slots = new Semaphore(parallelism);
+        Phaser unfinished = new Phaser(1);
+
+        try {
+            ProcessResult enumeration = enumerateAndDispatch(playlist, slots, unfinished);
+
+            // Wait for the last entries still downloading
+            unfinished.awaitAdvanceInterruptibly(unfinished.arrive());
+
+            if (playlist.getDiscovered().get() == 0) {
+                String reason = enumeration.isTimedOut() ? "Timed out enumerating playlist" : enumeration.stderrText();
+                playlist.setMessage("No entries found: " + reason);
+                playlist.setStatus(JobStatus.FAILED);
+            } else {
+                playlist.setMessage(String.format("%d of %d entries downloaded, %d failed",
+                        playlist.getCompleted().get(), playlist.getDiscovered().get(), playlist.getFailed().get()));
+                playlist.setStatus(playlist.getCompleted().get() > 0 ? JobStatus.COMPLETED : JobStatus.FAILED);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            playlist.setMessage("Playlist download interrupted");
+            playlist.setStatus(JobStatus.FAILED);
+        } catch (Exception e) {
+            log.error("❌ Playlist {} failed: {}", playlist.getId(), e.getMessage());
+            playlist.setMessage(e.getMessage());
+            playlist.setStatus(JobStatus.FAILED);
+        } finally {
+            playlist.setFinishedAt(LocalDateTime.now());
+            eventBroadcaster.publishStatus(playlist);
+            log.info("🏁 Playlist {}: {}", playlist.getId(), playlist.getMessage());
+        }
+    }
+
+    private ProcessResult enumerateAndDispatch(PlaylistJob playlist, Semaphore slots, Phaser unfinished) throws Exception {
+        List<String> command = Arrays.asList(
+                properties.getProcess().getExecutable(),
+                "--flat-playlist",
+                "--dump-json",
+                "--ignore-errors",
+                "--no-warnings",
+                playlist.getUrl()
+        );
+
+        BlockingQueue<PlaylistEntry> entries = new LinkedBlockingQueue<>();
+        ManagedProcess enumeration = processRunner.startStreaming(command,
+                stdout -> {
+                    try {
+                        metadataParser.parseFlatEntries(stdout, entries::add);
+                    } finally {
+                        entries.add(END_OF_ENTRIES);
+                    }
+                },
+                line -> log.warn("yt-dlp error: {}", line));
+
+        Duration timeout = properties.getPlaylist().getEnumerationTimeout();
+        long deadline = System.nanoTime() + timeout.toNanos();
+        while (true) {
+            PlaylistEntry entry = entries.poll(1, TimeUnit.SECONDS);
+            if (entry == END_OF_ENTRIES) {
+                break;
+            }
+            if (entry == null) {
+                if (System.nanoTime() > deadline) {
+                    log.warn("⏱️ Playlist {} enumeration exceeded {}s, stopping it", playlist.getId(), timeout.toSeconds());
+                    enumeration.destroyTree();
+                }
+                continue;
+            }
+
+            playlist.getDiscovered().incrementAndGet();
+            slots.acquire();
+            dispatch(playlist, entry, slots, unfinished);
+        }
+
+        playlist.setEnumerationComplete(true);
+        return enumeration.await(Duration.ofSeconds(30));
+    }
+
+    private void dispatch(PlaylistJob playlist, PlaylistEntry entry, Semaphore slots, Phaser unfinished) {
+        DownloadRequest entryRequest = playlist.getRequest().toBuilder()
+                .url(entry.getUrl())
+                .downloadType(playlist.getDownloadType())
+                .quality(entryQuality(playlist.getRequest().getQuality()))
+                .build();
+
+        AtomicBoolean holdsSlot = new AtomicBoolean(true);
+        Runnable releaseSlot = () -> {
+            if (holdsSlot.compareAndSet(true, false)) {
+                slots.release();
+            }
+        };
+        unfinished.register();
+        try {
+            DownloadJob job = downloadJobService.submit(entryRequest, JobPriority.BULK,
+                    finished -> {
+                        try {
+                            recordResult(playlist, entry, finished.getId(), finished.getStatus(), finished.getMessage());
+                        } finally {
+                            releaseSlot.run();
+                            unfinished.arriveAndDeregister();
+                        }
+                    },
+                    paused -> releaseSlot.run(),
+                    resuming -> {
+                        if (!holdsSlot.get()) {
+                            if (!slots.tryAcquire()) {
+                                throw new IllegalStateException("Playlist " + playlist.getId() + " is already downloading "
+                                        + properties.getPlaylist().getParallelism() + " entries, resume once one of them finishes");
+                            }
+                            holdsSlot.set(true);
+                        }
+                    });
+            playlist.setMessage(String.format("Downloading entry %d: %s", entry.getIndex(), entry.getTitle()));
+            log.debug("Playlist {} entry {} -> job {}", playlist.getId(), entry.getIndex(), job.getId());
+        } catch (IllegalStateException e) {
+            releaseSlot.run();
+            unfinished.arriveAndDeregister();
+            recordResult(playlist, entry, null, JobStatus.FAILED, e.getMessage());
+        }
+    }
+
+    private void recordResult(PlaylistJob playlist, PlaylistEntry entry, String jobId, JobStatus status, String message) {
+        if (status == JobStatus.COMPLETED) {
+            playlist.getCompleted().incrementAndGet();
+        } else {
+            playlist.getFailed().incrementAndGet();
+        }
+
+        PlaylistEntryResult result = PlaylistEntryResult.builder()
+                .entry(entry)
+                .jobId(jobId)
+                .status(status)
+                .message(message)
+                .discovered(playlist.getDiscovered().get())
+                .completed(playlist.getCompleted().get())
+                .failed(playlist.getFailed().get())
+                .build();
+        playlist.getResults().add(result);
+        eventBroadcaster.publishEntry(playlist, result);
+    }
+
+    // "playlist-all" only ever meant "download everything at the best quality"
+    private String entryQuality(String quality) {
+        return quality == null || "playlist-all".equalsIgnoreCase(quality) ? "best" : quality;
+    }
+
+    @Scheduled(fixedDelay = 60_000)
+    public void evictFinishedPlaylists() {
+        LocalDateTime cutoff = LocalDateTime.now().minus(properties.getJobs().getRetention());
+        playlists.values().removeIf(playlist -> playlist.getStatus().isFinished()
+                && playlist.getFinishedAt() != null
+                && playlist.getFinishedAt().isBefore(cutoff));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        coordinators.shutdownNow();
+    }
+}
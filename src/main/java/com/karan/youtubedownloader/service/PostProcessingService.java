@@ -0,0 +1,320 @@
+package com.karan.youtubedownloader.service;
+
+import com.karan.youtubedownloader.config.DownloaderProperties;
+import com.karan.youtubedownloader.model.DownloadResult;
+import com.karan.youtubedownloader.model.PostProcessingStep;
+import com.karan.youtubedownloader.process.ManagedProcess;
+import com.karan.youtubedownloader.process.ProcessResult;
+import com.karan.youtubedownloader.process.ProcessRunner;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.regex.Pattern;
+
+/**
+ * Second stage of a download: the ffmpeg merges and audio conversions that
+ * yt-dlp used to run inside the download itself. Downloads now fetch raw
+ * streams and hand them over here, so a download worker and its governor slot
+ * are free for the next transfer while ffmpeg works. The stage has its own
+ * pool, sized to the CPU cores rather than to the network.
+ */
+@Slf4j
+@Service
+public class PostProcessingService {
+
+    // yt-dlp's names for --audio-format, with the file extension and the ffmpeg options for each
+    private static final Map<String, AudioTarget> AUDIO_TARGETS = Map.of(
+            "mp3", new AudioTarget("mp3", List.of("-c:a", "libmp3lame", "-q:a", "5")),
+            "m4a", new AudioTarget("m4a", List.of("-c:a", "aac", "-b:a", "192k")),
+            "aac", new AudioTarget("aac", List.of("-c:a", "aac", "-b:a", "192k", "-f", "adts")),
+            "opus", new AudioTarget("opus", List.of("-c:a", "libopus", "-b:a", "128k")),
+            "vorbis", new AudioTarget("ogg", List.of("-c:a", "libvorbis", "-q:a", "5")),
+            "flac", new AudioTarget("flac", List.of("-c:a", "flac")),
+            "alac", new AudioTarget("m4a", List.of("-c:a", "alac")),
+            "wav", new AudioTarget("wav", List.of("-c:a", "pcm_s16le")));
+
+    // Encoder matching the audio that downloads in each container carry; .m4a is AAC, never ALAC
+    private static final Map<String, String> DOWNLOADED_CODECS = Map.of(
+            "mp3", "libmp3lame",
+            "m4a", "aac",
+            "aac", "aac",
+            "opus", "libopus",
+            "ogg", "libvorbis",
+            "flac", "flac",
+            "wav", "pcm_s16le");
+
+    // Containers whose streams can be copied into an mp4 as they are
+    private static final Set<String> MP4_STREAMS = Set.of("mp4", "m4a", "m4v");
+
+    // The ".f<format id>.<ext>" suffix of a stream downloaded for merging
+    private static final Pattern STREAM_SUFFIX = Pattern.compile("\\.f[\\w-]+\\.\\w+$");
+
+    private final ProcessRunner processRunner;
+    private final DownloaderProperties.PostProcessing config;
+    private final DownloadMetrics metrics;
+    private final ThreadPoolExecutor executor;
+    private volatile boolean shuttingDown;
+
+    public PostProcessingService(ProcessRunner processRunner, DownloaderProperties properties, DownloadMetrics metrics) {
+        this.processRunner = processRunner;
+        this.config = properties.getPostProcessing();
+        this.metrics = metrics;
+
+        int threads = config.getConcurrency() > 0 ? config.getConcurrency() : Runtime.getRuntime().availableProcessors();
+        // Unbounded: every task belongs to a job the download queues already admitted
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(), new CustomizableThreadFactory("post-process-"));
+        metrics.monitorPostProcessing(executor);
+    }
+
+    /**
+     * Joins a separately downloaded video and audio stream without re-encoding.
+     * Streams that both came in MP4 containers (H.264/AV1 video, AAC audio) go
+     * into an mp4; anything else, such as VP9 or Opus from WebM, goes into an
+     * mkv, which takes any codec as-is.
+     *
+     * @return empty when there is nothing to join, e.g. the video came with its own audio
+     */
+    public Optional<PostProcessingStep> merge(List<String> streams) {
+        if (streams == null || streams.size() != 2) {
+            return Optional.empty();
+        }
+        boolean mp4 = streams.stream().allMatch(stream ->
+                MP4_STREAMS.contains(stream.substring(stream.lastIndexOf('.') + 1).toLowerCase(Locale.ROOT)));
+        List<String> codecArgs = new ArrayList<>(List.of("-map", "0:v:0", "-map", "1:a:0", "-c", "copy"));
+        if (mp4) {
+            codecArgs.addAll(List.of("-movflags", "+faststart"));
+        }
+        return Optional.of(PostProcessingStep.builder()
+                .kind(PostProcessingStep.Kind.MERGE)
+                .inputs(List.copyOf(streams))
+                .output(streamBase(streams.get(0)) + (mp4 ? ".mp4" : ".mkv"))
+                .codecArgs(codecArgs)
+                .build());
+    }
+
+    /**
+     * Gives a stream that turned out to need no merging its final name, without the {@code .f<id>} part.
+     *
+     * @return the new path
+     */
+    public String renameStream(String stream) throws IOException {
+        String base = streamBase(stream);
+        if (base.equals(stream)) {
+            return stream;
+        }
+        Path target = Path.of(base + stream.substring(stream.lastIndexOf('.')));
+        Files.move(Path.of(stream), target, StandardCopyOption.REPLACE_EXISTING);
+        return target.toString();
+    }
+
+    /**
+     * @throws IllegalArgumentException for a format ffmpeg is not set up to produce
+     */
+    public void checkAudioFormat(String format) {
+        if (format != null && !format.isBlank() && !format.equalsIgnoreCase("best")
+                && !AUDIO_TARGETS.containsKey(format.toLowerCase(Locale.ROOT))) {
+            throw new IllegalArgumentException("Unsupported audio format: " + format);
+        }
+    }
+
+    /**
+     * Converts a downloaded audio stream to the format the request asked for.
+     *
+     * @param format one of yt-dlp's --audio-format names; blank or "best" keeps the stream as downloaded
+     * @return empty when the stream is already in that codec
+     * @throws IllegalArgumentException for a format ffmpeg is not set up to produce
+     */
+    public Optional<PostProcessingStep> extractAudio(String input, String format) {
+        checkAudioFormat(format);
+        if (format == null || format.isBlank() || format.equalsIgnoreCase("best")) {
+            return Optional.empty();
+        }
+        AudioTarget target = AUDIO_TARGETS.get(format.toLowerCase(Locale.ROOT));
+        int dot = input.lastIndexOf('.');
+        String base = dot > 0 ? input.substring(0, dot) : input;
+        String extension = dot > 0 ? input.substring(dot + 1) : "";
+        // The container alone does not settle it: an AAC .m4a asked for as ALAC still needs converting
+        if (extension.equalsIgnoreCase(target.extension)
+                && target.codec().equals(DOWNLOADED_CODECS.get(extension.toLowerCase(Locale.ROOT)))) {
+            return Optional.empty();
+        }
+        return Optional.of(PostProcessingStep.builder()
+                .kind(PostProcessingStep.Kind.EXTRACT_AUDIO)
+                .inputs(List.of(input))
+                .output(base + "." + target.extension)
+                .codecArgs(target.codecArgs)
+                .build());
+    }
+
+    /**
+     * Runs the download's post-processing on this stage and hands the final
+     * result, or the failure, to {@code onDone} on a post-processing thread.
+     * Stopping {@code control} kills ffmpeg; the raw streams stay on disk.
+     */
+    public void submit(DownloadResult download, DownloadControl control, BiConsumer<DownloadResult, Exception> onDone) {
+        try {
+            executor.execute(() -> {
+                DownloadResult result = null;
+                Exception error = null;
+                try {
+                    result = process(download, control);
+                } catch (Exception e) {
+                    error = e;
+                }
+                onDone.accept(result, error);
+            });
+        } catch (RejectedExecutionException e) {
+            onDone.accept(null, new IllegalStateException("Post-processing is shutting down"));
+        }
+    }
+
+    private DownloadResult process(DownloadResult download, DownloadControl control) throws Exception {
+        PostProcessingStep step = download.getPostProcessing();
+        if (!control.bind()) {
+            control.throwIfStopped();
+        }
+        log.info("⚙️ {} {} -> {}", step.getKind().name().toLowerCase(), step.getInputs(), step.getOutput());
+
+        long start = System.nanoTime();
+        boolean success = false;
+        Path output = Path.of(step.getOutput());
+        // ffmpeg cannot write over its own input, so a conversion within one container goes through a temporary file
+        boolean inPlace = step.getInputs().stream().map(Path::of).anyMatch(output::equals);
+        Path written = inPlace ? convertingFile(output) : output;
+        try {
+            ManagedProcess process = processRunner.start(command(step, written.toString()),
+                    line -> log.debug("ffmpeg: {}", line),
+                    line -> log.debug("ffmpeg: {}", line));
+            ProcessResult result;
+            control.attach(process);
+            try {
+                result = process.await(config.getTimeout());
+            } finally {
+                control.detach(process);
+            }
+            control.throwIfStopped();
+
+            if (result.isTimedOut()) {
+                throw new RuntimeException("Post-processing timed out after " + config.getTimeout().toMinutes() + " minutes");
+            }
+            if (!result.isSuccess()) {
+                throw new RuntimeException("ffmpeg " + step.getKind().name().toLowerCase() + " failed: " + result.stderrText());
+            }
+            if (inPlace) {
+                Files.move(written, output, StandardCopyOption.REPLACE_EXISTING);
+            }
+            for (String input : step.getInputs()) {
+                if (!Path.of(input).equals(output)) {
+                    Files.deleteIfExists(Path.of(input));
+                }
+            }
+            success = true;
+            log.info("💾 Saved {}", output);
+            return DownloadResult.builder()
+                    .message(download.getMessage())
+                    .outputFiles(List.of(step.getOutput()))
+                    .totalBytes(Files.size(output))
+                    .build();
+        } finally {
+            control.unbind();
+            // ffmpeg killed by the shutdown did not fail; the job runs again on the next start
+            if (success || !shuttingDown) {
+                metrics.recordPostProcessing(step.getKind(), System.nanoTime() - start, success);
+            }
+            if (!success) {
+                deleteQuietly(written);
+            }
+        }
+    }
+
+    // "Song.m4a" -> "Song.converting.m4a", keeping the extension ffmpeg picks the container from
+    private static Path convertingFile(Path output) {
+        String name = output.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        return output.resolveSibling(dot > 0 ? name.substring(0, dot) + ".converting" + name.substring(dot) : name + ".converting");
+    }
+
+    // "Title.f137.mp4" -> "Title"; paths without the suffix come back unchanged
+    private static String streamBase(String path) {
+        return STREAM_SUFFIX.matcher(path).replaceFirst("");
+    }
+
+    List<String> command(PostProcessingStep step) {
+        return command(step, step.getOutput());
+    }
+
+    private List<String> command(PostProcessingStep step, String output) {
+        List<String> command = new ArrayList<>();
+        command.add(config.getFfmpegExecutable());
+        command.add("-hide_banner");
+        command.add("-nostdin");
+        command.add("-loglevel");
+        command.add("error");
+        command.add("-y");
+        for (String input : step.getInputs()) {
+            command.add("-i");
+            command.add(input);
+        }
+        if (step.getKind() == PostProcessingStep.Kind.EXTRACT_AUDIO) {
+            command.add("-vn");
+        }
+        command.addAll(step.getCodecArgs());
+        command.add(output);
+        return command;
+    }
+
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.debug("Could not delete {}: {}", file, e.getMessage());
+        }
+    }
+
+    /**
+     * True once the stage has begun stopping; a failure reported after that
+     * comes from ffmpeg being interrupted rather than from the job itself.
+     */
+    public boolean isShuttingDown() {
+        return shuttingDown;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        shuttingDown = true;
+        executor.shutdownNow();
+    }
+
+    private static class AudioTarget {
+        final String extension;
+        final List<String> codecArgs;
+
+        AudioTarget(String extension, List<String> codecArgs) {
+            this.extension = extension;
+            this.codecArgs = codecArgs;
+        }
+
+        // The encoder after -c:a
+        String codec() {
+            return codecArgs.get(codecArgs.indexOf("-c:a") + 1);
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.karan.youtubedownloader.service;
+
+import com.karan.youtubedownloader.model.DownloadProgress;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Parses yt-dlp "[download]" progress lines (run with --newline), e.g.
+ * <pre>[download]  42.5% of ~ 120.30MiB at    2.31MiB/s ETA 00:42 (frag 12/80)</pre>
+ */
+public final class ProgressParser {
+
+    private static final Pattern PERCENT = Pattern.compile("^\\[download]\\s+(\\d+(?:\\.\\d+)?)%");
+    private static final Pattern TOTAL = Pattern.compile("\\bof\\s+(~)?\\s*(\\d+(?:\\.\\d+)?)([KMGT]?i?B)\\b");
+    private static final Pattern SPEED = Pattern.compile("\\bat\\s+(\\d+(?:\\.\\d+)?)([KMGT]?i?B)/s");
+    private static final Pattern ETA = Pattern.compile("\\bETA\\s+(\\d+(?::\\d+){0,2})");
+    private static final Pattern FRAGMENT = Pattern.compile("\\(frag\\s+(\\d+)/(\\d+)\\)");
+
+    private ProgressParser() {
+    }
+
+    /**
+     * @return the parsed progress, or null when the line is not a progress line
+     */
+    public static DownloadProgress parse(String line) {
+        if (line == null || !line.startsWith("[download]")) {
+            return null;
+        }
+        Matcher percentMatcher = PERCENT.matcher(line);
+        if (!percentMatcher.find()) {
+            return null;
+        }
+
+        double percent = Double.parseDouble(percentMatcher.group(1));
+        DownloadProgress.DownloadProgressBuilder progress = DownloadProgress.builder().percent(percent);
+
+        Matcher totalMatcher = TOTAL.matcher(line);
+        if (totalMatcher.find()) {
+            long totalBytes = toBytes(totalMatcher.group(2), totalMatcher.group(3));
+            progress.totalBytes(totalBytes)
+                    .totalEstimated(totalMatcher.group(1) != null)
+                    .downloadedBytes(Math.round(totalBytes * percent / 100.0));
+        }
+
+        Matcher speedMatcher = SPEED.matcher(line);
+        if (speedMatcher.find()) {
+            progress.speedBytesPerSecond(toBytes(speedMatcher.group(1), speedMatcher.group(2)));
+        }
+
+        Matcher etaMatcher = ETA.matcher(line);
+        if (etaMatcher.find()) {
+            progress.etaSeconds(toSeconds(etaMatcher.group(1)));
+        }
+
+        Matcher fragmentMatcher = FRAGMENT.matcher(line);
+        if (fragmentMatcher.find()) {
+            progress.fragmentIndex(Integer.parseInt(fragmentMatcher.group(1)))
+                    .fragmentCount(Integer.parseInt(fragmentMatcher.group(2)));
+        }
+
+        return progress.build();
+    }
+
+    static long toBytes(String amount, String unit) {
+        double value = Double.parseDouble(amount);
+        boolean binary = unit.contains("i");
+        long base = binary ? 1024 : 1000;
+        switch (unit.charAt(0)) {
+            case 'K':
+                return Math.round(value * base);
+            case 'M':
+                return Math.round(value * base * base);
+            case 'G':
+                return Math.round(value * base * base * base);
+            case 'T':
+                return Math.round(value * base * base * base * base);
+            default:
+                return Math.round(value);
+        }
+    }
+
+    static long toSeconds(String clock) {
+        long seconds = 0;
+        for (String part : clock.split(":")) {
+            seconds = seconds * 60 + Long.parseLong(part);
+        }
+        return seconds;
+    }
+}
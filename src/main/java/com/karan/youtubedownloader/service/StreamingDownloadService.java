@@ -0,0 +1,293 @@
+package com.karan.youtubedownloader.service;
+
+import com.karan.youtubedownloader.config.DownloaderProperties;
+import com.karan.youtubedownloader.model.DownloadRequest;
+import com.karan.youtubedownloader.model.StreamingDownload;
+import com.karan.youtubedownloader.model.VideoFormat;
+import com.karan.youtubedownloader.model.VideoMetadata;
+import com.karan.youtubedownloader.process.ManagedProcess;
+import com.karan.youtubedownloader.process.ProcessResult;
+import com.karan.youtubedownloader.process.ProcessRunner;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Runs yt-dlp with "-o -" and forwards its stdout to a sink without the file
+ * ever touching disk. Only single-file formats qualify, since merging separate
+ * audio and video streams needs a seekable output.
+ *
+ * The copy goes through one fixed-size buffer on the process's stdout drainer
+ * thread while the calling thread waits for it, so a slow sink stops the reads,
+ * the pipe fills up and yt-dlp blocks on its own writes until the client
+ * catches up. The slot and the download lease are taken with {@link #reserve}
+ * before the response is committed, so running out of them can still be
+ * answered with an error status.
+ */
+@Slf4j
+@Service
+public class StreamingDownloadService {
+
+    private static final Pattern QUALITY_HEIGHT = Pattern.compile("(\\d{3,4})p");
+    private static final Duration STREAM_SLOT_WAIT = Duration.ofSeconds(30);
+
+    private final ProcessRunner processRunner;
+    private final YouTubeService youTubeService;
+    private final DownloadGovernor downloadGovernor;
+    private final DownloaderProperties properties;
+    private final Semaphore slots;
+
+    public StreamingDownloadService(ProcessRunner processRunner, YouTubeService youTubeService,
+                                    DownloadGovernor downloadGovernor, DownloaderProperties properties) {
+        this.processRunner = processRunner;
+        this.youTubeService = youTubeService;
+        this.downloadGovernor = downloadGovernor;
+        this.properties = properties;
+        this.slots = new Semaphore(properties.getStream().getMaxConcurrent());
+    }
+
+    /**
+     * Takes a streaming slot and a download lease for {@code url}; close the
+     * reservation once the stream is over.
+     *
+     * @throws IllegalStateException when all streaming slots are taken, or the
+     *                               site has no download slot free in time
+     */
+    public Reservation reserve(String url) throws InterruptedException {
+        if (!slots.tryAcquire()) {
+            throw new IllegalStateException("Too many streaming downloads in progress, try again later");
+        }
+        try {
+            // A client is waiting on the other end, so don't queue behind long downloads for ever
+            return new Reservation(downloadGovernor.acquire(url, STREAM_SLOT_WAIT));
+        } catch (InterruptedException | RuntimeException e) {
+            slots.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Picks the exact format up front from the cached metadata, so the response
+     * can carry a real file name and content type before any byte arrives.
+     */
+    public StreamingDownload prepare(DownloadRequest request) {
+        String url = VideoIdExtractor.clean(request.getUrl());
+        boolean audioOnly = request.getDownloadType() != null
+                && request.getDownloadType().toLowerCase(Locale.ROOT).startsWith("audio");
+        long maxBytes = properties.getStream().getMaxFileSize().toBytes();
+
+        VideoMetadata metadata = null;
+        try {
+            List<VideoMetadata> probed = youTubeService.getVideoMetadata(url);
+            metadata = probed.isEmpty() ? null : probed.get(0);
+        } catch (Exception e) {
+            log.warn("⚠️ No metadata for streaming {}: {}", url, e.getMessage());
+        }
+
+        Optional<VideoFormat> format = Optional.empty();
+        if (metadata != null && metadata.getFormats() != null) {
+            format = hasText(request.getFormatId())
+                    ? metadata.findFormat(request.getFormatId())
+                    : chooseFormat(metadata.getFormats(), audioOnly, maxHeight(request.getQuality()), maxBytes);
+        }
+
+        String title = metadata != null && hasText(metadata.getTitle()) ? metadata.getTitle() : VideoIdExtractor.canonicalKey(url);
+        if (format.isPresent()) {
+            VideoFormat chosen = format.get();
+            return StreamingDownload.builder()
+                    .url(url)
+                    .formatSelector(chosen.getFormatId())
+                    .fileName(title + "." + chosen.getExt())
+                    .contentType(contentType(chosen.getExt(), !chosen.isHasVideo()))
+                    .expectedBytes(chosen.isFilesizeApproximate() ? null : chosen.getFilesize())
+                    .build();
+        }
+
+        // Let yt-dlp pick among single-file formats when the format table is unavailable
+        String sizeFilter = "[filesize<?" + maxBytes + "]";
+        String selector = hasText(request.getFormatId()) ? request.getFormatId()
+                : audioOnly ? "ba[ext=m4a]" + sizeFilter + "/ba" + sizeFilter
+                : String.format("b[height<=%1$d][ext=mp4]%2$s/b[height<=%1$d]%2$s", maxHeight(request.getQuality()), sizeFilter);
+        return StreamingDownload.builder()
+                .url(url)
+                .formatSelector(selector)
+                .fileName(title)
+                .contentType("application/octet-stream")
+                .build();
+    }
+
+    /**
+     * Copies yt-dlp's output into {@code sink} until the download ends or the
+     * sink fails, and closes the reservation. A failing sink (client gone)
+     * kills yt-dlp straight away.
+     *
+     * @return the number of bytes written to the sink
+     */
+    public long pipe(StreamingDownload download, Reservation reservation, WritableByteChannel sink)
+            throws IOException, InterruptedException {
+        try (reservation) {
+            long written = run(download, sink, reservation.lease);
+            reservation.lease.markSucceeded();
+            return written;
+        }
+    }
+
+    private long run(StreamingDownload download, WritableByteChannel sink,
+                     DownloadGovernor.Lease lease) throws IOException, InterruptedException {
+        List<String> command = new ArrayList<>(List.of(
+                properties.getProcess().getExecutable(),
+                "-f", download.getFormatSelector(),
+                "-o", "-",
+                "--no-playlist",
+                "--no-part",
+                "--quiet",
+                "--no-warnings"));
+        if (lease.getBytesPerSecond() > 0) {
+            command.addAll(List.of("--limit-rate", Long.toString(lease.getBytesPerSecond())));
+        }
+        command.add(download.getUrl());
+        log.info("🚰 Streaming {} ({}) straight to the client", download.getUrl(), download.getFormatSelector());
+
+        AtomicLong written = new AtomicLong();
+        CompletableFuture<ManagedProcess> started = new CompletableFuture<>();
+        CompletableFuture<IOException> sinkFailure = new CompletableFuture<>();
+
+        ManagedProcess process = processRunner.startStreaming(command,
+                stdout -> {
+                    try {
+                        copy(stdout, sink, written);
+                    } catch (IOException e) {
+                        sinkFailure.complete(e);
+                        // Otherwise yt-dlp would keep downloading into the void
+                        started.thenAccept(ManagedProcess::destroyTree);
+                    }
+                },
+                line -> {
+                    if (downloadGovernor.isThrottleSignal(line)) {
+                        lease.markThrottled();
+                    }
+                    log.warn("yt-dlp error: {}", line);
+                });
+        started.complete(process);
+
+        // The copy may still be busy after yt-dlp exits; a short grace period would cut the body off
+        ProcessResult result = process.awaitOutput(properties.getProcess().getDownloadTimeout());
+        if (result.isTimedOut()) {
+            throw new IOException("Streaming timed out after " + properties.getProcess().getDownloadTimeout().toMinutes() + " minutes");
+        }
+        if (sinkFailure.isDone()) {
+            log.info("🔌 Client went away after {} bytes of {}", written.get(), download.getUrl());
+            throw sinkFailure.getNow(null);
+        }
+        if (!result.isSuccess()) {
+            throw new IOException("Streaming failed: " + result.stderrText());
+        }
+        log.info("✅ Streamed {} bytes of {}", written.get(), download.getUrl());
+        return written.get();
+    }
+
+    private void copy(InputStream stdout, WritableByteChannel sink, AtomicLong written) throws IOException {
+        ReadableByteChannel source = Channels.newChannel(stdout);
+        ByteBuffer buffer = ByteBuffer.allocateDirect(properties.getStream().getBufferSize());
+        while (source.read(buffer) != -1) {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                written.addAndGet(sink.write(buffer));
+            }
+            buffer.clear();
+        }
+    }
+
+    /**
+     * Best single-file format: audio-only picks the highest bitrate audio stream
+     * (m4a first), video picks the tallest progressive stream within the height,
+     * mp4 first. Anything known to exceed {@code maxBytes} is skipped.
+     */
+    static Optional<VideoFormat> chooseFormat(List<VideoFormat> formats, boolean audioOnly, int maxHeight, long maxBytes) {
+        Comparator<VideoFormat> preference = audioOnly
+                ? Comparator.comparing((VideoFormat f) -> "m4a".equals(f.getExt()))
+                        .thenComparing(f -> f.getBitrateKbps() != null ? f.getBitrateKbps() : 0.0)
+                : Comparator.comparing((VideoFormat f) -> f.getHeight() != null ? f.getHeight() : 0)
+                        .thenComparing(f -> "mp4".equals(f.getExt()))
+                        .thenComparing(f -> f.getBitrateKbps() != null ? f.getBitrateKbps() : 0.0);
+
+        return formats.stream()
+                .filter(f -> f.getProtocol() == null || f.getProtocol().startsWith("http"))
+                .filter(f -> f.getFilesize() == null || f.getFilesize() <= maxBytes)
+                .filter(f -> audioOnly
+                        ? f.isHasAudio() && !f.isHasVideo()
+                        : f.isHasAudio() && f.isHasVideo() && (f.getHeight() == null || f.getHeight() <= maxHeight))
+                .max(preference);
+    }
+
+    private static int maxHeight(String quality) {
+        if (quality != null) {
+            Matcher height = QUALITY_HEIGHT.matcher(quality.toLowerCase(Locale.ROOT));
+            if (height.matches()) {
+                return Integer.parseInt(height.group(1));
+            }
+        }
+        return Integer.MAX_VALUE;
+    }
+
+    private static String contentType(String ext, boolean audioOnly) {
+        if (ext == null) {
+            return "application/octet-stream";
+        }
+        switch (ext) {
+            case "mp4":
+            case "m4a":
+                return audioOnly ? "audio/mp4" : "video/mp4";
+            case "webm":
+                return audioOnly ? "audio/webm" : "video/webm";
+            case "mp3":
+                return "audio/mpeg";
+            default:
+                return "application/octet-stream";
+        }
+    }
+
+    private static boolean hasText(String value) {
+        return value != null && !value.isBlank();
+    }
+
+    /**
+     * A streaming slot plus the download lease for one stream. Closing it gives
+     * both back; only the first close does anything, so every path that may end
+     * the stream can safely close it.
+     */
+    public class Reservation implements AutoCloseable {
+        private final DownloadGovernor.Lease lease;
+        private final AtomicBoolean closed = new AtomicBoolean();
+
+        private Reservation(DownloadGovernor.Lease lease) {
+            this.lease = lease;
+        }
+
+        @Override
+        public void close() {
+            if (closed.compareAndSet(false, true)) {
+                lease.close();
+                slots.release();
+            }
+        }
+    }
+}
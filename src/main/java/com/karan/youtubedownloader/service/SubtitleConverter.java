@@ -0,0 +1,202 @@
+package com.karan.youtubedownloader.service;
+
+import com.karan.youtubedownloader.model.SubtitleCue;
+import com.karan.youtubedownloader.model.SubtitleFormat;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+/**
+ * Converts between WebVTT, SRT and ASS, and to a plain TXT transcript, in
+ * process instead of forking ffmpeg for every file. Cues stream from the
+ * reader to every requested writer in a single pass, so memory use does not
+ * grow with the length of the transcript.
+ *
+ * YouTube's auto-generated captions scroll: each cue repeats the line shown
+ * before it, and a few-millisecond cue sits between every two. Lines already
+ * on screen are dropped and the in-between cues folded into the cue before,
+ * which leaves every spoken line once, with the time it first appeared. Only
+ * tracks with the per-word timing tags of those captions are filtered; a
+ * human-authored track may well repeat a line on purpose.
+ */
+@Slf4j
+@Component
+public class SubtitleConverter {
+
+    /**
+     * Converts {@code source}, whose format comes from its extension, into
+     * each of {@code targets}.
+     *
+     * @return the number of cues written to each target
+     * @throws IllegalArgumentException when the source format cannot be read
+     */
+    public int convert(Path source, Map<SubtitleFormat, Path> targets) throws IOException {
+        return convert(source, targets, cue -> { });
+    }
+
+    /**
+     * As {@link #convert(Path, Map)}, also handing every cue written to {@code listener}.
+     */
+    public int convert(Path source, Map<SubtitleFormat, Path> targets, Consumer<SubtitleCue> listener) throws IOException {
+        SubtitleFormat format = formatOf(source)
+                .filter(SubtitleFormat::isReadable)
+                .orElseThrow(() -> new IllegalArgumentException("Cannot read subtitles from " + source.getFileName()));
+
+        Map<SubtitleFormat, Writer> writers = new LinkedHashMap<>();
+        boolean success = false;
+        try (BufferedReader reader = Files.newBufferedReader(source, StandardCharsets.UTF_8)) {
+            for (Map.Entry<SubtitleFormat, Path> target : targets.entrySet()) {
+                writers.put(target.getKey(), Files.newBufferedWriter(target.getValue(), StandardCharsets.UTF_8));
+            }
+            int cues = convert(reader, format, writers, listener);
+            success = true;
+            return cues;
+        } finally {
+            for (Writer writer : writers.values()) {
+                closeQuietly(writer);
+            }
+            if (!success) {
+                for (Path target : targets.values()) {
+                    Files.deleteIfExists(target);
+                }
+            }
+        }
+    }
+
+    /**
+     * Streams cues from {@code source} to every writer. The writers are flushed but left open.
+     *
+     * @return the number of cues written to each writer
+     */
+    public int convert(Reader source, SubtitleFormat sourceFormat, Map<SubtitleFormat, Writer> targets) throws IOException {
+        return convert(source, sourceFormat, targets, cue -> { });
+    }
+
+    private int convert(Reader source, SubtitleFormat sourceFormat, Map<SubtitleFormat, Writer> targets,
+                        Consumer<SubtitleCue> listener) throws IOException {
+        BufferedReader buffered = source instanceof BufferedReader ? (BufferedReader) source : new BufferedReader(source);
+        SubtitleCueReader reader = SubtitleCueReader.open(sourceFormat, skipByteOrderMark(buffered));
+        List<SubtitleCueWriter> writers = new ArrayList<>(targets.size());
+        for (Map.Entry<SubtitleFormat, Writer> target : targets.entrySet()) {
+            Writer out = target.getValue() instanceof BufferedWriter ? target.getValue() : new BufferedWriter(target.getValue());
+            writers.add(SubtitleCueWriter.open(target.getKey(), out));
+        }
+
+        for (SubtitleCueWriter writer : writers) {
+            writer.begin();
+        }
+        RollingCaptionFilter filter = new RollingCaptionFilter();
+        int written = 0;
+        SubtitleCue cue;
+        while ((cue = reader.next()) != null) {
+            // The tags show up in the first cues, before any line has scrolled
+            SubtitleCue ready = reader.isRollingCaptions() ? filter.accept(cue) : cue;
+            if (ready != null) {
+                write(writers, ready);
+                listener.accept(ready);
+                written++;
+            }
+        }
+        SubtitleCue last = filter.flush();
+        if (last != null) {
+            write(writers, last);
+            listener.accept(last);
+            written++;
+        }
+        for (SubtitleCueWriter writer : writers) {
+            writer.end();
+        }
+        return written;
+    }
+
+    public static Optional<SubtitleFormat> formatOf(Path file) {
+        String name = file.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        return dot < 0 ? Optional.empty() : SubtitleFormat.fromExtension(name.substring(dot + 1));
+    }
+
+    private static void write(List<SubtitleCueWriter> writers, SubtitleCue cue) throws IOException {
+        for (SubtitleCueWriter writer : writers) {
+            writer.write(cue);
+        }
+    }
+
+    private static BufferedReader skipByteOrderMark(BufferedReader reader) throws IOException {
+        reader.mark(1);
+        if (reader.read() != '\uFEFF') {
+            reader.reset();
+        }
+        return reader;
+    }
+
+    private static void closeQuietly(Writer writer) {
+        try {
+            writer.close();
+        } catch (IOException e) {
+            log.debug("Could not close subtitle writer: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Holds back one cue so the next can extend it. A cue whose leading lines
+     * are the trailing lines of the cue before only contributes the rest; a cue
+     * with nothing new only moves the end time of the held cue.
+     */
+    private static final class RollingCaptionFilter {
+
+        private List<String> previousLines = List.of();
+        private SubtitleCue pending;
+
+        SubtitleCue accept(SubtitleCue cue) {
+            List<String> lines = cue.getLines();
+            if (lines.isEmpty()) {
+                return null;
+            }
+            int repeated = overlap(previousLines, lines);
+            previousLines = lines;
+
+            if (repeated == lines.size()) {
+                if (pending != null) {
+                    pending.setEndMillis(Math.max(pending.getEndMillis(), cue.getEndMillis()));
+                }
+                return null;
+            }
+            if (repeated > 0) {
+                cue.setLines(new ArrayList<>(lines.subList(repeated, lines.size())));
+            }
+            SubtitleCue ready = pending;
+            pending = cue;
+            return ready;
+        }
+
+        SubtitleCue flush() {
+            SubtitleCue ready = pending;
+            pending = null;
+            return ready;
+        }
+
+        // Longest run of lines that ends 'previous' and starts 'current'
+        private static int overlap(List<String> previous, List<String> current) {
+            for (int length = Math.min(previous.size(), current.size()); length > 0; length--) {
+                if (previous.subList(previous.size() - length, previous.size()).equals(current.subList(0, length))) {
+                    return length;
+                }
+            }
+            return 0;
+        }
+    }
+}
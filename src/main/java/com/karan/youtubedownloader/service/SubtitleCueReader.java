@@ -0,0 +1,338 @@
+package com.karan.youtubedownloader.service;
+
+import com.karan.youtubedownloader.model.SubtitleCue;
+import com.karan.youtubedownloader.model.SubtitleFormat;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads a WebVTT, SRT or ASS file one cue at a time, so a transcript of any
+ * length is held in memory only a cue at a time.
+ */
+abstract class SubtitleCueReader {
+
+    protected final BufferedReader in;
+
+    private SubtitleCueReader(BufferedReader in) {
+        this.in = in;
+    }
+
+    /**
+     * @throws IllegalArgumentException for a format that cannot be read
+     */
+    static SubtitleCueReader open(SubtitleFormat format, BufferedReader in) {
+        switch (format) {
+            case VTT:
+            case SRT:
+                return new BlockReader(in);
+            case ASS:
+                return new AssReader(in);
+            default:
+                throw new IllegalArgumentException("Cannot read " + format.getExtension() + " subtitles");
+        }
+    }
+
+    /**
+     * @return the next cue, or null at the end of the file
+     */
+    abstract SubtitleCue next() throws IOException;
+
+    /**
+     * True once the file turned out to hold YouTube's auto-generated, scrolling
+     * captions, which time every word with inline {@code <00:00:01.000><c>} tags.
+     * Human-authored tracks never set it.
+     */
+    boolean isRollingCaptions() {
+        return false;
+    }
+
+    /**
+     * "[HH:]MM:SS.fff" as in WebVTT, "HH:MM:SS,fff" as in SRT or "H:MM:SS.cc" as in ASS.
+     *
+     * @return the time in milliseconds, or -1 when {@code text[from, to)} is not a timestamp
+     */
+    static long parseTimestamp(CharSequence text, int from, int to) {
+        long seconds = 0;
+        long field = 0;
+        int digits = 0;
+        int i = from;
+        for (; i < to; i++) {
+            char c = text.charAt(i);
+            if (c >= '0' && c <= '9') {
+                field = field * 10 + (c - '0');
+                digits++;
+            } else if (c == ':' && digits > 0) {
+                seconds = seconds * 60 + field;
+                field = 0;
+                digits = 0;
+            } else {
+                break;
+            }
+        }
+        if (digits == 0) {
+            return -1;
+        }
+        seconds = seconds * 60 + field;
+
+        long millis = 0;
+        if (i < to && (text.charAt(i) == '.' || text.charAt(i) == ',')) {
+            int scale = 100;
+            for (i++; i < to && scale > 0; i++, scale /= 10) {
+                char c = text.charAt(i);
+                if (c < '0' || c > '9') {
+                    break;
+                }
+                millis += (c - '0') * scale;
+            }
+        }
+        return seconds * 1000 + millis;
+    }
+
+    // Drops inline markup (<c>, <i>, <00:00:01.000>, {\an8}) and resolves the entities WebVTT escapes
+    static String plainText(String line) {
+        if (line.indexOf('<') < 0 && line.indexOf('{') < 0 && line.indexOf('&') < 0) {
+            return line.strip();
+        }
+        StringBuilder text = new StringBuilder(line.length());
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (c == '<') {
+                int close = line.indexOf('>', i);
+                if (close > 0) {
+                    i = close;
+                    continue;
+                }
+            } else if (c == '{' && i + 1 < line.length() && line.charAt(i + 1) == '\\') {
+                int close = line.indexOf('}', i);
+                if (close > 0) {
+                    i = close;
+                    continue;
+                }
+            } else if (c == '&') {
+                int semicolon = line.indexOf(';', i);
+                if (semicolon > 0 && semicolon - i <= 6) {
+                    String entity = entity(line.substring(i + 1, semicolon));
+                    if (entity != null) {
+                        text.append(entity);
+                        i = semicolon;
+                        continue;
+                    }
+                }
+            }
+            text.append(c);
+        }
+        return text.toString().strip();
+    }
+
+    private static String entity(String name) {
+        switch (name) {
+            case "amp":
+                return "&";
+            case "lt":
+                return "<";
+            case "gt":
+                return ">";
+            case "nbsp":
+                return " ";
+            case "lrm":
+            case "rlm":
+                return "";
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * WebVTT and SRT: blocks separated by blank lines, each an optional
+     * identifier, a "start --> end" line and the text. Header, NOTE, STYLE and
+     * REGION blocks have no timing line and are skipped.
+     */
+    private static final class BlockReader extends SubtitleCueReader {
+
+        private boolean wordTimed;
+
+        private BlockReader(BufferedReader in) {
+            super(in);
+        }
+
+        @Override
+        boolean isRollingCaptions() {
+            return wordTimed;
+        }
+
+        @Override
+        SubtitleCue next() throws IOException {
+            String line;
+            while ((line = in.readLine()) != null) {
+                int arrow = line.indexOf("-->");
+                if (arrow < 0) {
+                    if (!line.isBlank()) {
+                        // An identifier, or a block without cues; only the former has timing next
+                        String timing = in.readLine();
+                        if (timing == null) {
+                            return null;
+                        }
+                        arrow = timing.indexOf("-->");
+                        if (arrow < 0) {
+                            skipBlock(timing);
+                            continue;
+                        }
+                        line = timing;
+                    } else {
+                        continue;
+                    }
+                }
+                SubtitleCue cue = parseTiming(line, arrow);
+                if (cue == null) {
+                    skipBlock(line);
+                    continue;
+                }
+                readText(cue.getLines());
+                return cue;
+            }
+            return null;
+        }
+
+        private SubtitleCue parseTiming(String line, int arrow) {
+            int startFrom = skipSpaces(line, 0);
+            long start = parseTimestamp(line, startFrom, arrow);
+            int endFrom = skipSpaces(line, arrow + 3);
+            // WebVTT cue settings ("align:start position:0%") follow the end time
+            int endTo = line.indexOf(' ', endFrom);
+            long end = parseTimestamp(line, endFrom, endTo < 0 ? line.length() : endTo);
+            if (start < 0 || end < 0) {
+                return null;
+            }
+            return new SubtitleCue(start, Math.max(start, end), new ArrayList<>(2));
+        }
+
+        private void readText(List<String> lines) throws IOException {
+            String line;
+            // Not isBlank: YouTube starts many cues with a line holding a single space
+            while ((line = in.readLine()) != null && !line.isEmpty()) {
+                if (!wordTimed && hasWordTiming(line)) {
+                    wordTimed = true;
+                }
+                String text = plainText(line);
+                if (!text.isEmpty()) {
+                    lines.add(text);
+                }
+            }
+        }
+
+        private void skipBlock(String current) throws IOException {
+            String line = current;
+            while (line != null && !line.isBlank()) {
+                line = in.readLine();
+            }
+        }
+
+        // "<00:00:01.000><c> word</c>"
+        private static boolean hasWordTiming(String line) {
+            int tag = line.indexOf('<');
+            while (tag >= 0 && tag + 2 < line.length()) {
+                char next = line.charAt(tag + 1);
+                if ((next >= '0' && next <= '9') || (next == 'c' && (line.charAt(tag + 2) == '>' || line.charAt(tag + 2) == '.'))) {
+                    return true;
+                }
+                tag = line.indexOf('<', tag + 1);
+            }
+            return false;
+        }
+
+        private static int skipSpaces(String line, int from) {
+            while (from < line.length() && line.charAt(from) == ' ') {
+                from++;
+            }
+            return from;
+        }
+    }
+
+    /**
+     * ASS/SSA: the Dialogue lines of the [Events] section, laid out by its
+     * Format line. Text is the last field and may itself contain commas.
+     */
+    private static final class AssReader extends SubtitleCueReader {
+
+        private boolean inEvents;
+        private int fieldCount = 10;
+        private int startField = 1;
+        private int endField = 2;
+
+        private AssReader(BufferedReader in) {
+            super(in);
+        }
+
+        @Override
+        SubtitleCue next() throws IOException {
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (line.startsWith("[")) {
+                    inEvents = line.trim().equalsIgnoreCase("[Events]");
+                } else if (inEvents && line.startsWith("Format:")) {
+                    readFormat(line.substring("Format:".length()));
+                } else if (inEvents && line.startsWith("Dialogue:")) {
+                    SubtitleCue cue = parseDialogue(line, "Dialogue:".length());
+                    if (cue != null) {
+                        return cue;
+                    }
+                }
+            }
+            return null;
+        }
+
+        private void readFormat(String format) {
+            String[] fields = format.split(",");
+            fieldCount = fields.length;
+            for (int i = 0; i < fields.length; i++) {
+                String field = fields[i].trim();
+                if (field.equalsIgnoreCase("Start")) {
+                    startField = i;
+                } else if (field.equalsIgnoreCase("End")) {
+                    endField = i;
+                }
+            }
+        }
+
+        private SubtitleCue parseDialogue(String line, int from) {
+            long start = -1;
+            long end = -1;
+            int fieldStart = from;
+            for (int field = 0; field < fieldCount - 1; field++) {
+                int comma = line.indexOf(',', fieldStart);
+                if (comma < 0) {
+                    return null;
+                }
+                if (field == startField) {
+                    start = parseTimestamp(line, skipBlank(line, fieldStart), comma);
+                } else if (field == endField) {
+                    end = parseTimestamp(line, skipBlank(line, fieldStart), comma);
+                }
+                fieldStart = comma + 1;
+            }
+            if (start < 0 || end < 0) {
+                return null;
+            }
+
+            List<String> lines = new ArrayList<>(2);
+            String text = line.substring(fieldStart).replace("\\h", " ");
+            for (String part : text.split("\\\\[Nn]")) {
+                String plain = plainText(part);
+                if (!plain.isEmpty()) {
+                    lines.add(plain);
+                }
+            }
+            return new SubtitleCue(start, Math.max(start, end), lines);
+        }
+
+        private static int skipBlank(String line, int from) {
+            while (from < line.length() && Character.isWhitespace(line.charAt(from))) {
+                from++;
+            }
+            return from;
+        }
+    }
+}
@@ -0,0 +1,204 @@
+package com.karan.youtubedownloader.service;
+
+import com.karan.youtubedownloader.model.SubtitleCue;
+import com.karan.youtubedownloader.model.SubtitleFormat;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
+
+/**
+ * Writes cues in one subtitle format as they arrive. Callers buffer the
+ * underlying writer.
+ */
+abstract class SubtitleCueWriter {
+
+    // The style ffmpeg gives SRT and WebVTT converted to ASS
+    private static final String ASS_HEADER = String.join("\n",
+            "[Script Info]",
+            "ScriptType: v4.00+",
+            "WrapStyle: 0",
+            "ScaledBorderAndShadow: yes",
+            "PlayResX: 384",
+            "PlayResY: 288",
+            "",
+            "[V4+ Styles]",
+            "Format: Name, Fontname, Fontsize, PrimaryColour, SecondaryColour, OutlineColour, BackColour, Bold, Italic, "
+                    + "Underline, StrikeOut, ScaleX, ScaleY, Spacing, Angle, BorderStyle, Outline, Shadow, Alignment, "
+                    + "MarginL, MarginR, MarginV, Encoding",
+            "Style: Default,Arial,16,&Hffffff,&Hffffff,&H0,&H0,0,0,0,0,100,100,0,0,1,1,0,2,10,10,10,0",
+            "",
+            "[Events]",
+            "Format: Layer, Start, End, Style, Name, MarginL, MarginR, MarginV, Effect, Text",
+            "");
+
+    protected final Writer out;
+    // Reused for every timing line
+    protected final StringBuilder buffer = new StringBuilder(64);
+
+    private SubtitleCueWriter(Writer out) {
+        this.out = out;
+    }
+
+    static SubtitleCueWriter open(SubtitleFormat format, Writer out) {
+        switch (format) {
+            case VTT:
+                return new VttWriter(out);
+            case SRT:
+                return new SrtWriter(out);
+            case ASS:
+                return new AssWriter(out);
+            case TXT:
+            default:
+                return new TextWriter(out);
+        }
+    }
+
+    void begin() throws IOException {
+    }
+
+    abstract void write(SubtitleCue cue) throws IOException;
+
+    void end() throws IOException {
+        out.flush();
+    }
+
+    // HH:MM:SS<separator>mmm, or H:MM:SS.cc for ASS
+    static void appendTimestamp(StringBuilder target, long millis, char separator, boolean centiseconds) {
+        long hours = millis / 3_600_000;
+        int minutes = (int) (millis / 60_000 % 60);
+        int seconds = (int) (millis / 1000 % 60);
+        int fraction = (int) (millis % 1000);
+        if (centiseconds) {
+            target.append(hours);
+        } else {
+            pad(target, hours, 2);
+        }
+        target.append(':');
+        pad(target, minutes, 2);
+        target.append(':');
+        pad(target, seconds, 2);
+        target.append(separator);
+        if (centiseconds) {
+            pad(target, fraction / 10, 2);
+        } else {
+            pad(target, fraction, 3);
+        }
+    }
+
+    private static void pad(StringBuilder target, long value, int width) {
+        for (long limit = 10, digits = 1; digits < width; digits++, limit *= 10) {
+            if (value < limit) {
+                target.append('0');
+            }
+        }
+        target.append(value);
+    }
+
+    private static final class SrtWriter extends SubtitleCueWriter {
+
+        private int index;
+
+        private SrtWriter(Writer out) {
+            super(out);
+        }
+
+        @Override
+        void write(SubtitleCue cue) throws IOException {
+            buffer.setLength(0);
+            buffer.append(++index).append('\n');
+            appendTimestamp(buffer, cue.getStartMillis(), ',', false);
+            buffer.append(" --> ");
+            appendTimestamp(buffer, cue.getEndMillis(), ',', false);
+            buffer.append('\n');
+            out.append(buffer);
+            for (String line : cue.getLines()) {
+                out.write(line);
+                out.write('\n');
+            }
+            out.write('\n');
+        }
+    }
+
+    private static final class VttWriter extends SubtitleCueWriter {
+
+        private VttWriter(Writer out) {
+            super(out);
+        }
+
+        @Override
+        void begin() throws IOException {
+            out.write("WEBVTT\n\n");
+        }
+
+        @Override
+        void write(SubtitleCue cue) throws IOException {
+            buffer.setLength(0);
+            appendTimestamp(buffer, cue.getStartMillis(), '.', false);
+            buffer.append(" --> ");
+            appendTimestamp(buffer, cue.getEndMillis(), '.', false);
+            buffer.append('\n');
+            out.append(buffer);
+            for (String line : cue.getLines()) {
+                out.write(escape(line));
+                out.write('\n');
+            }
+            out.write('\n');
+        }
+
+        private static String escape(String line) {
+            if (line.indexOf('&') < 0 && line.indexOf('<') < 0 && line.indexOf('>') < 0) {
+                return line;
+            }
+            return line.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;");
+        }
+    }
+
+    private static final class AssWriter extends SubtitleCueWriter {
+
+        private AssWriter(Writer out) {
+            super(out);
+        }
+
+        @Override
+        void begin() throws IOException {
+            out.write(ASS_HEADER);
+        }
+
+        @Override
+        void write(SubtitleCue cue) throws IOException {
+            buffer.setLength(0);
+            buffer.append("Dialogue: 0,");
+            appendTimestamp(buffer, cue.getStartMillis(), '.', true);
+            buffer.append(',');
+            appendTimestamp(buffer, cue.getEndMillis(), '.', true);
+            buffer.append(",Default,,0,0,0,,");
+            List<String> lines = cue.getLines();
+            for (int i = 0; i < lines.size(); i++) {
+                if (i > 0) {
+                    buffer.append("\\N");
+                }
+                // A brace would open an override block
+                buffer.append(lines.get(i).replace('{', '(').replace('}', ')'));
+            }
+            buffer.append('\n');
+            out.append(buffer);
+        }
+    }
+
+    // A bare transcript: the text of each cue, one line per caption line
+    private static final class TextWriter extends SubtitleCueWriter {
+
+        private TextWriter(Writer out) {
+            super(out);
+        }
+
+        @Override
+        void write(SubtitleCue cue) throws IOException {
+            for (String line : cue.getLines()) {
+                out.write(line);
+                out.write('\n');
+            }
+        }
+    }
+}
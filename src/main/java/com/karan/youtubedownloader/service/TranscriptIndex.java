@@ -0,0 +1,614 @@
+package com.karan.youtubedownloader.service;
+
+import com.karan.youtubedownloader.config.DownloaderProperties;
+import com.karan.youtubedownloader.model.SubtitleCue;
+import com.karan.youtubedownloader.model.SubtitleFormat;
+import com.karan.youtubedownloader.model.TranscriptHit;
+import com.karan.youtubedownloader.model.TranscriptSearchResult;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Full-text index over downloaded transcripts: term to video and cue, so a
+ * search reads a few postings instead of every subtitle file on disk.
+ *
+ * Transcripts are added as downloadOnlySubtitles writes them, each batch as a
+ * new immutable segment file (see {@link TranscriptSegment}). Once merge-factor
+ * segments pile up, a background thread merges the run of neighbouring
+ * segments with the fewest bytes into one, unless that run is bigger than
+ * max-merged-segment-size: a merge reads its whole run onto the heap, so
+ * segments stop growing there. The segments file lists the live
+ * segments oldest first; a transcript indexed again hides its older copy.
+ */
+@Slf4j
+@Service
+public class TranscriptIndex {
+
+    private static final String MANIFEST = "segments";
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".tix";
+    private static final int MAX_TERM_LENGTH = 64;
+    private static final int MAX_SNIPPET_LENGTH = 240;
+    // Folder indexing writes a segment per this many transcripts, or sooner once they hold this many cues
+    private static final int BATCH_SIZE = 500;
+    private static final int BATCH_CUES = 200_000;
+    // A failed merge is retried with the next write after this long, doubling up to an hour
+    private static final Duration MERGE_RETRY_DELAY = Duration.ofMinutes(1);
+    private static final Duration MAX_MERGE_RETRY_DELAY = Duration.ofHours(1);
+
+    // "Title.en-US" -> title "Title", language "en-US"
+    private static final Pattern LANGUAGE_SUFFIX = Pattern.compile("^(.+)\\.([A-Za-z]{2,3}(?:[-_][A-Za-z0-9]+)*)$");
+
+    private final DownloaderProperties.TranscriptIndex config;
+    private final SubtitleConverter subtitleConverter;
+    private final Object lock = new Object();
+    private final AtomicLong segmentIds = new AtomicLong();
+    private final AtomicBoolean merging = new AtomicBoolean();
+    // Merges failed in a row; only the merge thread writes these
+    private volatile int failedMerges;
+    private volatile long mergeRetryAt;
+    private final ExecutorService merger;
+    private volatile List<TranscriptSegment> segments = List.of();
+    private volatile Path directory;
+
+    public TranscriptIndex(DownloaderProperties properties, SubtitleConverter subtitleConverter) {
+        this.config = properties.getTranscriptIndex();
+        this.subtitleConverter = subtitleConverter;
+        CustomizableThreadFactory threads = new CustomizableThreadFactory("transcript-merge-");
+        threads.setDaemon(true);
+        this.merger = Executors.newSingleThreadExecutor(threads);
+    }
+
+    @PostConstruct
+    public void open() {
+        if (!config.isEnabled()) {
+            return;
+        }
+        try {
+            Path dir = Files.createDirectories(resolveDirectory());
+            List<TranscriptSegment> live = new ArrayList<>();
+            Set<Path> listed = new HashSet<>();
+            Path manifest = dir.resolve(MANIFEST);
+            if (Files.exists(manifest)) {
+                for (String name : Files.readAllLines(manifest, StandardCharsets.UTF_8)) {
+                    if (name.isBlank()) {
+                        continue;
+                    }
+                    Path file = dir.resolve(name.trim());
+                    listed.add(file);
+                    try {
+                        live.add(TranscriptSegment.open(file));
+                    } catch (IOException | RuntimeException e) {
+                        log.warn("⚠️ Skipping transcript index segment {}: {}", name, e.getMessage());
+                    }
+                }
+            }
+            // Left behind by a crash during a write or merge
+            try (Stream<Path> files = Files.list(dir)) {
+                for (Path file : files.collect(Collectors.toList())) {
+                    String name = file.getFileName().toString();
+                    if (name.startsWith(SEGMENT_PREFIX) || name.endsWith(".tmp")) {
+                        segmentIds.accumulateAndGet(segmentId(name), Math::max);
+                        if (!listed.contains(file)) {
+                            Files.deleteIfExists(file);
+                        }
+                    }
+                }
+            }
+            segments = List.copyOf(live);
+            directory = dir;
+            log.info("🔎 Transcript index at {}: {} transcripts in {} segments", dir,
+                    live.stream().mapToInt(TranscriptSegment::documentCount).sum(), live.size());
+            scheduleMerge();
+        } catch (IOException e) {
+            log.warn("⚠️ Transcript index disabled, could not open {}: {}", resolveDirectory(), e.getMessage());
+        }
+    }
+
+    public boolean isEnabled() {
+        return directory != null;
+    }
+
+    /**
+     * Starts a transcript for the subtitle track saved as {@code key} plus an
+     * extension; title and language come from the file name yt-dlp gave it.
+     */
+    public Transcript begin(String key, String url, String fileBaseName) {
+        Matcher matcher = LANGUAGE_SUFFIX.matcher(fileBaseName);
+        int maxCues = Math.max(1, config.getMaxCuesPerTranscript());
+        return matcher.matches()
+                ? new Transcript(key, url, matcher.group(1), matcher.group(2), maxCues)
+                : new Transcript(key, url, fileBaseName, null, maxCues);
+    }
+
+    /**
+     * Adds one transcript. Failures are logged: a download never fails because
+     * its transcript could not be indexed.
+     */
+    public void index(Transcript transcript) {
+        if (!isEnabled() || transcript.getCues().isEmpty()) {
+            return;
+        }
+        warnIfTruncated(transcript);
+        try {
+            addSegment(List.of(transcript));
+        } catch (IOException e) {
+            log.warn("⚠️ Could not index transcript {}: {}", transcript.getKey(), e.getMessage());
+        }
+    }
+
+    /**
+     * As {@link #indexFolder(Path)}, for a folder a client named: {@code path}
+     * is taken relative to {@code root} and has to stay inside it once links
+     * are followed.
+     *
+     * @throws IllegalArgumentException when the folder does not exist or lies outside {@code root}
+     * @throws IllegalStateException when the index is disabled
+     */
+    public int indexFolder(Path root, String path) throws IOException {
+        if (!isEnabled()) {
+            throw new IllegalStateException("Transcript index is disabled");
+        }
+        Path folder;
+        Path realRoot;
+        try {
+            realRoot = root.toRealPath();
+            folder = realRoot.resolve(path).normalize().toRealPath();
+        } catch (NoSuchFileException | InvalidPathException e) {
+            throw new IllegalArgumentException("Not a folder: " + path);
+        }
+        if (!folder.startsWith(realRoot)) {
+            throw new IllegalArgumentException("Only folders inside " + root + " can be indexed");
+        }
+        return indexFolder(folder);
+    }
+
+    /**
+     * Indexes every readable subtitle file under {@code folder}, for transcripts
+     * downloaded before the index existed. A track saved in several formats is
+     * read once.
+     *
+     * @return the number of transcripts indexed
+     * @throws IllegalArgumentException when the folder does not exist
+     * @throws IllegalStateException when the index is disabled
+     */
+    public int indexFolder(Path folder) throws IOException {
+        if (!isEnabled()) {
+            throw new IllegalStateException("Transcript index is disabled");
+        }
+        if (!Files.isDirectory(folder)) {
+            throw new IllegalArgumentException("Not a folder: " + folder);
+        }
+
+        List<Path> files;
+        try (Stream<Path> walk = Files.walk(folder)) {
+            files = walk.filter(Files::isRegularFile)
+                    .filter(file -> SubtitleConverter.formatOf(file).filter(SubtitleFormat::isReadable).isPresent())
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+
+        Set<String> seen = new HashSet<>();
+        List<Transcript> batch = new ArrayList<>();
+        int batchCues = 0;
+        int indexed = 0;
+        for (Path file : files) {
+            String name = file.getFileName().toString();
+            String base = name.substring(0, name.lastIndexOf('.'));
+            String key = file.resolveSibling(base).toString();
+            if (!seen.add(key)) {
+                continue;
+            }
+            Transcript transcript = begin(key, null, base);
+            try {
+                subtitleConverter.convert(file, Map.of(), transcript::add);
+            } catch (IOException | RuntimeException e) {
+                log.warn("⚠️ Could not read {}: {}", file, e.getMessage());
+                continue;
+            }
+            if (!transcript.getCues().isEmpty()) {
+                warnIfTruncated(transcript);
+                batch.add(transcript);
+                batchCues += transcript.getCues().size();
+            }
+            if (batch.size() >= BATCH_SIZE || batchCues >= BATCH_CUES) {
+                addSegment(batch);
+                indexed += batch.size();
+                batch = new ArrayList<>();
+                batchCues = 0;
+            }
+        }
+        if (!batch.isEmpty()) {
+            addSegment(batch);
+            indexed += batch.size();
+        }
+        log.info("🔎 Indexed {} transcripts from {}", indexed, folder);
+        return indexed;
+    }
+
+    /**
+     * Finds the transcripts with cues containing every word of {@code query},
+     * most matching cues first.
+     *
+     * @throws IllegalArgumentException when the query has no words
+     */
+    public List<TranscriptSearchResult> search(String query, int limit) {
+        List<String> terms = terms(query == null ? "" : query).stream().distinct().collect(Collectors.toList());
+        if (terms.isEmpty()) {
+            throw new IllegalArgumentException("Search needs at least one word");
+        }
+        List<byte[]> termBytes = terms.stream()
+                .map(term -> term.getBytes(StandardCharsets.UTF_8))
+                .collect(Collectors.toList());
+
+        List<TranscriptSegment> live = segments;
+        Map<String, TranscriptSearchResult> results = new LinkedHashMap<>();
+        Set<String> hidden = new HashSet<>();
+        // Newest first, so an older copy of a re-indexed transcript is skipped
+        for (int s = live.size() - 1; s >= 0; s--) {
+            TranscriptSegment segment = live.get(s);
+            for (int cue : segment.match(termBytes)) {
+                int document = segment.cueDocument(cue);
+                String key = segment.documentKey(document);
+                if (hidden.contains(key)) {
+                    continue;
+                }
+                TranscriptSearchResult result = results.computeIfAbsent(key, k -> TranscriptSearchResult.builder()
+                        .title(segment.documentTitle(document))
+                        .url(segment.documentUrl(document))
+                        .language(segment.documentLanguage(document))
+                        .transcriptPath(k)
+                        .hits(new ArrayList<>())
+                        .build());
+                result.setMatchingCues(result.getMatchingCues() + 1);
+                if (result.getHits().size() < config.getMaxHitsPerVideo()) {
+                    result.getHits().add(hit(segment, cue, document, result.getUrl()));
+                }
+            }
+            hidden.addAll(segment.keys());
+        }
+
+        return results.values().stream()
+                .sorted(Comparator.comparingInt(TranscriptSearchResult::getMatchingCues).reversed()
+                        .thenComparing(TranscriptSearchResult::getTitle, Comparator.nullsLast(Comparator.naturalOrder())))
+                .limit(Math.max(1, limit))
+                .collect(Collectors.toList());
+    }
+
+    public Map<String, Object> stats() {
+        List<TranscriptSegment> live = segments;
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", isEnabled());
+        stats.put("segments", live.size());
+        stats.put("transcripts", live.stream().mapToInt(TranscriptSegment::documentCount).sum());
+        stats.put("bytes", live.stream().mapToLong(TranscriptSegment::sizeBytes).sum());
+        return stats;
+    }
+
+    // The cue with its neighbours in the same transcript, for context
+    private TranscriptHit hit(TranscriptSegment segment, int cue, int document, String url) {
+        StringBuilder snippet = new StringBuilder();
+        if (cue > 0 && segment.cueDocument(cue - 1) == document) {
+            snippet.append(segment.cueText(cue - 1)).append(' ');
+        }
+        snippet.append(segment.cueText(cue));
+        if (cue + 1 < segment.cueCount() && segment.cueDocument(cue + 1) == document) {
+            snippet.append(' ').append(segment.cueText(cue + 1));
+        }
+        if (snippet.length() > MAX_SNIPPET_LENGTH) {
+            snippet.setLength(MAX_SNIPPET_LENGTH - 1);
+            snippet.append('…');
+        }
+
+        long start = segment.cueStart(cue);
+        long seconds = start / 1000;
+        return TranscriptHit.builder()
+                .startMillis(start)
+                .timestamp(seconds >= 3600
+                        ? String.format("%d:%02d:%02d", seconds / 3600, seconds / 60 % 60, seconds % 60)
+                        : String.format("%d:%02d", seconds / 60, seconds % 60))
+                .snippet(snippet.toString())
+                .link(url == null ? null : url + (url.contains("?") ? "&" : "?") + "t=" + seconds + "s")
+                .build();
+    }
+
+    private static void warnIfTruncated(Transcript transcript) {
+        if (transcript.getDroppedCues() > 0) {
+            log.warn("⚠️ Transcript {} has {} more cues than the index keeps, only the first {} are searchable",
+                    transcript.getKey(), transcript.getDroppedCues(), transcript.getCues().size());
+        }
+    }
+
+    private void addSegment(List<Transcript> transcripts) throws IOException {
+        // Within one segment the last copy of a key wins
+        Map<String, Transcript> unique = new LinkedHashMap<>();
+        for (Transcript transcript : transcripts) {
+            unique.remove(transcript.getKey());
+            unique.put(transcript.getKey(), transcript);
+        }
+        TranscriptSegment segment = writeSegment(new ArrayList<>(unique.values()));
+        synchronized (lock) {
+            List<TranscriptSegment> live = new ArrayList<>(segments);
+            live.add(segment);
+            publish(live);
+        }
+        scheduleMerge();
+    }
+
+    private TranscriptSegment writeSegment(List<Transcript> transcripts) throws IOException {
+        String name = SEGMENT_PREFIX + segmentIds.incrementAndGet() + SEGMENT_SUFFIX;
+        Path temp = directory.resolve(name + ".tmp");
+        Path file = directory.resolve(name);
+        try {
+            TranscriptSegment.write(temp, transcripts);
+            move(temp, file);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        return TranscriptSegment.open(file);
+    }
+
+    // Caller holds the lock
+    private void publish(List<TranscriptSegment> live) throws IOException {
+        Path temp = directory.resolve(MANIFEST + ".tmp");
+        String names = live.stream()
+                .map(segment -> segment.file().getFileName().toString() + "\n")
+                .collect(Collectors.joining());
+        try (FileChannel channel = FileChannel.open(temp,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer bytes = ByteBuffer.wrap(names.getBytes(StandardCharsets.UTF_8));
+            while (bytes.hasRemaining()) {
+                channel.write(bytes);
+            }
+            channel.force(true);
+        }
+        move(temp, directory.resolve(MANIFEST));
+        segments = List.copyOf(live);
+    }
+
+    private void scheduleMerge() {
+        if (failedMerges > 0 && System.nanoTime() - mergeRetryAt < 0) {
+            return;
+        }
+        if (segments.size() >= config.getMergeFactor() && merging.compareAndSet(false, true)) {
+            try {
+                merger.execute(this::merge);
+            } catch (RuntimeException e) {
+                merging.set(false);
+            }
+        }
+    }
+
+    private void merge() {
+        List<TranscriptSegment> replaced = List.of();
+        boolean succeeded = false;
+        try {
+            List<TranscriptSegment> live = segments;
+            int factor = config.getMergeFactor();
+            if (live.size() < factor) {
+                return;
+            }
+            // Neighbours only, so the order that lets newer copies hide older ones holds
+            int from = -1;
+            long smallest = config.getMaxMergedSegmentSize().toBytes();
+            for (int i = 0; i + factor <= live.size(); i++) {
+                long size = live.subList(i, i + factor).stream().mapToLong(TranscriptSegment::sizeBytes).sum();
+                if (size <= smallest) {
+                    smallest = size;
+                    from = i;
+                }
+            }
+            if (from < 0) {
+                // Every run is already too big to merge; new segments make smaller runs again
+                return;
+            }
+            List<TranscriptSegment> window = List.copyOf(live.subList(from, from + factor));
+            Set<String> newer = new HashSet<>();
+            live.subList(from + factor, live.size()).forEach(segment -> newer.addAll(segment.keys()));
+
+            Map<String, Transcript> merged = new LinkedHashMap<>();
+            for (TranscriptSegment segment : window) {
+                for (Transcript transcript : segment.documents()) {
+                    merged.remove(transcript.getKey());
+                    if (!newer.contains(transcript.getKey())) {
+                        merged.put(transcript.getKey(), transcript);
+                    }
+                }
+            }
+            TranscriptSegment result = writeSegment(new ArrayList<>(merged.values()));
+
+            synchronized (lock) {
+                // Segments are only ever appended meanwhile, so the window is still in place
+                List<TranscriptSegment> current = new ArrayList<>(segments);
+                int at = current.indexOf(window.get(0));
+                current.subList(at, at + factor).clear();
+                current.add(at, result);
+                publish(current);
+            }
+            replaced = window;
+            succeeded = true;
+            failedMerges = 0;
+            log.info("🔎 Merged {} transcript index segments into {} ({} transcripts)",
+                    factor, result.file().getFileName(), result.documentCount());
+        } catch (IOException | RuntimeException e) {
+            // Retrying straight away would only rewrite the same window until whatever broke it goes away
+            Duration delay = MERGE_RETRY_DELAY.multipliedBy(1L << Math.min(failedMerges, 6));
+            delay = delay.compareTo(MAX_MERGE_RETRY_DELAY) > 0 ? MAX_MERGE_RETRY_DELAY : delay;
+            failedMerges++;
+            mergeRetryAt = System.nanoTime() + delay.toNanos();
+            log.warn("⚠️ Transcript index merge failed, retrying in {} min: {}", delay.toMinutes(), e.getMessage());
+        } finally {
+            merging.set(false);
+        }
+
+        for (TranscriptSegment segment : replaced) {
+            try {
+                // Searches still reading it keep their mapping; on Windows the file goes at the next start
+                Files.deleteIfExists(segment.file());
+            } catch (IOException e) {
+                log.debug("Could not delete {}: {}", segment.file(), e.getMessage());
+            }
+        }
+        if (succeeded) {
+            // More segments may have piled up meanwhile
+            scheduleMerge();
+        }
+    }
+
+    private Path resolveDirectory() {
+        if (config.getDirectory() != null && !config.getDirectory().isBlank()) {
+            return Path.of(config.getDirectory().trim());
+        }
+        return Path.of(System.getProperty("user.home"), ".youtube-downloader", "transcript-index");
+    }
+
+    private static long segmentId(String name) {
+        String digits = name.replaceAll("\\D", "");
+        try {
+            return digits.isEmpty() ? 0 : Long.parseLong(digits);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private static void move(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Lower-cased runs of letters, digits and combining marks (which scripts
+     * such as Devanagari need inside words). Apostrophes inside a word are
+     * dropped, so "don't" and "dont" find each other.
+     */
+    static List<String> terms(String text) {
+        List<String> terms = new ArrayList<>();
+        StringBuilder term = new StringBuilder();
+        for (int i = 0; i < text.length(); ) {
+            int codePoint = text.codePointAt(i);
+            i += Character.charCount(codePoint);
+            if (isWordCharacter(codePoint)) {
+                term.appendCodePoint(Character.toLowerCase(codePoint));
+            } else if ((codePoint == '\'' || codePoint == '’') && term.length() > 0) {
+                continue;
+            } else {
+                addTerm(terms, term);
+            }
+        }
+        addTerm(terms, term);
+        return terms;
+    }
+
+    private static boolean isWordCharacter(int codePoint) {
+        if (Character.isLetterOrDigit(codePoint)) {
+            return true;
+        }
+        int type = Character.getType(codePoint);
+        return type == Character.NON_SPACING_MARK || type == Character.COMBINING_SPACING_MARK;
+    }
+
+    private static void addTerm(List<String> terms, StringBuilder term) {
+        if (term.length() > 0 && term.length() <= MAX_TERM_LENGTH) {
+            terms.add(term.toString());
+        }
+        term.setLength(0);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        merger.shutdownNow();
+    }
+
+    /**
+     * The cues of one subtitle track, collected while it is converted. Holds at
+     * most max-cues-per-transcript of them; the rest are only counted.
+     */
+    public static final class Transcript {
+        private final String key;
+        private final String url;
+        private final String title;
+        private final String language;
+        private final int maxCues;
+        private final List<SubtitleCue> cues = new ArrayList<>();
+        private int droppedCues;
+
+        // Read back from a segment, which only ever holds what was kept the first time
+        Transcript(String key, String url, String title, String language) {
+            this(key, url, title, language, Integer.MAX_VALUE);
+        }
+
+        Transcript(String key, String url, String title, String language, int maxCues) {
+            this.key = key;
+            this.url = url;
+            this.title = title;
+            this.language = language;
+            this.maxCues = maxCues;
+        }
+
+        public void add(SubtitleCue cue) {
+            if (cues.size() < maxCues) {
+                cues.add(cue);
+            } else {
+                droppedCues++;
+            }
+        }
+
+        public String getKey() {
+            return key;
+        }
+
+        public String getUrl() {
+            return url;
+        }
+
+        public String getTitle() {
+            return title;
+        }
+
+        public String getLanguage() {
+            return language;
+        }
+
+        public List<SubtitleCue> getCues() {
+            return cues;
+        }
+
+        public int getDroppedCues() {
+            return droppedCues;
+        }
+    }
+}
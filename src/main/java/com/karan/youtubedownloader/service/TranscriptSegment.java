@@ -0,0 +1,462 @@
+package com.karan.youtubedownloader.service;
+
+import com.karan.youtubedownloader.model.SubtitleCue;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * One immutable file of the transcript index, read through a memory map so a
+ * search touches only the pages of the terms and cues it needs.
+ *
+ * Layout, big-endian, every offset relative to the start of the file:
+ * <pre>
+ * header     magic, version, document/cue/term counts, the offset of each section below
+ * documents  16 bytes each: key, url, title, language as offsets into strings (-1 for none)
+ * cues       20 bytes each: start ms, end ms, document, text offset, text length
+ * terms      16 bytes each, in unsigned UTF-8 order: term offset, term length, postings offset, cue count
+ * term bytes UTF-8 of every term back to back
+ * postings   per term, its cue numbers in ascending order as varint gaps
+ * text       UTF-8 of every cue
+ * strings    int length + UTF-8, for the document fields
+ * </pre>
+ */
+final class TranscriptSegment {
+
+    private static final int MAGIC = 0x54495831; // "TIX1"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 12 * Integer.BYTES;
+    private static final int DOCUMENT_BYTES = 16;
+    private static final int CUE_BYTES = 20;
+    private static final int TERM_BYTES = 16;
+
+    private final Path file;
+    private final MappedByteBuffer map;
+    private final int documentCount;
+    private final int cueCount;
+    private final int termCount;
+    private final int documentsAt;
+    private final int cuesAt;
+    private final int termsAt;
+    private final int termBytesAt;
+    private final int postingsAt;
+    private final int textAt;
+    private final int stringsAt;
+    private final Set<String> keys;
+
+    private TranscriptSegment(Path file, MappedByteBuffer map) throws IOException {
+        this.file = file;
+        this.map = map;
+        if (map.capacity() < HEADER_BYTES || map.getInt(0) != MAGIC || map.getInt(4) != VERSION) {
+            throw new IOException(file.getFileName() + " is not a transcript index segment");
+        }
+        documentCount = map.getInt(8);
+        cueCount = map.getInt(12);
+        termCount = map.getInt(16);
+        documentsAt = map.getInt(20);
+        cuesAt = map.getInt(24);
+        termsAt = map.getInt(28);
+        termBytesAt = map.getInt(32);
+        postingsAt = map.getInt(36);
+        textAt = map.getInt(40);
+        stringsAt = map.getInt(44);
+        checkLayout();
+
+        Set<String> documentKeys = new HashSet<>();
+        try {
+            for (int document = 0; document < documentCount; document++) {
+                documentKeys.add(documentKey(document));
+                // The strings come last in the file, so reading them all shows it was written to the end
+                documentUrl(document);
+                documentTitle(document);
+                documentLanguage(document);
+            }
+        } catch (IndexOutOfBoundsException | IllegalArgumentException | NegativeArraySizeException e) {
+            throw new IOException(file.getFileName() + " is truncated or damaged");
+        }
+        keys = Set.copyOf(documentKeys);
+    }
+
+    // Every section where the header says and inside the file, so a cut-off file fails here rather than in a search
+    private void checkLayout() throws IOException {
+        long capacity = map.capacity();
+        boolean valid = documentCount >= 0 && cueCount >= 0 && termCount >= 0
+                && documentsAt == HEADER_BYTES
+                && cuesAt == documentsAt + (long) documentCount * DOCUMENT_BYTES
+                && termsAt == cuesAt + (long) cueCount * CUE_BYTES
+                && termBytesAt == termsAt + (long) termCount * TERM_BYTES
+                && termBytesAt <= postingsAt && postingsAt <= textAt && textAt <= stringsAt && stringsAt <= capacity;
+        if (valid && cueCount > 0) {
+            int last = cuesAt + (cueCount - 1) * CUE_BYTES;
+            valid = (long) textAt + map.getInt(last + 12) + map.getInt(last + 16) <= stringsAt;
+        }
+        if (!valid) {
+            throw new IOException(file.getFileName() + " is truncated or damaged");
+        }
+    }
+
+    static TranscriptSegment open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            // The mapping stays valid after the channel is closed
+            return new TranscriptSegment(file, channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    Path file() {
+        return file;
+    }
+
+    long sizeBytes() {
+        return map.capacity();
+    }
+
+    int documentCount() {
+        return documentCount;
+    }
+
+    // Keys of every transcript in this segment; a newer segment's copy of a key hides this one
+    Set<String> keys() {
+        return keys;
+    }
+
+    /**
+     * @return the cues containing every one of {@code terms}, in ascending order
+     */
+    int[] match(List<byte[]> terms) {
+        List<int[]> postings = new ArrayList<>(terms.size());
+        for (byte[] term : terms) {
+            int entry = findTerm(term);
+            if (entry < 0) {
+                return new int[0];
+            }
+            postings.add(readPostings(entry));
+        }
+        // Rarest first, so every step only narrows an already short list
+        postings.sort((a, b) -> Integer.compare(a.length, b.length));
+        int[] matches = postings.get(0);
+        for (int i = 1; i < postings.size() && matches.length > 0; i++) {
+            matches = intersect(matches, postings.get(i));
+        }
+        return matches;
+    }
+
+    int cueDocument(int cue) {
+        return map.getInt(cuesAt + cue * CUE_BYTES + 8);
+    }
+
+    long cueStart(int cue) {
+        return map.getInt(cuesAt + cue * CUE_BYTES) & 0xFFFFFFFFL;
+    }
+
+    String cueText(int cue) {
+        int at = cuesAt + cue * CUE_BYTES;
+        return text(textAt + map.getInt(at + 12), map.getInt(at + 16));
+    }
+
+    int cueCount() {
+        return cueCount;
+    }
+
+    String documentKey(int document) {
+        return documentField(document, 0);
+    }
+
+    String documentUrl(int document) {
+        return documentField(document, 4);
+    }
+
+    String documentTitle(int document) {
+        return documentField(document, 8);
+    }
+
+    String documentLanguage(int document) {
+        return documentField(document, 12);
+    }
+
+    /**
+     * Reads the whole segment back, for merging it with others.
+     */
+    List<TranscriptIndex.Transcript> documents() {
+        List<TranscriptIndex.Transcript> documents = new ArrayList<>(documentCount);
+        for (int document = 0; document < documentCount; document++) {
+            documents.add(new TranscriptIndex.Transcript(documentKey(document), documentUrl(document),
+                    documentTitle(document), documentLanguage(document)));
+        }
+        for (int cue = 0; cue < cueCount; cue++) {
+            int at = cuesAt + cue * CUE_BYTES;
+            long start = map.getInt(at) & 0xFFFFFFFFL;
+            long end = map.getInt(at + 4) & 0xFFFFFFFFL;
+            documents.get(cueDocument(cue)).add(new SubtitleCue(start, end, List.of(cueText(cue))));
+        }
+        return documents;
+    }
+
+    private String documentField(int document, int field) {
+        int offset = map.getInt(documentsAt + document * DOCUMENT_BYTES + field);
+        if (offset < 0) {
+            return null;
+        }
+        int at = stringsAt + offset;
+        return text(at + Integer.BYTES, map.getInt(at));
+    }
+
+    private String text(int at, int length) {
+        byte[] bytes = new byte[length];
+        map.get(at, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    // Binary search over the sorted term table; -1 when the term is not in this segment
+    private int findTerm(byte[] term) {
+        int low = 0;
+        int high = termCount - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int compared = compareTerm(middle, term);
+            if (compared < 0) {
+                low = middle + 1;
+            } else if (compared > 0) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        return -1;
+    }
+
+    private int compareTerm(int entry, byte[] term) {
+        int at = termsAt + entry * TERM_BYTES;
+        int offset = termBytesAt + map.getInt(at);
+        int length = map.getInt(at + 4);
+        int common = Math.min(length, term.length);
+        for (int i = 0; i < common; i++) {
+            int compared = Integer.compare(map.get(offset + i) & 0xFF, term[i] & 0xFF);
+            if (compared != 0) {
+                return compared;
+            }
+        }
+        return Integer.compare(length, term.length);
+    }
+
+    private int[] readPostings(int entry) {
+        int at = termsAt + entry * TERM_BYTES;
+        int position = postingsAt + map.getInt(at + 8);
+        int[] cues = new int[map.getInt(at + 12)];
+        int cue = 0;
+        for (int i = 0; i < cues.length; i++) {
+            int gap = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = map.get(position++);
+                gap |= (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            cue += gap;
+            cues[i] = cue;
+        }
+        return cues;
+    }
+
+    private static int[] intersect(int[] a, int[] b) {
+        int[] common = new int[Math.min(a.length, b.length)];
+        int count = 0;
+        for (int i = 0, j = 0; i < a.length && j < b.length; ) {
+            if (a[i] < b[j]) {
+                i++;
+            } else if (a[i] > b[j]) {
+                j++;
+            } else {
+                common[count++] = a[i];
+                i++;
+                j++;
+            }
+        }
+        return Arrays.copyOf(common, count);
+    }
+
+    /**
+     * Writes {@code transcripts} as a new segment. Each transcript must have a
+     * distinct key.
+     */
+    static void write(Path file, List<TranscriptIndex.Transcript> transcripts) throws IOException {
+        ByteArrayOutputStream documents = new ByteArrayOutputStream();
+        ByteArrayOutputStream cues = new ByteArrayOutputStream();
+        ByteArrayOutputStream text = new ByteArrayOutputStream();
+        StringSection strings = new StringSection();
+        Map<String, IntList> postings = new HashMap<>();
+
+        DataOutputStream documentTable = new DataOutputStream(documents);
+        DataOutputStream cueTable = new DataOutputStream(cues);
+        int cue = 0;
+        for (int document = 0; document < transcripts.size(); document++) {
+            TranscriptIndex.Transcript transcript = transcripts.get(document);
+            documentTable.writeInt(strings.add(transcript.getKey()));
+            documentTable.writeInt(strings.add(transcript.getUrl()));
+            documentTable.writeInt(strings.add(transcript.getTitle()));
+            documentTable.writeInt(strings.add(transcript.getLanguage()));
+
+            for (SubtitleCue subtitle : transcript.getCues()) {
+                String line = String.join(" ", subtitle.getLines());
+                byte[] bytes = line.getBytes(StandardCharsets.UTF_8);
+                cueTable.writeInt(millis(subtitle.getStartMillis()));
+                cueTable.writeInt(millis(subtitle.getEndMillis()));
+                cueTable.writeInt(document);
+                cueTable.writeInt(text.size());
+                cueTable.writeInt(bytes.length);
+                text.write(bytes);
+
+                for (String term : TranscriptIndex.terms(line)) {
+                    IntList cuesWithTerm = postings.computeIfAbsent(term, key -> new IntList());
+                    // A term said twice in one cue is listed once
+                    if (cuesWithTerm.isEmpty() || cuesWithTerm.last() != cue) {
+                        cuesWithTerm.add(cue);
+                    }
+                }
+                cue++;
+            }
+        }
+
+        List<byte[]> sortedTerms = new ArrayList<>(postings.size());
+        Map<byte[], IntList> postingsByBytes = new HashMap<>();
+        for (Map.Entry<String, IntList> entry : postings.entrySet()) {
+            byte[] term = entry.getKey().getBytes(StandardCharsets.UTF_8);
+            sortedTerms.add(term);
+            postingsByBytes.put(term, entry.getValue());
+        }
+        sortedTerms.sort(Arrays::compareUnsigned);
+
+        ByteArrayOutputStream terms = new ByteArrayOutputStream();
+        ByteArrayOutputStream termBytes = new ByteArrayOutputStream();
+        ByteArrayOutputStream postingBytes = new ByteArrayOutputStream();
+        DataOutputStream termTable = new DataOutputStream(terms);
+        for (byte[] term : sortedTerms) {
+            IntList cuesWithTerm = postingsByBytes.get(term);
+            termTable.writeInt(termBytes.size());
+            termTable.writeInt(term.length);
+            termTable.writeInt(postingBytes.size());
+            termTable.writeInt(cuesWithTerm.size());
+            termBytes.write(term);
+            int previous = 0;
+            for (int i = 0; i < cuesWithTerm.size(); i++) {
+                writeVarint(postingBytes, cuesWithTerm.get(i) - previous);
+                previous = cuesWithTerm.get(i);
+            }
+        }
+
+        long documentsAt = HEADER_BYTES;
+        long cuesAt = documentsAt + documents.size();
+        long termsAt = cuesAt + cues.size();
+        long termBytesAt = termsAt + terms.size();
+        long postingsAt = termBytesAt + termBytes.size();
+        long textAt = postingsAt + postingBytes.size();
+        long stringsAt = textAt + text.size();
+        if (stringsAt + strings.size() > Integer.MAX_VALUE) {
+            throw new IOException("Transcript index segment would exceed 2 GB");
+        }
+
+        try (FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(transcripts.size());
+            out.writeInt(cue);
+            out.writeInt(sortedTerms.size());
+            for (long offset : new long[]{documentsAt, cuesAt, termsAt, termBytesAt, postingsAt, textAt, stringsAt}) {
+                out.writeInt((int) offset);
+            }
+            documents.writeTo(out);
+            cues.writeTo(out);
+            terms.writeTo(out);
+            termBytes.writeTo(out);
+            postingBytes.writeTo(out);
+            text.writeTo(out);
+            strings.writeTo(out);
+            out.flush();
+            // On disk before the rename and the manifest make it part of the index
+            channel.force(true);
+        }
+    }
+
+    // Cue times are stored as unsigned ints, good for over a thousand hours
+    private static int millis(long millis) {
+        return (int) Math.min(Math.max(millis, 0), 0xFFFFFFFFL);
+    }
+
+    private static void writeVarint(ByteArrayOutputStream out, int value) {
+        while ((value & ~0x7F) != 0) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    private static final class StringSection {
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        private final DataOutputStream out = new DataOutputStream(bytes);
+
+        int add(String value) throws IOException {
+            if (value == null) {
+                return -1;
+            }
+            int offset = bytes.size();
+            byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(utf8.length);
+            out.write(utf8);
+            return offset;
+        }
+
+        int size() {
+            return bytes.size();
+        }
+
+        void writeTo(OutputStream target) throws IOException {
+            bytes.writeTo(target);
+        }
+    }
+
+    private static final class IntList {
+        private int[] values = new int[4];
+        private int size;
+
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        int get(int index) {
+            return values[index];
+        }
+
+        int last() {
+            return values[size - 1];
+        }
+
+        int size() {
+            return size;
+        }
+
+        boolean isEmpty() {
+            return size == 0;
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package com.karan.youtubedownloader.service;
+
+import com.karan.youtubedownloader.config.DownloaderProperties;
+import com.karan.youtubedownloader.model.TransferOptions;
+import com.karan.youtubedownloader.model.VideoFormat;
+import com.karan.youtubedownloader.model.VideoMetadata;
+import com.karan.youtubedownloader.process.ProcessResult;
+import com.karan.youtubedownloader.process.ProcessRunner;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Chooses how yt-dlp fetches the bytes of a download. Fragmented formats
+ * (DASH, HLS) get parallel fragment downloads with -N; large single-file
+ * formats go through aria2c with several connections when it is installed.
+ */
+@Slf4j
+@Component
+public class TransferPlanner {
+
+    private static final Pattern QUALITY_HEIGHT = Pattern.compile("(\\d{3,4})p");
+
+    private final ProcessRunner processRunner;
+    private final MetadataCache metadataCache;
+    private final DownloaderProperties properties;
+    private volatile Boolean aria2cAvailable;
+
+    public TransferPlanner(ProcessRunner processRunner, MetadataCache metadataCache, DownloaderProperties properties) {
+        this.processRunner = processRunner;
+        this.metadataCache = metadataCache;
+        this.properties = properties;
+    }
+
+    /**
+     * @param formatId exact format id, or null when {@code quality} decides
+     * @param audioOnly whether only an audio stream is downloaded
+     * @return yt-dlp arguments to add before the URL
+     */
+    public List<String> plan(String url, String formatId, String quality, boolean audioOnly, TransferOptions options) {
+        DownloaderProperties.Transfer config = properties.getTransfer();
+        TransferOptions requested = options != null ? options : new TransferOptions();
+        String downloader = requested.getExternalDownloader() != null
+                ? requested.getExternalDownloader().toLowerCase(Locale.ROOT) : "auto";
+
+        List<String> args = new ArrayList<>();
+        int fragments = clamp(requested.getConcurrentFragments(), config.getDefaultConcurrentFragments(),
+                config.getMaxConcurrentFragments());
+        if (fragments > 1) {
+            args.add("--concurrent-fragments");
+            args.add(Integer.toString(fragments));
+        }
+
+        if ("native".equals(downloader)) {
+            return args;
+        }
+        Optional<VideoFormat> format = "auto".equals(downloader) ? expectedFormat(url, formatId, quality, audioOnly) : Optional.empty();
+        boolean wantAria2c = "aria2c".equals(downloader) || format.map(this::suitsAria2c).orElse(false);
+        if (wantAria2c && isAria2cAvailable()) {
+            int connections = clamp(requested.getConnections(), config.getDefaultConnections(), config.getMaxConnections());
+            args.add("--downloader");
+            args.add(config.getAria2cExecutable());
+            args.add("--downloader-args");
+            args.add(String.format("aria2c:-x %1$d -s %1$d -k 1M --summary-interval=0", connections));
+        }
+        return args;
+    }
+
+    // Native -N already parallelises fragments; aria2c pays off for big files fetched in one piece
+    private boolean suitsAria2c(VideoFormat format) {
+        String protocol = format.getProtocol() != null ? format.getProtocol() : "";
+        boolean singleFile = protocol.startsWith("http") && !protocol.contains("dash");
+        return singleFile && format.getFilesize() != null
+                && format.getFilesize() >= properties.getTransfer().getAria2cMinFileSize().toBytes();
+    }
+
+    /**
+     * Best guess at the format yt-dlp will pick, from the cached metadata only;
+     * a lookup that is not cached yet is not worth a probe here.
+     */
+    private Optional<VideoFormat> expectedFormat(String url, String formatId, String quality, boolean audioOnly) {
+        List<VideoMetadata> metadata = metadataCache.getIfPresent(url);
+        if (metadata == null || metadata.isEmpty() || metadata.get(0).getFormats() == null) {
+            return Optional.empty();
+        }
+        if (formatId != null && !formatId.isBlank()) {
+            return metadata.get(0).findFormat(formatId);
+        }
+
+        int maxHeight = maxHeight(quality);
+        return metadata.get(0).getFormats().stream()
+                .filter(f -> audioOnly ? f.isHasAudio() && !f.isHasVideo()
+                        : f.isHasVideo() && (f.getHeight() == null || f.getHeight() <= maxHeight))
+                .max(Comparator.comparing((VideoFormat f) -> f.getHeight() != null ? f.getHeight() : 0)
+                        .thenComparing(f -> f.getBitrateKbps() != null ? f.getBitrateKbps() : 0.0));
+    }
+
+    private boolean isAria2cAvailable() {
+        Boolean available = aria2cAvailable;
+        if (available == null) {
+            available = probeAria2c();
+            aria2cAvailable = available;
+        }
+        return available;
+    }
+
+    private boolean probeAria2c() {
+        try {
+            ProcessResult result = processRunner.run(List.of(properties.getTransfer().getAria2cExecutable(), "--version"),
+                    Duration.ofSeconds(5), line -> { }, line -> { });
+            if (result.isSuccess()) {
+                log.info("⚡ aria2c found, large single-file downloads will use it");
+                return true;
+            }
+        } catch (Exception e) {
+            log.debug("aria2c probe failed: {}", e.getMessage());
+        }
+        log.info("aria2c not available, using yt-dlp's native downloader");
+        return false;
+    }
+
+    private static int clamp(Integer requested, int defaultValue, int max) {
+        int value = requested != null ? requested : defaultValue;
+        return Math.max(1, Math.min(value, max));
+    }
+
+    // Mirrors YouTubeService's quality labels, where no quality means 720p
+    private static int maxHeight(String quality) {
+        if (quality == null) {
+            return 720;
+        }
+        Matcher height = QUALITY_HEIGHT.matcher(quality.toLowerCase(Locale.ROOT));
+        if (height.matches()) {
+            return Integer.parseInt(height.group(1));
+        }
+        return "worst".equalsIgnoreCase(quality) ? 0 : Integer.MAX_VALUE;
+    }
+}
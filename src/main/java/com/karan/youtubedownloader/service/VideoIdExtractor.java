@@ -0,0 +1,38 @@
+package com.karan.youtubedownloader.service;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Reduces the many shapes of a YouTube URL (watch, youtu.be, shorts, embed,
+ * extra query parameters) to the 11 character video id.
+ */
+public final class VideoIdExtractor {
+
+    private static final Pattern VIDEO_ID = Pattern.compile(
+            "(?:youtube\\.com/(?:watch\\?(?:.*&)?v=|shorts/|embed/|live/|v/)|youtu\\.be/)([A-Za-z0-9_-]{11})");
+
+    private VideoIdExtractor() {
+    }
+
+    /**
+     * @return the video id, or the trimmed URL itself when it is not a recognised video URL
+     */
+    public static String canonicalKey(String url) {
+        String cleaned = clean(url);
+        Matcher matcher = VIDEO_ID.matcher(cleaned);
+        return matcher.find() ? matcher.group(1) : cleaned;
+    }
+
+    public static String clean(String url) {
+        if (url == null) {
+            return "";
+        }
+        String cleaned = url.trim();
+        // The UI posts the URL as a JSON string, so it can arrive quoted
+        if (cleaned.length() >= 2 && cleaned.startsWith("\"") && cleaned.endsWith("\"")) {
+            cleaned = cleaned.substring(1, cleaned.length() - 1).trim();
+        }
+        return cleaned;
+    }
+}
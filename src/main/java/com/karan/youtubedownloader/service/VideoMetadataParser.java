@@ -0,0 +1,405 @@
+package com.karan.youtubedownloader.service;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.karan.youtubedownloader.model.PlaylistEntry;
+import com.karan.youtubedownloader.model.SubtitleInfo;
+import com.karan.youtubedownloader.model.VideoFormat;
+import com.karan.youtubedownloader.model.VideoMetadata;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+/**
+ * Pulls the fields VideoMetadata needs straight out of yt-dlp's --dump-json
+ * output with a streaming parser. Large subtrees we never read (format
+ * fragments, http_headers, heatmap, chapters, requested_formats) are skipped
+ * token by token instead of being materialised as a JsonNode tree.
+ */
+@Slf4j
+@Component
+public class VideoMetadataParser {
+
+    private final JsonFactory jsonFactory = new JsonFactory();
+
+    /**
+     * Parses every top-level JSON object in the stream (yt-dlp prints one per video).
+     */
+    public List<VideoMetadata> parse(InputStream stream) throws IOException {
+        List<VideoMetadata> videos = new ArrayList<>();
+        try (JsonParser parser = jsonFactory.createParser(stream)) {
+            JsonToken token;
+            while ((token = parser.nextToken()) != null) {
+                if (token == JsonToken.START_OBJECT) {
+                    videos.add(parseVideo(parser));
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        } catch (JsonProcessingException e) {
+            log.warn("⚠️ Could not parse video info: {}", e.getOriginalMessage());
+        }
+        return videos;
+    }
+
+    /**
+     * Parses --flat-playlist output, handing each entry over as soon as its line arrives
+     * so downloads can start while a long playlist is still being enumerated.
+     */
+    public void parseFlatEntries(InputStream stream, Consumer<PlaylistEntry> entryConsumer) throws IOException {
+        int index = 0;
+        try (JsonParser parser = jsonFactory.createParser(stream)) {
+            JsonToken token;
+            while ((token = parser.nextToken()) != null) {
+                if (token != JsonToken.START_OBJECT) {
+                    parser.skipChildren();
+                    continue;
+                }
+                PlaylistEntry entry = parseFlatEntry(parser, ++index);
+                if (entry.getUrl() != null) {
+                    entryConsumer.accept(entry);
+                }
+            }
+        } catch (JsonProcessingException e) {
+            log.warn("⚠️ Could not parse playlist entry: {}", e.getOriginalMessage());
+        }
+    }
+
+    private PlaylistEntry parseFlatEntry(JsonParser parser, int index) throws IOException {
+        PlaylistEntry.PlaylistEntryBuilder entry = PlaylistEntry.builder().index(index);
+        String videoId = null;
+        String url = null;
+
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            parser.nextToken();
+
+            switch (field) {
+                case "id":
+                    videoId = text(parser);
+                    break;
+                case "url":
+                    url = text(parser);
+                    break;
+                case "title":
+                    entry.title(text(parser));
+                    break;
+                case "duration":
+                    Double duration = doubleValue(parser);
+                    entry.durationSeconds(duration != null ? duration.intValue() : null);
+                    break;
+                case "playlist_index":
+                    Integer playlistIndex = intValue(parser);
+                    if (playlistIndex != null) {
+                        entry.index(playlistIndex);
+                    }
+                    break;
+                default:
+                    parser.skipChildren();
+            }
+        }
+
+        // Some extractors give only the id in "url"
+        if ((url == null || !url.startsWith("http")) && videoId != null) {
+            url = "https://www.youtube.com/watch?v=" + videoId;
+        }
+        return entry.videoId(videoId).url(url).build();
+    }
+
+    private VideoMetadata parseVideo(JsonParser parser) throws IOException {
+        VideoMetadata.VideoMetadataBuilder video = VideoMetadata.builder()
+                .title("Unknown Title")
+                .url("")
+                .thumbnail("");
+        int durationSeconds = 0;
+        List<VideoFormat> formats = new ArrayList<>();
+        List<String> thumbnails = new ArrayList<>();
+        List<SubtitleInfo> subtitles = new ArrayList<>();
+        List<SubtitleInfo> automaticCaptions = new ArrayList<>();
+
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            parser.nextToken();
+
+            switch (field) {
+                case "id":
+                    video.videoId(text(parser));
+                    break;
+                case "title":
+                    video.title(textOrDefault(parser, "Unknown Title"));
+                    break;
+                case "webpage_url":
+                    video.url(textOrDefault(parser, ""));
+                    break;
+                case "language":
+                    video.language(text(parser));
+                    break;
+                case "thumbnail":
+                    video.thumbnail(textOrDefault(parser, ""));
+                    break;
+                case "duration":
+                    Double duration = doubleValue(parser);
+                    durationSeconds = duration != null ? duration.intValue() : 0;
+                    break;
+                case "formats":
+                    parseFormats(parser, formats);
+                    break;
+                case "thumbnails":
+                    parseThumbnails(parser, thumbnails);
+                    break;
+                case "subtitles":
+                    parseSubtitles(parser, subtitles, false);
+                    break;
+                case "automatic_captions":
+                    parseSubtitles(parser, automaticCaptions, true);
+                    break;
+                default:
+                    parser.skipChildren();
+            }
+        }
+
+        return video
+                .durationSeconds(durationSeconds)
+                .duration(formatDuration(durationSeconds))
+                .formats(formats)
+                .availableQualities(extractQualities(formats))
+                .thumbnails(thumbnails)
+                .subtitles(subtitles)
+                .automaticCaptions(automaticCaptions)
+                .build();
+    }
+
+    private void parseFormats(JsonParser parser, List<VideoFormat> formats) throws IOException {
+        if (parser.currentToken() != JsonToken.START_ARRAY) {
+            parser.skipChildren();
+            return;
+        }
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+            if (parser.currentToken() != JsonToken.START_OBJECT) {
+                parser.skipChildren();
+                continue;
+            }
+            VideoFormat format = parseFormat(parser);
+            // Storyboards are thumbnail sprites, not downloadable media
+            if (!"mhtml".equals(format.getExt()) && !"storyboard".equals(format.getNote())) {
+                formats.add(format);
+            }
+        }
+    }
+
+    private VideoFormat parseFormat(JsonParser parser) throws IOException {
+        VideoFormat.VideoFormatBuilder format = VideoFormat.builder().formatId("");
+        Long filesize = null;
+        Long approximateSize = null;
+
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            parser.nextToken();
+
+            switch (field) {
+                case "format_id":
+                    format.formatId(textOrDefault(parser, ""));
+                    break;
+                case "ext":
+                    format.ext(text(parser));
+                    break;
+                case "resolution":
+                    format.resolution(text(parser));
+                    break;
+                case "width":
+                    format.width(intValue(parser));
+                    break;
+                case "height":
+                    format.height(intValue(parser));
+                    break;
+                case "fps":
+                    format.fps(doubleValue(parser));
+                    break;
+                case "vcodec":
+                    format.vcodec(text(parser));
+                    break;
+                case "acodec":
+                    format.acodec(text(parser));
+                    break;
+                case "tbr":
+                    format.bitrateKbps(doubleValue(parser));
+                    break;
+                case "filesize":
+                    filesize = longValue(parser);
+                    break;
+                case "filesize_approx":
+                    approximateSize = longValue(parser);
+                    break;
+                case "protocol":
+                    format.protocol(text(parser));
+                    break;
+                case "format_note":
+                    format.note(text(parser));
+                    break;
+                default:
+                    // fragments, http_headers, downloader_options, ...
+                    parser.skipChildren();
+            }
+        }
+
+        return format
+                .filesize(filesize != null ? filesize : approximateSize)
+                .filesizeApproximate(filesize == null && approximateSize != null)
+                .build();
+    }
+
+    private void parseThumbnails(JsonParser parser, List<String> thumbnails) throws IOException {
+        if (parser.currentToken() != JsonToken.START_ARRAY) {
+            parser.skipChildren();
+            return;
+        }
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+            if (parser.currentToken() != JsonToken.START_OBJECT) {
+                parser.skipChildren();
+                continue;
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                parser.nextToken();
+                if ("url".equals(field)) {
+                    String url = text(parser);
+                    if (url != null) {
+                        thumbnails.add(url);
+                    }
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        }
+    }
+
+    // "subtitles" / "automatic_captions" map a language code to the formats it is offered in:
+    // {"en": [{"ext": "json3", "name": "English"}, {"ext": "vtt", ...}], ...}
+    private void parseSubtitles(JsonParser parser, List<SubtitleInfo> subtitles, boolean autoGenerated) throws IOException {
+        if (parser.currentToken() != JsonToken.START_OBJECT) {
+            parser.skipChildren();
+            return;
+        }
+
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String languageCode = parser.getCurrentName();
+            parser.nextToken();
+            if ("live_chat".equals(languageCode) || parser.currentToken() != JsonToken.START_ARRAY) {
+                parser.skipChildren();
+                continue;
+            }
+
+            String languageName = null;
+            String format = null;
+            while (parser.nextToken() != JsonToken.END_ARRAY) {
+                if (parser.currentToken() != JsonToken.START_OBJECT) {
+                    parser.skipChildren();
+                    continue;
+                }
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String field = parser.getCurrentName();
+                    parser.nextToken();
+                    if ("name".equals(field) && languageName == null) {
+                        languageName = text(parser);
+                    } else if ("ext".equals(field)) {
+                        String ext = text(parser);
+                        if ("vtt".equals(ext) || format == null) {
+                            format = ext;
+                        }
+                    } else {
+                        parser.skipChildren();
+                    }
+                }
+            }
+
+            if (languageName == null) {
+                languageName = languageCode;
+            }
+            // Clean up language name, e.g. "English (auto-generated)"
+            if (languageName.contains("(")) {
+                languageName = languageName.substring(0, languageName.indexOf("(")).trim();
+            }
+
+            subtitles.add(SubtitleInfo.builder()
+                    .languageCode(languageCode)
+                    .language(languageName)
+                    .format(format != null ? format : "vtt")
+                    .autoGenerated(autoGenerated)
+                    .build());
+        }
+    }
+
+    // Offer only the heights this video actually has, highest first
+    private List<String> extractQualities(List<VideoFormat> formats) {
+        List<String> qualities = formats.stream()
+                .filter(VideoFormat::isHasVideo)
+                .map(VideoFormat::getHeight)
+                .filter(height -> height != null && height > 0)
+                .distinct()
+                .sorted(Comparator.reverseOrder())
+                .map(height -> height + "p")
+                .collect(Collectors.toList());
+
+        if (qualities.isEmpty()) {
+            qualities.addAll(Arrays.asList("1080p", "720p", "480p", "360p"));
+        }
+        qualities.add("best");
+        return qualities;
+    }
+
+    private String text(JsonParser parser) throws IOException {
+        JsonToken token = parser.currentToken();
+        if (token == JsonToken.VALUE_NULL) {
+            return null;
+        }
+        if (token.isScalarValue()) {
+            return parser.getText();
+        }
+        parser.skipChildren();
+        return null;
+    }
+
+    private String textOrDefault(JsonParser parser, String defaultValue) throws IOException {
+        String value = text(parser);
+        return value != null ? value : defaultValue;
+    }
+
+    private Integer intValue(JsonParser parser) throws IOException {
+        return parser.currentToken().isNumeric() ? parser.getNumberValue().intValue() : skipNonNumeric(parser);
+    }
+
+    private Long longValue(JsonParser parser) throws IOException {
+        return parser.currentToken().isNumeric() ? parser.getNumberValue().longValue() : skipNonNumeric(parser);
+    }
+
+    private Double doubleValue(JsonParser parser) throws IOException {
+        return parser.currentToken().isNumeric() ? parser.getNumberValue().doubleValue() : skipNonNumeric(parser);
+    }
+
+    private <T> T skipNonNumeric(JsonParser parser) throws IOException {
+        parser.skipChildren();
+        return null;
+    }
+
+    private String formatDuration(int seconds) {
+        int hours = seconds / 3600;
+        int minutes = (seconds % 3600) / 60;
+        int secs = seconds % 60;
+
+        if (hours > 0) {
+            return String.format("%d:%02d:%02d", hours, minutes, secs);
+        } else {
+            return String.format("%d:%02d", minutes, secs);
+        }
+    }
+}
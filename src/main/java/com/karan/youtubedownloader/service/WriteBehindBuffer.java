@@ -0,0 +1,194 @@
+package com.karan.youtubedownloader.service;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Collects keyed updates and hands them to a writer in batches, either once a
+ * batch fills up or after the flush interval. A newer update for a key that is
+ * still pending replaces the older one, so a job that changes state several
+ * times between flushes is written once.
+ *
+ * When the buffer is full, put() waits for the background flusher; if that does
+ * not free space in time, the caller flushes a batch itself. Batches that fail
+ * to write go back into the buffer and are retried on the next flush.
+ */
+@Slf4j
+public class WriteBehindBuffer<K, V> implements AutoCloseable {
+
+    private final String name;
+    private final int capacity;
+    private final int batchSize;
+    private final long flushIntervalNanos;
+    private final long offerTimeoutNanos;
+    private final Consumer<List<V>> writer;
+
+    private final Map<K, V> pending = new LinkedHashMap<>();
+    // Serializes writer calls so two batches never race on the same keys
+    private final Object writeLock = new Object();
+    private final Thread flusher;
+    private volatile boolean running = true;
+
+    public WriteBehindBuffer(String name, int capacity, int batchSize, Duration flushInterval,
+                             Duration offerTimeout, Consumer<List<V>> writer) {
+        this.name = name;
+        this.capacity = Math.max(1, capacity);
+        this.batchSize = Math.max(1, batchSize);
+        this.flushIntervalNanos = flushInterval.toNanos();
+        this.offerTimeoutNanos = offerTimeout.toNanos();
+        this.writer = writer;
+
+        this.flusher = new Thread(this::flushLoop, name + "-flusher");
+        this.flusher.setDaemon(true);
+        this.flusher.start();
+    }
+
+    public void put(K key, V value) {
+        synchronized (this) {
+            if (!running) {
+                throw new IllegalStateException(name + " buffer is closed");
+            }
+            if (pending.containsKey(key) || awaitSpace()) {
+                pending.put(key, value);
+                if (pending.size() >= batchSize) {
+                    notifyAll();
+                }
+                return;
+            }
+        }
+
+        log.warn("⚠️ {} buffer full for {}ms, flushing on the caller thread", name, offerTimeoutNanos / 1_000_000);
+        write(drain(batchSize));
+        synchronized (this) {
+            pending.put(key, value);
+        }
+    }
+
+    public synchronized int size() {
+        return pending.size();
+    }
+
+    /**
+     * Writes everything that is pending right now on the calling thread.
+     */
+    public void flush() {
+        Map<K, V> batch;
+        while (!(batch = drain(batchSize)).isEmpty()) {
+            if (!write(batch)) {
+                return;
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        synchronized (this) {
+            running = false;
+            notifyAll();
+        }
+        try {
+            flusher.join(Duration.ofSeconds(10).toMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+        int lost = size();
+        if (lost > 0) {
+            log.error("❌ {} buffer closed with {} unwritten entries", name, lost);
+        }
+    }
+
+    // Caller holds the monitor
+    private boolean awaitSpace() {
+        long deadline = System.nanoTime() + offerTimeoutNanos;
+        try {
+            while (pending.size() >= capacity) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    return false;
+                }
+                notifyAll();
+                wait(Math.max(1, remaining / 1_000_000));
+            }
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private void flushLoop() {
+        while (running) {
+            Map<K, V> batch = awaitBatch();
+            if (!batch.isEmpty() && !write(batch)) {
+                backOff();
+            }
+        }
+    }
+
+    // Keeps a failing database from being hit in a tight loop while the buffer is full
+    private synchronized void backOff() {
+        try {
+            if (running) {
+                wait(Math.max(1, flushIntervalNanos / 1_000_000));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            running = false;
+        }
+    }
+
+    private synchronized Map<K, V> awaitBatch() {
+        long deadline = System.nanoTime() + flushIntervalNanos;
+        try {
+            while (running && pending.size() < batchSize) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    break;
+                }
+                wait(Math.max(1, remaining / 1_000_000));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            running = false;
+        }
+        return drain(batchSize);
+    }
+
+    private synchronized Map<K, V> drain(int max) {
+        Map<K, V> batch = new LinkedHashMap<>();
+        Iterator<Map.Entry<K, V>> entries = pending.entrySet().iterator();
+        while (entries.hasNext() && batch.size() < max) {
+            Map.Entry<K, V> entry = entries.next();
+            batch.put(entry.getKey(), entry.getValue());
+            entries.remove();
+        }
+        if (!batch.isEmpty()) {
+            notifyAll();
+        }
+        return batch;
+    }
+
+    private boolean write(Map<K, V> batch) {
+        synchronized (writeLock) {
+            try {
+                writer.accept(new ArrayList<>(batch.values()));
+                return true;
+            } catch (Exception e) {
+                log.error("❌ {} buffer failed to write {} entries, will retry: {}", name, batch.size(), e.getMessage());
+            }
+        }
+        // Put the batch back unless a newer update for the same key arrived meanwhile
+        synchronized (this) {
+            batch.forEach(pending::putIfAbsent);
+        }
+        return false;
+    }
+}
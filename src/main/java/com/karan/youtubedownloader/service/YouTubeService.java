@@ -1,31 +1,110 @@
 package com.karan.youtubedownloader.service;
 
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.karan.youtubedownloader.model.SubtitleDownloadRequest;
+import com.karan.youtubedownloader.model.DownloadProgress;
+import com.karan.youtubedownloader.model.DownloadResult;
+import com.karan.youtubedownloader.model.PostProcessingStep;
+import com.karan.youtubedownloader.model.SubtitleFormat;
 import com.karan.youtubedownloader.model.SubtitleInfo;
+import com.karan.youtubedownloader.model.TransferOptions;
+import com.karan.youtubedownloader.model.VideoFormat;
 import com.karan.youtubedownloader.model.VideoInfo;
+import com.karan.youtubedownloader.model.VideoMetadata;
+import com.karan.youtubedownloader.config.DownloaderProperties;
+import com.karan.youtubedownloader.process.ManagedProcess;
+import com.karan.youtubedownloader.process.ProcessResult;
+import com.karan.youtubedownloader.process.ProcessRunner;
+import com.karan.youtubedownloader.process.YtDlpWorkerPool;
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
+import org.springframework.util.FileSystemUtils;
 
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.InputStreamReader;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.EnumMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
 
 @Slf4j
 @Service
+@RequiredArgsConstructor
 public class YouTubeService {
 
-    private final ObjectMapper objectMapper = new ObjectMapper();
+    private static final Pattern QUALITY_HEIGHT = Pattern.compile("(\\d{3,4})p");
+    // Prefix of the line yt-dlp prints with each final file path (see addOutputReporting)
+    private static final String OUTPUT_FILE_MARKER = "[output] ";
+    // Audio fetched next to a video-only stream
+    private static final String MERGE_AUDIO_FORMAT = "ba[ext=m4a]/ba";
+
+    private final ProcessRunner processRunner;
+    private final VideoMetadataParser metadataParser;
+    private final MetadataCache metadataCache;
+    private final DownloaderProperties properties;
+    private final DownloadGovernor downloadGovernor;
+    private final TransferPlanner transferPlanner;
+    private final DownloadMetrics metrics;
+    private final YtDlpWorkerPool workerPool;
+    private final PostProcessingService postProcessing;
+    private final SubtitleConverter subtitleConverter;
+    private final TranscriptIndex transcriptIndex;
 
     public List<VideoInfo> getAvailableQualities(String url) throws Exception {
+        return getVideoMetadata(url).stream()
+                .map(VideoMetadata::toVideoInfo)
+                .collect(Collectors.toList());
+    }
+
+    public List<SubtitleInfo> getAvailableSubtitles(String url) throws Exception {
+        List<VideoMetadata> metadata = getVideoMetadata(url);
+        if (metadata.isEmpty()) {
+            log.warn("⚠️ No subtitles found for video: {}", url);
+            return new ArrayList<>();
+        }
+
+        List<SubtitleInfo> subtitles = selectableSubtitles(metadata.get(0));
+        log.info("✅ Found {} subtitle languages", subtitles.size());
+        return subtitles;
+    }
+
+    /**
+     * One --dump-json probe per video serves quality, subtitle and combined lookups.
+     */
+    public List<VideoMetadata> getVideoMetadata(String url) throws Exception {
+        return metadataCache.get(url, () -> probeMetadata(VideoIdExtractor.clean(url)));
+    }
+
+    // Manual subtitles plus the auto-generated track in the video's own language;
+    // YouTube also offers ~100 machine-translated auto captions which just clutter the picker
+    public List<SubtitleInfo> selectableSubtitles(VideoMetadata metadata) {
+        List<SubtitleInfo> subtitles = new ArrayList<>(metadata.getSubtitles());
+        for (SubtitleInfo caption : metadata.getAutomaticCaptions()) {
+            String code = caption.getLanguageCode();
+            if (code.endsWith("-orig") || code.equals(metadata.getLanguage())) {
+                subtitles.add(caption);
+            }
+        }
+        return subtitles;
+    }
+
+    private List<VideoMetadata> probeMetadata(String url) throws Exception {
         log.info("🔍 Fetching video information for: {}", url);
 
-        ProcessBuilder processBuilder = new ProcessBuilder(
-                "yt-dlp",
+        List<String> command = Arrays.asList(
+                ytDlp(),
                 "--dump-json",
                 "--no-playlist",
                 "--ignore-errors", // ✅ Handle age-restricted videos gracefully
@@ -33,74 +112,72 @@ public class YouTubeService {
                 url
         );
 
-        Process process = processBuilder.start();
-        BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()));
-        BufferedReader errorReader = new BufferedReader(new InputStreamReader(process.getErrorStream()));
-
-        List<VideoInfo> videoInfos = new ArrayList<>();
-        StringBuilder errorOutput = new StringBuilder();
-        String line;
-        boolean foundAgeRestriction = false;
+        List<VideoMetadata> videos = new ArrayList<>();
+        AtomicBoolean foundAgeRestriction = new AtomicBoolean(false);
 
-        // Read standard output
-        while ((line = reader.readLine()) != null) {
-            try {
-                JsonNode videoData = objectMapper.readTree(line);
-                VideoInfo videoInfo = parseVideoInfo(videoData);
-                if (videoInfo != null) {
-                    videoInfos.add(videoInfo);
+        long probeStart = System.nanoTime();
+        ProcessResult result;
+        try {
+            Duration timeout = properties.getProcess().getMetadataTimeout();
+            ProcessRunner.StreamHandler stdoutHandler = stdout -> videos.addAll(metadataParser.parse(stdout));
+            Consumer<String> stderrListener = line -> {
+                log.warn("yt-dlp error: {}", line);
+
+                // Check for age restriction indicators
+                if (isAgeRestrictionMessage(line)) {
+                    foundAgeRestriction.set(true);
                 }
-            } catch (Exception e) {
-                log.warn("⚠️ Could not parse video info line: {}", e.getMessage());
-            }
+            };
+            // A warm worker skips the Python start; without one, fork yt-dlp as usual
+            Optional<ProcessResult> pooled = workerPool.runStreaming(
+                    command.subList(1, command.size()), timeout, stdoutHandler, stderrListener);
+            result = pooled.isPresent()
+                    ? pooled.get()
+                    : processRunner.runStreaming(command, timeout, stdoutHandler, stderrListener);
+        } catch (Exception e) {
+            metrics.recordMetadataProbe(System.nanoTime() - probeStart, false);
+            throw e;
         }
+        metrics.recordMetadataProbe(System.nanoTime() - probeStart, !videos.isEmpty());
 
-        // Read error output to detect age restrictions
-        while ((line = errorReader.readLine()) != null) {
-            log.warn("yt-dlp error: {}", line);
-            errorOutput.append(line).append("\n");
-
-            // Check for age restriction indicators
-            if (line.toLowerCase().contains("age-restricted") ||
-                    line.toLowerCase().contains("sign in") ||
-                    line.toLowerCase().contains("inappropriate for some users")) {
-                foundAgeRestriction = true;
-            }
+        if (result.isTimedOut()) {
+            throw new RuntimeException("Timed out fetching video information");
         }
 
-        process.waitFor();
-
         // If no videos found but we detected age restriction, return special response
-        if (videoInfos.isEmpty() && foundAgeRestriction) {
-            VideoInfo restrictedVideo = VideoInfo.builder()
+        if (videos.isEmpty() && foundAgeRestriction.get()) {
+            VideoMetadata restrictedVideo = VideoMetadata.builder()
+                    .videoId(VideoIdExtractor.canonicalKey(url))
                     .title("🔞 Age-Restricted Video - Authentication Required")
                     .url(url)
                     .duration("Unknown")
                     .thumbnail("https://via.placeholder.com/160x90?text=Age+Restricted")
+                    .thumbnails(new ArrayList<>())
                     .availableQualities(Arrays.asList("best", "720p", "480p", "360p", "worst"))
+                    .formats(new ArrayList<>())
+                    .subtitles(new ArrayList<>())
+                    .automaticCaptions(new ArrayList<>())
+                    .placeholder(true)
                     .build();
-            videoInfos.add(restrictedVideo);
+            videos.add(restrictedVideo);
             log.warn("🔞 Age-restricted video detected, providing default quality options");
         }
 
-        return videoInfos;
+        return videos;
     }
 // Add these new methods to your YouTubeService.java
 
-    public String downloadVideoWithSubtitles(String url, String quality, List<String> subtitleLanguages, String customPath) throws Exception {
+    public DownloadResult downloadVideoWithSubtitles(String url, String quality, String formatId, List<String> subtitleLanguages, String customPath, TransferOptions transferOptions, Consumer<DownloadProgress> progressListener, DownloadControl control) throws Exception {
         log.info("📥 Downloading video with subtitles in {} quality", quality);
 
-        String downloadsPath = getDownloadsPath(customPath);
-        String formatSelector = getQualityFormat(quality);
+        String downloadsPath = resolveDownloadsPath(customPath);
+        String formatSelector = resolveVideoFormat(url, quality, formatId);
 
         List<String> command = new ArrayList<>();
-        command.add("yt-dlp");
+        command.add(ytDlp());
         command.add("-f");
         command.add(formatSelector);
-        command.add("-o");
-        command.add(downloadsPath + File.separator + "%(title)s.%(ext)s");
-        command.add("--merge-output-format");
-        command.add("mp4");
+        addStreamOutput(command, downloadsPath);
         command.add("--write-subs");
         command.add("--write-auto-subs");
 
@@ -110,27 +187,29 @@ public class YouTubeService {
             command.add(String.join(",", subtitleLanguages));
         }
 
+        command.addAll(transferPlanner.plan(url, formatId, quality, false, transferOptions));
+        addOutputReporting(command);
+        command.add("--newline");
         command.add("--ignore-errors");
         command.add("--continue");
         command.add(url);
 
-        return executeDownloadCommand(command, "🎉 Video with subtitles downloaded successfully to " + downloadsPath + "!");
+        DownloadResult result = executeDownloadCommand(command, "🎉 Video with subtitles downloaded successfully to " + downloadsPath + "!", progressListener, control);
+        return withMerge(result);
     }
 
-    public String downloadAudioWithSubtitles(String url, String format, List<String> subtitleLanguages, String customPath) throws Exception {
+    public DownloadResult downloadAudioWithSubtitles(String url, String format, String formatId, List<String> subtitleLanguages, String customPath, TransferOptions transferOptions, Consumer<DownloadProgress> progressListener, DownloadControl control) throws Exception {
         log.info("🎵 Downloading audio with subtitles in {} format", format);
+        postProcessing.checkAudioFormat(format);
 
-        String downloadsPath = getDownloadsPath(customPath);
+        String downloadsPath = resolveDownloadsPath(customPath);
 
         List<String> command = new ArrayList<>();
-        command.add("yt-dlp");
+        command.add(ytDlp());
         command.add("-f");
-        command.add("bestaudio");
+        command.add(resolveAudioFormat(formatId));
         command.add("-o");
         command.add(downloadsPath + File.separator + "%(title)s.%(ext)s");
-        command.add("--extract-audio");
-        command.add("--audio-format");
-        command.add(format); // mp3, m4a, etc.
         command.add("--write-subs");
         command.add("--write-auto-subs");
 
@@ -140,63 +219,198 @@ public class YouTubeService {
             command.add(String.join(",", subtitleLanguages));
         }
 
+        command.addAll(transferPlanner.plan(url, formatId, null, true, transferOptions));
+        addOutputReporting(command);
+        command.add("--newline");
         command.add("--ignore-errors");
         command.add("--continue");
         command.add(url);
 
-        return executeDownloadCommand(command, "🎉 Audio with subtitles downloaded successfully to " + downloadsPath + "!");
+        DownloadResult result = executeDownloadCommand(command, "🎉 Audio with subtitles downloaded successfully to " + downloadsPath + "!", progressListener, control);
+        return withAudioConversion(result, format);
     }
 
-    public String downloadOnlySubtitles(String url, List<String> subtitleLanguages, List<String> formats, String customPath) throws Exception {
+    /**
+     * Fetches the subtitle tracks as yt-dlp finds them, preferring YouTube's own
+     * WebVTT, and writes each one in every requested format with
+     * SubtitleConverter rather than an ffmpeg run per file. Each track is also
+     * added to the transcript index on the way through.
+     */
+    public DownloadResult downloadOnlySubtitles(String url, List<String> subtitleLanguages, List<String> formats, String customPath, Consumer<DownloadProgress> progressListener, DownloadControl control) throws Exception {
         log.info("📝 Downloading only subtitles");
+        List<SubtitleFormat> targets = SubtitleFormat.listOf(formats);
 
-        String downloadsPath = getDownloadsPath(customPath);
+        String downloadsPath = resolveDownloadsPath(customPath);
+        // Raw tracks land in a private folder, so the files of this download are exactly what it holds
+        Path staging = Files.createTempDirectory(Files.createDirectories(Path.of(downloadsPath)), ".subtitles-");
+        try {
+            List<String> command = new ArrayList<>();
+            command.add(ytDlp());
+            command.add("--skip-download");
+            command.add("--write-subs");
+            command.add("--write-auto-subs");
+            command.add("--sub-format");
+            command.add("vtt/srt/ass/best");
+            command.add("-o");
+            command.add(staging + File.separator + "%(title)s.%(ext)s");
+
+            // Add specific subtitle languages
+            if (subtitleLanguages != null && !subtitleLanguages.isEmpty()) {
+                command.add("--sub-langs");
+                command.add(String.join(",", subtitleLanguages));
+            }
 
-        List<String> command = new ArrayList<>();
-        command.add("yt-dlp");
-        command.add("--skip-download");
-        command.add("--write-subs");
-        command.add("--write-auto-subs");
-        command.add("--sub-format");
-        command.add(String.join("/", formats)); // srt/vtt/ass
-        command.add("-o");
-        command.add(downloadsPath + File.separator + "%(title)s");
+            command.add("--newline");
+            command.add("--ignore-errors");
+            command.add(url);
+
+            DownloadResult result = executeDownloadCommand(command, "🎉 Subtitles downloaded successfully to " + downloadsPath + "!", progressListener, control, false);
+            List<String> files = convertSubtitles(url, staging, Path.of(downloadsPath), targets, control);
+            result.setOutputFiles(files);
+            result.setTotalBytes(files.isEmpty() ? null : Long.valueOf(totalSize(files)));
+            return result;
+        } finally {
+            FileSystemUtils.deleteRecursively(staging);
+        }
+    }
 
-        // Add specific subtitle languages
-        if (subtitleLanguages != null && !subtitleLanguages.isEmpty()) {
-            command.add("--sub-langs");
-            command.add(String.join(",", subtitleLanguages));
+    // Writes every track in 'staging' to 'target' in each format; tracks in a format that cannot be read are moved as they are
+    private List<String> convertSubtitles(String url, Path staging, Path target, List<SubtitleFormat> formats,
+                                          DownloadControl control) throws Exception {
+        List<Path> tracks;
+        try (var listing = Files.list(staging)) {
+            tracks = listing.filter(Files::isRegularFile).sorted().collect(Collectors.toList());
         }
 
-        command.add("--ignore-errors");
-        command.add(url);
+        List<String> written = new ArrayList<>();
+        for (Path track : tracks) {
+            control.throwIfStopped();
+            String name = track.getFileName().toString();
+            int dot = name.lastIndexOf('.');
+            String base = dot > 0 ? name.substring(0, dot) : name;
+
+            if (SubtitleConverter.formatOf(track).filter(SubtitleFormat::isReadable).isEmpty()) {
+                log.warn("⚠️ No converter for {}, keeping it as downloaded", name);
+                Path moved = target.resolve(name);
+                Files.move(track, moved, StandardCopyOption.REPLACE_EXISTING);
+                written.add(moved.toString());
+                continue;
+            }
 
-        return executeDownloadCommand(command, "🎉 Subtitles downloaded successfully to " + downloadsPath + "!");
+            Map<SubtitleFormat, Path> outputs = new EnumMap<>(SubtitleFormat.class);
+            for (SubtitleFormat format : formats) {
+                outputs.put(format, target.resolve(base + "." + format.getExtension()));
+            }
+            TranscriptIndex.Transcript transcript = transcriptIndex.isEnabled()
+                    ? transcriptIndex.begin(target.resolve(base).toString(), url, base) : null;
+            long start = System.nanoTime();
+            int cues = subtitleConverter.convert(track, outputs, transcript != null ? transcript::add : cue -> { });
+            log.info("💾 Saved {} cues of {} as {} in {} ms", cues, base, formats,
+                    (System.nanoTime() - start) / 1_000_000);
+            outputs.values().forEach(output -> written.add(output.toString()));
+            if (transcript != null) {
+                transcriptIndex.index(transcript);
+            }
+        }
+        return written;
     }
 
-    public String downloadOnlyAudio(String url, String format, String customPath) throws Exception {
+    public DownloadResult downloadOnlyAudio(String url, String format, String formatId, String customPath, TransferOptions transferOptions, Consumer<DownloadProgress> progressListener, DownloadControl control) throws Exception {
         log.info("🎵 Downloading only audio in {} format", format);
+        postProcessing.checkAudioFormat(format);
 
-        String downloadsPath = getDownloadsPath(customPath);
+        String downloadsPath = resolveDownloadsPath(customPath);
 
         List<String> command = new ArrayList<>();
-        command.add("yt-dlp");
+        command.add(ytDlp());
         command.add("-f");
-        command.add("bestaudio");
+        command.add(resolveAudioFormat(formatId));
         command.add("-o");
         command.add(downloadsPath + File.separator + "%(title)s.%(ext)s");
-        command.add("--extract-audio");
-        command.add("--audio-format");
-        command.add(format);
+        command.addAll(transferPlanner.plan(url, formatId, null, true, transferOptions));
+        addOutputReporting(command);
+        command.add("--newline");
         command.add("--ignore-errors");
         command.add("--continue");
         command.add(url);
 
-        return executeDownloadCommand(command, "🎉 Audio downloaded successfully to " + downloadsPath + "!");
+        DownloadResult result = executeDownloadCommand(command, "🎉 Audio downloaded successfully to " + downloadsPath + "!", progressListener, control);
+        return withAudioConversion(result, format);
     }
 
     // Helper methods
-    private String getDownloadsPath(String customPath) {
+    private String ytDlp() {
+        return properties.getProcess().getExecutable();
+    }
+
+    private boolean isAgeRestrictionMessage(String line) {
+        String lower = line.toLowerCase();
+        return lower.contains("age-restricted") ||
+                lower.contains("sign in") ||
+                lower.contains("inappropriate for some users");
+    }
+
+    // --print implies --quiet, so --progress keeps the progress lines coming
+    private void addOutputReporting(List<String> command) {
+        command.add("--print");
+        command.add("after_move:" + OUTPUT_FILE_MARKER + "%(filepath)s");
+        command.add("--progress");
+    }
+
+    // Video and audio arrive as separate ".f<format id>" files for the post-processing stage to merge;
+    // subtitles keep the plain title so both streams write the same file
+    private void addStreamOutput(List<String> command, String downloadsPath) {
+        command.add("-o");
+        command.add(downloadsPath + File.separator + "%(title)s.f%(format_id)s.%(ext)s");
+        command.add("-o");
+        command.add("subtitle:" + downloadsPath + File.separator + "%(title)s.%(ext)s");
+    }
+
+    private DownloadResult withMerge(DownloadResult result) throws IOException {
+        List<String> streams = result.getOutputFiles();
+        if (streams != null && streams.size() == 1) {
+            // A progressive format, or no separate audio existed: nothing to merge
+            result.setOutputFiles(List.of(postProcessing.renameStream(streams.get(0))));
+            return result;
+        }
+        return withPostProcessing(result, postProcessing.merge(streams));
+    }
+
+    private DownloadResult withAudioConversion(DownloadResult result, String format) {
+        List<String> files = result.getOutputFiles();
+        if (files == null || files.isEmpty()) {
+            return result;
+        }
+        return withPostProcessing(result, postProcessing.extractAudio(files.get(files.size() - 1), format));
+    }
+
+    // ffmpeg's share of the job runs on the post-processing stage, after this download slot is released
+    private DownloadResult withPostProcessing(DownloadResult result, Optional<PostProcessingStep> step) {
+        step.ifPresent(result::setPostProcessing);
+        return result;
+    }
+
+    private void handleDownloadOutput(String line, Consumer<DownloadProgress> progressListener,
+                                      List<String> outputFiles, boolean stderr) {
+        if (!stderr && line.startsWith(OUTPUT_FILE_MARKER)) {
+            String path = line.substring(OUTPUT_FILE_MARKER.length()).trim();
+            log.info("💾 Saved {}", path);
+            outputFiles.add(path);
+            return;
+        }
+
+        DownloadProgress progress = ProgressParser.parse(line);
+        if (progress != null) {
+            log.debug("yt-dlp: {}", line);
+            progressListener.accept(progress);
+        } else if (stderr) {
+            log.warn("yt-dlp error: {}", line);
+        } else {
+            log.debug("yt-dlp: {}", line);
+        }
+    }
+
+    public String resolveDownloadsPath(String customPath) {
         if (customPath != null && !customPath.trim().isEmpty()) {
             return customPath.trim();
         } else {
@@ -205,40 +419,97 @@ public class YouTubeService {
         }
     }
 
-    private String executeDownloadCommand(List<String> command, String successMessage) throws Exception {
-        log.info("🔧 Command: {}", String.join(" ", command));
-
-        ProcessBuilder processBuilder = new ProcessBuilder(command);
-        Process process = processBuilder.start();
+    private DownloadResult executeDownloadCommand(List<String> command, String successMessage,
+                                                  Consumer<DownloadProgress> progressListener,
+                                                  DownloadControl control) throws Exception {
+        return executeDownloadCommand(command, successMessage, progressListener, control, true);
+    }
 
-        BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()));
-        BufferedReader errorReader = new BufferedReader(new InputStreamReader(process.getErrorStream()));
+    /**
+     * @param transfersMedia false for runs that only fetch small files such as subtitles; those
+     *                       skip the governor instead of queueing behind media downloads for a slot
+     */
+    private DownloadResult executeDownloadCommand(List<String> command, String successMessage,
+                                                  Consumer<DownloadProgress> progressListener,
+                                                  DownloadControl control, boolean transfersMedia) throws Exception {
+        // The URL is always the last argument
+        String url = command.get(command.size() - 1);
+        // A format lookup before this point may have swallowed the interrupt of a stop request
+        control.throwIfStopped();
+        if (!transfersMedia) {
+            return runDownload(command, successMessage, progressListener, null, control);
+        }
+        try (DownloadGovernor.Lease lease = downloadGovernor.acquire(url)) {
+            List<String> governed = new ArrayList<>(command);
+            if (lease.getBytesPerSecond() > 0) {
+                governed.addAll(governed.size() - 1, List.of("--limit-rate", Long.toString(lease.getBytesPerSecond())));
+            }
+            DownloadResult result = runDownload(governed, successMessage, progressListener, lease, control);
+            lease.markSucceeded();
+            return result;
+        }
+    }
 
-        StringBuilder output = new StringBuilder();
-        StringBuilder errorOutput = new StringBuilder();
-        String line;
+    private DownloadResult runDownload(List<String> command, String successMessage,
+                                       Consumer<DownloadProgress> progressListener,
+                                       DownloadGovernor.Lease lease, DownloadControl control) throws Exception {
+        log.info("🔧 Command: {}", String.join(" ", command));
 
-        while ((line = reader.readLine()) != null) {
-            log.info("yt-dlp: {}", line);
-            output.append(line).append("\n");
+        List<String> outputFiles = new CopyOnWriteArrayList<>();
+        AtomicLong reportedBytes = new AtomicLong();
+        Consumer<DownloadProgress> trackingListener = progress -> {
+            if (progress.getTotalBytes() != null) {
+                reportedBytes.set(progress.getTotalBytes());
+            }
+            progressListener.accept(progress);
+        };
+
+        // Progress can arrive on either stream depending on yt-dlp's quiet/print flags
+        ManagedProcess process = processRunner.start(command,
+                line -> handleDownloadOutput(line, trackingListener, outputFiles, false),
+                line -> {
+                    if (lease != null && downloadGovernor.isThrottleSignal(line)) {
+                        lease.markThrottled();
+                    }
+                    handleDownloadOutput(line, trackingListener, outputFiles, true);
+                });
+        ProcessResult result;
+        control.attach(process);
+        try {
+            result = process.await(properties.getProcess().getDownloadTimeout());
+        } finally {
+            control.detach(process);
         }
+        control.throwIfStopped();
 
-        while ((line = errorReader.readLine()) != null) {
-            log.warn("yt-dlp error: {}", line);
-            errorOutput.append(line).append("\n");
+        if (result.isTimedOut()) {
+            throw new RuntimeException("Download timed out after " + properties.getProcess().getDownloadTimeout().toMinutes() + " minutes");
         }
-
-        int exitCode = process.waitFor();
-
-        if (exitCode == 0) {
-            return successMessage;
+        if (result.isSuccess()) {
+            long fileBytes = totalSize(outputFiles);
+            return DownloadResult.builder()
+                    .message(successMessage)
+                    .outputFiles(List.copyOf(outputFiles))
+                    .totalBytes(fileBytes > 0 ? Long.valueOf(fileBytes) : reportedBytes.get() > 0 ? Long.valueOf(reportedBytes.get()) : null)
+                    .build();
         } else {
-            String errorMessage = errorOutput.toString().trim();
-            throw new RuntimeException("Download failed: " + errorMessage);
+            throw new RuntimeException("Download failed: " + result.stderrText());
         }
     }
 
-    public String downloadVideo(String url, String quality, String customPath) throws Exception {
+    private long totalSize(List<String> paths) {
+        long total = 0;
+        for (String path : paths) {
+            try {
+                total += Files.size(Path.of(path));
+            } catch (Exception e) {
+                log.debug("Could not stat {}: {}", path, e.getMessage());
+            }
+        }
+        return total;
+    }
+
+    public DownloadResult downloadVideo(String url, String quality, String formatId, String customPath, TransferOptions transferOptions, Consumer<DownloadProgress> progressListener, DownloadControl control) throws Exception {
         log.info("📥 Downloading video in {} quality", quality);
 
         // Handle download path
@@ -255,227 +526,101 @@ public class YouTubeService {
             downloadsDir.mkdirs();
         }
 
-        String formatSelector = getQualityFormat(quality);
+        String formatSelector = resolveVideoFormat(url, quality, formatId);
 
         // ✅ FIXED: Proper command building
         List<String> command = new ArrayList<>();
-        command.add("yt-dlp");
+        command.add(ytDlp());
         command.add("-f");
         command.add(formatSelector);
-        command.add("-o");
-        command.add(downloadsPath + File.separator + "%(title)s.%(ext)s");
-        command.add("--merge-output-format");
-        command.add("mp4");
+        addStreamOutput(command, downloadsPath);
+        command.addAll(transferPlanner.plan(url, formatId, quality, false, transferOptions));
+        addOutputReporting(command);
+        command.add("--newline");
         command.add("--ignore-errors");
         command.add("--continue");
         // ✅ REMOVED Chrome cookies that were causing the error
         command.add(url); // ✅ URL must be the LAST argument
 
-        log.info("🔧 Command: {}", String.join(" ", command));
-
-        ProcessBuilder processBuilder = new ProcessBuilder(command);
-        Process process = processBuilder.start();
-
-        BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()));
-        BufferedReader errorReader = new BufferedReader(new InputStreamReader(process.getErrorStream()));
-
-        StringBuilder output = new StringBuilder();
-        StringBuilder errorOutput = new StringBuilder();
-        String line;
-
-        while ((line = reader.readLine()) != null) {
-            log.info("yt-dlp: {}", line);
-            output.append(line).append("\n");
-        }
-
-        while ((line = errorReader.readLine()) != null) {
-            log.warn("yt-dlp error: {}", line);
-            errorOutput.append(line).append("\n");
-        }
-
-        int exitCode = process.waitFor();
-
-        if (exitCode == 0) {
-            return String.format("🎉 Video downloaded successfully to %s!", downloadsPath);
-        } else {
-            String errorMessage = errorOutput.toString().trim();
-            throw new RuntimeException("Download failed: " + errorMessage);
-        }
+        DownloadResult result = executeDownloadCommand(command, String.format("🎉 Video downloaded successfully to %s!", downloadsPath), progressListener, control);
+        return withMerge(result);
     }
 
-    private String getQualityFormat(String quality) {
+    // Heights are upper bounds. Sources with separate streams get the best video-only stream at or
+    // below the height plus the best audio for merging; the rest get one progressive file, never an
+    // extra audio stream next to a file that already carries its own
+    static String getQualityFormat(String quality, boolean separateStreams) {
+        if (quality == null) {
+            quality = "720p";
+        }
         switch (quality.toLowerCase()) {
-            case "1080p":
-                return "best[height<=1080][ext=mp4]/best[height<=1080]";
-            case "720p":
-                return "best[height<=720][ext=mp4]/best[height<=720]";
-            case "480p":
-                return "best[height<=480][ext=mp4]/best[height<=480]";
-            case "360p":
-                return "best[height<=360][ext=mp4]/best[height<=360]";
             case "best":
             case "playlist-all":
-                return "best[ext=mp4]/best";
+                return separateStreams ? "bv[ext=mp4]/bv," + MERGE_AUDIO_FORMAT : "b";
             case "worst":
-                return "worst[ext=mp4]/worst";
+                return separateStreams ? "wv,wa" : "w";
             default:
-                return "best[height<=720][ext=mp4]/best[height<=720]";
+                Matcher height = QUALITY_HEIGHT.matcher(quality.toLowerCase());
+                int maxHeight = height.matches() ? Integer.parseInt(height.group(1)) : 720;
+                return separateStreams
+                        ? String.format("bv[height<=%1$d][ext=mp4]/bv[height<=%1$d],", maxHeight) + MERGE_AUDIO_FORMAT
+                        : String.format("b[height<=%d]/w", maxHeight);
         }
     }
 
-    // ✅ Removed duplicate getFormatSelector method
+    /**
+     * An exact format id wins over the quality label. Video-only formats get the best
+     * audio downloaded next to them for merging; formats that already carry audio are
+     * downloaded as-is. The comma makes yt-dlp fetch the two as separate files, and
+     * when no audio-only format exists it simply fetches the video alone.
+     */
+    private String resolveVideoFormat(String url, String quality, String formatId) {
+        if (formatId == null || formatId.isBlank()) {
+            return getQualityFormat(quality, hasSeparateStreams(url));
+        }
 
-    private VideoInfo parseVideoInfo(JsonNode videoData) {
         try {
-            String title = getJsonValue(videoData, "title", "Unknown Title");
-            String duration = formatDuration(getJsonIntValue(videoData, "duration", 0));
-            String thumbnail = getJsonValue(videoData, "thumbnail", "");
-            String url = getJsonValue(videoData, "webpage_url", "");
-
-            List<String> availableQualities = extractQualities(videoData);
-
-            return VideoInfo.builder()
-                    .title(title)
-                    .url(url)
-                    .duration(duration)
-                    .thumbnail(thumbnail)
-                    .availableQualities(availableQualities)
-                    .build();
-
+            for (VideoMetadata metadata : getVideoMetadata(url)) {
+                Optional<VideoFormat> format = metadata.findFormat(formatId);
+                if (format.isPresent()) {
+                    return format.get().isHasAudio() ? formatId : formatId + "," + MERGE_AUDIO_FORMAT;
+                }
+            }
         } catch (Exception e) {
-            log.warn("⚠️ Error parsing video info: {}", e.getMessage());
-            return null;
-        }
-    }
-
-    private List<String> extractQualities(JsonNode videoData) {
-        List<String> standardQualities = Arrays.asList("1080p", "720p", "480p", "360p", "best");
-        log.info("🎯 Providing standard quality options: {}", standardQualities);
-        return standardQualities;
-    }
-
-    private String getJsonValue(JsonNode node, String fieldName, String defaultValue) {
-        JsonNode field = node.get(fieldName);
-        if (field != null && !field.isNull()) {
-            return field.asText();
-        }
-        return defaultValue;
-    }
-
-    private int getJsonIntValue(JsonNode node, String fieldName, int defaultValue) {
-        JsonNode field = node.get(fieldName);
-        if (field != null && !field.isNull()) {
-            return field.asInt();
+            log.warn("⚠️ Could not look up format {}: {}", formatId, e.getMessage());
         }
-        return defaultValue;
+        return formatId + "," + MERGE_AUDIO_FORMAT;
     }
 
-    private SubtitleInfo parseSubtitleLine(String line) {
+    // Assumes separate streams, as YouTube always has them, when the format table is unavailable
+    private boolean hasSeparateStreams(String url) {
         try {
-            // Parse yt-dlp subtitle output format
-            // Example line: "en-US          vtt    English (United States) (auto-generated)"
-            if (line.trim().isEmpty() || !line.contains("vtt") && !line.contains("srt")) {
-                return null;
-            }
-
-            String[] parts = line.trim().split("\\s+", 4);
-            if (parts.length < 3) {
-                return null;
-            }
-
-            String languageCode = parts[0];
-            String format = parts[1];
-            String languageName = parts.length > 2 ? parts[2] : languageCode;
-            boolean isAutoGenerated = line.toLowerCase().contains("auto-generated") ||
-                    line.toLowerCase().contains("automatic");
-
-            // Clean up language name
-            if (languageName.contains("(")) {
-                languageName = languageName.substring(0, languageName.indexOf("(")).trim();
-            }
-
-            return SubtitleInfo.builder()
-                    .languageCode(languageCode)
-                    .language(languageName)
-                    .format(format)
-                    .autoGenerated(isAutoGenerated)
-                    .build();
-
+            List<VideoMetadata> metadata = getVideoMetadata(url);
+            List<VideoFormat> formats = metadata.isEmpty() ? null : metadata.get(0).getFormats();
+            return formats == null || formats.isEmpty()
+                    || formats.stream().anyMatch(format -> format.isHasVideo() && !format.isHasAudio());
         } catch (Exception e) {
-            log.warn("⚠️ Error parsing subtitle line: {} - {}", line, e.getMessage());
-            return null;
+            log.warn("⚠️ Could not look up the formats of {}: {}", url, e.getMessage());
+            return true;
         }
     }
 
-    public List<SubtitleInfo> getAvailableSubtitles(String url) throws Exception {
-        log.info("🎬 Getting available subtitles for: {}", url);
-
-        ProcessBuilder processBuilder = new ProcessBuilder(
-                "yt-dlp",
-                "--list-subs",
-                "--no-warnings",
-                "--no-playlist",
-                url
-        );
-
-        Process process = processBuilder.start();
-        BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()));
-        BufferedReader errorReader = new BufferedReader(new InputStreamReader(process.getErrorStream()));
-
-        List<SubtitleInfo> subtitles = new ArrayList<>();
-        String line;
-        boolean foundSubtitleSection = false;
-
-        // Read output
-        while ((line = reader.readLine()) != null) {
-            log.debug("yt-dlp output: {}", line);
-
-            // Look for subtitle section
-            if (line.contains("Available subtitles")) {
-                foundSubtitleSection = true;
-                continue;
-            }
-
-            if (foundSubtitleSection && (line.contains("vtt") || line.contains("srt"))) {
-                SubtitleInfo subtitle = parseSubtitleLine(line);
-                if (subtitle != null) {
-                    subtitles.add(subtitle);
-                }
-            }
-        }
-
-        // Read errors
-        while ((line = errorReader.readLine()) != null) {
-            log.warn("yt-dlp error: {}", line);
-        }
-
-        int exitCode = process.waitFor();
-
-        if (exitCode != 0 && subtitles.isEmpty()) {
-            log.warn("⚠️ No subtitles found for video: {}", url);
-            // Return empty list instead of throwing exception
-            return new ArrayList<>();
-        }
-
-        log.info("✅ Found {} subtitle languages", subtitles.size());
-        return subtitles;
+    private String resolveAudioFormat(String formatId) {
+        return formatId == null || formatId.isBlank() ? "bestaudio" : formatId;
     }
 
-    public String downloadSubtitles(SubtitleDownloadRequest request) throws Exception {
-        // Implementation for downloading subtitles
-        // Use yt-dlp with --write-subs flag
-        return "Subtitles downloaded successfully";
-    }
+    // ✅ Removed duplicate getFormatSelector method
 
     private ProcessBuilder createDownloadProcess(String url, String quality, String downloadsPath, String browserType) {
         List<String> command = new ArrayList<>();
-        command.add("yt-dlp");
+        command.add(ytDlp());
         command.add("-f");
-        command.add(getQualityFormat(quality));
+        command.add(getQualityFormat(quality, true));
         command.add("-o");
         command.add(downloadsPath + File.separator + "%(title)s.%(ext)s");
         command.add("--merge-output-format");
         command.add("mp4");
+        command.add("--newline");
         command.add("--ignore-errors");
         command.add("--continue");
 
@@ -490,16 +635,4 @@ public class YouTubeService {
 
         return new ProcessBuilder(command);
     }
-
-    private String formatDuration(int seconds) {
-        int hours = seconds / 3600;
-        int minutes = (seconds % 3600) / 60;
-        int secs = seconds % 60;
-
-        if (hours > 0) {
-            return String.format("%d:%02d:%02d", hours, minutes, secs);
-        } else {
-            return String.format("%d:%02d", minutes, secs);
-        }
-    }
 }
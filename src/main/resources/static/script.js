@@ -135,8 +135,8 @@ function analyzeVideo() {
     currentUrl = url;
     showLoading(true, 'Analyzing video...');
 
-    // Call your Spring Boot backend
-    fetch('/api/youtube/check-quality', {
+    // One metadata probe on the backend covers qualities and subtitles
+    fetch('/api/youtube/metadata', {
         method: 'POST',
         headers: {
             'Content-Type': 'application/json'
@@ -144,20 +144,19 @@ function analyzeVideo() {
         body: JSON.stringify(url)
     })
         .then(response => {
+            if (response.status === 404) {
+                throw new Error('No video information found');
+            }
             if (!response.ok) {
                 throw new Error('Network response was not ok');
             }
             return response.json();
         })
-        .then(videoInfos => {
-            console.log('✅ Video info received:', videoInfos);
-            if (videoInfos && videoInfos.length > 0) {
-                displayVideoInfo(videoInfos[0]);
-                loadSubtitles(url);
-                showNotification('✅ Video analyzed successfully!', 'success');
-            } else {
-                throw new Error('No video information found');
-            }
+        .then(metadata => {
+            console.log('✅ Video metadata received:', metadata);
+            displayVideoInfo(metadata);
+            displaySubtitlesWithSelection(selectableSubtitles(metadata));
+            showNotification('✅ Video analyzed successfully!', 'success');
         })
         .catch(error => {
             console.error('❌ Analysis failed:', error);
@@ -238,23 +237,12 @@ function displayQualityOptions(qualities) {
     });
 }
 
-// ✅ Load subtitles with enhanced UI
-async function loadSubtitles(url) {
-    try {
-        const response = await fetch('/api/youtube/get-subtitles', {
-            method: 'POST',
-            headers: { 'Content-Type': 'application/json' },
-            body: JSON.stringify(url)
-        });
-
-        if (response.ok) {
-            const subtitles = await response.json();
-            displaySubtitlesWithSelection(subtitles);
-        }
-    } catch (error) {
-        console.warn('⚠️ Could not load subtitles:', error);
-        displaySubtitlesWithSelection([]);
-    }
+// ✅ Manual subtitles plus the auto-generated track in the video's own language
+function selectableSubtitles(metadata) {
+    const subtitles = metadata.subtitles || [];
+    const originalCaptions = (metadata.automaticCaptions || []).filter(caption =>
+        caption.languageCode.endsWith('-orig') || caption.languageCode === metadata.language);
+    return subtitles.concat(originalCaptions);
 }
 
 // ✅ Enhanced subtitle display with multiple selection
@@ -393,7 +381,7 @@ function downloadVideo(quality) {
 
     showNotification(`Starting ${action} download...`, 'info');
     showProgressSection();
-    simulateProgress();
+    updateProgress(0, 'Queued...');
 
     const downloadRequest = {
         url: currentUrl,
@@ -432,7 +420,7 @@ function downloadAudioOnly(format) {
 
     showNotification(`Starting ${action} download...`, 'info');
     showProgressSection();
-    simulateProgress();
+    updateProgress(0, 'Queued...');
 
     const downloadRequest = {
         url: currentUrl,
@@ -468,7 +456,7 @@ function downloadOnlySubtitles() {
 
     showNotification(`Starting ${selectedSubtitleLanguages.length} subtitle downloads...`, 'info');
     showProgressSection();
-    simulateProgress();
+    updateProgress(0, 'Queued...');
 
     const downloadRequest = {
         url: currentUrl,
@@ -494,16 +482,73 @@ function handleDownloadResponse(response) {
             throw new Error(text || 'Download failed');
         });
     }
-    return response.text().then(result => {
-        console.log('✅ Download completed:', result);
-        updateProgress(100, 'Complete');
-        showNotification('🎉 Download completed!', 'success');
-        updateDownloadCount();
+    return response.json().then(job => {
+        console.log('📋 Download queued:', job);
+        return waitForJob(job.id);
+    });
+}
+
+// Downloads run as background jobs on the server, follow this one's live events
+function waitForJob(jobId) {
+    return new Promise((resolve, reject) => {
+        const events = new EventSource(`/api/youtube/jobs/${jobId}/events`);
+
+        events.addEventListener('progress', event => {
+            const progress = JSON.parse(event.data);
+            updateProgress(Math.round(progress.percent), formatProgressStatus(progress));
+        });
+
+        events.addEventListener('status', event => {
+            const job = JSON.parse(event.data);
+            if (job.status === 'COMPLETED') {
+                events.close();
+                console.log('✅ Download completed:', job.message);
+                updateProgress(100, 'Complete');
+                showNotification('🎉 Download completed!', 'success');
+                updateDownloadCount();
+                setTimeout(() => hideProgressSection(), 2000);
+                resolve(job);
+            } else if (job.status === 'FAILED') {
+                events.close();
+                reject(new Error(job.message || 'Download failed'));
+            } else if (job.status === 'QUEUED') {
+                updateProgress(0, 'Queued...');
+            }
+        });
 
-        setTimeout(() => hideProgressSection(), 2000);
+        events.onerror = () => {
+            if (events.readyState === EventSource.CLOSED) {
+                reject(new Error('Lost connection to download progress'));
+            }
+        };
     });
 }
 
+function formatProgressStatus(progress) {
+    const parts = ['Downloading...'];
+    if (progress.speedBytesPerSecond) {
+        parts.push(`${formatBytes(progress.speedBytesPerSecond)}/s`);
+    }
+    if (progress.etaSeconds != null) {
+        parts.push(`ETA ${progress.etaSeconds}s`);
+    }
+    if (progress.fragmentCount) {
+        parts.push(`(fragment ${progress.fragmentIndex}/${progress.fragmentCount})`);
+    }
+    return parts.join(' ');
+}
+
+function formatBytes(bytes) {
+    const units = ['B', 'KB', 'MB', 'GB'];
+    let value = bytes;
+    let unit = 0;
+    while (value >= 1024 && unit < units.length - 1) {
+        value /= 1024;
+        unit++;
+    }
+    return `${value.toFixed(1)} ${units[unit]}`;
+}
+
 function handleDownloadError(error) {
     console.error('❌ Download failed:', error);
     showNotification('❌ Download failed: ' + error.message, 'error');
@@ -544,18 +589,6 @@ function selectQuality(element) {
     showNotification(`Selected: ${quality}`, 'info');
 }
 
-function simulateProgress() {
-    let progress = 0;
-    const interval = setInterval(() => {
-        progress += Math.random() * 15;
-        if (progress >= 95) {
-            clearInterval(interval);
-            progress = 95;
-        }
-        updateProgress(Math.round(progress), 'Downloading...');
-    }, 500);
-}
-
 function updateProgress(percent, status = '') {
     const progressFill = document.getElementById('progressFill');
     const progressText = document.getElementById('progressText');
@@ -807,8 +840,71 @@ function downloadSelected() {
     }
 }
 
+// Downloads every entry of the playlist/channel in the URL box, a few at a time on the server
 function downloadAll() {
-    showNotification('Download All feature coming soon!', 'info');
+    const url = currentUrl || document.getElementById('urlInput')?.value.trim();
+    if (!url) {
+        showNotification('Please enter a playlist URL', 'warning');
+        return;
+    }
+
+    showNotification('Starting playlist download...', 'info');
+    showProgressSection();
+    updateProgress(0, 'Enumerating playlist...');
+
+    const downloadRequest = {
+        url: url,
+        quality: selectedQuality || 'playlist-all',
+        audioFormat: selectedAudioFormat,
+        downloadPath: document.getElementById('downloadPath')?.value || '',
+        downloadType: downloadType,
+        subtitleLanguages: downloadType.includes('subtitles') ? selectedSubtitleLanguages : [],
+        subtitleFormats: getSelectedSubtitleFormats()
+    };
+
+    fetch('/api/youtube/playlist', {
+        method: 'POST',
+        headers: { 'Content-Type': 'application/json' },
+        body: JSON.stringify(downloadRequest)
+    })
+        .then(response => {
+            if (!response.ok) {
+                return response.text().then(text => {
+                    throw new Error(text || 'Playlist download failed');
+                });
+            }
+            return response.json();
+        })
+        .then(playlist => followPlaylist(playlist.id))
+        .catch(handleDownloadError);
+}
+
+function followPlaylist(playlistId) {
+    const events = new EventSource(`/api/youtube/playlists/${playlistId}/events`);
+
+    events.addEventListener('entry', event => {
+        const result = JSON.parse(event.data);
+        const done = result.completed + result.failed;
+        updateProgress(Math.round(done * 100 / result.discovered), `${done}/${result.discovered}+ entries`);
+        if (result.status === 'COMPLETED') {
+            updateDownloadCount();
+        } else {
+            console.warn('⚠️ Playlist entry failed:', result.entry.title, result.message);
+        }
+    });
+
+    events.addEventListener('status', event => {
+        const playlist = JSON.parse(event.data);
+        const done = playlist.completed + playlist.failed;
+        const percent = playlist.discovered > 0 ? Math.round(done * 100 / playlist.discovered) : 0;
+        updateProgress(percent, `${done}/${playlist.discovered}${playlist.enumerationComplete ? '' : '+'} entries`);
+
+        if (playlist.status === 'COMPLETED' || playlist.status === 'FAILED') {
+            events.close();
+            showNotification(playlist.message, playlist.status === 'COMPLETED' ? 'success' : 'error');
+            setTimeout(() => hideProgressSection(), 2000);
+        }
+    });
 }
 
 function browsePath() {
@@ -0,0 +1,71 @@
+#!/usr/bin/env python3
+"""Long-lived yt-dlp worker driven by YtDlpWorkerPool.
+
+yt-dlp and its extractors are imported once; each request then runs
+yt_dlp.main() in-process with the given command line arguments.
+
+Protocol, one request at a time:
+  request   one JSON line on stdin: {"id": "...", "args": [...]}
+            or {"id": "...", "ping": true} as a health check
+  response  one JSON header line on stdout:
+              {"id": "...", "exit": 0, "stdout": <bytes>, "stderr": <bytes>, "rss_kb": <int>}
+            followed by exactly that many bytes of captured stdout, then of stderr
+"""
+import contextlib
+import io
+import json
+import os
+import resource
+import sys
+
+import yt_dlp
+
+CHANNEL = sys.stdout.buffer
+
+
+def rss_kb():
+    try:
+        with open("/proc/self/statm") as statm:
+            return int(statm.read().split()[1]) * os.sysconf("SC_PAGE_SIZE") // 1024
+    except (OSError, ValueError, IndexError):
+        # Peak rather than current size, but still shows growth
+        usage = resource.getrusage(resource.RUSAGE_SELF).ru_maxrss
+        return usage // 1024 if sys.platform == "darwin" else usage
+
+
+def run(args):
+    out, err = io.StringIO(), io.StringIO()
+    code = 0
+    with contextlib.redirect_stdout(out), contextlib.redirect_stderr(err):
+        try:
+            yt_dlp.main(args)
+        except SystemExit as exit_:
+            code = exit_.code if isinstance(exit_.code, int) else (0 if exit_.code is None else 1)
+        except Exception as error:  # keep the worker alive whatever the extractor does
+            print("ERROR: bridge: %s" % error, file=sys.stderr)
+            code = 1
+    return code, out.getvalue().encode("utf-8"), err.getvalue().encode("utf-8")
+
+
+def respond(request_id, code, stdout, stderr):
+    header = {"id": request_id, "exit": code, "stdout": len(stdout), "stderr": len(stderr), "rss_kb": rss_kb()}
+    CHANNEL.write(json.dumps(header).encode("utf-8") + b"\n")
+    CHANNEL.write(stdout)
+    CHANNEL.write(stderr)
+    CHANNEL.flush()
+
+
+def main():
+    respond("ready", 0, b"", yt_dlp.version.__version__.encode("utf-8"))
+    for line in sys.stdin:
+        if not line.strip():
+            continue
+        request = json.loads(line)
+        if request.get("ping"):
+            respond(request["id"], 0, b"", b"")
+        else:
+            respond(request["id"], *run(request["args"]))
+
+
+if __name__ == "__main__":
+    main()
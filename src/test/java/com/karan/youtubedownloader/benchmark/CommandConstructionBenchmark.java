@@ -0,0 +1,88 @@
+package com.karan.youtubedownloader.benchmark;
+
+import com.karan.youtubedownloader.config.DownloaderProperties;
+import com.karan.youtubedownloader.model.DownloadRequest;
+import com.karan.youtubedownloader.model.TransferOptions;
+import com.karan.youtubedownloader.process.ProcessRunner;
+import com.karan.youtubedownloader.service.DownloadKey;
+import com.karan.youtubedownloader.service.MetadataCache;
+import com.karan.youtubedownloader.service.TransferPlanner;
+import com.karan.youtubedownloader.service.VideoMetadataParser;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The per-request work done before yt-dlp is started: the dedupe key of the
+ * request, and the transfer plan, which picks the expected format out of the
+ * cached probe of the fixture video.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CommandConstructionBenchmark {
+
+    private static final String URL = "https://www.youtube.com/watch?v=dQw4w9WgXcQ";
+
+    private ProcessRunner processRunner;
+    private TransferPlanner transferPlanner;
+    private DownloadRequest request;
+
+    @Setup
+    public void setUp() throws Exception {
+        DownloaderProperties properties = new DownloaderProperties();
+        // "true --version" succeeds, so the planner treats aria2c as installed without needing it
+        properties.getTransfer().setAria2cExecutable("true");
+        processRunner = new ProcessRunner(properties, new SimpleMeterRegistry());
+
+        MetadataCache metadataCache = new MetadataCache(properties);
+        byte[] json = Fixtures.bytes("fixtures/yt-dlp-dump-json.json");
+        metadataCache.get(URL, () -> new VideoMetadataParser().parse(new ByteArrayInputStream(json)));
+        transferPlanner = new TransferPlanner(processRunner, metadataCache, properties);
+
+        request = DownloadRequest.builder()
+                .url(URL)
+                .downloadType("video+subtitles")
+                .quality("1080p")
+                .subtitleLanguages(List.of("en", "de", "es"))
+                .build();
+        // The aria2c probe runs once per planner; keep it out of the measurement
+        transferPlanner.plan(URL, null, "1080p", false, TransferOptions.from(request));
+    }
+
+    @TearDown
+    public void tearDown() {
+        processRunner.shutdown();
+    }
+
+    @Benchmark
+    public String dedupeKey() {
+        return DownloadKey.of(request);
+    }
+
+    @Benchmark
+    public List<String> videoTransferPlan() {
+        return transferPlanner.plan(URL, null, "1080p", false, TransferOptions.from(request));
+    }
+
+    @Benchmark
+    public List<String> audioTransferPlan() {
+        return transferPlanner.plan(URL, null, null, true, TransferOptions.from(request));
+    }
+}
@@ -0,0 +1,40 @@
+package com.karan.youtubedownloader.benchmark;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+
+final class Fixtures {
+
+    private Fixtures() {
+    }
+
+    static byte[] bytes(String resource) throws IOException {
+        try (InputStream stream = Fixtures.class.getClassLoader().getResourceAsStream(resource)) {
+            if (stream == null) {
+                throw new IOException("Missing fixture " + resource);
+            }
+            return stream.readAllBytes();
+        }
+    }
+
+    static String[] lines(String resource) throws IOException {
+        return new String(bytes(resource), StandardCharsets.UTF_8).split("\n");
+    }
+
+    // For fixtures handed to a subprocess, which needs a real file
+    static Path path(String resource) throws IOException {
+        URL url = Fixtures.class.getClassLoader().getResource(resource);
+        if (url == null) {
+            throw new IOException("Missing fixture " + resource);
+        }
+        try {
+            return Path.of(url.toURI());
+        } catch (URISyntaxException e) {
+            throw new IOException("Fixture " + resource + " is not a file", e);
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package com.karan.youtubedownloader.benchmark;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.karan.youtubedownloader.model.VideoMetadata;
+import com.karan.youtubedownloader.service.VideoMetadataParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Streaming extraction vs. materialising the whole --dump-json tree, on a
+ * fixture shaped like a real yt-dlp probe (DASH fragments, ~130 caption
+ * languages, heatmap, requested_formats). Run with -prof gc to compare
+ * allocation per probe.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MetadataParsingBenchmark {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final VideoMetadataParser streamingParser = new VideoMetadataParser();
+    private byte[] json;
+
+    @Setup
+    public void loadFixture() throws Exception {
+        json = Fixtures.bytes("fixtures/yt-dlp-dump-json.json");
+    }
+
+    @Benchmark
+    public JsonNode treeModel() throws Exception {
+        return objectMapper.readTree(json);
+    }
+
+    @Benchmark
+    public List<VideoMetadata> streamingParser() throws Exception {
+        try (InputStream stream = new ByteArrayInputStream(json)) {
+            return streamingParser.parse(stream);
+        }
+    }
+}
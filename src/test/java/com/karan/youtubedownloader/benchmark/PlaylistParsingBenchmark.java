@@ -0,0 +1,46 @@
+package com.karan.youtubedownloader.benchmark;
+
+import com.karan.youtubedownloader.service.VideoMetadataParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Flat enumeration of a 500-entry playlist (--flat-playlist --dump-json, one
+ * object per line), as PlaylistService reads it while entries are dispatched.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PlaylistParsingBenchmark {
+
+    private final VideoMetadataParser parser = new VideoMetadataParser();
+    private byte[] jsonLines;
+
+    @Setup
+    public void loadFixture() throws Exception {
+        jsonLines = Fixtures.bytes("fixtures/yt-dlp-flat-playlist.jsonl");
+    }
+
+    @Benchmark
+    public void parseFlatEntries(Blackhole blackhole) throws Exception {
+        try (InputStream stream = new ByteArrayInputStream(jsonLines)) {
+            parser.parseFlatEntries(stream, blackhole::consume);
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package com.karan.youtubedownloader.benchmark;
+
+import com.karan.youtubedownloader.config.DownloaderProperties;
+import com.karan.youtubedownloader.model.DownloadProgress;
+import com.karan.youtubedownloader.process.ProcessResult;
+import com.karan.youtubedownloader.process.ProcessRunner;
+import com.karan.youtubedownloader.service.ProgressParser;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A whole subprocess round trip through ProcessRunner: spawn, drain stdout and
+ * stderr concurrently into listeners that parse progress, and wait for exit.
+ * fake-yt-dlp.sh replays the recorded download output, so the numbers cover
+ * the JVM side without the network. {@code spawnOnly} runs a script that
+ * prints nothing, to separate the fork/exec cost from the draining.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ProcessDrainBenchmark {
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(30);
+
+    private ProcessRunner processRunner;
+    private List<String> replayCommand;
+    private List<String> emptyCommand;
+
+    @Setup
+    public void setUp() throws Exception {
+        processRunner = new ProcessRunner(new DownloaderProperties(), new SimpleMeterRegistry());
+        String script = Fixtures.path("fixtures/fake-yt-dlp.sh").toString();
+        replayCommand = List.of("sh", script, Fixtures.path("fixtures/yt-dlp-download-output.txt").toString(),
+                "--newline", "--progress", "https://www.youtube.com/watch?v=dQw4w9WgXcQ");
+        emptyCommand = List.of("sh", script, "/dev/null");
+    }
+
+    @TearDown
+    public void tearDown() {
+        processRunner.shutdown();
+    }
+
+    @Benchmark
+    public ProcessResult replayDownload(Blackhole blackhole) throws Exception {
+        ProcessResult result = processRunner.run(replayCommand, TIMEOUT,
+                line -> consumeProgress(line, blackhole),
+                line -> consumeProgress(line, blackhole));
+        if (!result.isSuccess()) {
+            throw new IllegalStateException("Fake yt-dlp failed: " + result.stderrText());
+        }
+        return result;
+    }
+
+    @Benchmark
+    public ProcessResult spawnOnly() throws Exception {
+        return processRunner.run(emptyCommand, TIMEOUT, line -> { }, line -> { });
+    }
+
+    private static void consumeProgress(String line, Blackhole blackhole) {
+        DownloadProgress progress = ProgressParser.parse(line);
+        blackhole.consume(progress);
+    }
+}
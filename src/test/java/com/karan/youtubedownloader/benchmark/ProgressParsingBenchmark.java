@@ -0,0 +1,44 @@
+package com.karan.youtubedownloader.benchmark;
+
+import com.karan.youtubedownloader.service.ProgressParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Every stdout and stderr line of a running download goes through
+ * ProgressParser. The fixture is the recorded --newline output of a DASH
+ * video+audio download: ~1300 lines, nearly all of them fragment progress.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ProgressParsingBenchmark {
+
+    private String[] lines;
+
+    @Setup
+    public void loadFixture() throws Exception {
+        lines = Fixtures.lines("fixtures/yt-dlp-download-output.txt");
+    }
+
+    @Benchmark
+    public void parseDownloadOutput(Blackhole blackhole) {
+        for (String line : lines) {
+            blackhole.consume(ProgressParser.parse(line));
+        }
+    }
+}
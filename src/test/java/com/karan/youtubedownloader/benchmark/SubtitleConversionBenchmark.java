@@ -0,0 +1,90 @@
+package com.karan.youtubedownloader.benchmark;
+
+import com.karan.youtubedownloader.model.SubtitleFormat;
+import com.karan.youtubedownloader.service.SubtitleConverter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A four-hour auto-generated WebVTT track (rolling cues, inline word timings,
+ * about 2 MB) converted to each target, as downloadOnlySubtitles does for a
+ * long stream recording.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SubtitleConversionBenchmark {
+
+    private static final String[] WORDS = {"so", "today", "we", "are", "going", "to", "look", "at", "the",
+            "new", "release", "and", "what", "it", "means", "for", "everyone", "watching", "this", "stream"};
+
+    @Param({"SRT", "VTT", "ASS", "TXT"})
+    public SubtitleFormat target;
+
+    @Param({"4"})
+    public int hours;
+
+    private final SubtitleConverter converter = new SubtitleConverter();
+    private byte[] transcript;
+
+    @Setup
+    public void buildTranscript() {
+        StringBuilder vtt = new StringBuilder("WEBVTT\nKind: captions\nLanguage: en\n\n");
+        String previous = null;
+        long end = hours * 3_600_000L;
+        int word = 0;
+        for (long start = 0; start < end; start += 2500) {
+            StringBuilder spoken = new StringBuilder();
+            StringBuilder timed = new StringBuilder();
+            for (int i = 0; i < 6; i++, word++) {
+                String next = WORDS[word % WORDS.length];
+                spoken.append(i == 0 ? "" : " ").append(next);
+                if (i == 0) {
+                    timed.append(next);
+                } else {
+                    timed.append('<').append(timestamp(start + i * 400L)).append("><c> ").append(next).append("</c>");
+                }
+            }
+            cue(vtt, start, start + 2490, previous == null ? " " : previous, timed.toString());
+            cue(vtt, start + 2490, start + 2500, spoken.toString(), " ");
+            previous = spoken.toString();
+        }
+        transcript = vtt.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public int convert() throws Exception {
+        try (Reader source = new InputStreamReader(new ByteArrayInputStream(transcript), StandardCharsets.UTF_8)) {
+            return converter.convert(source, SubtitleFormat.VTT, Map.of(target, Writer.nullWriter()));
+        }
+    }
+
+    private static void cue(StringBuilder vtt, long start, long end, String first, String second) {
+        vtt.append(timestamp(start)).append(" --> ").append(timestamp(end)).append(" align:start position:0%\n")
+                .append(first).append('\n').append(second).append("\n\n");
+    }
+
+    private static String timestamp(long millis) {
+        return String.format("%02d:%02d:%02d.%03d", millis / 3_600_000, millis / 60_000 % 60, millis / 1000 % 60, millis % 1000);
+    }
+}
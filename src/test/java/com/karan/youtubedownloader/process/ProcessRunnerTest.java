@@ -0,0 +1,53 @@
+package com.karan.youtubedownloader.process;
+
+import com.karan.youtubedownloader.config.DownloaderProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ProcessRunnerTest {
+
+    private final ProcessRunner processRunner = new ProcessRunner(new DownloaderProperties(), new SimpleMeterRegistry());
+
+    @AfterEach
+    void tearDown() {
+        processRunner.shutdown();
+    }
+
+    @Test
+    void drainsLargeStderrWithoutBlocking() throws Exception {
+        AtomicInteger stderrLines = new AtomicInteger();
+
+        ProcessResult result = processRunner.run(
+                Arrays.asList("sh", "-c", "i=0; while [ $i -lt 20000 ]; do echo \"err $i\" 1>&2; i=$((i+1)); done; echo done"),
+                Duration.ofSeconds(30),
+                line -> { },
+                line -> stderrLines.incrementAndGet());
+
+        assertTrue(result.isSuccess());
+        assertEquals(20000, stderrLines.get());
+        assertEquals(200, result.getStderrTail().size());
+        assertEquals("err 19999", result.getStderrTail().get(199));
+        assertEquals("done", result.getStdoutTail().get(0));
+    }
+
+    @Test
+    void killsProcessAfterTimeout() throws Exception {
+        ProcessResult result = processRunner.run(
+                Arrays.asList("sh", "-c", "sleep 30"),
+                Duration.ofMillis(300),
+                line -> { },
+                line -> { });
+
+        assertTrue(result.isTimedOut());
+        assertFalse(result.isSuccess());
+    }
+}
@@ -0,0 +1,92 @@
+package com.karan.youtubedownloader.process;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.karan.youtubedownloader.config.DownloaderProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs the pool against a fake bridge that speaks the same protocol, so only
+ * python3 is needed.
+ */
+class YtDlpWorkerPoolTest {
+
+    // The first worker never answers its first ping; the ones after it behave
+    private static final String FAKE_BRIDGE = String.join("\n",
+            "import json, os, sys, time",
+            "def respond(request_id, out=b''):",
+            "    header = {'id': request_id, 'exit': 0, 'stdout': len(out), 'stderr': 4, 'rss_kb': 1}",
+            "    sys.stdout.buffer.write(json.dumps(header).encode() + b'\\n' + out + b'fake')",
+            "    sys.stdout.buffer.flush()",
+            "marker = os.path.join(os.path.dirname(__file__), 'first-worker')",
+            "hang = not os.path.exists(marker)",
+            "open(marker, 'a').close()",
+            "respond('ready')",
+            "for line in sys.stdin:",
+            "    request = json.loads(line)",
+            "    if request.get('ping') and hang:",
+            "        open(marker + '-pinged', 'a').close()",
+            "        time.sleep(60)",
+            "    respond(request['id'], str(os.getpid()).encode())",
+            "");
+
+    @TempDir
+    Path dir;
+
+    private YtDlpWorkerPool pool;
+
+    @AfterEach
+    void tearDown() {
+        if (pool != null) {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void workerHangingOnItsHealthCheckIsReplaced() throws Exception {
+        Path bridge = dir.resolve("fake-bridge.py");
+        Files.writeString(bridge, FAKE_BRIDGE);
+        // Stands in for the interpreter and ignores the real bridge script the pool hands it
+        Path python = dir.resolve("python");
+        Files.writeString(python, "#!/bin/sh\nexec python3 " + bridge + "\n");
+        assertTrue(python.toFile().setExecutable(true));
+
+        DownloaderProperties properties = new DownloaderProperties();
+        DownloaderProperties.WorkerPool config = properties.getWorkerPool();
+        config.setEnabled(true);
+        config.setSize(1);
+        config.setPythonExecutable(python.toString());
+        config.setHealthCheckInterval(Duration.ofMillis(200));
+        pool = new YtDlpWorkerPool(properties, new ObjectMapper(), new SimpleMeterRegistry());
+        pool.start();
+
+        Path pinged = dir.resolve("first-worker-pinged");
+        for (int i = 0; i < 200 && !Files.exists(pinged); i++) {
+            Thread.sleep(50);
+        }
+        assertTrue(Files.exists(pinged));
+
+        // The hung ping holds the health check thread, so only a separate watchdog can kill that worker
+        AtomicReference<String> stdout = new AtomicReference<>();
+        Optional<ProcessResult> result = Optional.empty();
+        long deadline = System.nanoTime() + Duration.ofSeconds(20).toNanos();
+        while (result.isEmpty() && System.nanoTime() < deadline) {
+            result = pool.runStreaming(List.of("--version"), Duration.ofSeconds(10),
+                    stream -> stdout.set(new String(stream.readAllBytes(), StandardCharsets.UTF_8)), line -> { });
+        }
+        assertTrue(result.isPresent());
+        assertTrue(stdout.get().matches("\\d+"));
+    }
+}
@@ -0,0 +1,92 @@
+package com.karan.youtubedownloader.process;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Drives the real bridge script against a stub yt_dlp module placed next to it,
+ * so only python3 is needed.
+ */
+class YtDlpWorkerTest {
+
+    private static final String STUB_MODULE = String.join("\n",
+            "import sys, time",
+            "from . import version",
+            "def main(args):",
+            "    if args and args[0] == 'sleep':",
+            "        time.sleep(float(args[1]))",
+            "    print('\\n'.join(args))",
+            "    print('WARNING: stub', file=sys.stderr)",
+            "    sys.exit(2 if 'fail' in args else 0)",
+            "");
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final ScheduledExecutorService watchdog = Executors.newSingleThreadScheduledExecutor();
+
+    @TempDir
+    Path dir;
+
+    private YtDlpWorker worker;
+
+    @AfterEach
+    void tearDown() {
+        if (worker != null) {
+            worker.destroy();
+        }
+        watchdog.shutdownNow();
+    }
+
+    @Test
+    void servesRequestsInOneProcess() throws Exception {
+        worker = startWorker();
+        assertEquals("2024.01.01", worker.version());
+
+        YtDlpWorker.Response first = worker.call("a", List.of("--dump-json", "https://youtu.be/x"), Duration.ofSeconds(10));
+        assertEquals(0, first.exitCode);
+        assertEquals("--dump-json\nhttps://youtu.be/x\n", new String(first.stdout, StandardCharsets.UTF_8));
+        assertEquals("WARNING: stub\n", new String(first.stderr, StandardCharsets.UTF_8));
+
+        YtDlpWorker.Response second = worker.call("b", List.of("fail"), Duration.ofSeconds(10));
+        assertEquals(2, second.exitCode);
+
+        worker.ping("c", Duration.ofSeconds(5));
+        assertEquals(3, worker.served());
+        assertTrue(worker.residentBytes() > 0);
+        assertTrue(worker.isAlive());
+    }
+
+    @Test
+    void killsWorkerThatOverrunsItsTimeout() throws Exception {
+        worker = startWorker();
+
+        assertThrows(IOException.class, () -> worker.call("slow", List.of("sleep", "30"), Duration.ofMillis(300)));
+        assertTrue(worker.isTimedOut());
+    }
+
+    private YtDlpWorker startWorker() throws IOException {
+        Path bridge = dir.resolve("yt-dlp-bridge.py");
+        try (InputStream source = getClass().getResourceAsStream("/yt-dlp-bridge.py")) {
+            Files.copy(source, bridge);
+        }
+        Path module = Files.createDirectories(dir.resolve("yt_dlp"));
+        Files.writeString(module.resolve("__init__.py"), STUB_MODULE);
+        Files.writeString(module.resolve("version.py"), "__version__ = '2024.01.01'\n");
+        return YtDlpWorker.start(List.of("python3", bridge.toString()), objectMapper, watchdog, Duration.ofSeconds(10));
+    }
+}
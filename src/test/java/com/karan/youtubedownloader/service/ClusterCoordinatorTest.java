@@ -0,0 +1,202 @@
+package com.karan.youtubedownloader.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.karan.youtubedownloader.config.DownloaderProperties;
+import com.karan.youtubedownloader.model.ClusterJob;
+import com.karan.youtubedownloader.model.DownloadJob;
+import com.karan.youtubedownloader.model.DownloadRequest;
+import com.karan.youtubedownloader.model.JobPriority;
+import com.karan.youtubedownloader.model.JobStatus;
+import com.karan.youtubedownloader.model.JobType;
+import com.karan.youtubedownloader.repository.ClusterJobRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs the coordinator against H2 in MySQL mode, which understands the same
+ * FOR UPDATE SKIP LOCKED claim query.
+ */
+@DataJpaTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:cluster;MODE=MySQL;DB_CLOSE_DELAY=-1",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.jpa.database-platform=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.hibernate.ddl-auto=create-drop"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class ClusterCoordinatorTest {
+
+    @Autowired
+    private ClusterJobRepository repository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private ClusterCoordinator nodeA;
+    private ClusterCoordinator nodeB;
+
+    @BeforeEach
+    void setUp() {
+        nodeA = coordinator("node-a");
+        nodeB = coordinator("node-b");
+    }
+
+    @AfterEach
+    void tearDown() {
+        nodeA.leave();
+        nodeB.leave();
+        repository.deleteAll();
+    }
+
+    @Test
+    void claimsMostUrgentJobsFirst() {
+        nodeA.publish(job("bulk", JobPriority.BULK), false);
+        nodeA.publish(job("video", JobPriority.VIDEO), false);
+        nodeA.publish(job("audio", JobPriority.AUDIO), false);
+
+        List<ClusterJob> claimed = nodeB.claim(JobType.VIDEO, 2);
+
+        assertEquals(List.of("audio", "video"), claimed.stream().map(ClusterJob::getJobId).toList());
+        ClusterJob row = repository.findById("audio").orElseThrow();
+        assertEquals(ClusterJob.State.LEASED, row.getState());
+        assertEquals("node-b", row.getLeaseOwner());
+        assertEquals(1, row.getAttempts());
+        assertEquals(List.of("bulk"), nodeA.claim(JobType.VIDEO, 5).stream().map(ClusterJob::getJobId).toList());
+        assertTrue(nodeA.claim(JobType.AUDIO, 5).isEmpty());
+    }
+
+    @Test
+    void concurrentClaimSkipsRowsLockedByAnotherNode() throws Exception {
+        nodeA.publish(job("first", JobPriority.VIDEO), false);
+        nodeA.publish(job("second", JobPriority.VIDEO), false);
+
+        CountDownLatch locked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<Void> holder = CompletableFuture.runAsync(() ->
+                new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+                    repository.lockById("first");
+                    locked.countDown();
+                    try {
+                        release.await(10, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }));
+        assertTrue(locked.await(10, TimeUnit.SECONDS));
+
+        List<ClusterJob> claimed = nodeB.claim(JobType.VIDEO, 2);
+        release.countDown();
+        holder.get(10, TimeUnit.SECONDS);
+
+        assertEquals(List.of("second"), claimed.stream().map(ClusterJob::getJobId).toList());
+    }
+
+    @Test
+    void reclaimsJobWhoseLeaseRanOut() {
+        nodeA.publish(job("orphan", JobPriority.VIDEO), true);
+        assertTrue(nodeB.claim(JobType.VIDEO, 1).isEmpty());
+
+        ClusterJob row = repository.findById("orphan").orElseThrow();
+        row.setLeaseExpiresAt(LocalDateTime.now().minusSeconds(1));
+        repository.save(row);
+
+        List<ClusterJob> claimed = nodeB.claim(JobType.VIDEO, 1);
+        assertEquals(1, claimed.size());
+        assertEquals("node-b", claimed.get(0).getLeaseOwner());
+        assertEquals(2, claimed.get(0).getAttempts());
+        assertEquals("https://youtu.be/orphan", nodeB.readRequest(claimed.get(0)).orElseThrow().getUrl());
+    }
+
+    @Test
+    void heartbeatKeepsOwnLeasesOnly() {
+        nodeA.publish(job("held", JobPriority.VIDEO), true);
+        nodeA.publish(job("dropped", JobPriority.VIDEO), true);
+        expireLease("held");
+        expireLease("dropped");
+
+        nodeA.heartbeat(List.of("held"));
+        nodeB.heartbeat(List.of("dropped"));
+
+        assertTrue(repository.findById("held").orElseThrow().getLeaseExpiresAt().isAfter(LocalDateTime.now()));
+        assertEquals(List.of("dropped"), nodeB.claim(JobType.VIDEO, 5).stream().map(ClusterJob::getJobId).toList());
+    }
+
+    @Test
+    void stopsQueuedJobsAtOnceAndFlagsLeasedOnes() {
+        nodeA.publish(job("queued", JobPriority.VIDEO), false);
+        nodeA.publish(job("paused", JobPriority.VIDEO), false);
+        nodeA.publish(job("running", JobPriority.VIDEO), true);
+
+        ClusterJob cancelled = nodeB.requestStop("queued", JobStatus.CANCELLED).orElseThrow();
+        assertNull(cancelled.getLeaseOwner());
+        assertEquals(JobStatus.CANCELLED, cancelled.getStopRequested());
+        assertTrue(repository.findById("queued").isEmpty());
+
+        assertEquals(ClusterJob.State.PAUSED, nodeB.requestStop("paused", JobStatus.PAUSED).orElseThrow().getState());
+        assertTrue(nodeB.claim(JobType.VIDEO, 5).isEmpty());
+        assertThrows(IllegalStateException.class, () -> nodeB.requeue("running"));
+        assertEquals(ClusterJob.State.QUEUED, nodeB.requeue("paused").orElseThrow().getState());
+
+        nodeB.requestStop("running", JobStatus.PAUSED);
+        assertTrue(nodeB.stopRequests().isEmpty());
+        assertEquals(List.of("running"), nodeA.stopRequests().stream().map(ClusterJob::getJobId).toList());
+
+        nodeA.park("running");
+        ClusterJob parked = repository.findById("running").orElseThrow();
+        assertEquals(ClusterJob.State.PAUSED, parked.getState());
+        assertNull(parked.getStopRequested());
+        assertTrue(nodeA.hold("running"));
+        assertFalse(nodeB.hold("running"));
+    }
+
+    private void expireLease(String jobId) {
+        ClusterJob row = repository.findById(jobId).orElseThrow();
+        row.setLeaseExpiresAt(LocalDateTime.now().minusSeconds(1));
+        repository.save(row);
+    }
+
+    private ClusterCoordinator coordinator(String nodeId) {
+        DownloaderProperties properties = new DownloaderProperties();
+        properties.getCluster().setEnabled(true);
+        properties.getCluster().setNodeId(nodeId);
+        properties.getCluster().setLeaseDuration(Duration.ofMinutes(1));
+        return new ClusterCoordinator(repository, new ObjectMapper(), transactionManager, properties);
+    }
+
+    private static DownloadJob job(String id, JobPriority priority) {
+        String url = "https://youtu.be/" + id;
+        return DownloadJob.builder()
+                .id(id)
+                .type(JobType.VIDEO)
+                .url(url)
+                .downloadType("video")
+                .priority(priority)
+                .status(JobStatus.QUEUED)
+                .createdAt(LocalDateTime.now())
+                .request(DownloadRequest.builder().url(url).downloadType("video").build())
+                .dedupeKey("key-" + id)
+                .build();
+    }
+}
@@ -0,0 +1,85 @@
+package com.karan.youtubedownloader.service;
+
+import com.karan.youtubedownloader.config.DownloaderProperties;
+import com.karan.youtubedownloader.model.JobStatus;
+import com.karan.youtubedownloader.process.ManagedProcess;
+import com.karan.youtubedownloader.process.ProcessResult;
+import com.karan.youtubedownloader.process.ProcessRunner;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DownloadControlTest {
+
+    private final ProcessRunner processRunner = new ProcessRunner(new DownloaderProperties(), new SimpleMeterRegistry());
+
+    @AfterEach
+    void tearDown() {
+        processRunner.shutdown();
+    }
+
+    @Test
+    void stopKillsTheProcessTree() throws Exception {
+        DownloadControl control = new DownloadControl();
+        ManagedProcess process = processRunner.start(
+                Arrays.asList("sh", "-c", "sleep 30 & sleep 30; wait"), line -> { }, line -> { });
+        control.attach(process);
+        // Stopping before the shell forked both sleeps would not exercise the tree kill
+        ProcessHandle shell = ProcessHandle.of(process.pid()).orElseThrow();
+        for (int i = 0; i < 200 && shell.descendants().count() < 2; i++) {
+            Thread.sleep(10);
+        }
+        assertEquals(2, shell.descendants().count());
+
+        long started = System.nanoTime();
+        control.requestStop(JobStatus.PAUSED);
+        ProcessResult result = process.await(Duration.ofSeconds(20));
+
+        assertFalse(result.isSuccess());
+        assertTrue(System.nanoTime() - started < TimeUnit.SECONDS.toNanos(10));
+        assertEquals(JobStatus.PAUSED, control.stopRequested());
+        assertThrows(InterruptedException.class, control::throwIfStopped);
+    }
+
+    @Test
+    void stopInterruptsAWaitingWorker() throws Exception {
+        DownloadControl control = new DownloadControl();
+        CountDownLatch bound = new CountDownLatch(1);
+        CountDownLatch interrupted = new CountDownLatch(1);
+        Thread worker = new Thread(() -> {
+            control.bind();
+            bound.countDown();
+            try {
+                Thread.sleep(30_000);
+            } catch (InterruptedException e) {
+                interrupted.countDown();
+            }
+        });
+        worker.start();
+
+        assertTrue(bound.await(5, TimeUnit.SECONDS));
+        control.requestStop(JobStatus.CANCELLED);
+        assertTrue(interrupted.await(5, TimeUnit.SECONDS));
+        worker.join();
+    }
+
+    @Test
+    void jobStoppedBeforeItRunsNeverBinds() {
+        DownloadControl control = new DownloadControl();
+        control.requestStop(JobStatus.CANCELLED);
+        control.requestStop(JobStatus.PAUSED);
+
+        assertFalse(control.bind());
+        assertEquals(JobStatus.CANCELLED, control.stopRequested());
+    }
+}
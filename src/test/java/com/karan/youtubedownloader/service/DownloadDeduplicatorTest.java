@@ -0,0 +1,82 @@
+package com.karan.youtubedownloader.service;
+
+import com.karan.youtubedownloader.config.DownloaderProperties;
+import com.karan.youtubedownloader.repository.DownloadHistoryRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+
+class DownloadDeduplicatorTest {
+
+    @TempDir
+    Path tempDir;
+
+    private final DownloaderProperties properties = new DownloaderProperties();
+    private final DownloadDeduplicator deduplicator =
+            new DownloadDeduplicator(mock(DownloadHistoryRepository.class), properties);
+
+    @Test
+    void linksFileAndSidecarsIntoAnotherFolder() throws Exception {
+        Path source = writeDownload();
+        Path otherUser = tempDir.resolve("other-user");
+
+        List<Path> placed = deduplicator.materialize(DownloadDeduplicator.outputFiles(source.toString(), null), otherUser.toString());
+
+        assertEquals(List.of(otherUser.resolve("Song.en.vtt"), otherUser.resolve("Song.mp4")), placed);
+        assertTrue(Files.isSameFile(source, otherUser.resolve("Song.mp4")));
+        assertFalse(Files.exists(otherUser.resolve("Song (Live).mp4")));
+        assertFalse(Files.exists(otherUser.resolve("Song.Remix.mp4")));
+        assertFalse(Files.exists(otherUser.resolve("Song.Remix.en.vtt")));
+    }
+
+    @Test
+    void placesTheRecordedFilesOnly() throws Exception {
+        Path source = writeDownload();
+        Path lyrics = Files.writeString(source.resolveSibling("Song.lyrics.lrc"), "[00:01]la");
+        Path otherUser = tempDir.resolve("other-user");
+
+        List<Path> files = DownloadDeduplicator.outputFiles(source.toString(), List.of(lyrics.toString(), source.toString()));
+        assertEquals(List.of(lyrics, source.resolveSibling("Song.en.vtt"), source), files);
+
+        Files.delete(source.resolveSibling("Song.en.vtt"));
+        List<Path> placed = deduplicator.materialize(files, otherUser.toString());
+
+        assertEquals(List.of(otherUser.resolve("Song.lyrics.lrc"), otherUser.resolve("Song.mp4")), placed);
+    }
+
+    @Test
+    void copiesWhenLinksAreDisabled() throws Exception {
+        properties.getDedupe().setLinkMode(DownloaderProperties.LinkMode.COPY);
+        Path source = writeDownload();
+
+        List<Path> placed = deduplicator.materialize(List.of(source), tempDir.resolve("copy").toString());
+
+        assertEquals(Files.readString(source), Files.readString(placed.get(0)));
+        assertFalse(Files.isSameFile(source, placed.get(0)));
+    }
+
+    @Test
+    void sameFolderReturnsTheOriginal() throws Exception {
+        Path source = writeDownload();
+
+        assertEquals(List.of(source), deduplicator.materialize(List.of(source), source.getParent().toString()));
+    }
+
+    private Path writeDownload() throws Exception {
+        Path downloads = Files.createDirectories(tempDir.resolve("downloads"));
+        Path video = Files.writeString(downloads.resolve("Song.mp4"), "video bytes");
+        Files.writeString(downloads.resolve("Song.en.vtt"), "WEBVTT");
+        Files.writeString(downloads.resolve("Song (Live).mp4"), "another video");
+        Files.writeString(downloads.resolve("Song.Remix.mp4"), "yet another video");
+        Files.writeString(downloads.resolve("Song.Remix.en.vtt"), "WEBVTT");
+        return video;
+    }
+}
@@ -0,0 +1,88 @@
+package com.karan.youtubedownloader.service;
+
+import com.karan.youtubedownloader.config.DownloaderProperties;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DownloadGovernorTest {
+
+    private static final String VIDEO = "https://www.youtube.com/watch?v=dQw4w9WgXcQ";
+    private static final Duration NO_WAIT = Duration.ofMillis(50);
+
+    private final DownloaderProperties properties = new DownloaderProperties();
+    private final DownloaderProperties.Governor config = properties.getGovernor();
+
+    @Test
+    void capsDownloadsPerSiteButNotAcrossSites() throws Exception {
+        config.setPerHostMaxConcurrent(1);
+        DownloadGovernor governor = new DownloadGovernor(properties);
+
+        try (DownloadGovernor.Lease first = governor.acquire(VIDEO)) {
+            assertThrows(IllegalStateException.class, () -> governor.acquire("https://youtu.be/9bZkp7q19f0", NO_WAIT));
+            governor.acquire("https://vimeo.com/76979871", NO_WAIT).close();
+        }
+        governor.acquire(VIDEO, NO_WAIT).close();
+    }
+
+    @Test
+    void bandwidthSharesNeverExceedTheBudget() throws Exception {
+        config.setMaxBandwidth(DataSize.ofMegabytes(8));
+        config.setMaxConcurrent(4);
+        config.setMinRate(DataSize.ofBytes(1));
+        DownloadGovernor governor = new DownloadGovernor(properties);
+
+        DownloadGovernor.Lease[] leases = new DownloadGovernor.Lease[4];
+        long total = 0;
+        for (int i = 0; i < leases.length; i++) {
+            leases[i] = governor.acquire("https://host" + i + ".example/video");
+            total += leases[i].getBytesPerSecond();
+        }
+
+        assertEquals(DataSize.ofMegabytes(2).toBytes(), leases[0].getBytesPerSecond());
+        assertTrue(total <= DataSize.ofMegabytes(8).toBytes());
+        for (DownloadGovernor.Lease lease : leases) {
+            lease.close();
+        }
+    }
+
+    @Test
+    void throttledSiteBacksOffAndGetsASmallerShare() throws Exception {
+        config.setPerHostBandwidth(DataSize.ofMegabytes(4));
+        config.setPerHostMaxConcurrent(4);
+        config.setMinRate(DataSize.ofBytes(1));
+        config.setBackoffInitial(Duration.ofMillis(300));
+        DownloadGovernor governor = new DownloadGovernor(properties);
+
+        DownloadGovernor.Lease throttled = governor.acquire(VIDEO);
+        long normalShare = throttled.getBytesPerSecond();
+        throttled.markThrottled();
+        throttled.close();
+
+        assertThrows(IllegalStateException.class, () -> governor.acquire(VIDEO, NO_WAIT));
+        try (DownloadGovernor.Lease afterBackoff = governor.acquire(VIDEO, Duration.ofSeconds(5))) {
+            assertTrue(afterBackoff.getBytesPerSecond() < normalShare);
+        }
+    }
+
+    @Test
+    void recognisesThrottlingMessages() {
+        DownloadGovernor governor = new DownloadGovernor(properties);
+
+        assertTrue(governor.isThrottleSignal("ERROR: [youtube] dQw4w9WgXcQ: HTTP Error 429: Too Many Requests"));
+        assertTrue(governor.isThrottleSignal("WARNING: You are being rate-limited by YouTube"));
+    }
+
+    @Test
+    void normalisesSiteHostnames() {
+        assertEquals("youtube.com", DownloadGovernor.hostOf("\"https://youtu.be/dQw4w9WgXcQ\""));
+        assertEquals("youtube.com", DownloadGovernor.hostOf("https://m.youtube.com/watch?v=dQw4w9WgXcQ"));
+        assertEquals("youtube.com", DownloadGovernor.hostOf("https://music.youtube.com/watch?v=dQw4w9WgXcQ"));
+        assertEquals("unknown", DownloadGovernor.hostOf("not a url"));
+    }
+}
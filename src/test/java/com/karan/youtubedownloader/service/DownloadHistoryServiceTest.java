@@ -0,0 +1,105 @@
+package com.karan.youtubedownloader.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.karan.youtubedownloader.config.DownloaderProperties;
+import com.karan.youtubedownloader.model.DownloadHistory;
+import com.karan.youtubedownloader.model.DownloadJob;
+import com.karan.youtubedownloader.model.DownloadRequest;
+import com.karan.youtubedownloader.model.JobStatus;
+import com.karan.youtubedownloader.model.JobType;
+import com.karan.youtubedownloader.repository.DownloadHistoryRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class DownloadHistoryServiceTest {
+
+    private final DownloadHistoryRepository repository = mock(DownloadHistoryRepository.class);
+    private final DownloadHistoryService historyService = new DownloadHistoryService(repository, new ObjectMapper(),
+            mock(PlatformTransactionManager.class), new DownloaderProperties());
+
+    @Captor
+    private ArgumentCaptor<List<DownloadHistory>> saved;
+
+    @AfterEach
+    void closeBuffer() {
+        historyService.shutdown();
+    }
+
+    @Test
+    void recordsFinishedJobAndKeepsRequestForResume() {
+        when(repository.findByJobIdIn(List.of("job-1"))).thenReturn(List.of());
+        DownloadRequest request = DownloadRequest.builder()
+                .url("https://www.youtube.com/watch?v=dQw4w9WgXcQ")
+                .downloadType("video")
+                .quality("1080p")
+                .subtitleLanguages(List.of("en"))
+                .build();
+        LocalDateTime started = LocalDateTime.of(2024, 1, 1, 10, 0);
+        DownloadJob job = DownloadJob.builder()
+                .id("job-1")
+                .type(JobType.VIDEO)
+                .url(request.getUrl())
+                .downloadType("video")
+                .status(JobStatus.COMPLETED)
+                .createdAt(started)
+                .startedAt(started)
+                .finishedAt(started.plusSeconds(90))
+                .filePath("/downloads/Never Gonna Give You Up.mp4")
+                .fileSize(52_000_000L)
+                .request(request)
+                .build();
+
+        historyService.record(job);
+        historyService.flush();
+
+        verify(repository).saveAll(saved.capture());
+        DownloadHistory history = saved.getValue().get(0);
+        assertEquals("1080p", history.getQuality());
+        assertEquals(JobStatus.COMPLETED, history.getStatus());
+        assertEquals(90_000L, history.getDurationMillis());
+        assertEquals("Never Gonna Give You Up", history.getVideoTitle());
+        assertEquals(52_000_000L, history.getFileSize());
+        assertEquals(request, historyService.readRequest(history).orElseThrow());
+    }
+
+    @Test
+    void coalescesStateChangesIntoOneRow() {
+        when(repository.findByJobIdIn(any())).thenReturn(List.of());
+        DownloadJob job = DownloadJob.builder()
+                .id("job-2")
+                .url("https://youtu.be/dQw4w9WgXcQ")
+                .downloadType("audio")
+                .status(JobStatus.QUEUED)
+                .createdAt(LocalDateTime.now())
+                .request(DownloadRequest.builder().downloadType("audio").audioFormat("mp3").build())
+                .build();
+
+        historyService.record(job);
+        job.setStatus(JobStatus.RUNNING);
+        historyService.record(job);
+        job.setStatus(JobStatus.FAILED);
+        historyService.record(job);
+        historyService.flush();
+
+        verify(repository, times(1)).saveAll(saved.capture());
+        assertEquals(1, saved.getValue().size());
+        assertEquals(JobStatus.FAILED, saved.getValue().get(0).getStatus());
+        assertEquals("mp3", saved.getValue().get(0).getQuality());
+    }
+}
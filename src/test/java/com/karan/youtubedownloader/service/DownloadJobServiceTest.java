@@ -0,0 +1,245 @@
+package com.karan.youtubedownloader.service;
+
+import com.karan.youtubedownloader.config.DownloaderProperties;
+import com.karan.youtubedownloader.model.DownloadJob;
+import com.karan.youtubedownloader.model.DownloadRequest;
+import com.karan.youtubedownloader.model.DownloadResult;
+import com.karan.youtubedownloader.model.JobStatus;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class DownloadJobServiceTest {
+
+    private final DownloaderProperties properties = new DownloaderProperties();
+    private final YouTubeService youTubeService = mock(YouTubeService.class);
+    private final DownloadHistoryService historyService = mock(DownloadHistoryService.class);
+    private final PostProcessingService postProcessing = mock(PostProcessingService.class);
+    private final DownloadDeduplicator deduplicator = mock(DownloadDeduplicator.class);
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    // Status of every history write, as it was at the time of the write
+    private final List<JobStatus> recorded = new CopyOnWriteArrayList<>();
+    private DownloadJobService service;
+
+    @BeforeEach
+    void setUp() {
+        doAnswer(call -> recorded.add(call.<DownloadJob>getArgument(0).getStatus()))
+                .when(historyService).record(any());
+        when(youTubeService.resolveDownloadsPath(any())).thenReturn("/downloads");
+        service = createService();
+    }
+
+    private DownloadJobService createService() {
+        return new DownloadJobService(youTubeService, mock(JobEventBroadcaster.class), historyService,
+                deduplicator, properties,
+                new DownloadMetrics(registry, new MetadataCache(properties)), postProcessing,
+                mock(ClusterCoordinator.class));
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.shutdown();
+    }
+
+    @Test
+    void jobsRunOnThePoolOfTheirType() throws Exception {
+        List<String> threads = new CopyOnWriteArrayList<>();
+        DownloadResult done = DownloadResult.builder().message("done").build();
+        when(youTubeService.downloadVideo(anyString(), any(), any(), any(), any(), any(), any())).thenAnswer(call -> {
+            threads.add(Thread.currentThread().getName());
+            return done;
+        });
+        when(youTubeService.downloadOnlyAudio(anyString(), any(), any(), any(), any(), any(), any())).thenAnswer(call -> {
+            threads.add(Thread.currentThread().getName());
+            return done;
+        });
+        when(youTubeService.downloadOnlySubtitles(anyString(), any(), any(), any(), any(), any())).thenAnswer(call -> {
+            threads.add(Thread.currentThread().getName());
+            return done;
+        });
+
+        CountDownLatch finished = new CountDownLatch(3);
+        for (String type : List.of("video", "audio", "subtitles")) {
+            DownloadRequest request = request();
+            request.setDownloadType(type);
+            service.submit(request, job -> finished.countDown());
+        }
+        assertTrue(finished.await(5, TimeUnit.SECONDS));
+
+        assertEquals(3, threads.size());
+        assertTrue(threads.stream().anyMatch(name -> name.startsWith("video-download-")));
+        assertTrue(threads.stream().anyMatch(name -> name.startsWith("audio-download-")));
+        assertTrue(threads.stream().anyMatch(name -> name.startsWith("subtitle-download-")));
+    }
+
+    @Test
+    void fullQueueRejectsOnlyJobsOfItsOwnType() throws Exception {
+        service.shutdown();
+        properties.getJobs().setVideoConcurrency(1);
+        properties.getJobs().setQueueCapacity(1);
+        service = createService();
+        CountDownLatch started = new CountDownLatch(1);
+        when(youTubeService.downloadVideo(anyString(), any(), any(), any(), any(), any(), any())).thenAnswer(call -> {
+            started.countDown();
+            Thread.sleep(30_000);
+            return null;
+        });
+
+        DownloadJob running = service.submit(request());
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        DownloadJob waiting = service.submit(request());
+
+        assertThrows(IllegalStateException.class, () -> service.submit(request()));
+        assertEquals(JobStatus.RUNNING, running.getStatus());
+        assertEquals(JobStatus.QUEUED, waiting.getStatus());
+
+        when(youTubeService.downloadOnlyAudio(anyString(), any(), any(), any(), any(), any(), any()))
+                .thenReturn(DownloadResult.builder().message("done").build());
+        DownloadRequest audio = request();
+        audio.setDownloadType("audio");
+        CountDownLatch audioFinished = new CountDownLatch(1);
+        service.submit(audio, job -> audioFinished.countDown());
+        assertTrue(audioFinished.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void statusGoesFromQueuedThroughRunningToCompleted() throws Exception {
+        service.shutdown();
+        properties.getJobs().setVideoConcurrency(1);
+        service = createService();
+        List<CountDownLatch> releases = List.of(new CountDownLatch(1), new CountDownLatch(1));
+        AtomicInteger calls = new AtomicInteger();
+        when(youTubeService.downloadVideo(anyString(), any(), any(), any(), any(), any(), any())).thenAnswer(call -> {
+            releases.get(calls.getAndIncrement()).await();
+            return DownloadResult.builder().message("done").build();
+        });
+
+        DownloadJob first = service.submit(request());
+        awaitStatus(first, JobStatus.RUNNING);
+        CountDownLatch finished = new CountDownLatch(1);
+        DownloadJob job = service.submit(request(), done -> finished.countDown());
+        assertEquals(JobStatus.QUEUED, job.getStatus());
+        assertEquals("Waiting for a free video worker", job.getMessage());
+
+        releases.get(0).countDown();
+        awaitStatus(job, JobStatus.RUNNING);
+        assertEquals(JobStatus.COMPLETED, first.getStatus());
+
+        releases.get(1).countDown();
+        assertTrue(finished.await(5, TimeUnit.SECONDS));
+        assertEquals(JobStatus.COMPLETED, job.getStatus());
+        assertEquals("done", job.getMessage());
+        assertEquals(job, service.getJob(job.getId()).orElseThrow());
+    }
+
+    @Test
+    void shutdownLeavesInterruptedJobsToBeResumed() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch interrupted = new CountDownLatch(1);
+        when(youTubeService.downloadVideo(anyString(), any(), any(), any(), any(), any(), any())).thenAnswer(call -> {
+            started.countDown();
+            try {
+                Thread.sleep(30_000);
+            } catch (InterruptedException e) {
+                interrupted.countDown();
+                throw e;
+            }
+            return null;
+        });
+
+        DownloadJob job = service.submit(request());
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        service.shutdown();
+        assertTrue(interrupted.await(5, TimeUnit.SECONDS));
+        Thread.sleep(200);
+
+        assertEquals(JobStatus.RUNNING, job.getStatus());
+        assertFalse(recorded.contains(JobStatus.FAILED));
+        assertTrue(registry.find("downloader.download.failures").counters().isEmpty());
+        assertTrue(registry.find("downloader.download.duration").timers().isEmpty());
+    }
+
+    @Test
+    void pausedJobHandsItsDownloadToTheJobsWaitingForIt() throws Exception {
+        when(deduplicator.isEnabled()).thenReturn(true);
+        CountDownLatch secondStarted = new CountDownLatch(1);
+        AtomicInteger calls = new AtomicInteger();
+        CountDownLatch firstStarted = new CountDownLatch(1);
+        when(youTubeService.downloadVideo(anyString(), any(), any(), any(), any(), any(), any())).thenAnswer(call -> {
+            (calls.incrementAndGet() == 1 ? firstStarted : secondStarted).countDown();
+            Thread.sleep(30_000);
+            return null;
+        });
+
+        DownloadJob leader = service.submit(request());
+        DownloadJob follower = service.submit(request(), finished -> { });
+        assertEquals(leader.getId(), follower.getSourceJobId());
+        assertTrue(firstStarted.await(5, TimeUnit.SECONDS));
+
+        service.pause(leader.getId());
+        assertTrue(secondStarted.await(5, TimeUnit.SECONDS));
+        assertEquals(JobStatus.PAUSED, leader.getStatus());
+        assertNull(follower.getSourceJobId());
+        assertEquals(JobStatus.RUNNING, follower.getStatus());
+
+        // The follower now holds the key, so the resumed job waits for it instead of downloading twice
+        service.resume(leader.getId());
+        assertEquals(JobStatus.QUEUED, leader.getStatus());
+        assertEquals(follower.getId(), leader.getSourceJobId());
+        assertEquals(2, calls.get());
+    }
+
+    @Test
+    void pauseAndResumeHooksCanKeepAJobPaused() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        when(youTubeService.downloadVideo(anyString(), any(), any(), any(), any(), any(), any())).thenAnswer(call -> {
+            started.countDown();
+            Thread.sleep(30_000);
+            return null;
+        });
+        CountDownLatch paused = new CountDownLatch(1);
+        DownloadJob job = service.submit(request(), null, finished -> { }, pausedJob -> paused.countDown(), resuming -> {
+            throw new IllegalStateException("no free slot");
+        });
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        service.pause(job.getId());
+        assertTrue(paused.await(5, TimeUnit.SECONDS));
+        assertThrows(IllegalStateException.class, () -> service.resume(job.getId()));
+        assertEquals(JobStatus.PAUSED, job.getStatus());
+        assertEquals("⏸️ Paused: no free slot", job.getMessage());
+    }
+
+    private static void awaitStatus(DownloadJob job, JobStatus status) throws InterruptedException {
+        for (int i = 0; i < 100 && job.getStatus() != status; i++) {
+            Thread.sleep(50);
+        }
+        assertEquals(status, job.getStatus());
+    }
+
+    private static DownloadRequest request() {
+        DownloadRequest request = new DownloadRequest();
+        request.setUrl("https://www.youtube.com/watch?v=dQw4w9WgXcQ");
+        request.setDownloadType("video");
+        request.setQuality("best");
+        return request;
+    }
+}
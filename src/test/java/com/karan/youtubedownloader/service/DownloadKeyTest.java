@@ -0,0 +1,57 @@
+package com.karan.youtubedownloader.service;
+
+import com.karan.youtubedownloader.model.DownloadRequest;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+class DownloadKeyTest {
+
+    @Test
+    void sameVideoAndFormatGiveTheSameKeyWhateverTheUrlShape() {
+        DownloadRequest watch = video("https://www.youtube.com/watch?v=dQw4w9WgXcQ&t=42s", "1080p");
+        DownloadRequest shortLink = video("\"https://youtu.be/dQw4w9WgXcQ\"", "1080P");
+
+        assertEquals(DownloadKey.of(watch), DownloadKey.of(shortLink));
+        assertEquals(64, DownloadKey.of(watch).length());
+    }
+
+    @Test
+    void differentQualityOrTypeGiveDifferentKeys() {
+        DownloadRequest hd = video("https://youtu.be/dQw4w9WgXcQ", "1080p");
+        DownloadRequest sd = video("https://youtu.be/dQw4w9WgXcQ", "480p");
+        DownloadRequest audio = DownloadRequest.builder()
+                .url("https://youtu.be/dQw4w9WgXcQ").downloadType("audio").audioFormat("mp3").build();
+
+        assertNotEquals(DownloadKey.of(hd), DownloadKey.of(sd));
+        assertNotEquals(DownloadKey.of(hd), DownloadKey.of(audio));
+    }
+
+    @Test
+    void audioFormatCountsEvenWithAnExactFormatId() {
+        DownloadRequest mp3 = DownloadRequest.builder()
+                .url("https://youtu.be/dQw4w9WgXcQ").downloadType("audio").formatId("251").audioFormat("mp3").build();
+        DownloadRequest flac = mp3.toBuilder().audioFormat("flac").build();
+        DownloadRequest video = mp3.toBuilder().downloadType("video").build();
+
+        assertNotEquals(DownloadKey.of(mp3), DownloadKey.of(flac));
+        assertNotEquals(DownloadKey.of(mp3), DownloadKey.of(video));
+        assertEquals(DownloadKey.of(mp3), DownloadKey.of(mp3.toBuilder().audioFormat("MP3").build()));
+    }
+
+    @Test
+    void subtitleLanguageOrderDoesNotMatter() {
+        DownloadRequest first = video("https://youtu.be/dQw4w9WgXcQ", "720p").toBuilder()
+                .downloadType("video+subtitles").subtitleLanguages(List.of("en", "es")).build();
+        DownloadRequest second = first.toBuilder().subtitleLanguages(List.of("ES", "en")).build();
+
+        assertEquals(DownloadKey.of(first), DownloadKey.of(second));
+    }
+
+    private static DownloadRequest video(String url, String quality) {
+        return DownloadRequest.builder().url(url).downloadType("video").quality(quality).build();
+    }
+}
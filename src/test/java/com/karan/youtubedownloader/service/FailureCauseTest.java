@@ -0,0 +1,27 @@
+package com.karan.youtubedownloader.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class FailureCauseTest {
+
+    @Test
+    void classifiesCommonYtDlpErrors() {
+        assertEquals(FailureCause.AGE_RESTRICTED, FailureCause.classify(
+                "Download failed: ERROR: [youtube] abc: Sign in to confirm your age. This video may be inappropriate for some users."));
+        assertEquals(FailureCause.RATE_LIMITED, FailureCause.classify(
+                "Download failed: ERROR: unable to download video data: HTTP Error 429: Too Many Requests"));
+        assertEquals(FailureCause.FFMPEG_MERGE, FailureCause.classify(
+                "Download failed: ERROR: Postprocessing: Conversion failed!"));
+        assertEquals(FailureCause.NETWORK, FailureCause.classify(
+                "Download failed: ERROR: Unable to download webpage: <urlopen error [Errno -3] Temporary failure in name resolution>"));
+        assertEquals(FailureCause.TIMEOUT, FailureCause.classify("Download timed out after 360 minutes"));
+    }
+
+    @Test
+    void fallsBackToOther() {
+        assertEquals(FailureCause.OTHER, FailureCause.classify("Download failed: something odd"));
+        assertEquals(FailureCause.OTHER, FailureCause.classify(null));
+    }
+}
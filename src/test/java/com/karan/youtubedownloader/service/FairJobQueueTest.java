@@ -0,0 +1,119 @@
+package com.karan.youtubedownloader.service;
+
+import com.karan.youtubedownloader.config.DownloaderProperties;
+import com.karan.youtubedownloader.model.DownloadJob;
+import com.karan.youtubedownloader.model.JobPriority;
+import com.karan.youtubedownloader.model.JobType;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FairJobQueueTest {
+
+    private final DownloaderProperties.Scheduling config = new DownloaderProperties().getScheduling();
+
+    @Test
+    void smallJobSkipsAheadOfAQueuedPlaylist() {
+        FairJobQueue queue = new FairJobQueue(100, config);
+        for (int i = 0; i < 50; i++) {
+            queue.offer(job("bulk-" + i, JobPriority.BULK, "alice"));
+        }
+        queue.offer(job("subtitle", JobPriority.FAST, "bob"));
+
+        List<String> firstTwo = List.of(queue.poll().getId(), queue.poll().getId());
+        assertTrue(firstTwo.contains("subtitle"));
+    }
+
+    @Test
+    void classesShareTurnsByWeight() {
+        config.setClassWeights(Map.of(JobPriority.VIDEO, 2, JobPriority.BULK, 1));
+        FairJobQueue queue = new FairJobQueue(100, config);
+        for (int i = 0; i < 30; i++) {
+            queue.offer(job("bulk-" + i, JobPriority.BULK, "alice"));
+            queue.offer(job("video-" + i, JobPriority.VIDEO, "alice"));
+        }
+
+        long videos = drain(queue, 30).stream().filter(id -> id.startsWith("video")).count();
+        assertEquals(20, videos);
+    }
+
+    @Test
+    void clientsWithinAClassTakeTurns() {
+        FairJobQueue queue = new FairJobQueue(100, config);
+        for (int i = 0; i < 10; i++) {
+            queue.offer(job("alice-" + i, JobPriority.VIDEO, "alice"));
+        }
+        queue.offer(job("bob-0", JobPriority.VIDEO, "bob"));
+        queue.offer(job("bob-1", JobPriority.VIDEO, "bob"));
+
+        assertEquals(List.of("alice-0", "bob-0", "alice-1", "bob-1", "alice-2"), drain(queue, 5));
+    }
+
+    @Test
+    void idleClientDoesNotSaveUpTurns() {
+        FairJobQueue queue = new FairJobQueue(100, config);
+        for (int i = 0; i < 6; i++) {
+            queue.offer(job("alice-" + i, JobPriority.VIDEO, "alice"));
+        }
+        drain(queue, 4);
+        for (int i = 0; i < 3; i++) {
+            queue.offer(job("bob-" + i, JobPriority.VIDEO, "bob"));
+        }
+
+        assertEquals(List.of("bob-0", "alice-4", "bob-1", "alice-5", "bob-2"), drain(queue, 5));
+    }
+
+    @Test
+    void rejectsJobsBeyondCapacityAndReportsDepth() {
+        FairJobQueue queue = new FairJobQueue(2, config);
+        assertTrue(queue.offer(job("a", JobPriority.AUDIO, null)));
+        assertTrue(queue.offer(job("b", JobPriority.BULK, null)));
+        assertFalse(queue.offer(job("c", JobPriority.FAST, null)));
+
+        Map<?, ?> classes = (Map<?, ?>) queue.stats().get("classes");
+        assertEquals(1, ((Map<?, ?>) classes.get("bulk")).get("queued"));
+
+        drain(queue, 2);
+        assertNull(queue.poll());
+        assertEquals(0, queue.size());
+    }
+
+    @Test
+    void removesAWaitingJobOnlyOnce() {
+        FairJobQueue queue = new FairJobQueue(10, config);
+        DownloadJob first = job("first", JobPriority.VIDEO, "alice");
+        DownloadJob second = job("second", JobPriority.VIDEO, "alice");
+        queue.offer(first);
+        queue.offer(second);
+
+        assertTrue(queue.remove(second));
+        assertFalse(queue.remove(second));
+        assertEquals("first", queue.poll().getId());
+        assertFalse(queue.remove(first));
+        assertNull(queue.poll());
+    }
+
+    private static List<String> drain(FairJobQueue queue, int count) {
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            ids.add(queue.poll().getId());
+        }
+        return ids;
+    }
+
+    private static DownloadJob job(String id, JobPriority priority, String clientId) {
+        return DownloadJob.builder()
+                .id(id)
+                .type(JobType.VIDEO)
+                .priority(priority)
+                .clientId(clientId)
+                .build();
+    }
+}
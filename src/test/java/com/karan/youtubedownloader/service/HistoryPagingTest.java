@@ -0,0 +1,32 @@
+package com.karan.youtubedownloader.service;
+
+import com.karan.youtubedownloader.model.HistoryCursor;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class HistoryPagingTest {
+
+    @Test
+    void cursorRoundTrips() {
+        HistoryCursor cursor = new HistoryCursor(LocalDateTime.of(2024, 3, 9, 17, 45, 12, 123_456_000), 98_765L);
+
+        assertEquals(cursor, HistoryCursor.decode(cursor.encode()));
+    }
+
+    @Test
+    void rejectsTamperedCursor() {
+        assertThrows(IllegalArgumentException.class, () -> HistoryCursor.decode("not-a-cursor"));
+    }
+
+    @Test
+    void searchTermsBecomeOnePhraseWithoutOperators() {
+        assertEquals("\"never gonna give\"", DownloadHistoryService.toBooleanModePhrase("  +never -gonna* (give) "));
+        assertNull(DownloadHistoryService.toBooleanModePhrase("\"*\""));
+        assertNull(DownloadHistoryService.toBooleanModePhrase(null));
+    }
+}
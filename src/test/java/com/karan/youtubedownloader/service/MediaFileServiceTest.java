@@ -0,0 +1,108 @@
+package com.karan.youtubedownloader.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.mockito.Mockito.mock;
+
+class MediaFileServiceTest {
+
+    @TempDir
+    Path tempDir;
+
+    private final MediaFileService mediaFileService =
+            new MediaFileService(mock(DownloadJobService.class), mock(DownloadHistoryService.class));
+    private Path file;
+
+    @BeforeEach
+    void writeFile() throws Exception {
+        file = Files.writeString(tempDir.resolve("clip.mp4"), "0123456789");
+    }
+
+    @Test
+    void servesWholeFileWithValidators() throws Exception {
+        MockHttpServletResponse response = serve(new MockHttpServletRequest("GET", "/file"));
+
+        assertEquals(200, response.getStatus());
+        assertEquals("0123456789", response.getContentAsString());
+        assertEquals("video/mp4", response.getContentType());
+        assertEquals("bytes", response.getHeader("Accept-Ranges"));
+        assertNotNull(response.getHeader("ETag"));
+    }
+
+    @Test
+    void servesRequestedRange() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/file");
+        request.addHeader("Range", "bytes=2-5");
+
+        MockHttpServletResponse response = serve(request);
+
+        assertEquals(206, response.getStatus());
+        assertEquals("2345", response.getContentAsString());
+        assertEquals("bytes 2-5/10", response.getHeader("Content-Range"));
+    }
+
+    @Test
+    void answersMatchingEtagWithNotModified() throws Exception {
+        String etag = serve(new MockHttpServletRequest("GET", "/file")).getHeader("ETag");
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/file");
+        request.addHeader("If-None-Match", etag);
+
+        MockHttpServletResponse response = serve(request);
+
+        assertEquals(304, response.getStatus());
+        assertEquals("", response.getContentAsString());
+    }
+
+    @Test
+    void staleIfRangeGetsTheWholeFile() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/file");
+        request.addHeader("Range", "bytes=2-5");
+        request.addHeader("If-Range", "\"stale\"");
+
+        MockHttpServletResponse response = serve(request);
+
+        assertEquals(200, response.getStatus());
+        assertEquals("0123456789", response.getContentAsString());
+    }
+
+    @Test
+    void rejectsRangePastTheEnd() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/file");
+        request.addHeader("Range", "bytes=50-");
+
+        MockHttpServletResponse response = serve(request);
+
+        assertEquals(416, response.getStatus());
+        assertEquals("bytes */10", response.getHeader("Content-Range"));
+    }
+
+    @Test
+    void handsTheFileToTomcatSendfile() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/file");
+        request.setAttribute("org.apache.tomcat.sendfile.support", Boolean.TRUE);
+        request.addHeader("Range", "bytes=4-");
+
+        MockHttpServletResponse response = serve(request);
+
+        assertEquals(206, response.getStatus());
+        assertEquals("", response.getContentAsString());
+        assertEquals(file.toAbsolutePath().toString(), request.getAttribute("org.apache.tomcat.sendfile.filename"));
+        assertEquals(4L, request.getAttribute("org.apache.tomcat.sendfile.start"));
+        assertEquals(10L, request.getAttribute("org.apache.tomcat.sendfile.end"));
+    }
+
+    private MockHttpServletResponse serve(MockHttpServletRequest request) throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        mediaFileService.serve(file, request, response);
+        return response;
+    }
+}
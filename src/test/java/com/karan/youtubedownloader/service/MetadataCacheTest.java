@@ -0,0 +1,125 @@
+package com.karan.youtubedownloader.service;
+
+import com.karan.youtubedownloader.config.DownloaderProperties;
+import com.karan.youtubedownloader.model.VideoMetadata;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class MetadataCacheTest {
+
+    private final MetadataCache cache = new MetadataCache(new DownloaderProperties());
+
+    @Test
+    void sharesEntryAcrossUrlShapesOfSameVideo() throws Exception {
+        AtomicInteger loads = new AtomicInteger();
+        MetadataCache.Loader loader = () -> {
+            loads.incrementAndGet();
+            return List.of(metadata("Never Gonna Give You Up"));
+        };
+
+        cache.get("https://www.youtube.com/watch?v=dQw4w9WgXcQ&t=42", loader);
+        cache.get("\"https://youtu.be/dQw4w9WgXcQ\"", loader);
+
+        assertEquals(1, loads.get());
+        assertEquals(1L, cache.stats().get("hits"));
+    }
+
+    @Test
+    void concurrentLookupsShareOneLoad() throws Exception {
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        try {
+            Future<?>[] futures = new Future<?>[4];
+            for (int i = 0; i < futures.length; i++) {
+                futures[i] = pool.submit(() -> cache.get("https://youtu.be/dQw4w9WgXcQ", () -> {
+                    loads.incrementAndGet();
+                    release.await(5, TimeUnit.SECONDS);
+                    return List.of(metadata("shared"));
+                }));
+            }
+            Thread.sleep(200);
+            release.countDown();
+            for (Future<?> future : futures) {
+                assertEquals(List.of(metadata("shared")), future.get(5, TimeUnit.SECONDS));
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    void failedLoadIsNotCached() throws Exception {
+        assertThrows(IllegalStateException.class, () -> cache.get("https://youtu.be/dQw4w9WgXcQ",
+                () -> { throw new IllegalStateException("yt-dlp failed"); }));
+
+        List<VideoMetadata> result = cache.get("https://youtu.be/dQw4w9WgXcQ", () -> List.of(metadata("retried")));
+        assertEquals("retried", result.get(0).getTitle());
+    }
+
+    @Test
+    void emptyAndPlaceholderProbesAreNotCached() throws Exception {
+        AtomicInteger loads = new AtomicInteger();
+        VideoMetadata restricted = VideoMetadata.builder().videoId("dQw4w9WgXcQ").placeholder(true).build();
+
+        assertEquals(List.of(), cache.get("https://youtu.be/dQw4w9WgXcQ", () -> {
+            loads.incrementAndGet();
+            return List.of();
+        }));
+        assertEquals(List.of(restricted), cache.get("https://youtu.be/dQw4w9WgXcQ", () -> {
+            loads.incrementAndGet();
+            return List.of(restricted);
+        }));
+        assertNull(cache.getIfPresent("https://youtu.be/dQw4w9WgXcQ"));
+        assertEquals("recovered", cache.get("https://youtu.be/dQw4w9WgXcQ", () -> {
+            loads.incrementAndGet();
+            return List.of(metadata("recovered"));
+        }).get(0).getTitle());
+
+        assertEquals(3, loads.get());
+        assertEquals(0L, cache.stats().get("hits"));
+    }
+
+    @Test
+    void errorInLoaderReleasesJoinedCallers() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        try {
+            Future<?> loading = pool.submit(() -> cache.get("https://youtu.be/dQw4w9WgXcQ", () -> {
+                started.countDown();
+                release.await(5, TimeUnit.SECONDS);
+                throw new AssertionError("loader blew up");
+            }));
+            started.await(5, TimeUnit.SECONDS);
+            Future<?> joined = pool.submit(() -> cache.get("https://youtu.be/dQw4w9WgXcQ", () -> List.of(metadata("unused"))));
+            Thread.sleep(100);
+            release.countDown();
+
+            ExecutionException failure = assertThrows(ExecutionException.class, () -> joined.get(5, TimeUnit.SECONDS));
+            assertInstanceOf(AssertionError.class, failure.getCause());
+            assertThrows(ExecutionException.class, () -> loading.get(5, TimeUnit.SECONDS));
+        } finally {
+            pool.shutdownNow();
+        }
+        assertEquals("retried", cache.get("https://youtu.be/dQw4w9WgXcQ", () -> List.of(metadata("retried"))).get(0).getTitle());
+    }
+
+    private static VideoMetadata metadata(String title) {
+        return VideoMetadata.builder().videoId("dQw4w9WgXcQ").title(title).build();
+    }
+}
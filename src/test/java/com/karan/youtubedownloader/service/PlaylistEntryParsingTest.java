@@ -0,0 +1,32 @@
+package com.karan.youtubedownloader.service;
+
+import com.karan.youtubedownloader.model.PlaylistEntry;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class PlaylistEntryParsingTest {
+
+    private final VideoMetadataParser parser = new VideoMetadataParser();
+
+    @Test
+    void parsesFlatPlaylistEntries() throws Exception {
+        String output = "{\"_type\": \"url\", \"id\": \"dQw4w9WgXcQ\", \"url\": \"https://www.youtube.com/watch?v=dQw4w9WgXcQ\", "
+                + "\"title\": \"First\", \"duration\": 212.0, \"thumbnails\": [{\"url\": \"x\"}], \"playlist_index\": 1}\n"
+                + "{\"_type\": \"url\", \"id\": \"9bZkp7q19f0\", \"url\": \"9bZkp7q19f0\", \"title\": \"Second\", \"duration\": null}\n";
+
+        List<PlaylistEntry> entries = new ArrayList<>();
+        parser.parseFlatEntries(new ByteArrayInputStream(output.getBytes(StandardCharsets.UTF_8)), entries::add);
+
+        assertEquals(2, entries.size());
+        assertEquals(212, entries.get(0).getDurationSeconds());
+        assertEquals(1, entries.get(0).getIndex());
+        assertEquals("https://www.youtube.com/watch?v=9bZkp7q19f0", entries.get(1).getUrl());
+        assertEquals(2, entries.get(1).getIndex());
+    }
+}
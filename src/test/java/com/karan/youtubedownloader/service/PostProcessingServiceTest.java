@@ -0,0 +1,158 @@
+package com.karan.youtubedownloader.service;
+
+import com.karan.youtubedownloader.config.DownloaderProperties;
+import com.karan.youtubedownloader.model.DownloadResult;
+import com.karan.youtubedownloader.model.PostProcessingStep;
+import com.karan.youtubedownloader.process.ProcessRunner;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PostProcessingServiceTest {
+
+    @TempDir
+    Path tempDir;
+
+    private ProcessRunner processRunner;
+    private PostProcessingService postProcessing;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        // Stands in for ffmpeg: writes the names of its inputs into the output file
+        Path ffmpeg = Files.writeString(tempDir.resolve("ffmpeg"), String.join("\n",
+                "#!/bin/sh",
+                "out=''; inputs=''",
+                "while [ $# -gt 0 ]; do",
+                "  if [ \"$1\" = -i ]; then inputs=\"$inputs $2\"; shift; fi",
+                "  out=$1; shift",
+                "done",
+                "echo \"$inputs\" > \"$out\"",
+                ""));
+        assertTrue(ffmpeg.toFile().setExecutable(true));
+
+        DownloaderProperties properties = new DownloaderProperties();
+        properties.getPostProcessing().setConcurrency(1);
+        properties.getPostProcessing().setFfmpegExecutable(ffmpeg.toString());
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        processRunner = new ProcessRunner(properties, registry);
+        postProcessing = new PostProcessingService(processRunner, properties,
+                new DownloadMetrics(registry, new MetadataCache(properties)));
+    }
+
+    @AfterEach
+    void tearDown() {
+        postProcessing.shutdown();
+        processRunner.shutdown();
+    }
+
+    @Test
+    void mergesSeparateStreamsIntoOneMp4() {
+        PostProcessingStep step = postProcessing.merge(List.of("/dl/Clip.f137.mp4", "/dl/Clip.f140.m4a")).orElseThrow();
+
+        assertEquals("/dl/Clip.mp4", step.getOutput());
+        assertEquals(List.of("ffmpeg", "-hide_banner", "-nostdin", "-loglevel", "error", "-y",
+                        "-i", "/dl/Clip.f137.mp4", "-i", "/dl/Clip.f140.m4a",
+                        "-map", "0:v:0", "-map", "1:a:0", "-c", "copy", "-movflags", "+faststart", "/dl/Clip.mp4"),
+                postProcessing.command(step).stream()
+                        .map(arg -> arg.endsWith("/ffmpeg") ? "ffmpeg" : arg)
+                        .toList());
+        assertTrue(postProcessing.merge(List.of("/dl/Clip.f22.mp4")).isEmpty());
+    }
+
+    @Test
+    void mergesWebmStreamsIntoMkv() {
+        PostProcessingStep opus = postProcessing.merge(List.of("/dl/Clip.f137.mp4", "/dl/Clip.f251.webm")).orElseThrow();
+        PostProcessingStep vp9 = postProcessing.merge(List.of("/dl/Clip.f248.webm", "/dl/Clip.f140.m4a")).orElseThrow();
+
+        assertEquals("/dl/Clip.mkv", opus.getOutput());
+        assertEquals("/dl/Clip.mkv", vp9.getOutput());
+        assertEquals(List.of("-map", "0:v:0", "-map", "1:a:0", "-c", "copy"), vp9.getCodecArgs());
+    }
+
+    @Test
+    void convertsAudioOnlyWhenTheFormatDiffers() {
+        PostProcessingStep step = postProcessing.extractAudio("/dl/Song.webm", "mp3").orElseThrow();
+
+        assertEquals("/dl/Song.mp3", step.getOutput());
+        assertTrue(postProcessing.command(step).contains("-vn"));
+        assertTrue(postProcessing.command(step).contains("libmp3lame"));
+        assertEquals("/dl/Song.ogg", postProcessing.extractAudio("/dl/Song.webm", "vorbis").orElseThrow().getOutput());
+        assertTrue(postProcessing.extractAudio("/dl/Song.m4a", "m4a").isEmpty());
+        assertTrue(postProcessing.extractAudio("/dl/Song.webm", "best").isEmpty());
+        assertThrows(IllegalArgumentException.class, () -> postProcessing.extractAudio("/dl/Song.webm", "mp5"));
+    }
+
+    @Test
+    void renamesSingleStreamToItsFinalName() throws Exception {
+        Path stream = Files.writeString(tempDir.resolve("Clip.f22.mp4"), "video");
+
+        String renamed = postProcessing.renameStream(stream.toString());
+
+        assertEquals(tempDir.resolve("Clip.mp4").toString(), renamed);
+        assertFalse(Files.exists(stream));
+    }
+
+    @Test
+    void runsStepOffTheCallerAndRemovesRawStreams() throws Exception {
+        Path video = Files.writeString(tempDir.resolve("Clip.f137.mp4"), "video");
+        Path audio = Files.writeString(tempDir.resolve("Clip.f140.m4a"), "audio");
+        DownloadResult download = DownloadResult.builder()
+                .message("done")
+                .outputFiles(List.of(video.toString(), audio.toString()))
+                .postProcessing(postProcessing.merge(List.of(video.toString(), audio.toString())).orElseThrow())
+                .build();
+
+        CompletableFuture<DownloadResult> done = new CompletableFuture<>();
+        postProcessing.submit(download, new DownloadControl(), (result, error) -> {
+            if (error != null) {
+                done.completeExceptionally(error);
+            } else {
+                done.complete(result);
+            }
+        });
+        DownloadResult result = done.get(10, TimeUnit.SECONDS);
+
+        Path merged = tempDir.resolve("Clip.mp4");
+        assertEquals(List.of(merged.toString()), result.getOutputFiles());
+        assertEquals("done", result.getMessage());
+        assertEquals(Files.size(merged), result.getTotalBytes());
+        assertFalse(Files.exists(video));
+        assertFalse(Files.exists(audio));
+    }
+
+    @Test
+    void convertsAacToAlacWithinTheSameContainer() throws Exception {
+        Path song = Files.writeString(tempDir.resolve("Song.m4a"), "aac");
+        PostProcessingStep step = postProcessing.extractAudio(song.toString(), "alac").orElseThrow();
+        assertEquals(song.toString(), step.getOutput());
+        assertTrue(postProcessing.command(step).contains("alac"));
+
+        CompletableFuture<DownloadResult> done = new CompletableFuture<>();
+        postProcessing.submit(DownloadResult.builder().outputFiles(List.of(song.toString())).postProcessing(step).build(),
+                new DownloadControl(), (result, error) -> {
+                    if (error != null) {
+                        done.completeExceptionally(error);
+                    } else {
+                        done.complete(result);
+                    }
+                });
+        DownloadResult result = done.get(10, TimeUnit.SECONDS);
+
+        assertEquals(List.of(song.toString()), result.getOutputFiles());
+        assertEquals(song.toString(), Files.readString(song).trim());
+        assertFalse(Files.exists(tempDir.resolve("Song.converting.m4a")));
+    }
+}
@@ -0,0 +1,43 @@
+package com.karan.youtubedownloader.service;
+
+import com.karan.youtubedownloader.model.DownloadProgress;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ProgressParserTest {
+
+    @Test
+    void parsesPlainProgressLine() {
+        DownloadProgress progress = ProgressParser.parse("[download]  50.0% of   10.00MiB at    2.00MiB/s ETA 00:05");
+
+        assertEquals(50.0, progress.getPercent());
+        assertEquals(10L * 1024 * 1024, progress.getTotalBytes());
+        assertEquals(5L * 1024 * 1024, progress.getDownloadedBytes());
+        assertEquals(2L * 1024 * 1024, progress.getSpeedBytesPerSecond());
+        assertEquals(5L, progress.getEtaSeconds());
+        assertFalse(progress.isTotalEstimated());
+        assertNull(progress.getFragmentIndex());
+    }
+
+    @Test
+    void parsesFragmentedProgressLine() {
+        DownloadProgress progress = ProgressParser.parse(
+                "[download]  12.5% of ~ 300.00MiB at  512.00KiB/s ETA 01:02:03 (frag 10/80)");
+
+        assertTrue(progress.isTotalEstimated());
+        assertEquals(512L * 1024, progress.getSpeedBytesPerSecond());
+        assertEquals(3723L, progress.getEtaSeconds());
+        assertEquals(10, progress.getFragmentIndex());
+        assertEquals(80, progress.getFragmentCount());
+    }
+
+    @Test
+    void ignoresNonProgressLines() {
+        assertNull(ProgressParser.parse("[download] Destination: /tmp/video.mp4"));
+        assertNull(ProgressParser.parse("[youtube] abc123: Downloading webpage"));
+    }
+}
@@ -0,0 +1,175 @@
+package com.karan.youtubedownloader.service;
+
+import com.karan.youtubedownloader.config.DownloaderProperties;
+import com.karan.youtubedownloader.model.StreamingDownload;
+import com.karan.youtubedownloader.model.VideoFormat;
+import com.karan.youtubedownloader.process.ProcessRunner;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+
+class StreamingDownloadServiceTest {
+
+    private static final List<VideoFormat> FORMATS = List.of(
+            format("140", "m4a", null, "none", "mp4a.40.2", 129.0, 3_400_000L),
+            format("251", "webm", null, "none", "opus", 135.0, 3_500_000L),
+            format("18", "mp4", 360, "avc1.42001E", "mp4a.40.2", 500.0, 13_000_000L),
+            format("22", "mp4", 720, "avc1.64001F", "mp4a.40.2", 1200.0, 900_000_000L),
+            format("137", "mp4", 1080, "avc1.640028", "none", 4000.0, 60_000_000L));
+
+    @Test
+    void audioPrefersM4aOverHigherBitrateWebm() {
+        assertEquals("140", StreamingDownloadService.chooseFormat(FORMATS, true, Integer.MAX_VALUE, Long.MAX_VALUE)
+                .orElseThrow().getFormatId());
+    }
+
+    @Test
+    void videoOnlyConsidersProgressiveFormatsWithinLimits() {
+        assertEquals("22", StreamingDownloadService.chooseFormat(FORMATS, false, 1080, Long.MAX_VALUE)
+                .orElseThrow().getFormatId());
+        assertEquals("18", StreamingDownloadService.chooseFormat(FORMATS, false, 1080, 500_000_000L)
+                .orElseThrow().getFormatId());
+        assertTrue(StreamingDownloadService.chooseFormat(FORMATS, false, 240, Long.MAX_VALUE).isEmpty());
+    }
+
+    @Test
+    void pipesProcessOutputToTheSink() throws Exception {
+        DownloaderProperties properties = fakeYtDlp("head -c 300000 /dev/zero");
+        StreamingDownloadService service = new StreamingDownloadService(new ProcessRunner(properties, new SimpleMeterRegistry()),
+                mock(YouTubeService.class), new DownloadGovernor(properties), properties);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        long written = service.pipe(download(), service.reserve(download().getUrl()), Channels.newChannel(out));
+
+        assertEquals(300_000, written);
+        assertEquals(300_000, out.size());
+    }
+
+    @Test
+    void slowClientGetsTheWholeBodyAfterTheProcessExits() throws Exception {
+        // What is left in the pipe once the script exits takes the client well over the drainers' grace period
+        DownloaderProperties properties = fakeYtDlp("head -c 80000 /dev/zero");
+        properties.getStream().setBufferSize(4096);
+        StreamingDownloadService service = new StreamingDownloadService(new ProcessRunner(properties, new SimpleMeterRegistry()),
+                mock(YouTubeService.class), new DownloadGovernor(properties), properties);
+        ByteArrayOutputStream received = new ByteArrayOutputStream();
+        OutputStream slowClient = new OutputStream() {
+            @Override
+            public void write(int b) {
+                received.write(b);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                try {
+                    Thread.sleep(400);
+                } catch (InterruptedException e) {
+                    throw new InterruptedIOException();
+                }
+                received.write(b, off, len);
+            }
+        };
+
+        assertEquals(80_000, service.pipe(download(), service.reserve(download().getUrl()), Channels.newChannel(slowClient)));
+        assertEquals(80_000, received.size());
+    }
+
+    @Test
+    void reservationIsRefusedUpFrontWhenAllSlotsAreTaken() throws Exception {
+        DownloaderProperties properties = fakeYtDlp("true");
+        properties.getStream().setMaxConcurrent(1);
+        StreamingDownloadService service = new StreamingDownloadService(new ProcessRunner(properties, new SimpleMeterRegistry()),
+                mock(YouTubeService.class), new DownloadGovernor(properties), properties);
+
+        StreamingDownloadService.Reservation first = service.reserve(download().getUrl());
+        assertThrows(IllegalStateException.class, () -> service.reserve(download().getUrl()));
+        first.close();
+        first.close();
+        service.reserve(download().getUrl()).close();
+    }
+
+    @Test
+    void closingAReservationTwiceFreesOnlyOneSlot() throws Exception {
+        DownloaderProperties properties = fakeYtDlp("true");
+        properties.getStream().setMaxConcurrent(2);
+        StreamingDownloadService service = new StreamingDownloadService(new ProcessRunner(properties, new SimpleMeterRegistry()),
+                mock(YouTubeService.class), new DownloadGovernor(properties), properties);
+
+        StreamingDownloadService.Reservation first = service.reserve(download().getUrl());
+        StreamingDownloadService.Reservation second = service.reserve(download().getUrl());
+        first.close();
+        first.close();
+        StreamingDownloadService.Reservation third = service.reserve(download().getUrl());
+        assertThrows(IllegalStateException.class, () -> service.reserve(download().getUrl()));
+        second.close();
+        third.close();
+    }
+
+    @Test
+    void closedSinkKillsTheProcess() {
+        // Would produce output for a long time if nobody stopped it
+        DownloaderProperties properties = fakeYtDlp("cat /dev/zero");
+        StreamingDownloadService service = new StreamingDownloadService(new ProcessRunner(properties, new SimpleMeterRegistry()),
+                mock(YouTubeService.class), new DownloadGovernor(properties), properties);
+        OutputStream brokenClient = new OutputStream() {
+            private int calls;
+
+            @Override
+            public void write(int b) throws IOException {
+                write(new byte[]{(byte) b}, 0, 1);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                if (++calls > 3) {
+                    throw new IOException("Broken pipe");
+                }
+            }
+        };
+
+        long start = System.nanoTime();
+        assertThrows(IOException.class, () -> service.pipe(download(), service.reserve(download().getUrl()),
+                Channels.newChannel(brokenClient)));
+        assertTrue(System.nanoTime() - start < 10_000_000_000L);
+    }
+
+    // The real arguments are ignored; the script stands in for yt-dlp writing to stdout
+    private static DownloaderProperties fakeYtDlp(String body) {
+        try {
+            Path script = Files.createTempFile("fake-yt-dlp", ".sh");
+            Files.writeString(script, "#!/bin/sh\n" + body + "\n");
+            script.toFile().setExecutable(true);
+            script.toFile().deleteOnExit();
+            DownloaderProperties properties = new DownloaderProperties();
+            properties.getProcess().setExecutable(script.toString());
+            return properties;
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static StreamingDownload download() {
+        return StreamingDownload.builder().url("https://youtu.be/dQw4w9WgXcQ").formatSelector("140").build();
+    }
+
+    private static VideoFormat format(String id, String ext, Integer height, String vcodec, String acodec,
+                                      Double bitrate, Long filesize) {
+        return VideoFormat.builder()
+                .formatId(id).ext(ext).height(height).vcodec(vcodec).acodec(acodec)
+                .bitrateKbps(bitrate).filesize(filesize).protocol("https")
+                .build();
+    }
+}
@@ -0,0 +1,172 @@
+package com.karan.youtubedownloader.service;
+
+import com.karan.youtubedownloader.model.SubtitleFormat;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class SubtitleConverterTest {
+
+    // The shape of YouTube's auto-generated English track
+    private static final String ROLLING_VTT = String.join("\n",
+            "WEBVTT",
+            "Kind: captions",
+            "Language: en",
+            "",
+            "00:00:00.160 --> 00:00:02.490 align:start position:0%",
+            " ",
+            "hello<00:00:00.480><c> everyone</c><00:00:00.880><c> and</c>",
+            "",
+            "00:00:02.490 --> 00:00:02.500 align:start position:0%",
+            "hello everyone and",
+            " ",
+            "",
+            "00:00:02.500 --> 00:00:05.120 align:start position:0%",
+            "hello everyone and",
+            "welcome<00:00:03.040><c> back</c>",
+            "",
+            "00:00:05.120 --> 00:00:05.130 align:start position:0%",
+            "welcome back",
+            " ",
+            "",
+            "00:00:05.130 --> 00:00:07.000 align:start position:0%",
+            "welcome back",
+            "to<c> the</c><c> channel</c> &amp; more",
+            "");
+
+    private final SubtitleConverter converter = new SubtitleConverter();
+
+    @Test
+    void dropsRepeatedLinesOfRollingAutoCaptions() throws Exception {
+        assertEquals(String.join("\n",
+                        "1",
+                        "00:00:00,160 --> 00:00:02,500",
+                        "hello everyone and",
+                        "",
+                        "2",
+                        "00:00:02,500 --> 00:00:05,130",
+                        "welcome back",
+                        "",
+                        "3",
+                        "00:00:05,130 --> 00:00:07,000",
+                        "to the channel & more",
+                        "",
+                        ""),
+                convert(ROLLING_VTT, SubtitleFormat.VTT, SubtitleFormat.SRT));
+        assertEquals("hello everyone and\nwelcome back\nto the channel & more\n",
+                convert(ROLLING_VTT, SubtitleFormat.VTT, SubtitleFormat.TXT));
+    }
+
+    @Test
+    void keepsRepeatedLinesOfHumanAuthoredTracks() throws Exception {
+        String lyrics = String.join("\n",
+                "WEBVTT",
+                "",
+                "00:00:01.000 --> 00:00:02.000",
+                "<i>Na na na</i>",
+                "",
+                "00:00:02.000 --> 00:00:03.000",
+                "<i>Na na na</i>",
+                "",
+                "00:00:03.000 --> 00:00:04.000",
+                "Na na na",
+                "hey hey",
+                "");
+
+        assertEquals("Na na na\nNa na na\nNa na na\nhey hey\n", convert(lyrics, SubtitleFormat.VTT, SubtitleFormat.TXT));
+    }
+
+    @Test
+    void convertsSrtToVttAndAss() throws Exception {
+        String srt = String.join("\n",
+                "1",
+                "01:02:03,004 --> 01:02:05,500",
+                "<i>Fish & chips</i>",
+                "{\\an8}second line",
+                "",
+                "2",
+                "01:02:06,000 --> 01:02:07,250",
+                "Is 3 < 4?",
+                "");
+
+        assertEquals(String.join("\n",
+                        "WEBVTT",
+                        "",
+                        "01:02:03.004 --> 01:02:05.500",
+                        "Fish &amp; chips",
+                        "second line",
+                        "",
+                        "01:02:06.000 --> 01:02:07.250",
+                        "Is 3 &lt; 4?",
+                        "",
+                        ""),
+                convert(srt, SubtitleFormat.SRT, SubtitleFormat.VTT));
+
+        String ass = convert(srt, SubtitleFormat.SRT, SubtitleFormat.ASS);
+        assertEquals("[Script Info]", ass.substring(0, ass.indexOf('\n')));
+        assertEquals(String.join("\n",
+                        "Dialogue: 0,1:02:03.00,1:02:05.50,Default,,0,0,0,,Fish & chips\\Nsecond line",
+                        "Dialogue: 0,1:02:06.00,1:02:07.25,Default,,0,0,0,,Is 3 < 4?",
+                        ""),
+                ass.substring(ass.indexOf("Dialogue:")));
+    }
+
+    @Test
+    void readsAssEventsByTheirFormatLine() throws Exception {
+        String ass = String.join("\n",
+                "[Script Info]",
+                "Title: test",
+                "",
+                "[Events]",
+                "Format: Layer, Start, End, Style, Name, MarginL, MarginR, MarginV, Effect, Text",
+                "Comment: 0,0:00:00.00,0:00:01.00,Default,,0,0,0,,not shown",
+                "Dialogue: 0,0:00:01.50,0:00:03.00,Default,,0,0,0,,{\\i1}One, two{\\i0}\\Nthree",
+                "");
+
+        assertEquals(String.join("\n",
+                        "1",
+                        "00:00:01,500 --> 00:00:03,000",
+                        "One, two",
+                        "three",
+                        "",
+                        ""),
+                convert(ass, SubtitleFormat.ASS, SubtitleFormat.SRT));
+    }
+
+    @Test
+    void writesEveryTargetFromOneFile(@TempDir Path dir) throws Exception {
+        Path source = Files.writeString(dir.resolve("Clip.en.vtt"), "\uFEFF" + ROLLING_VTT);
+        Map<SubtitleFormat, Path> targets = new EnumMap<>(SubtitleFormat.class);
+        targets.put(SubtitleFormat.SRT, dir.resolve("Clip.en.srt"));
+        targets.put(SubtitleFormat.TXT, dir.resolve("Clip.en.txt"));
+
+        assertEquals(3, converter.convert(source, targets));
+        assertEquals(convert(ROLLING_VTT, SubtitleFormat.VTT, SubtitleFormat.SRT), Files.readString(targets.get(SubtitleFormat.SRT)));
+        assertEquals("hello everyone and\nwelcome back\nto the channel & more\n", Files.readString(targets.get(SubtitleFormat.TXT)));
+
+        Path transcript = targets.get(SubtitleFormat.TXT);
+        assertThrows(IllegalArgumentException.class, () -> converter.convert(transcript, Map.of(SubtitleFormat.SRT, dir.resolve("x.srt"))));
+        assertFalse(Files.exists(dir.resolve("x.srt")));
+        assertThrows(IllegalArgumentException.class, () -> SubtitleFormat.of("sub"));
+    }
+
+    private String convert(String source, SubtitleFormat from, SubtitleFormat to) throws Exception {
+        StringWriter out = new StringWriter();
+        Map<SubtitleFormat, Writer> targets = new LinkedHashMap<>();
+        targets.put(to, out);
+        converter.convert(new StringReader(source), from, targets);
+        return out.toString();
+    }
+}
@@ -0,0 +1,229 @@
+package com.karan.youtubedownloader.service;
+
+import com.karan.youtubedownloader.config.DownloaderProperties;
+import com.karan.youtubedownloader.model.SubtitleCue;
+import com.karan.youtubedownloader.model.TranscriptHit;
+import com.karan.youtubedownloader.model.TranscriptSearchResult;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TranscriptIndexTest {
+
+    @TempDir
+    Path dir;
+
+    private DownloaderProperties properties;
+    private TranscriptIndex index;
+
+    @BeforeEach
+    void setUp() {
+        properties = new DownloaderProperties();
+        properties.getTranscriptIndex().setDirectory(dir.resolve("index").toString());
+        properties.getTranscriptIndex().setMergeFactor(2);
+        index = open();
+    }
+
+    @AfterEach
+    void tearDown() {
+        index.shutdown();
+    }
+
+    @Test
+    void findsCuesContainingEveryWordWithTimestampedLinks() {
+        index.index(transcript("talk", "https://www.youtube.com/watch?v=abc", "Release Talk.en",
+                "welcome back to the channel",
+                "today we look at the new release",
+                "the release ships next week",
+                "don't forget to subscribe"));
+
+        List<TranscriptSearchResult> results = index.search("Release  NEW", 10);
+        assertEquals(1, results.size());
+        TranscriptSearchResult result = results.get(0);
+        assertEquals("Release Talk", result.getTitle());
+        assertEquals("en", result.getLanguage());
+        assertEquals(1, result.getMatchingCues());
+
+        TranscriptHit hit = result.getHits().get(0);
+        assertEquals(5_000, hit.getStartMillis());
+        assertEquals("0:05", hit.getTimestamp());
+        assertEquals("https://www.youtube.com/watch?v=abc&t=5s", hit.getLink());
+        assertEquals("welcome back to the channel today we look at the new release the release ships next week",
+                hit.getSnippet());
+
+        assertEquals(2, index.search("release", 10).get(0).getMatchingCues());
+        assertEquals(1, index.search("dont", 10).size());
+        assertTrue(index.search("release tomorrow", 10).isEmpty());
+        assertThrows(IllegalArgumentException.class, () -> index.search(" ?! ", 10));
+    }
+
+    @Test
+    void reindexedTranscriptHidesTheOlderCopyThroughMergesAndRestarts() throws Exception {
+        index.index(transcript("a", "https://youtu.be/a", "Alpha.en", "first version of the intro"));
+        index.index(transcript("b", "https://youtu.be/b", "Beta.en", "an intro to beta"));
+        index.index(transcript("a", "https://youtu.be/a", "Alpha.en", "second take", "intro again"));
+        awaitSegments(1);
+
+        List<TranscriptSearchResult> results = index.search("intro", 10);
+        assertEquals(2, results.size());
+        TranscriptSearchResult alpha = results.stream().filter(r -> r.getTitle().equals("Alpha")).findFirst().orElseThrow();
+        assertEquals(1, alpha.getMatchingCues());
+        assertEquals(5_000, alpha.getHits().get(0).getStartMillis());
+        assertTrue(index.search("first", 10).isEmpty());
+
+        index.shutdown();
+        index = open();
+        assertEquals(2, index.stats().get("transcripts"));
+        assertEquals(2, index.search("intro", 10).size());
+        assertTrue(index.search("first", 10).isEmpty());
+    }
+
+    @Test
+    void failedMergeIsNotRetriedStraightAway() throws Exception {
+        // Segments 1 and 2 are the two transcripts; a directory where every later segment would go fails the merges
+        Path indexDir = dir.resolve("index");
+        for (int id = 3; id <= 50; id++) {
+            Files.writeString(Files.createDirectories(indexDir.resolve("segment-" + id + ".tix.tmp")).resolve("x"), "");
+        }
+        index.index(transcript("a", "https://youtu.be/a", "Alpha.en", "alpha intro"));
+        index.index(transcript("b", "https://youtu.be/b", "Beta.en", "beta intro"));
+        Thread.sleep(500);
+
+        // An immediate retry would have worked through the directories and merged as segment 51
+        assertEquals(2, index.stats().get("segments"));
+        assertTrue(Files.exists(indexDir.resolve("segment-4.tix.tmp")));
+        assertEquals(2, index.search("intro", 10).size());
+    }
+
+    @Test
+    void segmentsPastTheMergeSizeLimitAreLeftAlone() throws Exception {
+        index.index(transcript("a", "https://youtu.be/a", "Alpha.en", "alpha intro"));
+        index.index(transcript("b", "https://youtu.be/b", "Beta.en", "beta intro"));
+        awaitSegments(1);
+        long mergedSize = (long) index.stats().get("bytes");
+
+        properties.getTranscriptIndex().setMaxMergedSegmentSize(DataSize.ofBytes(mergedSize));
+        index.index(transcript("c", "https://youtu.be/c", "Gamma.en", "gamma intro"));
+        Thread.sleep(300);
+        assertEquals(2, index.stats().get("segments"));
+
+        // Room for the two small segments, still not for either of them with the big one
+        long small = (long) index.stats().get("bytes") - mergedSize;
+        properties.getTranscriptIndex().setMaxMergedSegmentSize(DataSize.ofBytes(2 * small + 16));
+        index.index(transcript("d", "https://youtu.be/d", "Delta.en", "delta intro"));
+        awaitSegments(2);
+        assertEquals(4, index.search("intro", 10).size());
+    }
+
+    @Test
+    void truncatedSegmentIsSkippedOnOpen() throws Exception {
+        index.index(transcript("a", "https://youtu.be/a", "Alpha.en", "alpha intro"));
+        index.index(transcript("b", "https://youtu.be/b", "Beta.en", "beta intro", "and a longer second cue"));
+        awaitSegments(1);
+        index.index(transcript("c", "https://youtu.be/c", "Gamma.en", "gamma intro"));
+        index.shutdown();
+
+        // As a crash halfway through writing it would leave the segment the manifest still lists
+        Path merged = Files.readAllLines(dir.resolve("index").resolve("segments")).stream()
+                .map(name -> dir.resolve("index").resolve(name))
+                .findFirst().orElseThrow();
+        byte[] bytes = Files.readAllBytes(merged);
+        Files.write(merged, Arrays.copyOf(bytes, bytes.length - 10));
+
+        index = open();
+        assertTrue(index.isEnabled());
+        assertEquals(1, index.search("intro", 10).size());
+        assertEquals("Gamma", index.search("intro", 10).get(0).getTitle());
+    }
+
+    @Test
+    void indexesSubtitleFilesAlreadyOnDisk() throws Exception {
+        Path archive = Files.createDirectories(dir.resolve("archive"));
+        String srt = "1\n00:01:02,000 --> 00:01:04,000\nfish and chips\n\n";
+        Files.writeString(archive.resolve("Cooking.en.srt"), srt);
+        Files.writeString(archive.resolve("Cooking.en.vtt"), "WEBVTT\n\n00:01:02.000 --> 00:01:04.000\nfish and chips\n\n");
+        Files.writeString(archive.resolve("Cooking.en.txt"), "fish and chips\n");
+        Files.writeString(archive.resolve("Cooking.mp4"), "not subtitles");
+
+        assertEquals(1, index.indexFolder(archive));
+        List<TranscriptSearchResult> results = index.search("chips", 10);
+        assertEquals(1, results.size());
+        assertEquals("Cooking", results.get(0).getTitle());
+        assertEquals("1:02", results.get(0).getHits().get(0).getTimestamp());
+        assertNull(results.get(0).getHits().get(0).getLink());
+
+        assertThrows(IllegalArgumentException.class, () -> index.indexFolder(archive.resolve("missing")));
+    }
+
+    @Test
+    void indexesOnlyFoldersInsideTheDownloadsRoot() throws Exception {
+        Path root = Files.createDirectories(dir.resolve("downloads"));
+        Files.writeString(Files.createDirectories(root.resolve("talks")).resolve("Keynote.en.srt"),
+                "1\n00:00:01,000 --> 00:00:02,000\nopening remarks\n\n");
+        Path outside = Files.createDirectories(dir.resolve("private"));
+        Files.writeString(outside.resolve("Secret.en.srt"), "1\n00:00:01,000 --> 00:00:02,000\nhidden words\n\n");
+        Files.createSymbolicLink(root.resolve("escape"), outside);
+
+        assertEquals(1, index.indexFolder(root, "talks"));
+        assertEquals(1, index.search("remarks", 10).size());
+        assertThrows(IllegalArgumentException.class, () -> index.indexFolder(root, "../private"));
+        assertThrows(IllegalArgumentException.class, () -> index.indexFolder(root, outside.toString()));
+        assertThrows(IllegalArgumentException.class, () -> index.indexFolder(root, "escape"));
+        assertThrows(IllegalArgumentException.class, () -> index.indexFolder(root, "missing"));
+        assertTrue(index.search("hidden", 10).isEmpty());
+    }
+
+    @Test
+    void keepsAtMostTheConfiguredCuesPerTranscript() {
+        properties.getTranscriptIndex().setMaxCuesPerTranscript(2);
+        TranscriptIndex.Transcript transcript = transcript("long", "https://youtu.be/l", "Long.en",
+                "one fish", "two fish", "red fish", "blue fish");
+
+        assertEquals(2, transcript.getCues().size());
+        assertEquals(2, transcript.getDroppedCues());
+        index.index(transcript);
+        assertEquals(2, index.search("fish", 10).get(0).getMatchingCues());
+        assertTrue(index.search("blue", 10).isEmpty());
+    }
+
+    @Test
+    void splitsWordsOnPunctuationAndKeepsCombiningMarks() {
+        assertEquals(List.of("it", "s", "rock", "n", "roll"), TranscriptIndex.terms("It-s ROCK & n roll!"));
+        assertEquals(List.of("dont", "stop"), TranscriptIndex.terms("Don’t stop"));
+        assertEquals(List.of("नमस्ते", "दुनिया"), TranscriptIndex.terms("नमस्ते, दुनिया"));
+    }
+
+    private TranscriptIndex open() {
+        TranscriptIndex opened = new TranscriptIndex(properties, new SubtitleConverter());
+        opened.open();
+        return opened;
+    }
+
+    // One cue per line, five seconds apart
+    private TranscriptIndex.Transcript transcript(String key, String url, String fileBaseName, String... lines) {
+        TranscriptIndex.Transcript transcript = index.begin(dir.resolve(key).toString(), url, fileBaseName);
+        for (int i = 0; i < lines.length; i++) {
+            transcript.add(new SubtitleCue(i * 5_000L, i * 5_000L + 4_000, List.of(lines[i])));
+        }
+        return transcript;
+    }
+
+    private void awaitSegments(int expected) throws InterruptedException {
+        for (int i = 0; i < 200 && !Integer.valueOf(expected).equals(index.stats().get("segments")); i++) {
+            Thread.sleep(25);
+        }
+        assertEquals(expected, index.stats().get("segments"));
+    }
+}
@@ -0,0 +1,79 @@
+package com.karan.youtubedownloader.service;
+
+import com.karan.youtubedownloader.config.DownloaderProperties;
+import com.karan.youtubedownloader.model.TransferOptions;
+import com.karan.youtubedownloader.model.VideoFormat;
+import com.karan.youtubedownloader.model.VideoMetadata;
+import com.karan.youtubedownloader.process.ProcessRunner;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class TransferPlannerTest {
+
+    private static final String URL = "https://www.youtube.com/watch?v=dQw4w9WgXcQ";
+
+    private final DownloaderProperties properties = new DownloaderProperties();
+    private final MetadataCache metadataCache = mock(MetadataCache.class);
+
+    @Test
+    void clampsRequestedFragmentsToTheServerMaximum() {
+        List<String> args = planner("true").plan(URL, null, "1080p", false,
+                TransferOptions.builder().concurrentFragments(64).externalDownloader("native").build());
+
+        assertEquals(List.of("--concurrent-fragments", "16"), args);
+    }
+
+    @Test
+    void largeSingleFileFormatsGoThroughAria2c() {
+        cache(format("22", "https", 720, 900_000_000L));
+
+        List<String> args = planner("true").plan(URL, null, "720p", false,
+                TransferOptions.builder().connections(99).build());
+
+        assertTrue(args.contains("--downloader"));
+        assertTrue(args.contains("aria2c:-x 16 -s 16 -k 1M --summary-interval=0"));
+    }
+
+    @Test
+    void fragmentedFormatsStayOnTheNativeDownloader() {
+        cache(format("299", "http_dash_segments", 1080, 900_000_000L));
+
+        List<String> args = planner("true").plan(URL, null, "1080p", false, null);
+
+        assertEquals(List.of("--concurrent-fragments", "4"), args);
+    }
+
+    @Test
+    void missingAria2cFallsBackToNative() {
+        List<String> args = planner("false").plan(URL, null, "1080p", false,
+                TransferOptions.builder().externalDownloader("aria2c").build());
+
+        assertFalse(args.contains("--downloader"));
+    }
+
+    // "true" and "false" stand in for an installed and a broken aria2c
+    private TransferPlanner planner(String aria2c) {
+        properties.getTransfer().setAria2cExecutable(aria2c);
+        return new TransferPlanner(new ProcessRunner(properties, new SimpleMeterRegistry()), metadataCache, properties);
+    }
+
+    private void cache(VideoFormat format) {
+        VideoMetadata metadata = VideoMetadata.builder().videoId("dQw4w9WgXcQ").formats(List.of(format)).build();
+        when(metadataCache.getIfPresent(URL)).thenReturn(List.of(metadata));
+    }
+
+    private static VideoFormat format(String id, String protocol, int height, long filesize) {
+        return VideoFormat.builder()
+                .formatId(id).ext("mp4").height(height).vcodec("avc1").acodec("mp4a.40.2")
+                .protocol(protocol).filesize(filesize)
+                .build();
+    }
+}
@@ -0,0 +1,55 @@
+package com.karan.youtubedownloader.service;
+
+import com.karan.youtubedownloader.model.VideoFormat;
+import com.karan.youtubedownloader.model.VideoMetadata;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class VideoMetadataParserTest {
+
+    private final VideoMetadataParser parser = new VideoMetadataParser();
+
+    @Test
+    void extractsFieldsFromRecordedProbe() throws Exception {
+        List<VideoMetadata> videos;
+        try (InputStream stream = getClass().getClassLoader().getResourceAsStream("fixtures/yt-dlp-dump-json.json")) {
+            videos = parser.parse(stream);
+        }
+
+        assertEquals(1, videos.size());
+        VideoMetadata video = videos.get(0);
+        assertEquals("dQw4w9WgXcQ", video.getVideoId());
+        assertEquals("3:32", video.getDuration());
+        assertEquals("en", video.getLanguage());
+        assertEquals(List.of("2160p", "1440p", "1080p", "720p", "480p", "360p", "240p", "144p", "best"),
+                video.getAvailableQualities());
+
+        // storyboards dropped, live_chat is not a subtitle track
+        assertTrue(video.getFormats().stream().noneMatch(format -> "mhtml".equals(format.getExt())));
+        assertEquals(5, video.getSubtitles().size());
+        assertEquals("vtt", video.getSubtitles().get(0).getFormat());
+        assertTrue(video.getAutomaticCaptions().stream().anyMatch(caption -> caption.getLanguageCode().equals("en-orig")));
+
+        VideoFormat audio = video.findFormat("140").orElseThrow();
+        assertTrue(audio.isHasAudio());
+        assertFalse(audio.isHasVideo());
+        assertFalse(audio.isFilesizeApproximate());
+    }
+
+    @Test
+    void keepsVideosParsedBeforeMalformedOutput() throws Exception {
+        byte[] output = "{\"id\":\"a\",\"title\":\"First\",\"duration\":61.5}\n{\"id\":".getBytes();
+
+        List<VideoMetadata> videos = parser.parse(new ByteArrayInputStream(output));
+
+        assertEquals(1, videos.size());
+        assertEquals("1:01", videos.get(0).getDuration());
+    }
+}
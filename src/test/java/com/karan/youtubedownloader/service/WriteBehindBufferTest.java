@@ -0,0 +1,108 @@
+package com.karan.youtubedownloader.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class WriteBehindBufferTest {
+
+    private final List<List<String>> batches = new CopyOnWriteArrayList<>();
+
+    @Test
+    void flushesFullBatchesWithoutWaitingForTheInterval() throws Exception {
+        CountDownLatch written = new CountDownLatch(1);
+        try (WriteBehindBuffer<Integer, String> buffer = new WriteBehindBuffer<>("test", 100, 3,
+                Duration.ofMinutes(1), Duration.ofSeconds(1), batch -> {
+                    batches.add(batch);
+                    written.countDown();
+                })) {
+            buffer.put(1, "a");
+            buffer.put(2, "b");
+            buffer.put(3, "c");
+
+            assertTrue(written.await(5, TimeUnit.SECONDS));
+            assertEquals(List.of("a", "b", "c"), batches.get(0));
+        }
+    }
+
+    @Test
+    void keepsOnlyTheLatestValuePerKey() {
+        WriteBehindBuffer<Integer, String> buffer = new WriteBehindBuffer<>("test", 100, 10,
+                Duration.ofMinutes(1), Duration.ofSeconds(1), batches::add);
+        buffer.put(1, "queued");
+        buffer.put(1, "running");
+        buffer.put(2, "queued");
+        buffer.put(1, "completed");
+
+        buffer.close();
+
+        assertEquals(List.of(List.of("completed", "queued")), batches);
+    }
+
+    @Test
+    void callerFlushesWhenTheBufferStaysFull() {
+        CountDownLatch release = new CountDownLatch(1);
+        WriteBehindBuffer<Integer, String> buffer = new WriteBehindBuffer<>("test", 2, 10,
+                Duration.ofMillis(10), Duration.ofMillis(50), batch -> {
+                    batches.add(batch);
+                    if (Thread.currentThread().getName().endsWith("-flusher")) {
+                        awaitQuietly(release);
+                    }
+                });
+
+        // The flusher takes the first entry and then stalls; once its write finishes
+        // the blocked caller writes the full buffer itself
+        buffer.put(1, "a");
+        sleepQuietly(100);
+        buffer.put(2, "b");
+        buffer.put(3, "c");
+        buffer.put(4, "d");
+
+        release.countDown();
+        buffer.close();
+
+        assertEquals(4, batches.stream().mapToInt(List::size).sum());
+    }
+
+    @Test
+    void failedBatchesAreRetried() {
+        List<String> written = new CopyOnWriteArrayList<>();
+        int[] attempts = {0};
+        WriteBehindBuffer<Integer, String> buffer = new WriteBehindBuffer<>("test", 100, 10,
+                Duration.ofMinutes(1), Duration.ofSeconds(1), batch -> {
+                    if (attempts[0]++ == 0) {
+                        throw new IllegalStateException("database unavailable");
+                    }
+                    written.addAll(batch);
+                });
+        buffer.put(1, "a");
+
+        buffer.flush();
+        buffer.close();
+
+        assertEquals(List.of("a"), written);
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await(300, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void sleepQuietly(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package com.karan.youtubedownloader.service;
+
+import com.karan.youtubedownloader.config.DownloaderProperties;
+import com.karan.youtubedownloader.model.DownloadResult;
+import com.karan.youtubedownloader.process.ProcessRunner;
+import com.karan.youtubedownloader.process.YtDlpWorkerPool;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.mock;
+
+class YouTubeServiceTest {
+
+    private static final String VIDEO = "https://www.youtube.com/watch?v=dQw4w9WgXcQ";
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void qualityFormatNeverAddsAudioToAProgressiveFile() {
+        assertEquals("bv[height<=720][ext=mp4]/bv[height<=720],ba[ext=m4a]/ba",
+                YouTubeService.getQualityFormat("720p", true));
+        assertEquals("bv[ext=mp4]/bv,ba[ext=m4a]/ba", YouTubeService.getQualityFormat("best", true));
+        assertEquals("b[height<=480]/w", YouTubeService.getQualityFormat("480p", false));
+        assertEquals("b", YouTubeService.getQualityFormat("best", false));
+        assertEquals("w", YouTubeService.getQualityFormat("worst", false));
+    }
+
+    @Test
+    void subtitleOnlyRunDoesNotWaitForADownloadSlot() throws Exception {
+        Path script = dir.resolve("fake-yt-dlp");
+        Files.writeString(script, "#!/bin/sh\nexit 0\n");
+        script.toFile().setExecutable(true);
+        DownloaderProperties properties = new DownloaderProperties();
+        properties.getProcess().setExecutable(script.toString());
+        properties.getGovernor().setMaxConcurrent(1);
+        DownloadGovernor governor = new DownloadGovernor(properties);
+        YouTubeService service = new YouTubeService(new ProcessRunner(properties, new SimpleMeterRegistry()),
+                mock(VideoMetadataParser.class), mock(MetadataCache.class), properties, governor,
+                mock(TransferPlanner.class), mock(DownloadMetrics.class), mock(YtDlpWorkerPool.class),
+                mock(PostProcessingService.class), mock(SubtitleConverter.class), mock(TranscriptIndex.class));
+
+        // A long video download holds the only slot for the whole run
+        try (DownloadGovernor.Lease ignored = governor.acquire(VIDEO)) {
+            DownloadResult result = CompletableFuture.supplyAsync(() -> {
+                try {
+                    return service.downloadOnlySubtitles(VIDEO, List.of("en"), List.of("srt"), dir.toString(),
+                            progress -> { }, new DownloadControl());
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+            }).get(10, TimeUnit.SECONDS);
+
+            assertEquals(List.of(), result.getOutputFiles());
+        }
+    }
+}
@@ -0,0 +1,5 @@
+#!/bin/sh
+# Stands in for yt-dlp in benchmarks: replays the recorded output file given as
+# the first argument, sending every 50th line to stderr the way yt-dlp mixes
+# warnings into a download. The remaining arguments are ignored.
+awk 'NR % 50 == 0 { print > "/dev/stderr"; next } { print }' "$1"